@@ -0,0 +1,118 @@
+package net.qasd.htmlanalyzer.benchmark;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.BuiltinAnalyzers;
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+import net.qasd.htmlanalyzer.analyzer.LoginDetector;
+import net.qasd.htmlanalyzer.analyzer.TagAnalyzers;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.DocumentType;
+import org.jsoup.nodes.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the multi pass analyzing (every analyzer walks the document) with the single pass analyzing of the analyzer
+ * engine, and the head only analyzing (document type and title) stopping the traversal at the end of the head
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisPathBenchmark {
+
+    private static final String HOST = "www.example.com";
+
+    // number of repeated page sections, a section is roughly 1 KB
+    @Param({"100", "2000"})
+    public int sections;
+
+    private Document document;
+
+    private URL url;
+
+    private AnalyzerEngine headOnlyEngine;
+
+    @Setup
+    public void setUp() throws MalformedURLException {
+        document = Jsoup.parse(generatePage(sections));
+        url = new URL("http://" + HOST + "/");
+        headOnlyEngine = AnalyzerEngine.newInstance(BuiltinAnalyzers.DOCTYPE + "," + BuiltinAnalyzers.TITLE);
+    }
+
+    @Benchmark
+    public void multiPass(Blackhole blackhole) throws IOException {
+        for (Node node : document.childNodes()) {
+            if (node instanceof DocumentType) {
+                blackhole.consume(DocumentTypeFetcher.newInstance().fetchDocumentType(node.toString()));
+                break;
+            }
+        }
+        blackhole.consume(document.title());
+        blackhole.consume(TagAnalyzers.sumUpHeadingLevels(document));
+        blackhole.consume(TagAnalyzers.sumUpHypermediaLinks(document, HOST));
+        blackhole.consume(LoginDetector.newInstance().hasLoginForm(document));
+    }
+
+    @Benchmark
+    public HtmlAnalyzerResult singlePass() throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        AnalyzerEngine.getDefault().analyze(document, url, result);
+
+        return result;
+    }
+
+    @Benchmark
+    public HtmlAnalyzerResult headOnly() throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        headOnlyEngine.analyze(document, url, result);
+
+        return result;
+    }
+
+    /**
+     * Generates a product page like document with the given number of sections
+     *
+     * @param sections Number of sections
+     * @return Html content
+     */
+    static String generatePage(int sections) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Benchmark page</title>" +
+            "<link href=\"/css/main.css\" rel=\"stylesheet\"><script src=\"//cdn.example.org/app.js\"></script>" +
+            "</head><body><h1>Products</h1>");
+
+        for (int i = 0; i < sections; i++) {
+            html.append("<div class=\"product\"><h2>Product ").append(i).append("</h2>")
+                .append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.</p>")
+                .append("<a href=\"/products/").append(i).append("\"><img src=\"/img/").append(i).append(".png\"></a>")
+                .append("<a href=\"https://www.other.com/ref?id=").append(i).append("\">Reference</a>")
+                .append("<ul><li><h3>Details</h3></li><li><a href=\"//").append(HOST).append("/d/").append(i).append("\">More</a></li></ul>")
+                .append("<form method=\"get\" action=\"/search\"><input type=\"text\" name=\"q\"></form>")
+                .append("</div>");
+        }
+
+        html.append("<form method=\"post\" action=\"/signin\"><input type=\"text\" name=\"user\"></form>")
+            .append("</body></html>");
+
+        return html.toString();
+    }
+}
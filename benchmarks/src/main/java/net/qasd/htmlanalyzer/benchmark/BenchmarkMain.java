@@ -0,0 +1,24 @@
+package net.qasd.htmlanalyzer.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line; the GC profiler is enabled unless a profiler is given, so the
+ * results include the allocation rate (gc.alloc.rate.norm is the allocated bytes per operation)
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+
+        boolean listOnly = arguments.contains("-l") || arguments.contains("-h") || arguments.contains("-lprof");
+        if (!arguments.contains("-prof") && !listOnly) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
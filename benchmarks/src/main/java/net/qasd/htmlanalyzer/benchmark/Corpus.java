@@ -0,0 +1,51 @@
+package net.qasd.htmlanalyzer.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The html pages of the benchmark corpus
+ * <p>
+ * The pages are modelled on the real-world pages and cover the typical sizes plus a pathological one:
+ * <ul>
+ * <li>small: a short article page (~12 KB)</li>
+ * <li>medium: a news front page with the XHTML 1.0 transitional document type (~120 KB)</li>
+ * <li>large: a long front page with many articles, tables and comments (~500 KB)</li>
+ * <li>pathological: deep nesting, misnested formatting, unclosed cells, nested forms and huge attributes (~420 KB)</li>
+ * </ul>
+ */
+public class Corpus {
+
+    public static final String HOST = "www.example-news.com";
+
+    public static final String BASE_URI = "https://" + HOST + "/";
+
+    private Corpus() {
+    }
+
+    /**
+     * Loads the page of the corpus
+     *
+     * @param name The page name (small, medium, large or pathological)
+     * @return Html content
+     * @throws IOException If the page cannot be read
+     */
+    public static String load(String name) throws IOException {
+        try (InputStream inputStream = Corpus.class.getResourceAsStream("/corpus/" + name + ".html")) {
+            if (inputStream == null) {
+                throw new IOException("The corpus page \"" + name + "\" is not found");
+            }
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
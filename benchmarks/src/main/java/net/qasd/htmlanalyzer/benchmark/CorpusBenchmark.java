@@ -0,0 +1,102 @@
+package net.qasd.htmlanalyzer.benchmark;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+import net.qasd.htmlanalyzer.analyzer.LoginDetector;
+import net.qasd.htmlanalyzer.analyzer.TagAnalyzers;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.DocumentType;
+import org.jsoup.nodes.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the analyzer hot paths on the corpus pages
+ * <p>
+ * The document is parsed once in the setup for the analyzer benchmarks; the parse and the end-to-end benchmarks
+ * start from the html content. The end-to-end analysis uses an in-memory fetcher, so no network is involved; the
+ * logging is limited to the warnings in order not to measure the console output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class CorpusBenchmark {
+
+    @Param({"small", "medium", "large", "pathological"})
+    public String page;
+
+    private String html;
+
+    private Document document;
+
+    private String documentTypeDeclaration;
+
+    private URL url;
+
+    private Fetcher fetcher;
+
+    @Setup
+    public void setUp() throws IOException {
+        html = Corpus.load(page);
+        document = Jsoup.parse(html, Corpus.BASE_URI);
+        url = new URL(Corpus.BASE_URI);
+        fetcher = fetchedUrl -> Jsoup.parse(html, fetchedUrl.toString());
+
+        for (Node node : document.childNodes()) {
+            if (node instanceof DocumentType) {
+                documentTypeDeclaration = node.toString();
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, Corpus.BASE_URI);
+    }
+
+    @Benchmark
+    public Map<String, ?> sumUpHeadingLevels() {
+        return TagAnalyzers.sumUpHeadingLevels(document);
+    }
+
+    @Benchmark
+    public TagAnalyzers.HyperMediaLinkSums sumUpHypermediaLinks() {
+        return TagAnalyzers.sumUpHypermediaLinks(document, Corpus.HOST);
+    }
+
+    @Benchmark
+    public boolean hasLoginForm() throws IOException {
+        return LoginDetector.newInstance().hasLoginForm(document);
+    }
+
+    @Benchmark
+    public String fetchDocumentType() {
+        return DocumentTypeFetcher.newInstance().fetchDocumentType(documentTypeDeclaration);
+    }
+
+    @Benchmark
+    public HtmlAnalyzerResult endToEnd() {
+        return HtmlAnalyzer.execute(url, fetcher);
+    }
+}
@@ -0,0 +1,119 @@
+package net.qasd.htmlanalyzer.benchmark;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+import net.qasd.htmlanalyzer.analyzer.TagAnalyzers;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+import net.qasd.htmlanalyzer.util.MutableInteger;
+import net.qasd.htmlanalyzer.web.ResultJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.ModelAndView;
+import spark.template.velocity.VelocityTemplateEngine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the throughput of the rendering of a result with the velocity template and the streaming json writer
+ * <p>
+ * Both paths write the UTF-8 encoded response to a stream counting the bytes, like a servlet response stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultRenderingBenchmark {
+
+    private VelocityTemplateEngine templateEngine;
+
+    private HtmlAnalyzerResult result;
+
+    @Setup
+    public void setUp() {
+        templateEngine = new VelocityTemplateEngine();
+
+        Map<String, MutableInteger> headingLevelCounter = new HashMap<>();
+        headingLevelCounter.put("h1", new MutableInteger(1));
+        headingLevelCounter.put("h2", new MutableInteger(24));
+        headingLevelCounter.put("h3", new MutableInteger(57));
+
+        TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums = new TagAnalyzers.HyperMediaLinkSums();
+        hyperMediaLinkSums.getInternal().setValue(213);
+        hyperMediaLinkSums.getExternal().setValue(48);
+
+        result = new HtmlAnalyzerResult();
+        result.setDocumentType("HTML5");
+        result.setRenderingMode(DocumentTypeFetcher.RenderingMode.NO_QUIRKS);
+        result.setTitle("Benchmark page - products & \"offers\"");
+        result.setHeadingLevelCounter(headingLevelCounter);
+        result.setHyperMediaLinkSums(hyperMediaLinkSums);
+        result.setHasLoginForm(true);
+        result.succeed();
+    }
+
+    @Benchmark
+    public long velocity() throws IOException {
+        Map<String, Object> model = new HashMap<>();
+        model.put("analyzeResult", result);
+
+        CountingOutputStream outputStream = new CountingOutputStream();
+        outputStream.write(templateEngine.render(new ModelAndView(model, "templates/result.vm")).getBytes(StandardCharsets.UTF_8));
+
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        try (JsonWriter json = JsonWriter.newInstance(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)))) {
+            ResultJsonWriter.write(json, "http://www.example.com", result, 12);
+        }
+
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long jsonGzip() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        try (JsonWriter json = JsonWriter.newInstance(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8)))) {
+            ResultJsonWriter.write(json, "http://www.example.com", result, 12);
+        }
+
+        return outputStream.count;
+    }
+
+    /**
+     * Discards the written bytes and counts them
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.util.DnsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Analyzes a batch of urls concurrently and reports every result as soon as it is finished
+ * <p>
+ * The analyzing runs on a shared bounded executor, so the concurrency limit holds for all batches together. The
+ * executor uses virtual threads if it is requested and the runtime supports them (Java 21+), otherwise a fixed pool of
+ * platform threads. If the fetcher has a dns cache then the hosts of a batch are resolved in parallel while the first
+ * urls are analyzed.
+ */
+public class BatchAnalyzer implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(BatchAnalyzer.class);
+
+    private final ExecutorService executor;
+
+    // bounds the virtual threads, null for the fixed thread pool
+    private final Semaphore permits;
+
+    private final Function<URL, HtmlAnalyzerResult> analysis;
+
+    // prefetches the hosts of a batch, null if the hosts are resolved by the fetches
+    private final DnsCache dnsCache;
+
+    private BatchAnalyzer(int concurrency, boolean virtualThreads, Function<URL, HtmlAnalyzerResult> analysis, DnsCache dnsCache) {
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            this.permits = new Semaphore(concurrency);
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "batch-analyzer-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+        this.analysis = analysis;
+        this.dnsCache = dnsCache;
+    }
+
+    /**
+     * Initiates a new instance of BatchAnalyzer
+     *
+     * @param concurrency    The maximum number of the urls analyzed at the same time
+     * @param virtualThreads Whether the virtual threads are used if they are supported
+     * @param analysis       Analyzes an url (e.g. the html analyzer or the result cache)
+     * @return A new instance of BatchAnalyzer
+     */
+    public static BatchAnalyzer newInstance(int concurrency, boolean virtualThreads, Function<URL, HtmlAnalyzerResult> analysis) {
+        return new BatchAnalyzer(concurrency, virtualThreads, analysis, null);
+    }
+
+    /**
+     * Initiates a new instance of BatchAnalyzer resolving the distinct hosts of every batch before its fetches
+     *
+     * @param concurrency    The maximum number of the urls analyzed at the same time
+     * @param virtualThreads Whether the virtual threads are used if they are supported
+     * @param analysis       Analyzes an url (e.g. the html analyzer or the result cache)
+     * @param dnsCache       The dns cache of the fetcher or null if the hosts are not prefetched
+     * @return A new instance of BatchAnalyzer
+     */
+    public static BatchAnalyzer newInstance(int concurrency, boolean virtualThreads, Function<URL, HtmlAnalyzerResult> analysis, DnsCache dnsCache) {
+        return new BatchAnalyzer(concurrency, virtualThreads, analysis, dnsCache);
+    }
+
+    /**
+     * Creates the virtual thread per task executor with reflection since the code is compiled for Java 8
+     *
+     * @return The executor or null if the virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException notSupported) {
+            logger.warn("The virtual threads are not supported, the platform threads are used");
+            return null;
+        }
+    }
+
+    /**
+     * Analyzes the urls and calls the listener in the calling thread for every result in the completion order
+     * <p>
+     * If the listener fails (e.g. the client is disconnected) then the remaining urls are cancelled.
+     *
+     * @param urls     The urls
+     * @param listener The result listener
+     * @throws IOException          If the listener fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the results
+     */
+    public void execute(List<String> urls, ResultListener listener) throws IOException, InterruptedException {
+        // the hosts are resolved in parallel, a fetch of a host being resolved waits for its resolution
+        if (dnsCache != null) {
+            dnsCache.prefetch(getHosts(urls));
+        }
+
+        CompletionService<BatchResult> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<BatchResult>> futures = new ArrayList<>(urls.size());
+
+        for (String url : urls) {
+            futures.add(completionService.submit(() -> analyze(url)));
+        }
+
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                listener.onResult(completionService.take().get());
+            }
+        } catch (ExecutionException analyzeException) {
+            // the analyzing catches all exceptions itself
+            throw new IllegalStateException(analyzeException.getCause());
+        } finally {
+            for (Future<BatchResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Gets the hosts of the valid urls
+     *
+     * @param urls The urls
+     * @return The hosts, the duplicates are not removed
+     */
+    static List<String> getHosts(List<String> urls) {
+        List<String> hosts = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            try {
+                String host = new URL(url).getHost();
+                if (!host.isEmpty()) {
+                    hosts.add(host);
+                }
+            } catch (MalformedURLException urlException) {
+                // reported by the analyzing
+            }
+        }
+
+        return hosts;
+    }
+
+    /**
+     * Analyzes the url and measures the time
+     *
+     * @param url The url
+     * @return The batch result
+     * @throws InterruptedException If the task is cancelled while waiting for a permit
+     */
+    private BatchResult analyze(String url) throws InterruptedException {
+        if (permits != null) {
+            permits.acquire();
+        }
+
+        try {
+            long start = System.nanoTime();
+            HtmlAnalyzerResult result;
+            try {
+                result = analysis.apply(new URL(url));
+            } catch (MalformedURLException urlException) {
+                result = new HtmlAnalyzerResult();
+                result.failed(HtmlAnalyzer.Messages.URL_NOT_VALID);
+                logger.info("The url \"{}\" is not valid", url);
+            } catch (RuntimeException analyzeException) {
+                result = new HtmlAnalyzerResult();
+                result.failed(HtmlAnalyzer.Messages.HTML_NOT_VALID);
+                logger.warn("Html cannot be analyzed for the url \"{}\"", url, analyzeException);
+            }
+
+            return new BatchResult(url, result, (System.nanoTime() - start) / 1000000);
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Shuts the executor down
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Receives the batch results
+     */
+    @FunctionalInterface
+    public interface ResultListener {
+
+        /**
+         * Called for every finished url
+         *
+         * @param result The batch result
+         * @throws IOException If the result cannot be written
+         */
+        void onResult(BatchResult result) throws IOException;
+    }
+
+    /**
+     * The result of an url in the batch
+     */
+    public static class BatchResult {
+        private final String url;
+        private final HtmlAnalyzerResult result;
+        private final long elapsedMillis;
+
+        BatchResult(String url, HtmlAnalyzerResult result, long elapsedMillis) {
+            this.url = url;
+            this.result = result;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Gets the url
+         *
+         * @return The url as it is given
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Gets the html analyzer result
+         *
+         * @return Html analyzer result
+         */
+        public HtmlAnalyzerResult getResult() {
+            return result;
+        }
+
+        /**
+         * Gets the analyzing time
+         *
+         * @return The analyzing time in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
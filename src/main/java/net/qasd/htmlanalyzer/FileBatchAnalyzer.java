@@ -0,0 +1,310 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.StreamingAnalyzer;
+import net.qasd.htmlanalyzer.util.MemoryBudget;
+import net.qasd.htmlanalyzer.util.WarcReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Analyzes local html files or archived responses in parallel and reports every result in the input order or as soon
+ * as it is finished
+ * <p>
+ * The pages are analyzed on a fork-join pool sized to the cores. The calling thread walks the files (or reads the
+ * archive) and submits them while the memory budget allows; the estimated memory of a page is its size and its parsed
+ * document (only its size for the streaming analyzer). The number of the pages submitted but not reported yet is
+ * bounded too, so the results waiting for a slow page in the input order do not grow without limit. The pages are
+ * streamed from the iterator, so the number of the pages is not bounded.
+ */
+public class FileBatchAnalyzer implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(FileBatchAnalyzer.class);
+
+    // the parsed document takes about this many times the file size in the heap
+    static final int DOCUMENT_SIZE_FACTOR = 8;
+
+    // the pages submitted but not reported yet per thread
+    private static final int MAX_PENDING_PER_THREAD = 64;
+
+    private final ForkJoinPool pool;
+
+    private final MemoryBudget memoryBudget;
+
+    private final int maxPending;
+
+    private final boolean ordered;
+
+    // null if the pages are analyzed by the streaming analyzer
+    private final AnalyzerEngine engine;
+
+    // null if the pages are parsed and analyzed by the engine
+    private final StreamingAnalyzer streamingAnalyzer;
+
+    // the estimated memory of a page per byte of its size
+    private final int sizeFactor;
+
+    private FileBatchAnalyzer(int parallelism, long memoryBudgetBytes, boolean ordered, AnalyzerEngine engine, StreamingAnalyzer streamingAnalyzer) {
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.memoryBudget = MemoryBudget.newInstance(memoryBudgetBytes);
+        this.maxPending = parallelism * MAX_PENDING_PER_THREAD;
+        this.ordered = ordered;
+        this.engine = engine;
+        this.streamingAnalyzer = streamingAnalyzer;
+        // no document is built by the streaming analyzer
+        this.sizeFactor = streamingAnalyzer != null ? 1 : 1 + DOCUMENT_SIZE_FACTOR;
+    }
+
+    /**
+     * Initiates a new instance of FileBatchAnalyzer
+     *
+     * @param parallelism       The number of the threads analyzing the files
+     * @param memoryBudgetBytes The maximum estimated memory of the files in flight
+     * @param ordered           Whether the results are reported in the input order
+     * @param engine            The analyzer engine running the selected analyzers
+     * @return A new instance of FileBatchAnalyzer
+     */
+    public static FileBatchAnalyzer newInstance(int parallelism, long memoryBudgetBytes, boolean ordered, AnalyzerEngine engine) {
+        return new FileBatchAnalyzer(parallelism, memoryBudgetBytes, ordered, engine, null);
+    }
+
+    /**
+     * Initiates a new instance of FileBatchAnalyzer analyzing the pages without building their DOM
+     * <p>
+     * The estimated memory of a page is only its size, so more pages fit into the memory budget.
+     *
+     * @param parallelism       The number of the threads analyzing the files
+     * @param memoryBudgetBytes The maximum estimated memory of the files in flight
+     * @param ordered           Whether the results are reported in the input order
+     * @param streamingAnalyzer The streaming analyzer running the selected built-in analyzers
+     * @return A new instance of FileBatchAnalyzer
+     */
+    public static FileBatchAnalyzer newInstance(int parallelism, long memoryBudgetBytes, boolean ordered, StreamingAnalyzer streamingAnalyzer) {
+        return new FileBatchAnalyzer(parallelism, memoryBudgetBytes, ordered, null, streamingAnalyzer);
+    }
+
+    /**
+     * Analyzes the files and calls the listener for every result
+     * <p>
+     * The listener is called by one thread at a time. If the listener fails then the remaining files are not
+     * submitted and the failure is thrown.
+     *
+     * @param files       The html files
+     * @param urlResolver Gets the url of a file, the host of the url classifies the links
+     * @param listener    The result listener
+     * @return The number of the analyzed files
+     * @throws IOException          If the listener fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the budget or the results
+     */
+    public long execute(Iterator<Path> files, Function<Path, URL> urlResolver, BatchAnalyzer.ResultListener listener) throws IOException, InterruptedException {
+        return execute(files, this::estimateBytes, file -> {
+            URL url = urlResolver.apply(file);
+            return new Page(url.toString(), () -> streamingAnalyzer != null ? HtmlAnalyzer.execute(file, url, streamingAnalyzer) : HtmlAnalyzer.execute(file, url, engine));
+        }, listener);
+    }
+
+    /**
+     * Analyzes the html responses of a WARC archive and calls the listener for every result
+     * <p>
+     * The calling thread reads (and inflates) the archive while the previous records are analyzed. The target uri of
+     * a record is the url of the page, so the links are classified against its host.
+     *
+     * @param records  The html response records of the archive
+     * @param listener The result listener
+     * @return The number of the analyzed records
+     * @throws IOException          If the listener fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the budget or the results
+     */
+    public long execute(WarcReader records, BatchAnalyzer.ResultListener listener) throws IOException, InterruptedException {
+        return execute(records, record -> (long) record.getSize() * sizeFactor,
+            record -> new Page(record.getTargetUri(), () -> analyze(record)), listener);
+    }
+
+    /**
+     * Submits the items while the memory budget allows and reports their results
+     *
+     * @param items     The items to analyze
+     * @param estimator Estimates the memory of an item while it is analyzed
+     * @param pages     Creates the page of an item in the calling thread
+     * @param listener  The result listener
+     * @param <T>       The item type
+     * @return The number of the analyzed items
+     * @throws IOException          If the listener fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the budget or the results
+     */
+    private <T> long execute(Iterator<T> items, ToLongFunction<T> estimator, Function<T, Page> pages, BatchAnalyzer.ResultListener listener) throws IOException, InterruptedException {
+        Output output = new Output(listener);
+        long submitted = 0;
+
+        while (items.hasNext()) {
+            T item = items.next();
+            Page page = pages.apply(item);
+
+            output.awaitPending(submitted - maxPending + 1);
+            long granted = memoryBudget.acquire(estimator.applyAsLong(item));
+            long index = submitted++;
+
+            pool.execute(() -> {
+                long start = System.nanoTime();
+                HtmlAnalyzerResult result;
+                try {
+                    result = page.analysis.get();
+                } catch (RuntimeException analyzeException) {
+                    result = new HtmlAnalyzerResult();
+                    result.failed(HtmlAnalyzer.Messages.HTML_NOT_VALID);
+                    logger.warn("Html cannot be analyzed for \"{}\"", page.url, analyzeException);
+                } finally {
+                    memoryBudget.release(granted);
+                }
+
+                output.complete(index, new BatchAnalyzer.BatchResult(page.url, result, (System.nanoTime() - start) / 1000000));
+            });
+        }
+
+        output.awaitPending(submitted);
+
+        return submitted;
+    }
+
+    /**
+     * Analyzes the archived response
+     *
+     * @param record The html response record
+     * @return Html analyzer result
+     */
+    private HtmlAnalyzerResult analyze(WarcReader.WarcRecord record) {
+        URL url;
+        try {
+            url = new URL(record.getTargetUri());
+        } catch (MalformedURLException urlException) {
+            HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+            result.failed(HtmlAnalyzer.Messages.URL_NOT_VALID);
+            logger.info("The target uri \"{}\" is not valid", record.getTargetUri());
+            return result;
+        }
+
+        if (streamingAnalyzer != null) {
+            return HtmlAnalyzer.execute(url, record::open, streamingAnalyzer);
+        }
+
+        return HtmlAnalyzer.execute(url, targetUrl -> record.parse(), engine);
+    }
+
+    /**
+     * Estimates the memory of the file while it is analyzed
+     *
+     * @param file The html file
+     * @return The estimated bytes
+     */
+    private long estimateBytes(Path file) {
+        try {
+            return Files.size(file) * sizeFactor;
+        } catch (IOException sizeException) {
+            // the read fails and reports the file
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the memory budget
+     *
+     * @return The memory budget of the files in flight
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Shuts the pool down
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The url of an item and its deferred analysis
+     */
+    private static class Page {
+        private final String url;
+        private final Supplier<HtmlAnalyzerResult> analysis;
+
+        Page(String url, Supplier<HtmlAnalyzerResult> analysis) {
+            this.url = url;
+            this.analysis = analysis;
+        }
+    }
+
+    /**
+     * Reports the results to the listener in the input or the completion order
+     */
+    private class Output {
+        private final BatchAnalyzer.ResultListener listener;
+
+        // the finished results waiting for the previous ones in the input order
+        private final Map<Long, BatchAnalyzer.BatchResult> waiting = new HashMap<>();
+
+        private long reported = 0;
+
+        private IOException failure;
+
+        Output(BatchAnalyzer.ResultListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void complete(long index, BatchAnalyzer.BatchResult result) {
+            if (failure != null) {
+                return;
+            }
+
+            try {
+                if (!ordered) {
+                    listener.onResult(result);
+                    reported++;
+                } else {
+                    waiting.put(index, result);
+                    for (BatchAnalyzer.BatchResult next = waiting.remove(reported); next != null; next = waiting.remove(reported)) {
+                        listener.onResult(next);
+                        reported++;
+                    }
+                }
+            } catch (IOException listenerException) {
+                failure = listenerException;
+            } catch (RuntimeException listenerException) {
+                failure = new IOException(listenerException);
+            } finally {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits until the given number of the results is reported
+         *
+         * @param count The number of the results
+         * @throws IOException          If the listener has failed
+         * @throws InterruptedException If the thread is interrupted while waiting
+         */
+        synchronized void awaitPending(long count) throws IOException, InterruptedException {
+            while (failure == null && reported < count) {
+                wait();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -1,99 +1,350 @@
 package net.qasd.htmlanalyzer;
 
-import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
-import net.qasd.htmlanalyzer.analyzer.LoginDetector;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.BuiltinAnalyzers;
+import net.qasd.htmlanalyzer.analyzer.StreamingAnalyzer;
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.MappedFileReader;
 import net.qasd.htmlanalyzer.util.UrlReader;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.DocumentType;
-import org.jsoup.nodes.Node;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
-
-import static net.qasd.htmlanalyzer.analyzer.TagAnalyzers.sumUpHeadingLevels;
-import static net.qasd.htmlanalyzer.analyzer.TagAnalyzers.sumUpHypermediaLinks;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 public class HtmlAnalyzer {
 
     private static Logger logger = LoggerFactory.getLogger(HtmlAnalyzer.class);
 
+    private static final Histogram totalHistogram = Metrics.getDefault().stage(Metrics.TOTAL);
+
     /**
-     * Executes the html analyzer
+     * Executes the html analyzer with the blocking url reader
      *
      * @param url The url
      * @return Html analyzer result
      */
     public static HtmlAnalyzerResult execute(URL url) {
+        return execute(url, UrlReader.newInstance());
+    }
+
+    /**
+     * Executes the html analyzer with all analyzers
+     *
+     * @param url     The url
+     * @param fetcher The fetcher of the html document
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult execute(URL url, Fetcher fetcher) {
+        return execute(url, fetcher, AnalyzerEngine.getDefault());
+    }
+
+    /**
+     * Executes the html analyzer with the analyzers of the engine
+     * <p>
+     * If all analyzers of the engine need only the head then only the head of the page is downloaded and parsed.
+     *
+     * @param url     The url
+     * @param fetcher The fetcher of the html document
+     * @param engine  The analyzer engine running the selected analyzers
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult execute(URL url, Fetcher fetcher, AnalyzerEngine engine) {
+        return execute(url, fetcher, engine, null);
+    }
+
+    /**
+     * Executes the html analyzer with the analyzers of the engine and passes the parsed document to the listener
+     *
+     * @param url              The url
+     * @param fetcher          The fetcher of the html document
+     * @param engine           The analyzer engine running the selected analyzers
+     * @param documentListener Receives the document if it is analyzed successfully (e.g. to follow its links), or null
+     * @return Html analyzer result
+     */
+    static HtmlAnalyzerResult execute(URL url, Fetcher fetcher, AnalyzerEngine engine, Consumer<Document> documentListener) {
         HtmlAnalyzerResult result = new HtmlAnalyzerResult();
 
         String urlStr = url.toString();
+        long start = System.nanoTime();
 
         try {
             logger.info("Html analyzing starts for the url \"{}\"", urlStr);
 
-            String html = UrlReader.newInstance().getContent(url);
+            // the response is parsed while it is downloaded, only until the end of the head if the body is not needed
+            Document htmlDocument = engine.isHeadOnly() && documentListener == null ? fetcher.fetchHead(url) : fetcher.fetch(url);
+            logger.debug("Html has been parsed for the url \"{}\"", urlStr);
 
-            try {
-                Document htmlDocument = Jsoup.parse(html);
-                logger.debug("Html has been parsed for the url \"{}\"", urlStr);
+            analyze(htmlDocument, url, engine, result);
+            if (documentListener != null && result.isSucceed()) {
+                documentListener.accept(htmlDocument);
+            }
+        } catch (Exception fetchException) {
+            fetchFailed(urlStr, fetchException, result);
+        }
+        totalHistogram.recordSince(start);
+
+        return result;
+    }
+
+    /**
+     * Executes the html analyzer on a local html file with the analyzers of the engine
+     *
+     * @param file   The html file
+     * @param url    The url of the page, the base uri of the document and the host of the links
+     * @param engine The analyzer engine running the selected analyzers
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult execute(Path file, URL url, AnalyzerEngine engine) {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+
+        String urlStr = url.toString();
+        long start = System.nanoTime();
+
+        try {
+            logger.info("Html analyzing starts for the file \"{}\"", file);
+
+            Document htmlDocument = MappedFileReader.parse(file, urlStr);
+            logger.debug("Html has been parsed for the file \"{}\"", file);
+
+            analyze(htmlDocument, url, engine, result);
+        } catch (Exception readException) {
+            fetchFailed(urlStr, readException, result);
+        }
+        totalHistogram.recordSince(start);
+
+        return result;
+    }
+
+    /**
+     * Executes the html analyzer on a local html file with the streaming analyzer, the DOM of the file is not built
+     *
+     * @param file     The html file
+     * @param url      The url of the page and the host of the links
+     * @param analyzer The streaming analyzer running the selected built-in analyzers
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult execute(Path file, URL url, StreamingAnalyzer analyzer) {
+        return execute(url, () -> MappedFileReader.open(file), analyzer);
+    }
+
+    /**
+     * Executes the html analyzer with the streaming analyzer on the characters of the document
+     *
+     * @param url      The url of the page and the host of the links
+     * @param document Opens the reader of the html document
+     * @param analyzer The streaming analyzer running the selected built-in analyzers
+     * @return Html analyzer result
+     */
+    static HtmlAnalyzerResult execute(URL url, Callable<Reader> document, StreamingAnalyzer analyzer) {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+
+        String urlStr = url.toString();
+        long start = System.nanoTime();
+
+        TrackingReader reader = null;
+        try {
+            logger.info("Html analyzing starts for the url \"{}\"", urlStr);
+            reader = new TrackingReader(document.call());
 
-                // find the document type
-                logger.debug("Getting the document type for the url \"{}\"", urlStr);
-                for (Node node : htmlDocument.childNodes()) {
-                    if (node instanceof DocumentType) {
-                        result.setDocumentType(DocumentTypeFetcher.newInstance().fetchDocumentType(node.toString()));
-
-                        logger.info("The document type is \"{}\" for the url \"{}\"", result.getDocumentType(), urlStr);
-                        break;
-                    }
-                }
-
-                // set title
-                logger.debug("Getting the page title for the url \"{}\"", urlStr);
-                result.setTitle(htmlDocument.title());
-                logger.info("The page title is \"{}\" for the url \"{}\"", result.getTitle(), urlStr);
-
-                // analyze heading levels
-                logger.debug("Running heading level analyzing for the url \"{}\"", urlStr);
-                result.setHeadingLevelCounter(sumUpHeadingLevels(htmlDocument));
-                logger.info("The heading level counts: \"{}\" for the url \"{}\"", result.getHeadingLevelCounter().toString(), urlStr);
-
-                // analyze hypermedia links
-                logger.debug("Running hypermedia analyzing for the url \"{}\"", urlStr);
-                result.setHyperMediaLinkSums(sumUpHypermediaLinks(htmlDocument, url.getHost()));
-                logger.info("The hypermedia counts: \"{}\" for the url \"{}\"", result.getHyperMediaLinkSums().toString(), urlStr);
-
-                // find any login form
-                logger.debug("Running login detection for the url \"{}\"", urlStr);
-                result.setHasLoginForm(LoginDetector.newInstance().hasLoginForm(htmlDocument));
-                logger.info("Login form is {}found for the url \"{}\"", (!result.getHasLoginForm() ? "not " : ""), urlStr);
-
-                result.succeed();
-                logger.info("Html analyzing is completed successfully for the url \"{}\"", urlStr);
-            } catch (IOException loginDetectorException) {
-                result.failed(Messages.LOGIN_DETECTION_FAILED);
-                logger.warn("Login detection failed for the url \"{}", urlStr, loginDetectorException);
-            } catch (Exception jsoupException) {
-                result.failed(Messages.HTML_NOT_VALID);
-                logger.warn("Html cannot be parsed for the url \"{}\"", urlStr, jsoupException);
+            // the analyzers get the elements while the document is read
+            logger.debug("Running the streaming analyzers {} for the url \"{}\"", analyzer.getNames(), urlStr);
+            analyzer.analyze(reader, url, result);
+            succeeded(result, urlStr);
+        } catch (IOException analyzeException) {
+            if (reader == null || reader.readFailed) {
+                fetchFailed(urlStr, analyzeException, result);
+            } else {
+                failed(result, Messages.LOGIN_DETECTION_FAILED);
+                logger.warn("Login detection failed for the url \"{}", urlStr, analyzeException);
             }
-        } catch (UrlReader.UrlNotFoundException htmlNotValid) {
-            result.failed(Messages.URL_NOT_FOUND);
-            logger.warn("The url \"{}\" is not found", urlStr, htmlNotValid);
-        } catch (UrlReader.NotHtmlDocumentException htmlNotValid) {
-            result.failed(Messages.HTML_NOT_VALID);
-            logger.warn("The url \"{}\" is not a html document", urlStr, htmlNotValid);
-        } catch (UrlReader.UrlNotReadableException | IOException urlNotFound) {
-            result.failed(Messages.URL_NOT_VALID);
-            logger.warn("The url \"{}\" is not readable", urlStr, urlNotFound);
+        } catch (Exception readException) {
+            fetchFailed(urlStr, readException, result);
         }
+        totalHistogram.recordSince(start);
 
         return result;
     }
 
+    /**
+     * Executes the html analyzer asynchronously with all analyzers, the analyzing runs in the thread completing the
+     * fetch
+     *
+     * @param url     The url
+     * @param fetcher The fetcher of the html document
+     * @return The future of the html analyzer result, it is never completed exceptionally
+     */
+    public static CompletableFuture<HtmlAnalyzerResult> executeAsync(URL url, Fetcher fetcher) {
+        return executeAsync(url, fetcher, AnalyzerEngine.getDefault());
+    }
+
+    /**
+     * Executes the html analyzer asynchronously with the analyzers of the engine, the analyzing runs in the thread
+     * completing the fetch
+     * <p>
+     * If all analyzers of the engine need only the head then only the head of the page is downloaded and parsed.
+     *
+     * @param url     The url
+     * @param fetcher The fetcher of the html document
+     * @param engine  The analyzer engine running the selected analyzers
+     * @return The future of the html analyzer result, it is never completed exceptionally
+     */
+    public static CompletableFuture<HtmlAnalyzerResult> executeAsync(URL url, Fetcher fetcher, AnalyzerEngine engine) {
+        String urlStr = url.toString();
+        logger.info("Html analyzing starts for the url \"{}\"", urlStr);
+        long start = System.nanoTime();
+
+        CompletableFuture<Document> fetched = engine.isHeadOnly() ? fetcher.fetchHeadAsync(url) : fetcher.fetchAsync(url);
+        return fetched.handle((htmlDocument, fetchException) -> {
+            HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+            if (fetchException != null) {
+                fetchFailed(urlStr, fetchException, result);
+            } else {
+                logger.debug("Html has been parsed for the url \"{}\"", urlStr);
+                analyze(htmlDocument, url, engine, result);
+            }
+            totalHistogram.recordSince(start);
+
+            return result;
+        });
+    }
+
+    /**
+     * Analyzes the parsed html document and fills the result
+     *
+     * @param htmlDocument Parsed html document
+     * @param url          The url of the document
+     * @param engine       The analyzer engine running the selected analyzers
+     * @param result       Html analyzer result
+     */
+    static void analyze(Document htmlDocument, URL url, AnalyzerEngine engine, HtmlAnalyzerResult result) {
+        String urlStr = url.toString();
+
+        try {
+            // collect the values of the selected analyzers in one traversal
+            logger.debug("Running the analyzers {} for the url \"{}\"", engine.getNames(), urlStr);
+            engine.analyze(htmlDocument, url, result);
+            succeeded(result, urlStr);
+        } catch (IOException loginDetectorException) {
+            failed(result, Messages.LOGIN_DETECTION_FAILED);
+            logger.warn("Login detection failed for the url \"{}", urlStr, loginDetectorException);
+        } catch (Exception jsoupException) {
+            failed(result, Messages.HTML_NOT_VALID);
+            logger.warn("Html cannot be parsed for the url \"{}\"", urlStr, jsoupException);
+        }
+    }
+
+    /**
+     * Logs the values of the analyzed document and marks the result as succeeded
+     *
+     * @param result Html analyzer result
+     * @param urlStr The url
+     */
+    private static void succeeded(HtmlAnalyzerResult result, String urlStr) {
+        if (result.isAnalyzed(BuiltinAnalyzers.DOCTYPE)) {
+            logger.info("The document type is \"{}\" and the rendering mode is \"{}\" for the url \"{}\"", result.getDocumentType(), result.getRenderingMode(), urlStr);
+        }
+        if (result.isAnalyzed(BuiltinAnalyzers.TITLE)) {
+            logger.info("The page title is \"{}\" for the url \"{}\"", result.getTitle(), urlStr);
+        }
+        if (result.isAnalyzed(BuiltinAnalyzers.HEADINGS)) {
+            logger.info("The heading level counts: \"{}\" for the url \"{}\"", result.getHeadingLevelCounter().toString(), urlStr);
+        }
+        if (result.isAnalyzed(BuiltinAnalyzers.LINKS)) {
+            logger.info("The hypermedia counts: \"{}\" for the url \"{}\"", result.getHyperMediaLinkSums().toString(), urlStr);
+        }
+        if (result.isAnalyzed(BuiltinAnalyzers.LOGIN)) {
+            logger.info("Login form is {}found for the url \"{}\"", (!result.getHasLoginForm() ? "not " : ""), urlStr);
+        }
+
+        result.succeed();
+        logger.info("Html analyzing is completed successfully for the url \"{}\"", urlStr);
+    }
+
+    /**
+     * Sets the failure message of the result for the fetch exception
+     *
+     * @param urlStr         The url
+     * @param fetchException The exception thrown by the fetcher
+     * @param result         Html analyzer result
+     */
+    static void fetchFailed(String urlStr, Throwable fetchException, HtmlAnalyzerResult result) {
+        // the asynchronous fetch wraps the exception
+        Throwable cause = fetchException;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof UrlReader.UrlNotFoundException || cause instanceof NoSuchFileException) {
+            failed(result, Messages.URL_NOT_FOUND);
+            logger.warn("The url \"{}\" is not found", urlStr, cause);
+        } else if (cause instanceof UrlReader.NotHtmlDocumentException) {
+            failed(result, Messages.HTML_NOT_VALID);
+            logger.warn("The url \"{}\" is not a html document", urlStr, cause);
+        } else if (cause instanceof UrlReader.UrlNotReadableException || cause instanceof IOException) {
+            failed(result, Messages.URL_NOT_VALID);
+            logger.warn("The url \"{}\" is not readable", urlStr, cause);
+        } else {
+            failed(result, Messages.HTML_NOT_VALID);
+            logger.warn("Html cannot be parsed for the url \"{}\"", urlStr, cause);
+        }
+    }
+
+    /**
+     * Sets the failure message of the result and counts the failure
+     *
+     * @param result  Html analyzer result
+     * @param message The failure message
+     */
+    private static void failed(HtmlAnalyzerResult result, String message) {
+        result.failed(message);
+        Metrics.getDefault().failure(Messages.getCode(message)).increment();
+    }
+
+    /**
+     * Remembers whether reading the document failed, so the read failures are told apart from the login detection
+     * failures of the streaming analyzer
+     */
+    private static class TrackingReader extends FilterReader {
+        private boolean readFailed = false;
+
+        TrackingReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException readException) {
+                readFailed = true;
+                throw readException;
+            }
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) throws IOException {
+            try {
+                return super.read(chars, offset, length);
+            } catch (IOException readException) {
+                readFailed = true;
+                throw readException;
+            }
+        }
+    }
+
     /**
      * Messages
      */
@@ -102,5 +353,30 @@ public class HtmlAnalyzer {
         public static final String HTML_NOT_VALID = "The given url is not a valid html document";
         public static final String URL_NOT_VALID = "The given url is not valid";
         public static final String LOGIN_DETECTION_FAILED = "The login form detection is failed";
+
+        /**
+         * Gets the machine readable code of the message
+         *
+         * @param message The message
+         * @return The name of the message constant or null if it is not one of the messages
+         */
+        public static String getCode(String message) {
+            if (message == null) {
+                return null;
+            }
+
+            switch (message) {
+                case URL_NOT_FOUND:
+                    return "URL_NOT_FOUND";
+                case HTML_NOT_VALID:
+                    return "HTML_NOT_VALID";
+                case URL_NOT_VALID:
+                    return "URL_NOT_VALID";
+                case LOGIN_DETECTION_FAILED:
+                    return "LOGIN_DETECTION_FAILED";
+                default:
+                    return null;
+            }
+        }
     }
 }
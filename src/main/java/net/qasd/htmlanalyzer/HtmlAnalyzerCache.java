@@ -0,0 +1,351 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of the html analyzer results keyed by the normalized url
+ * <p>
+ * A result is fresh for the time to live after it is analyzed. A stale result is revalidated with a conditional
+ * request (If-None-Match / If-Modified-Since); if the server answers with NOT_MODIFIED then the cached result is reused
+ * without parsing, otherwise the new document is analyzed. The requests are sent by the given fetcher, so the cache
+ * shares its connections, host scheduling and redirect cache with the uncached analyzing; a fetcher without conditional
+ * requests fetches the stale pages again. When the cache is full the least recently used result is evicted. Only the
+ * succeeded results are cached.
+ */
+public class HtmlAnalyzerCache {
+
+    private static Logger logger = LoggerFactory.getLogger(HtmlAnalyzerCache.class);
+
+    private final Fetcher fetcher;
+
+    private final long timeToLiveMillis;
+
+    private final int maxEntries;
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private HtmlAnalyzerCache(long timeToLiveMillis, int maxEntries, Fetcher fetcher) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxEntries = maxEntries;
+        this.fetcher = fetcher;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > HtmlAnalyzerCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Initiates a new instance of HtmlAnalyzerCache
+     *
+     * @param timeToLiveMillis The time (in milliseconds) a result is used without revalidation
+     * @param maxEntries       The maximum number of the cached results
+     * @return A new instance of HtmlAnalyzerCache
+     */
+    public static HtmlAnalyzerCache newInstance(long timeToLiveMillis, int maxEntries) {
+        return new HtmlAnalyzerCache(timeToLiveMillis, maxEntries, UrlReader.newInstance());
+    }
+
+    /**
+     * Initiates a new instance of HtmlAnalyzerCache
+     *
+     * @param timeToLiveMillis The time (in milliseconds) a result is used without revalidation
+     * @param maxEntries       The maximum number of the cached results
+     * @param fetcher          The fetcher sending the requests
+     * @return A new instance of HtmlAnalyzerCache
+     */
+    public static HtmlAnalyzerCache newInstance(long timeToLiveMillis, int maxEntries, Fetcher fetcher) {
+        return new HtmlAnalyzerCache(timeToLiveMillis, maxEntries, fetcher);
+    }
+
+    /**
+     * Gets the cached result of the url or executes the html analyzer
+     *
+     * @param url The url
+     * @return Html analyzer result
+     */
+    public HtmlAnalyzerResult execute(URL url) {
+        String key = normalize(url);
+        Entry entry = getEntry(key);
+
+        if (isFresh(entry, url)) {
+            return entry.getResult();
+        }
+
+        UrlReader.ConditionalDocument conditionalDocument = null;
+        Exception fetchException = null;
+        try {
+            conditionalDocument = fetcher.fetchIfModified(url, getValidators(entry, url));
+        } catch (Exception exception) {
+            fetchException = exception;
+        }
+
+        return complete(url, key, entry, conditionalDocument, fetchException);
+    }
+
+    /**
+     * Gets the cached result of the url or executes the html analyzer asynchronously
+     * <p>
+     * A fresh result is returned in a completed future. Otherwise the request is sent with the asynchronous fetch of
+     * the fetcher and the analyzing runs in the thread completing it, so an asynchronous fetcher does not block any
+     * thread while it waits for the server.
+     *
+     * @param url The url
+     * @return The future of the html analyzer result, it is never completed exceptionally
+     */
+    public CompletableFuture<HtmlAnalyzerResult> executeAsync(URL url) {
+        String key = normalize(url);
+        Entry entry = getEntry(key);
+
+        if (isFresh(entry, url)) {
+            return CompletableFuture.completedFuture(entry.getResult());
+        }
+
+        return fetcher.fetchIfModifiedAsync(url, getValidators(entry, url))
+            .handle((conditionalDocument, fetchException) -> complete(url, key, entry, conditionalDocument, fetchException));
+    }
+
+    /**
+     * Gets the fetcher sending the requests of the cache
+     *
+     * @return The fetcher
+     */
+    public Fetcher getFetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Gets the cached entry
+     *
+     * @param key The normalized url
+     * @return The cache entry or null
+     */
+    private Entry getEntry(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Returns whether the cached result can be used without revalidation, and counts the hit
+     *
+     * @param entry The cache entry or null
+     * @param url   The url
+     * @return true if the entry is not expired
+     */
+    private boolean isFresh(Entry entry, URL url) {
+        if (entry != null && System.currentTimeMillis() < entry.getExpiresAt()) {
+            hits.incrementAndGet();
+            logger.debug("The cached result is used for the url \"{}\"", url);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the validators of the conditional request, and counts the miss or the revalidation
+     *
+     * @param entry The stale cache entry or null
+     * @param url   The url
+     * @return The validators of the cached result or null for an unconditional request
+     */
+    private UrlReader.Validators getValidators(Entry entry, URL url) {
+        UrlReader.Validators validators = null;
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else if (!entry.getValidators().isEmpty()) {
+            revalidations.incrementAndGet();
+            validators = entry.getValidators();
+            logger.debug("Revalidating the cached result for the url \"{}\"", url);
+        }
+        logger.info("Html analyzing starts for the url \"{}\"", url);
+
+        return validators;
+    }
+
+    /**
+     * Analyzes the fetched document or reuses the not modified result, and updates the cache
+     *
+     * @param url                 The url
+     * @param key                 The normalized url
+     * @param entry               The stale cache entry or null
+     * @param conditionalDocument The fetched document or null if the fetch is failed
+     * @param fetchException      The failure of the fetch or null
+     * @return Html analyzer result
+     */
+    private HtmlAnalyzerResult complete(URL url, String key, Entry entry, UrlReader.ConditionalDocument conditionalDocument, Throwable fetchException) {
+        String urlStr = url.toString();
+
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        if (fetchException != null) {
+            HtmlAnalyzer.fetchFailed(urlStr, fetchException, result);
+        } else if (conditionalDocument.isNotModified()) {
+            notModified.incrementAndGet();
+            logger.info("The page is not modified, the cached result is used for the url \"{}\"", urlStr);
+            put(key, new Entry(entry.getResult(), conditionalDocument.getValidators(), System.currentTimeMillis() + timeToLiveMillis));
+
+            return entry.getResult();
+        } else {
+            HtmlAnalyzer.analyze(conditionalDocument.getDocument(), url, AnalyzerEngine.getDefault(), result);
+
+            if (result.isSucceed()) {
+                put(key, new Entry(result, conditionalDocument.getValidators(), System.currentTimeMillis() + timeToLiveMillis));
+            }
+        }
+
+        if (!result.isSucceed() && entry != null) {
+            // the stale result is not valid anymore, a newer result put by a concurrent request is kept
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Puts the entry to the cache, the least recently used one is evicted if the cache is full
+     *
+     * @param key   The normalized url
+     * @param entry The cache entry
+     */
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Normalizes the url to be used as a cache key
+     * <p>
+     * The scheme and the host are lower cased, the default port and the fragment are removed and the empty path is
+     * replaced with "/".
+     *
+     * @param url The url
+     * @return Normalized url
+     */
+    public static String normalize(URL url) {
+        String protocol = url.getProtocol().toLowerCase();
+        StringBuilder key = new StringBuilder(protocol).append("://").append(url.getHost().toLowerCase());
+
+        int port = url.getPort();
+        if (port != -1 && port != url.getDefaultPort()) {
+            key.append(':').append(port);
+        }
+
+        String path = url.getPath();
+        key.append(path.isEmpty() ? "/" : path);
+
+        if (url.getQuery() != null) {
+            key.append('?').append(url.getQuery());
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Gets the number of the cached results
+     *
+     * @return Number of the cached results
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the number of the requests answered with a fresh cached result
+     *
+     * @return Number of the cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of the requests of the urls which are not in the cache
+     *
+     * @return Number of the cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of the conditional requests sent for the stale results
+     *
+     * @return Number of the revalidations
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    /**
+     * Gets the number of the revalidations answered with NOT_MODIFIED
+     *
+     * @return Number of the not modified revalidations
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * Gets the number of the results evicted because the cache is full
+     *
+     * @return Number of the evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * The cached result
+     */
+    private static class Entry {
+        private final HtmlAnalyzerResult result;
+        private final UrlReader.Validators validators;
+        private final long expiresAt;
+
+        Entry(HtmlAnalyzerResult result, UrlReader.Validators validators, long expiresAt) {
+            this.result = result;
+            this.validators = validators;
+            this.expiresAt = expiresAt;
+        }
+
+        HtmlAnalyzerResult getResult() {
+            return result;
+        }
+
+        UrlReader.Validators getValidators() {
+            return validators;
+        }
+
+        long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -1,26 +1,62 @@
 package net.qasd.htmlanalyzer;
 
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
 import net.qasd.htmlanalyzer.analyzer.TagAnalyzers;
 import net.qasd.htmlanalyzer.util.MutableInteger;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Html analyzer result
+ * <p>
+ * The values are stored in primitive fields and arrays, so a result is a few objects only; the results are kept in
+ * memory by the cache and the batch jobs. The map and the sums getters are views built on every call for the existing
+ * callers (e.g. the result template). The document types are interned since there are only a few distinct ones.
+ */
 public class HtmlAnalyzerResult {
 
+    public static final int MAX_HEADING_LEVEL = 6;
+
+    // more distinct document types are not interned
+    private static final int MAX_INTERNED_DOCUMENT_TYPES = 1024;
+
+    private static final ConcurrentMap<String, String> documentTypes = new ConcurrentHashMap<>();
+
+    private static final String[] NO_HOSTS = new String[0];
+    private static final int[] NO_COUNTS = new int[0];
+
     private boolean status;
 
     private String message;
 
     private String documentType;
 
+    private DocumentTypeFetcher.RenderingMode renderingMode;
+
     private String title;
 
-    private Map<String, MutableInteger> headingLevelCounter;
+    // h1 to h6, null if the headings are not analyzed
+    private int[] headingCounts;
+
+    private int internalLinkCount;
+
+    private int externalLinkCount;
 
-    private TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums;
+    private int sameSiteLinkCount;
+
+    // the external hosts and their link counts, null if the links are not analyzed
+    private String[] externalHosts;
+
+    private int[] externalHostLinkCounts;
 
     private boolean hasLoginForm;
 
+    private Set<String> analyzers;
+
     /**
      * Gets the document type
      *
@@ -36,7 +72,25 @@ public class HtmlAnalyzerResult {
      * @param documentType The document type
      */
     public void setDocumentType(String documentType) {
-        this.documentType = documentType;
+        this.documentType = intern(documentType);
+    }
+
+    /**
+     * Gets the rendering mode triggered by the document type
+     *
+     * @return The rendering mode
+     */
+    public DocumentTypeFetcher.RenderingMode getRenderingMode() {
+        return renderingMode;
+    }
+
+    /**
+     * Sets the rendering mode triggered by the document type
+     *
+     * @param renderingMode The rendering mode
+     */
+    public void setRenderingMode(DocumentTypeFetcher.RenderingMode renderingMode) {
+        this.renderingMode = renderingMode;
     }
 
     /**
@@ -57,12 +111,54 @@ public class HtmlAnalyzerResult {
         this.title = title;
     }
 
+    /**
+     * Checks whether the heading counts are set
+     *
+     * @return true if the heading counts are set
+     */
+    public boolean hasHeadingCounts() {
+        return headingCounts != null;
+    }
+
+    /**
+     * Gets the number of the headings of the level
+     *
+     * @param level The heading level (1 to 6)
+     * @return The number of the headings, 0 if the heading counts are not set
+     */
+    public int getHeadingCount(int level) {
+        return headingCounts != null ? headingCounts[level - 1] : 0;
+    }
+
+    /**
+     * Sets the heading counts
+     *
+     * @param headingCounts The number of the headings from h1 to h6
+     */
+    public void setHeadingCounts(int[] headingCounts) {
+        if (headingCounts.length != MAX_HEADING_LEVEL) {
+            throw new IllegalArgumentException("The heading counts must have " + MAX_HEADING_LEVEL + " levels");
+        }
+        this.headingCounts = headingCounts.clone();
+    }
+
     /**
      * Gets the heading level counts
      *
-     * @return The heading level counts
+     * @return The heading level counts in the level order (a new map) or null if they are not set
      */
     public Map<String, MutableInteger> getHeadingLevelCounter() {
+        if (headingCounts == null) {
+            return null;
+        }
+
+        Map<String, MutableInteger> headingLevelCounter = new LinkedHashMap<>();
+        for (int level = 1; level <= MAX_HEADING_LEVEL; level++) {
+            if (headingCounts[level - 1] > 0) {
+                headingLevelCounter.put("h" + level, new MutableInteger(headingCounts[level - 1]));
+            }
+        }
+
         return headingLevelCounter;
     }
 
@@ -72,15 +168,120 @@ public class HtmlAnalyzerResult {
      * @param headingLevelCounter The heading level counts
      */
     public void setHeadingLevelCounter(Map<String, MutableInteger> headingLevelCounter) {
-        this.headingLevelCounter = headingLevelCounter;
+        if (headingLevelCounter == null) {
+            this.headingCounts = null;
+            return;
+        }
+
+        int[] counts = new int[MAX_HEADING_LEVEL];
+        for (int level = 1; level <= MAX_HEADING_LEVEL; level++) {
+            MutableInteger count = headingLevelCounter.get("h" + level);
+            counts[level - 1] = count != null ? count.getValue() : 0;
+        }
+        this.headingCounts = counts;
+    }
+
+    /**
+     * Checks whether the link counts are set
+     *
+     * @return true if the link counts are set
+     */
+    public boolean hasLinkCounts() {
+        return externalHosts != null;
+    }
+
+    /**
+     * Gets the number of the internal (same host or same site) links
+     *
+     * @return The number of the internal links
+     */
+    public int getInternalLinkCount() {
+        return internalLinkCount;
+    }
+
+    /**
+     * Gets the number of the external (third-party) links
+     *
+     * @return The number of the external links
+     */
+    public int getExternalLinkCount() {
+        return externalLinkCount;
+    }
+
+    /**
+     * Gets the number of the internal links to the other hosts of the same site
+     *
+     * @return The number of the same site links
+     */
+    public int getSameSiteLinkCount() {
+        return sameSiteLinkCount;
+    }
+
+    /**
+     * Gets the number of the distinct external hosts
+     *
+     * @return The number of the external hosts
+     */
+    public int getExternalHostCount() {
+        return externalHosts != null ? externalHosts.length : 0;
+    }
+
+    /**
+     * Gets an external host
+     *
+     * @param index The index of the host in the order the hosts are first seen
+     * @return The host name
+     */
+    public String getExternalHost(int index) {
+        return externalHosts[index];
+    }
+
+    /**
+     * Gets the number of the links to an external host
+     *
+     * @param index The index of the host
+     * @return The number of the links to the host
+     */
+    public int getExternalHostLinkCount(int index) {
+        return externalHostLinkCounts[index];
+    }
+
+    /**
+     * Sets the link counts
+     *
+     * @param internal       The number of the internal links
+     * @param external       The number of the external links
+     * @param sameSite       The number of the internal links to the other hosts of the same site
+     * @param hosts          The external hosts
+     * @param hostLinkCounts The number of the links of every external host
+     */
+    public void setLinkCounts(int internal, int external, int sameSite, String[] hosts, int[] hostLinkCounts) {
+        if (hosts.length != hostLinkCounts.length) {
+            throw new IllegalArgumentException("Every external host must have a link count");
+        }
+
+        this.internalLinkCount = internal;
+        this.externalLinkCount = external;
+        this.sameSiteLinkCount = sameSite;
+        this.externalHosts = hosts.length > 0 ? hosts.clone() : NO_HOSTS;
+        this.externalHostLinkCounts = hostLinkCounts.length > 0 ? hostLinkCounts.clone() : NO_COUNTS;
     }
 
     /**
      * Gets the hypermedia analyze result
      *
-     * @return The hypermedia analyze result
+     * @return The hypermedia analyze result (a new instance) or null if the link counts are not set
      */
     public TagAnalyzers.HyperMediaLinkSums getHyperMediaLinkSums() {
+        if (externalHosts == null) {
+            return null;
+        }
+
+        TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums = new TagAnalyzers.HyperMediaLinkSums(internalLinkCount, externalLinkCount, sameSiteLinkCount);
+        for (int i = 0; i < externalHosts.length; i++) {
+            hyperMediaLinkSums.getExternalHosts().put(externalHosts[i], new MutableInteger(externalHostLinkCounts[i]));
+        }
+
         return hyperMediaLinkSums;
     }
 
@@ -90,7 +291,23 @@ public class HtmlAnalyzerResult {
      * @param hyperMediaLinkSums The hypermedia analyze result
      */
     public void setHyperMediaLinkSums(TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums) {
-        this.hyperMediaLinkSums = hyperMediaLinkSums;
+        if (hyperMediaLinkSums == null) {
+            this.externalHosts = null;
+            this.externalHostLinkCounts = null;
+            return;
+        }
+
+        Map<String, MutableInteger> hosts = hyperMediaLinkSums.getExternalHosts();
+        String[] hostNames = new String[hosts.size()];
+        int[] hostLinkCounts = new int[hosts.size()];
+        int index = 0;
+        for (Map.Entry<String, MutableInteger> host : hosts.entrySet()) {
+            hostNames[index] = host.getKey();
+            hostLinkCounts[index++] = host.getValue().getValue();
+        }
+
+        setLinkCounts(hyperMediaLinkSums.getInternal().getValue(), hyperMediaLinkSums.getExternal().getValue(),
+            hyperMediaLinkSums.getSameSite(), hostNames, hostLinkCounts);
     }
 
     /**
@@ -111,6 +328,34 @@ public class HtmlAnalyzerResult {
         this.hasLoginForm = hasLoginForm;
     }
 
+    /**
+     * Gets the names of the analyzers setting the values of the result
+     *
+     * @return The analyzer names or null if the result is not set by the analyzer engine
+     */
+    public Set<String> getAnalyzers() {
+        return analyzers;
+    }
+
+    /**
+     * Sets the names of the analyzers setting the values of the result
+     *
+     * @param analyzers The analyzer names
+     */
+    public void setAnalyzers(Set<String> analyzers) {
+        this.analyzers = analyzers;
+    }
+
+    /**
+     * Checks whether the analyzer has set its values
+     *
+     * @param analyzer The analyzer name
+     * @return true if the analyzer has run or the analyzers are not known
+     */
+    public boolean isAnalyzed(String analyzer) {
+        return analyzers == null || analyzers.contains(analyzer);
+    }
+
     /**
      * Sets the analyze status to failed
      *
@@ -145,4 +390,29 @@ public class HtmlAnalyzerResult {
     public String getMessage() {
         return message;
     }
+
+    /**
+     * Interns the document type
+     *
+     * @param documentType The document type
+     * @return The shared instance of the document type
+     */
+    private static String intern(String documentType) {
+        if (documentType == null) {
+            return null;
+        }
+
+        String interned = documentTypes.get(documentType);
+        if (interned == null) {
+            if (documentTypes.size() >= MAX_INTERNED_DOCUMENT_TYPES) {
+                return documentType;
+            }
+            interned = documentTypes.putIfAbsent(documentType, documentType);
+            if (interned == null) {
+                interned = documentType;
+            }
+        }
+
+        return interned;
+    }
 }
@@ -0,0 +1,278 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Binary codec of the html analyzer results, for writing the results to disk or sending them between processes
+ * <p>
+ * A record starts with the format version; the integers are unsigned varints (7 bits per byte, the high bit marks a
+ * following byte) and the strings are UTF-8 bytes prefixed with the varint length. The optional strings are prefixed
+ * with the length + 1, 0 stands for null. The records are self delimiting, so they can be appended to one stream.
+ * <pre>
+ * version, flags, message?, documentType?, renderingMode + 1, title?,
+ * [h1 .. h6], [internal, external, sameSite, hostCount, (host, count)*], [analyzerCount, analyzer*]
+ * </pre>
+ */
+public class HtmlAnalyzerResultCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int SUCCEED = 1;
+    private static final int HAS_LOGIN_FORM = 1 << 1;
+    private static final int HAS_HEADING_COUNTS = 1 << 2;
+    private static final int HAS_LINK_COUNTS = 1 << 3;
+    private static final int HAS_ANALYZERS = 1 << 4;
+
+    private static final DocumentTypeFetcher.RenderingMode[] RENDERING_MODES = DocumentTypeFetcher.RenderingMode.values();
+
+    private HtmlAnalyzerResultCodec() {
+    }
+
+    /**
+     * Encodes the result
+     *
+     * @param result Html analyzer result
+     * @return The encoded result
+     */
+    public static byte[] encode(HtmlAnalyzerResult result) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(128);
+        try {
+            write(result, outputStream);
+        } catch (IOException writeException) {
+            // the byte array stream does not throw
+            throw new IllegalStateException(writeException);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes the result
+     *
+     * @param bytes The encoded result
+     * @return Html analyzer result
+     * @throws IOException If the bytes are not a valid record
+     */
+    public static HtmlAnalyzerResult decode(byte[] bytes) throws IOException {
+        HtmlAnalyzerResult result = read(new ByteArrayInputStream(bytes));
+        if (result == null) {
+            throw new MalformedResultException("The record is empty");
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the result record
+     *
+     * @param result       Html analyzer result
+     * @param outputStream The output stream, it should be buffered
+     * @throws IOException If writing fails
+     */
+    public static void write(HtmlAnalyzerResult result, OutputStream outputStream) throws IOException {
+        Set<String> analyzers = result.getAnalyzers();
+
+        int flags = 0;
+        flags |= result.isSucceed() ? SUCCEED : 0;
+        flags |= result.getHasLoginForm() ? HAS_LOGIN_FORM : 0;
+        flags |= result.hasHeadingCounts() ? HAS_HEADING_COUNTS : 0;
+        flags |= result.hasLinkCounts() ? HAS_LINK_COUNTS : 0;
+        flags |= analyzers != null ? HAS_ANALYZERS : 0;
+
+        writeVarint(outputStream, VERSION);
+        writeVarint(outputStream, flags);
+        writeOptionalString(outputStream, result.getMessage());
+        writeOptionalString(outputStream, result.getDocumentType());
+        writeVarint(outputStream, result.getRenderingMode() != null ? result.getRenderingMode().ordinal() + 1 : 0);
+        writeOptionalString(outputStream, result.getTitle());
+
+        if (result.hasHeadingCounts()) {
+            for (int level = 1; level <= HtmlAnalyzerResult.MAX_HEADING_LEVEL; level++) {
+                writeVarint(outputStream, result.getHeadingCount(level));
+            }
+        }
+
+        if (result.hasLinkCounts()) {
+            writeVarint(outputStream, result.getInternalLinkCount());
+            writeVarint(outputStream, result.getExternalLinkCount());
+            writeVarint(outputStream, result.getSameSiteLinkCount());
+            writeVarint(outputStream, result.getExternalHostCount());
+            for (int i = 0; i < result.getExternalHostCount(); i++) {
+                writeString(outputStream, result.getExternalHost(i));
+                writeVarint(outputStream, result.getExternalHostLinkCount(i));
+            }
+        }
+
+        if (analyzers != null) {
+            writeVarint(outputStream, analyzers.size());
+            for (String analyzer : analyzers) {
+                writeString(outputStream, analyzer);
+            }
+        }
+    }
+
+    /**
+     * Reads the next result record
+     *
+     * @param inputStream The input stream, it should be buffered
+     * @return Html analyzer result or null if the stream is at its end
+     * @throws IOException If reading fails or the record is not valid
+     */
+    public static HtmlAnalyzerResult read(InputStream inputStream) throws IOException {
+        int first = inputStream.read();
+        if (first < 0) {
+            return null;
+        }
+
+        int version = readVarint(inputStream, first);
+        if (version != VERSION) {
+            throw new MalformedResultException("The record version " + version + " is not supported");
+        }
+
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        int flags = readVarint(inputStream);
+
+        String message = readOptionalString(inputStream);
+        if ((flags & SUCCEED) != 0) {
+            result.succeed();
+        } else {
+            result.failed(message);
+        }
+
+        result.setDocumentType(readOptionalString(inputStream));
+        int renderingMode = readVarint(inputStream);
+        if (renderingMode > RENDERING_MODES.length) {
+            throw new MalformedResultException("The rendering mode " + renderingMode + " is not known");
+        }
+        result.setRenderingMode(renderingMode > 0 ? RENDERING_MODES[renderingMode - 1] : null);
+        result.setTitle(readOptionalString(inputStream));
+        result.setHasLoginForm((flags & HAS_LOGIN_FORM) != 0);
+
+        if ((flags & HAS_HEADING_COUNTS) != 0) {
+            int[] headingCounts = new int[HtmlAnalyzerResult.MAX_HEADING_LEVEL];
+            for (int i = 0; i < headingCounts.length; i++) {
+                headingCounts[i] = readVarint(inputStream);
+            }
+            result.setHeadingCounts(headingCounts);
+        }
+
+        if ((flags & HAS_LINK_COUNTS) != 0) {
+            int internal = readVarint(inputStream);
+            int external = readVarint(inputStream);
+            int sameSite = readVarint(inputStream);
+            int hostCount = readVarint(inputStream);
+            String[] hosts = new String[hostCount];
+            int[] hostLinkCounts = new int[hostCount];
+            for (int i = 0; i < hostCount; i++) {
+                hosts[i] = readString(inputStream);
+                hostLinkCounts[i] = readVarint(inputStream);
+            }
+            result.setLinkCounts(internal, external, sameSite, hosts, hostLinkCounts);
+        }
+
+        if ((flags & HAS_ANALYZERS) != 0) {
+            int analyzerCount = readVarint(inputStream);
+            Set<String> analyzers = new LinkedHashSet<>();
+            for (int i = 0; i < analyzerCount; i++) {
+                analyzers.add(readString(inputStream).intern());
+            }
+            result.setAnalyzers(Collections.unmodifiableSet(analyzers));
+        }
+
+        return result;
+    }
+
+    static void writeVarint(OutputStream outputStream, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            outputStream.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    static int readVarint(InputStream inputStream) throws IOException {
+        return readVarint(inputStream, inputStream.read());
+    }
+
+    private static int readVarint(InputStream inputStream, int first) throws IOException {
+        int value = 0;
+        int b = first;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (b < 0) {
+                throw new EOFException("The record is truncated");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            b = inputStream.read();
+        }
+
+        throw new MalformedResultException("The varint is too long");
+    }
+
+    private static void writeString(OutputStream outputStream, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(outputStream, bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static void writeOptionalString(OutputStream outputStream, String value) throws IOException {
+        if (value == null) {
+            writeVarint(outputStream, 0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(outputStream, bytes.length + 1);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(InputStream inputStream) throws IOException {
+        return readBytes(inputStream, readVarint(inputStream));
+    }
+
+    private static String readOptionalString(InputStream inputStream) throws IOException {
+        int length = readVarint(inputStream);
+
+        return length == 0 ? null : readBytes(inputStream, length - 1);
+    }
+
+    private static String readBytes(InputStream inputStream, int length) throws IOException {
+        if (length < 0) {
+            throw new MalformedResultException("The string length is negative");
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = inputStream.read(bytes, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("The record is truncated");
+            }
+            offset += read;
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Thrown if a record is not valid or its version is not supported
+     */
+    public static class MalformedResultException extends IOException {
+        public MalformedResultException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.LinkClassifier;
+import net.qasd.htmlanalyzer.util.BloomFilter;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls a site breadth-first from a seed url and analyzes every page
+ * <p>
+ * The internal links (the same host and the same site links of {@link LinkClassifier}) of the analyzed pages are
+ * followed up to the maximum depth; the links with rel="nofollow" and the links to the common non html files are not
+ * followed. The frontier is a first in first out queue, so the pages are crawled in the depth order; at most the page
+ * budget (and at most {@link #MAX_FRONTIER}) urls are queued, the other links are counted and dropped. The seen urls
+ * are kept in a bloom filter of about 14 bits per url; a false positive skips a page with 0.1% probability.
+ */
+public class SiteCrawler implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(SiteCrawler.class);
+
+    public static final int MAX_FRONTIER = 100000;
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.001;
+
+    private static final Set<String> SKIPPED_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "7z", "avi", "bmp", "css", "csv", "doc", "docx", "exe", "gif", "gz", "ico", "jpeg", "jpg", "js", "json", "mov",
+        "mp3", "mp4", "pdf", "png", "ppt", "pptx", "rar", "svg", "tar", "tgz", "txt", "wav", "webm", "webp", "woff",
+        "woff2", "xls", "xlsx", "xml", "zip"));
+
+    private final Fetcher fetcher;
+
+    private final AnalyzerEngine engine;
+
+    private final int concurrency;
+
+    private final int maxFrontier;
+
+    private final ExecutorService executor;
+
+    private SiteCrawler(Fetcher fetcher, AnalyzerEngine engine, int concurrency, int maxFrontier) {
+        this.fetcher = fetcher;
+        this.engine = engine;
+        this.concurrency = concurrency;
+        this.maxFrontier = maxFrontier;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "site-crawler-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Initiates a new instance of SiteCrawler
+     *
+     * @param fetcher     The fetcher of the pages
+     * @param engine      The analyzer engine running the selected analyzers
+     * @param concurrency The maximum number of the pages fetched at the same time
+     * @return A new instance of SiteCrawler
+     */
+    public static SiteCrawler newInstance(Fetcher fetcher, AnalyzerEngine engine, int concurrency) {
+        return new SiteCrawler(fetcher, engine, concurrency, MAX_FRONTIER);
+    }
+
+    /**
+     * Initiates a new instance of SiteCrawler
+     *
+     * @param fetcher     The fetcher of the pages
+     * @param engine      The analyzer engine running the selected analyzers
+     * @param concurrency The maximum number of the pages fetched at the same time
+     * @param maxFrontier The maximum number of the queued urls
+     * @return A new instance of SiteCrawler
+     */
+    public static SiteCrawler newInstance(Fetcher fetcher, AnalyzerEngine engine, int concurrency, int maxFrontier) {
+        return new SiteCrawler(fetcher, engine, concurrency, maxFrontier);
+    }
+
+    /**
+     * Crawls the site and calls the listener in the calling thread for every page in the completion order
+     *
+     * @param seed     The url the crawl starts from
+     * @param maxDepth The maximum number of the links from the seed to a page
+     * @param maxPages The maximum number of the crawled pages
+     * @param listener The page result listener
+     * @return The site report
+     * @throws IOException          If the listener fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the pages
+     */
+    public SiteReport crawl(URL seed, int maxDepth, int maxPages, BatchAnalyzer.ResultListener listener) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        logger.info("Crawling starts from the url \"{}\" to the depth {} and at most {} pages", seed, maxDepth, maxPages);
+
+        Crawl crawl = new Crawl(seed, maxPages);
+        CompletionService<CrawledPage> completionService = new ExecutorCompletionService<>(executor);
+        crawl.admit(seed, 0);
+
+        int running = 0;
+        try {
+            while (running > 0 || !crawl.frontier.isEmpty()) {
+                while (running < concurrency && !crawl.frontier.isEmpty()) {
+                    QueuedUrl queuedUrl = crawl.frontier.poll();
+                    completionService.submit(() -> fetch(queuedUrl));
+                    running++;
+                }
+
+                CrawledPage page = completionService.take().get();
+                running--;
+
+                crawl.report.add(page.result, page.depth);
+                listener.onResult(new BatchAnalyzer.BatchResult(page.url.toString(), page.result, page.elapsedMillis));
+
+                if (page.finalUrl != null) {
+                    // the redirect target is not crawled again
+                    crawl.seen.add(HtmlAnalyzerCache.normalize(page.finalUrl));
+                }
+                if (page.depth < maxDepth) {
+                    for (URL link : page.links) {
+                        crawl.admit(link, page.depth + 1);
+                    }
+                }
+            }
+        } catch (ExecutionException crawlException) {
+            // the fetch catches all exceptions itself
+            throw new IllegalStateException(crawlException.getCause());
+        }
+
+        crawl.report.setElapsedMillis((System.nanoTime() - start) / 1000000);
+        logger.info("Crawling is completed with {} pages for the url \"{}\"", crawl.report.getPages(), seed);
+
+        return crawl.report;
+    }
+
+    /**
+     * Fetches and analyzes the page and collects its internal links
+     *
+     * @param queuedUrl The url and its depth
+     * @return The crawled page
+     */
+    private CrawledPage fetch(QueuedUrl queuedUrl) {
+        long start = System.nanoTime();
+        CrawledPage page = new CrawledPage(queuedUrl.url, queuedUrl.depth);
+
+        page.result = HtmlAnalyzer.execute(queuedUrl.url, fetcher, engine, document -> {
+            try {
+                URL finalUrl = new URL(document.location());
+                page.finalUrl = finalUrl;
+                page.links = getInternalLinks(document, finalUrl);
+            } catch (MalformedURLException urlException) {
+                logger.debug("The links of the url \"{}\" are not followed", queuedUrl.url, urlException);
+            }
+        });
+        page.elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        return page;
+    }
+
+    /**
+     * Gets the links of the document to follow
+     *
+     * @param document Parsed html document
+     * @param url      The url of the document
+     * @return The absolute urls of the internal links
+     */
+    static List<URL> getInternalLinks(Document document, URL url) {
+        LinkClassifier linkClassifier = LinkClassifier.newInstance(url.getHost());
+        List<URL> links = new ArrayList<>();
+
+        for (Element anchor : document.select("a[href], area[href]")) {
+            String href = anchor.attr("href");
+            if (anchor.attr("rel").toLowerCase(Locale.ROOT).contains("nofollow")
+                || linkClassifier.classify(href) == LinkClassifier.LinkType.THIRD_PARTY) {
+                continue;
+            }
+
+            String absoluteUrl = anchor.absUrl("href");
+            if (absoluteUrl.isEmpty()) {
+                continue;
+            }
+            try {
+                URL link = new URL(absoluteUrl);
+                String protocol = link.getProtocol();
+                if (("http".equals(protocol) || "https".equals(protocol)) && !hasSkippedExtension(link.getPath())) {
+                    links.add(link);
+                }
+            } catch (MalformedURLException urlException) {
+                // not followed
+            }
+        }
+
+        return links;
+    }
+
+    private static boolean hasSkippedExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) {
+            return false;
+        }
+
+        return SKIPPED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Shuts the executor down
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The state of a crawl, used by the crawling thread only
+     */
+    private class Crawl {
+        private final ArrayDeque<QueuedUrl> frontier = new ArrayDeque<>();
+        private final BloomFilter seen;
+        private final SiteReport report;
+        private final int maxPages;
+
+        // the queued and the crawled urls
+        private int admitted = 0;
+
+        Crawl(URL seed, int maxPages) {
+            this.maxPages = maxPages;
+            // the crawled urls and their redirect targets
+            this.seen = BloomFilter.newInstance(Math.max(1024, 2L * maxPages), FALSE_POSITIVE_PROBABILITY);
+            this.report = new SiteReport(seed.toString());
+        }
+
+        /**
+         * Queues the url if it is not seen and the page budget and the frontier allow
+         *
+         * @param url   The url
+         * @param depth The depth of the url
+         */
+        void admit(URL url, int depth) {
+            String key = HtmlAnalyzerCache.normalize(url);
+            if (seen.mightContain(key)) {
+                report.addDuplicateLink();
+            } else if (admitted >= maxPages) {
+                report.addSkippedLink();
+            } else if (frontier.size() >= maxFrontier) {
+                report.addDroppedLink();
+            } else {
+                seen.add(key);
+                frontier.add(new QueuedUrl(url, depth));
+                admitted++;
+            }
+        }
+    }
+
+    /**
+     * A queued url
+     */
+    private static class QueuedUrl {
+        private final URL url;
+        private final int depth;
+
+        QueuedUrl(URL url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The result and the links of a crawled page
+     */
+    private static class CrawledPage {
+        private final URL url;
+        private final int depth;
+        private HtmlAnalyzerResult result;
+        private URL finalUrl;
+        private List<URL> links = Collections.emptyList();
+        private long elapsedMillis;
+
+        CrawledPage(URL url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+}
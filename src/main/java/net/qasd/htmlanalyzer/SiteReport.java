@@ -0,0 +1,262 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregated results of the pages of a site crawl
+ * <p>
+ * The document types, the rendering modes and the failures are counted per value; the headings are counted per level
+ * as the total number of the headings and the number of the pages having the level. The values of the analyzers which
+ * are not run are not counted. An instance is updated by the crawling thread only.
+ */
+public class SiteReport {
+
+    private final String seed;
+
+    private long pages = 0;
+
+    private long failedPages = 0;
+
+    private long pagesWithLoginForm = 0;
+
+    private final Map<String, Long> documentTypes = new LinkedHashMap<>();
+
+    private final Map<DocumentTypeFetcher.RenderingMode, Long> renderingModes = new EnumMap<>(DocumentTypeFetcher.RenderingMode.class);
+
+    private final long[] headingCounts = new long[HtmlAnalyzerResult.MAX_HEADING_LEVEL];
+
+    private final long[] pagesWithHeading = new long[HtmlAnalyzerResult.MAX_HEADING_LEVEL];
+
+    private long internalLinks = 0;
+
+    private long externalLinks = 0;
+
+    private final Map<String, Long> failures = new LinkedHashMap<>();
+
+    private final List<Long> pagesByDepth = new ArrayList<>();
+
+    private long duplicateLinks = 0;
+
+    private long droppedLinks = 0;
+
+    private long skippedLinks = 0;
+
+    private long elapsedMillis = 0;
+
+    SiteReport(String seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Adds the result of a crawled page
+     *
+     * @param result Html analyzer result
+     * @param depth  The number of the links from the seed to the page
+     */
+    void add(HtmlAnalyzerResult result, int depth) {
+        pages++;
+        while (pagesByDepth.size() <= depth) {
+            pagesByDepth.add(0L);
+        }
+        pagesByDepth.set(depth, pagesByDepth.get(depth) + 1);
+
+        if (!result.isSucceed()) {
+            failedPages++;
+            String code = HtmlAnalyzer.Messages.getCode(result.getMessage());
+            failures.merge(code != null ? code : "UNKNOWN", 1L, Long::sum);
+            return;
+        }
+
+        if (result.getDocumentType() != null) {
+            documentTypes.merge(result.getDocumentType(), 1L, Long::sum);
+        }
+        if (result.getRenderingMode() != null) {
+            renderingModes.merge(result.getRenderingMode(), 1L, Long::sum);
+        }
+        if (result.hasHeadingCounts()) {
+            for (int level = 1; level <= HtmlAnalyzerResult.MAX_HEADING_LEVEL; level++) {
+                int count = result.getHeadingCount(level);
+                headingCounts[level - 1] += count;
+                if (count > 0) {
+                    pagesWithHeading[level - 1]++;
+                }
+            }
+        }
+        if (result.hasLinkCounts()) {
+            internalLinks += result.getInternalLinkCount();
+            externalLinks += result.getExternalLinkCount();
+        }
+        if (result.getHasLoginForm()) {
+            pagesWithLoginForm++;
+        }
+    }
+
+    void addDuplicateLink() {
+        duplicateLinks++;
+    }
+
+    void addDroppedLink() {
+        droppedLinks++;
+    }
+
+    void addSkippedLink() {
+        skippedLinks++;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the seed url
+     *
+     * @return The url the crawl is started from
+     */
+    public String getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of the crawled pages
+     *
+     * @return The number of the pages including the failed ones
+     */
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Gets the number of the failed pages
+     *
+     * @return The number of the pages which cannot be fetched or analyzed
+     */
+    public long getFailedPages() {
+        return failedPages;
+    }
+
+    /**
+     * Gets the number of the pages having a login form
+     *
+     * @return The number of the pages
+     */
+    public long getPagesWithLoginForm() {
+        return pagesWithLoginForm;
+    }
+
+    /**
+     * Gets the number of the pages per document type
+     *
+     * @return The page counts in the order the document types are first seen
+     */
+    public Map<String, Long> getDocumentTypes() {
+        return Collections.unmodifiableMap(documentTypes);
+    }
+
+    /**
+     * Gets the number of the pages per rendering mode
+     *
+     * @return The page counts
+     */
+    public Map<DocumentTypeFetcher.RenderingMode, Long> getRenderingModes() {
+        return Collections.unmodifiableMap(renderingModes);
+    }
+
+    /**
+     * Gets the total number of the headings of the level
+     *
+     * @param level The heading level (1 to 6)
+     * @return The number of the headings in all pages
+     */
+    public long getHeadingCount(int level) {
+        return headingCounts[level - 1];
+    }
+
+    /**
+     * Gets the number of the pages having a heading of the level
+     *
+     * @param level The heading level (1 to 6)
+     * @return The number of the pages
+     */
+    public long getPagesWithHeading(int level) {
+        return pagesWithHeading[level - 1];
+    }
+
+    /**
+     * Gets the total number of the internal links
+     *
+     * @return The number of the internal links in all pages
+     */
+    public long getInternalLinks() {
+        return internalLinks;
+    }
+
+    /**
+     * Gets the total number of the external links
+     *
+     * @return The number of the external links in all pages
+     */
+    public long getExternalLinks() {
+        return externalLinks;
+    }
+
+    /**
+     * Gets the number of the failed pages per error code
+     *
+     * @return The page counts
+     */
+    public Map<String, Long> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Gets the number of the pages per depth
+     *
+     * @return The page counts, the seed is at depth 0
+     */
+    public List<Long> getPagesByDepth() {
+        return Collections.unmodifiableList(pagesByDepth);
+    }
+
+    /**
+     * Gets the number of the links to the pages which are seen before
+     *
+     * @return The number of the duplicate links
+     */
+    public long getDuplicateLinks() {
+        return duplicateLinks;
+    }
+
+    /**
+     * Gets the number of the links dropped since the frontier is full
+     *
+     * @return The number of the dropped links
+     */
+    public long getDroppedLinks() {
+        return droppedLinks;
+    }
+
+    /**
+     * Gets the number of the links not followed since the page budget is used up
+     *
+     * @return The number of the skipped links
+     */
+    public long getSkippedLinks() {
+        return skippedLinks;
+    }
+
+    /**
+     * Gets the crawling time
+     *
+     * @return The crawling time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
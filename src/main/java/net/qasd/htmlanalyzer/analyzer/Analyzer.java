@@ -0,0 +1,90 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.jsoup.nodes.Node;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Service provider interface of the html analyzers
+ * <p>
+ * An analyzer is registered once in the {@link AnalyzerRegistry} (or provided by a
+ * {@code META-INF/services/net.qasd.htmlanalyzer.analyzer.Analyzer} file) and it creates a new visitor for every
+ * analyzed document. The visitors of the selected analyzers are called in one traversal of the document and then
+ * they are completed in the dependency order, so an analyzer can read the values its dependencies put into the
+ * context. Implementations must be thread safe, a visitor is used by one thread at a time. In the parallel execution
+ * of the {@link AnalyzerEngine} the analyzers not depending on each other traverse the same document on different
+ * threads, so the visitors must only read the nodes (e.g. not the children lists jsoup caches lazily) and share
+ * their values in {@link Visitor#complete(HtmlAnalyzerResult)}.
+ */
+public interface Analyzer {
+
+    /**
+     * Gets the unique name of the analyzer used for the selection (e.g. "links")
+     *
+     * @return The analyzer name
+     */
+    String getName();
+
+    /**
+     * Gets the names of the analyzers which must run before this one
+     *
+     * @return The names of the dependencies
+     */
+    default Collection<String> getDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Checks whether the analyzer only needs the head of the document (the document type and the head element)
+     * <p>
+     * The traversal stops at the end of the head if all selected analyzers need only the head.
+     *
+     * @return true if the analyzer does not visit the body
+     */
+    default boolean isHeadOnly() {
+        return false;
+    }
+
+    /**
+     * Creates the visitor collecting the values of one document
+     *
+     * @param context The context of the analyzed document
+     * @return A new visitor
+     */
+    Visitor newVisitor(AnalyzerContext context);
+
+    /**
+     * Collects the values of one document
+     */
+    interface Visitor {
+
+        /**
+         * Called when the node is first visited
+         *
+         * @param node  Visited node
+         * @param depth The depth of the node, the document children have the depth 1
+         */
+        default void head(Node node, int depth) {
+        }
+
+        /**
+         * Called when all children of the node are visited
+         *
+         * @param node  Visited node
+         * @param depth The depth of the node
+         */
+        default void tail(Node node, int depth) {
+        }
+
+        /**
+         * Completes the analyzing after the traversal and sets the values of the result
+         *
+         * @param result Html analyzer result
+         * @throws IOException If any io action fails (e.g. the dictionary loading)
+         */
+        void complete(HtmlAnalyzerResult result) throws IOException;
+    }
+}
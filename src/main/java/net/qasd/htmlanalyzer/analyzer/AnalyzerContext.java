@@ -0,0 +1,62 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The context of an analyzed document shared by the visitors of the selected analyzers
+ * <p>
+ * The values are shared by their analyzer name, an analyzer puts its value when it is completed and the analyzers
+ * depending on it read the value when they are completed. An instance is not thread safe.
+ */
+public class AnalyzerContext {
+
+    private final URL url;
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    AnalyzerContext(URL url) {
+        this.url = url;
+    }
+
+    /**
+     * Gets the url of the analyzed document
+     *
+     * @return The url
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the host of the analyzed document
+     *
+     * @return The host
+     */
+    public String getHost() {
+        return url.getHost();
+    }
+
+    /**
+     * Shares the value of an analyzer
+     *
+     * @param name  The analyzer name
+     * @param value The value
+     */
+    public void put(String name, Object value) {
+        values.put(name, value);
+    }
+
+    /**
+     * Gets the value shared by an analyzer
+     *
+     * @param name The analyzer name
+     * @param type The value type
+     * @param <T>  The value type
+     * @return The value or null if it is not shared
+     */
+    public <T> T get(String name, Class<T> type) {
+        return type.cast(values.get(name));
+    }
+}
@@ -0,0 +1,383 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the selected analyzers on a parsed document
+ * <p>
+ * The visitors of all analyzers are called in one depth-first traversal of the document. If all analyzers need only
+ * the head, the traversal stops at the end of the head element and the body is never visited. If the parallel
+ * execution is set, the analyzers not depending on each other traverse a large document in parallel tasks (see
+ * {@link #setParallelExecution(Executor, int)}). An instance is immutable and can be shared by the threads.
+ */
+public class AnalyzerEngine {
+
+    private static final AnalyzerEngine defaultEngine = newInstance(AnalyzerRegistry.getDefault(), AnalyzerRegistry.getDefault().getNames());
+
+    private static final Histogram traverseHistogram = Metrics.getDefault().stage("analyze_traverse");
+
+    // null if the documents are analyzed in one traversal
+    private static volatile ParallelExecution parallelExecution = null;
+
+    // in the dependency order
+    private final List<Analyzer> analyzers;
+
+    private final List<Histogram> completeHistograms;
+
+    private final Set<String> names;
+
+    private final boolean headOnly;
+
+    // the indexes of the analyzers traversing the document together in the parallel execution
+    private final List<List<Integer>> independentGroups;
+
+    private AnalyzerEngine(List<Analyzer> analyzers) {
+        this.analyzers = analyzers;
+        this.completeHistograms = new ArrayList<>(analyzers.size());
+        Set<String> analyzerNames = new LinkedHashSet<>();
+        boolean allHeadOnly = true;
+        for (Analyzer analyzer : analyzers) {
+            completeHistograms.add(Metrics.getDefault().stage("analyze_" + analyzer.getName()));
+            analyzerNames.add(analyzer.getName());
+            allHeadOnly &= analyzer.isHeadOnly();
+        }
+        this.names = Collections.unmodifiableSet(analyzerNames);
+        this.headOnly = allHeadOnly;
+        this.independentGroups = groupIndependent(analyzers);
+    }
+
+    /**
+     * Groups the analyzers by their dependencies, the analyzers of different groups do not depend on each other
+     * <p>
+     * The groups of the head-only analyzers join the first group visiting the body, as their traversals end at the
+     * head and are not worth a task.
+     *
+     * @param analyzers The analyzers in the dependency order
+     * @return The groups of the analyzer indexes
+     */
+    private static List<List<Integer>> groupIndependent(List<Analyzer> analyzers) {
+        List<List<Integer>> groups = new ArrayList<>();
+        Map<String, List<Integer>> groupsByName = new HashMap<>();
+        for (int i = 0; i < analyzers.size(); i++) {
+            // an analyzer joins the groups of its dependencies, the dependencies precede it
+            List<Integer> group = null;
+            for (String dependency : analyzers.get(i).getDependencies()) {
+                List<Integer> dependencyGroup = groupsByName.get(dependency);
+                if (dependencyGroup == null || dependencyGroup == group) {
+                    continue;
+                }
+                if (group == null) {
+                    group = dependencyGroup;
+                } else {
+                    merge(analyzers, groups, groupsByName, dependencyGroup, group);
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(i);
+            groupsByName.put(analyzers.get(i).getName(), group);
+        }
+
+        List<Integer> bodyGroup = null;
+        for (List<Integer> group : groups) {
+            if (!isHeadOnly(analyzers, group)) {
+                bodyGroup = group;
+                break;
+            }
+        }
+        if (bodyGroup != null) {
+            for (List<Integer> group : new ArrayList<>(groups)) {
+                if (isHeadOnly(analyzers, group)) {
+                    merge(analyzers, groups, groupsByName, group, bodyGroup);
+                }
+            }
+        }
+        for (List<Integer> group : groups) {
+            // the visitors of a group are called in the dependency order
+            Collections.sort(group);
+        }
+
+        return groups;
+    }
+
+    private static void merge(List<Analyzer> analyzers, List<List<Integer>> groups, Map<String, List<Integer>> groupsByName,
+                              List<Integer> from, List<Integer> to) {
+        to.addAll(from);
+        for (Integer index : from) {
+            groupsByName.put(analyzers.get(index).getName(), to);
+        }
+        groups.removeIf(group -> group == from);
+    }
+
+    private static boolean isHeadOnly(List<Analyzer> analyzers, List<Integer> group) {
+        for (Integer index : group) {
+            if (!analyzers.get(index).isHeadOnly()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the engine running all analyzers of the default registry
+     *
+     * @return The default engine
+     */
+    public static AnalyzerEngine getDefault() {
+        return defaultEngine;
+    }
+
+    /**
+     * Initiates a new instance of AnalyzerEngine for the selected analyzers of the given registry
+     *
+     * @param registry The analyzer registry
+     * @param names    The names of the selected analyzers, their dependencies are selected too
+     * @return A new instance of AnalyzerEngine
+     * @throws AnalyzerRegistry.UnknownAnalyzerException If an analyzer is not registered
+     */
+    public static AnalyzerEngine newInstance(AnalyzerRegistry registry, Collection<String> names) {
+        return new AnalyzerEngine(registry.resolve(names));
+    }
+
+    /**
+     * Initiates a new instance of AnalyzerEngine for the selected analyzers of the default registry
+     *
+     * @param selection The comma separated names of the selected analyzers (e.g. "links,title"), all analyzers
+     *                  are selected if it is null or blank
+     * @return A new instance of AnalyzerEngine or the default engine if all analyzers are selected
+     * @throws AnalyzerRegistry.UnknownAnalyzerException If an analyzer is not registered
+     */
+    public static AnalyzerEngine newInstance(String selection) {
+        if (selection == null || selection.trim().isEmpty()) {
+            return defaultEngine;
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : selection.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim().toLowerCase());
+            }
+        }
+
+        return newInstance(AnalyzerRegistry.getDefault(), names);
+    }
+
+    /**
+     * Sets the parallel execution of the analyzers of all engines
+     * <p>
+     * The analyzers not depending on each other traverse the shared document in parallel tasks on the executor (the
+     * calling thread runs one of the traversals) and then they are completed in the dependency order on the calling
+     * thread. A document with fewer nodes than the threshold, or a document analyzed by head-only analyzers, is
+     * traversed once by the calling thread as the tasks would cost more than they save.
+     *
+     * @param executor     The executor of the traversal tasks shared by the documents, null disables the parallel
+     *                     execution
+     * @param minNodeCount The minimum number of nodes of a document analyzed in parallel
+     */
+    public static void setParallelExecution(Executor executor, int minNodeCount) {
+        parallelExecution = executor != null ? new ParallelExecution(executor, minNodeCount) : null;
+    }
+
+    /**
+     * Gets the names of the analyzers run by the engine
+     *
+     * @return The analyzer names in the dependency order, including the dependencies
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Checks whether the engine only needs the head of the documents
+     *
+     * @return true if all analyzers need only the head
+     */
+    public boolean isHeadOnly() {
+        return headOnly;
+    }
+
+    /**
+     * Analyzes the document and sets the values of the result
+     *
+     * @param document Parsed html document
+     * @param url      The url of the document
+     * @param result   Html analyzer result
+     * @throws IOException If any analyzer fails with an io action
+     */
+    public void analyze(Document document, URL url, HtmlAnalyzerResult result) throws IOException {
+        AnalyzerContext context = new AnalyzerContext(url);
+        List<Analyzer.Visitor> visitors = new ArrayList<>(analyzers.size());
+        for (Analyzer analyzer : analyzers) {
+            visitors.add(analyzer.newVisitor(context));
+        }
+
+        long start = System.nanoTime();
+        ParallelExecution parallel = parallelExecution;
+        if (parallel != null && independentGroups.size() > 1 && !headOnly && hasNodes(document, parallel.minNodeCount)) {
+            traverseParallel(document, visitors, parallel.executor);
+        } else {
+            NodeTraversor.filter(new Traversal(visitors, headOnly), document);
+        }
+        traverseHistogram.recordSince(start);
+
+        for (int i = 0; i < visitors.size(); i++) {
+            start = System.nanoTime();
+            visitors.get(i).complete(result);
+            completeHistograms.get(i).recordSince(start);
+        }
+        result.setAnalyzers(names);
+    }
+
+    /**
+     * Traverses the document with every group of the independent analyzers in a task
+     * <p>
+     * The tasks are completed before it returns or throws, the exception of the first group is thrown over the
+     * exceptions of the tasks.
+     *
+     * @param document Parsed html document, it is only read by the visitors
+     * @param visitors The visitors of the analyzers
+     * @param executor The executor of the tasks
+     */
+    private void traverseParallel(Document document, List<Analyzer.Visitor> visitors, Executor executor) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(independentGroups.size() - 1);
+        for (int i = 1; i < independentGroups.size(); i++) {
+            Traversal traversal = newTraversal(independentGroups.get(i), visitors);
+            tasks.add(CompletableFuture.runAsync(() -> NodeTraversor.filter(traversal, document), executor));
+        }
+        CompletableFuture<Void> allTasks = CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+        try {
+            // the calling thread traverses with the first group instead of waiting
+            NodeTraversor.filter(newTraversal(independentGroups.get(0), visitors), document);
+        } finally {
+            // the tasks are awaited even if a visitor of the first group throws, no visitor runs after analyze returns
+            allTasks.handle((ignored, taskException) -> null).join();
+        }
+
+        try {
+            allTasks.join();
+        } catch (CompletionException taskException) {
+            // the exception of a visitor is thrown as in the sequential execution
+            Throwable cause = taskException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw taskException;
+        }
+    }
+
+    private Traversal newTraversal(List<Integer> group, List<Analyzer.Visitor> visitors) {
+        List<Analyzer.Visitor> groupVisitors = new ArrayList<>(group.size());
+        boolean groupHeadOnly = true;
+        for (Integer index : group) {
+            groupVisitors.add(visitors.get(index));
+            groupHeadOnly &= analyzers.get(index).isHeadOnly();
+        }
+
+        return new Traversal(groupVisitors, groupHeadOnly);
+    }
+
+    /**
+     * Checks whether the document has at least the given number of nodes, at most that many nodes are counted
+     *
+     * @param document Parsed html document
+     * @param count    The number of nodes
+     * @return true if the document has the nodes
+     */
+    private static boolean hasNodes(Document document, int count) {
+        int[] nodes = {0};
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                return ++nodes[0] >= count ? FilterResult.STOP : FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, document);
+
+        return nodes[0] >= count;
+    }
+
+    /**
+     * The executor and the size threshold of the parallel execution
+     */
+    private static class ParallelExecution {
+        private final Executor executor;
+        private final int minNodeCount;
+
+        ParallelExecution(Executor executor, int minNodeCount) {
+            this.executor = executor;
+            this.minNodeCount = minNodeCount;
+        }
+    }
+
+    /**
+     * Calls the visitors for every node and stops after the head if only the head is needed
+     */
+    private static class Traversal implements NodeFilter {
+        private final Analyzer.Visitor[] visitors;
+        private final boolean headOnly;
+
+        Traversal(List<Analyzer.Visitor> visitors, boolean headOnly) {
+            this.visitors = visitors.toArray(new Analyzer.Visitor[0]);
+            this.headOnly = headOnly;
+        }
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            // the body is the sibling following the head of the root html element
+            if (headOnly && depth == 2 && isElement(node, "body")) {
+                return FilterResult.STOP;
+            }
+            for (Analyzer.Visitor visitor : visitors) {
+                visitor.head(node, depth);
+            }
+
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            for (Analyzer.Visitor visitor : visitors) {
+                visitor.tail(node, depth);
+            }
+            if (headOnly && depth == 2 && isElement(node, "head")) {
+                return FilterResult.STOP;
+            }
+
+            return FilterResult.CONTINUE;
+        }
+
+        private static boolean isElement(Node node, String tagName) {
+            return node instanceof Element && tagName.equalsIgnoreCase(((Element) node).tagName());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Registry of the analyzers by name
+ * <p>
+ * The default registry contains the built-in analyzers and the analyzers provided by the service loader.
+ */
+public class AnalyzerRegistry {
+
+    private static Logger logger = LoggerFactory.getLogger(AnalyzerRegistry.class);
+
+    private static final AnalyzerRegistry defaultRegistry = newDefaultRegistry();
+
+    private final Map<String, Analyzer> analyzers = new LinkedHashMap<>();
+
+    private AnalyzerRegistry() {
+    }
+
+    /**
+     * Initiates a new empty instance of AnalyzerRegistry
+     *
+     * @return A new instance of AnalyzerRegistry
+     */
+    public static AnalyzerRegistry newInstance() {
+        return new AnalyzerRegistry();
+    }
+
+    /**
+     * Gets the registry shared by the application
+     *
+     * @return The default registry
+     */
+    public static AnalyzerRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Creates the registry of the built-in and the service loader analyzers
+     *
+     * @return The default registry
+     */
+    private static AnalyzerRegistry newDefaultRegistry() {
+        AnalyzerRegistry registry = new AnalyzerRegistry();
+        for (Analyzer analyzer : BuiltinAnalyzers.getAll()) {
+            registry.register(analyzer);
+        }
+        for (Analyzer analyzer : ServiceLoader.load(Analyzer.class)) {
+            logger.info("Registering the analyzer \"{}\"", analyzer.getName());
+            registry.register(analyzer);
+        }
+
+        return registry;
+    }
+
+    /**
+     * Registers the analyzer
+     *
+     * @param analyzer The analyzer
+     * @throws IllegalArgumentException If an analyzer with the same name is already registered
+     */
+    public synchronized void register(Analyzer analyzer) {
+        if (analyzers.containsKey(analyzer.getName())) {
+            throw new IllegalArgumentException("The analyzer \"" + analyzer.getName() + "\" is already registered");
+        }
+        analyzers.put(analyzer.getName(), analyzer);
+    }
+
+    /**
+     * Gets the names of the registered analyzers in the registration order
+     *
+     * @return The analyzer names
+     */
+    public synchronized Set<String> getNames() {
+        return new LinkedHashSet<>(analyzers.keySet());
+    }
+
+    /**
+     * Resolves the analyzers and their dependencies
+     *
+     * @param names The names of the selected analyzers
+     * @return The analyzers in the dependency order, every analyzer follows its dependencies
+     * @throws UnknownAnalyzerException If an analyzer or a dependency is not registered
+     * @throws IllegalStateException    If the dependencies are cyclic
+     */
+    public synchronized List<Analyzer> resolve(Collection<String> names) {
+        List<Analyzer> resolved = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String name : names) {
+            resolve(name, resolved, visited, new LinkedHashSet<>());
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Adds the dependencies of the analyzer and then the analyzer itself (depth first)
+     *
+     * @param name     The analyzer name
+     * @param resolved The resolved analyzers
+     * @param visited  The names of the resolved analyzers
+     * @param path     The names of the analyzers being resolved, for the cycle detection
+     */
+    private void resolve(String name, List<Analyzer> resolved, Set<String> visited, Set<String> path) {
+        if (visited.contains(name)) {
+            return;
+        }
+        if (!path.add(name)) {
+            throw new IllegalStateException("The analyzer dependencies are cyclic: " + path + " -> " + name);
+        }
+
+        Analyzer analyzer = analyzers.get(name);
+        if (analyzer == null) {
+            throw new UnknownAnalyzerException(name);
+        }
+        for (String dependency : analyzer.getDependencies()) {
+            resolve(dependency, resolved, visited, path);
+        }
+
+        path.remove(name);
+        visited.add(name);
+        resolved.add(analyzer);
+    }
+
+    /**
+     * Thrown if an analyzer is not registered
+     */
+    public static class UnknownAnalyzerException extends IllegalArgumentException {
+        public UnknownAnalyzerException(String name) {
+            super("The analyzer \"" + name + "\" is not registered");
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.DocumentType;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The built-in analyzers based on {@link DocumentTypeFetcher}, {@link TagAnalyzers} and {@link LoginDetector}
+ * <p>
+ * The values are the same as the ones produced when the analyzers are run on the document one by one.
+ */
+public class BuiltinAnalyzers {
+
+    public static final String DOCTYPE = "doctype";
+    public static final String TITLE = "title";
+    public static final String HEADINGS = "headings";
+    public static final String LINKS = "links";
+    public static final String FORMS = "forms";
+    public static final String LOGIN = "login";
+
+    private BuiltinAnalyzers() {
+    }
+
+    /**
+     * Gets the built-in analyzers
+     *
+     * @return The built-in analyzers
+     */
+    public static List<Analyzer> getAll() {
+        return Arrays.asList(new DocumentTypeAnalyzer(), new TitleAnalyzer(), new HeadingAnalyzer(),
+            new LinkAnalyzer(), new FormAnalyzer(), new LoginAnalyzer());
+    }
+
+    private static boolean isElement(Node node, String tagName) {
+        return node instanceof Element && tagName.equalsIgnoreCase(((Element) node).tagName());
+    }
+
+    /**
+     * Finds the document type and the rendering mode triggered by it
+     */
+    public static class DocumentTypeAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return DOCTYPE;
+        }
+
+        @Override
+        public boolean isHeadOnly() {
+            return true;
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                private DocumentType documentType;
+
+                @Override
+                public void head(Node node, int depth) {
+                    // only the document children are checked for the document type
+                    if (depth == 1 && documentType == null && node instanceof DocumentType) {
+                        documentType = (DocumentType) node;
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                    if (documentType != null) {
+                        DocumentTypeFetcher typeFetcher = DocumentTypeFetcher.newInstance();
+                        String name = documentType.attr("name");
+                        String publicId = documentType.attr("publicId");
+                        String systemId = documentType.attr("systemId");
+
+                        result.setDocumentType(typeFetcher.fetchDocumentType(name, publicId, systemId));
+                        result.setRenderingMode(typeFetcher.fetchRenderingMode(name, publicId, systemId));
+                    } else {
+                        // the browsers render a document without document type in quirks mode
+                        result.setRenderingMode(DocumentTypeFetcher.RenderingMode.QUIRKS);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Finds the title, the text of the first title element in the head
+     */
+    public static class TitleAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return TITLE;
+        }
+
+        @Override
+        public boolean isHeadOnly() {
+            return true;
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                private Element headElement;
+                private boolean inHead = false;
+                private Element titleElement;
+
+                @Override
+                public void head(Node node, int depth) {
+                    // the head is the first head element of the root html element
+                    if (depth == 2 && headElement == null && isElement(node, "head")) {
+                        headElement = (Element) node;
+                        inHead = true;
+                    } else if (inHead && titleElement == null && isElement(node, "title")) {
+                        titleElement = (Element) node;
+                    }
+                }
+
+                @Override
+                public void tail(Node node, int depth) {
+                    if (node == headElement) {
+                        inHead = false;
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                    result.setTitle(titleElement != null ? StringUtil.normaliseWhitespace(titleElement.text()).trim() : "");
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts the headings by their level
+     */
+    public static class HeadingAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return HEADINGS;
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                private final int[] headingCounts = new int[HtmlAnalyzerResult.MAX_HEADING_LEVEL];
+
+                @Override
+                public void head(Node node, int depth) {
+                    if (node instanceof Element && TagAnalyzers.isHeadingTag(((Element) node).tagName())) {
+                        headingCounts[((Element) node).tagName().charAt(1) - '1']++;
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                    result.setHeadingCounts(headingCounts);
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts the internal (same host or same site) and external (third-party) hypermedia links
+     */
+    public static class LinkAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return LINKS;
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                private final LinkClassifier linkClassifier = LinkClassifier.newInstance(context.getHost());
+                private final TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums = new TagAnalyzers.HyperMediaLinkSums();
+
+                @Override
+                public void head(Node node, int depth) {
+                    // (a[href], link[href], area[href], img[src], script[src])
+                    if (node instanceof Element && (node.hasAttr("href") || node.hasAttr("src"))) {
+                        TagAnalyzers.countHypermediaLink((Element) node, linkClassifier, hyperMediaLinkSums);
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                    result.setHyperMediaLinkSums(hyperMediaLinkSums);
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects the form candidates for the login detection, they are shared in the context under the name "forms"
+     */
+    public static class FormAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return FORMS;
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                private final List<LoginDetector.FormCandidate> formCandidates = new ArrayList<>();
+
+                // the forms enclosing the currently visited node
+                private final Deque<LoginDetector.FormCandidate> openForms = new ArrayDeque<>();
+
+                @Override
+                public void head(Node node, int depth) {
+                    if (isElement(node, "form")) {
+                        LoginDetector.FormCandidate candidate = new LoginDetector.FormCandidate(node.attr("method"), node.attr("action"));
+                        formCandidates.add(candidate);
+                        openForms.push(candidate);
+                    } else if (!openForms.isEmpty() && isElement(node, "input")) {
+                        // an input is a descendant of all open forms
+                        for (LoginDetector.FormCandidate candidate : openForms) {
+                            candidate.addInput((Element) node);
+                        }
+                    }
+                }
+
+                @Override
+                public void tail(Node node, int depth) {
+                    if (!openForms.isEmpty() && isElement(node, "form")) {
+                        openForms.pop();
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                    context.put(FORMS, formCandidates);
+                }
+            };
+        }
+    }
+
+    /**
+     * Detects a login form among the form candidates
+     */
+    public static class LoginAnalyzer implements Analyzer {
+
+        @Override
+        public String getName() {
+            return LOGIN;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return Collections.singletonList(FORMS);
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void complete(HtmlAnalyzerResult result) throws IOException {
+                    List<LoginDetector.FormCandidate> formCandidates = context.get(FORMS, List.class);
+                    result.setHasLoginForm(LoginDetector.newInstance().hasLoginForm(formCandidates));
+                }
+            };
+        }
+    }
+}
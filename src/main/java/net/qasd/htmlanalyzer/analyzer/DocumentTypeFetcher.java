@@ -1,30 +1,34 @@
 package net.qasd.htmlanalyzer.analyzer;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * @link https://en.wikipedia.org/wiki/Document_type_declaration
  */
 public class DocumentTypeFetcher {
 
-    // regex patterns for the most common document types
+    // the most common document types
     public enum DocumentType {
-        HTML5("(?i)<!DOCTYPE html>"),
-        HTML("(?i)<!DOCTYPE html PUBLIC \".+ HTML (.+?)\\/\\/.+\".*>"),
-        XHTML("(?i)<!DOCTYPE html PUBLIC \".+ XHTML (.+?)\\/\\/.+\".*>"),
-        UNKNOWN("");
+        HTML5,
+        HTML,
+        XHTML,
+        UNKNOWN
+    }
 
-        private final String pattern;
+    /**
+     * The rendering modes of the browsers
+     *
+     * @link https://developer.mozilla.org/en-US/docs/Web/HTML/Quirks_Mode_and_Standards_Mode
+     */
+    public enum RenderingMode {
+        QUIRKS,
+        LIMITED_QUIRKS,
+        NO_QUIRKS
+    }
 
-        DocumentType(String pattern) {
-            this.pattern = pattern;
-        }
+    private static final String KEYWORD_DOCTYPE = "<!DOCTYPE";
+    private static final String KEYWORD_PUBLIC = "PUBLIC";
+    private static final String KEYWORD_SYSTEM = "SYSTEM";
 
-        public String getPattern() {
-            return pattern;
-        }
-    }
+    private final DocumentTypeRegistry registry = DocumentTypeRegistry.getInstance();
 
     /**
      * Initiates a new instance of DocumentTypeFetcher
@@ -42,24 +46,88 @@ public class DocumentTypeFetcher {
      * @return Document type with version
      */
     public String fetchDocumentType(String text) {
-        // normalize the document type text for better regular expression match
-        text = normalizeDeclaration(text);
+        Declaration declaration = Declaration.parse(text);
+
+        return fetchDocumentType(declaration.name, declaration.publicId, declaration.systemId, declaration.malformed);
+    }
+
+    /**
+     * Fetches the document type from the parts of the declaration
+     *
+     * @param name     Document type name
+     * @param publicId Public identifier (empty if missing)
+     * @param systemId System identifier (empty if missing)
+     * @return Document type with version
+     */
+    public String fetchDocumentType(String name, String publicId, String systemId) {
+        return fetchDocumentType(name, publicId, systemId, false);
+    }
+
+    /**
+     * Fetches the rendering mode triggered by the document type declaration
+     *
+     * @param text Document type declaration text
+     * @return Rendering mode
+     */
+    public RenderingMode fetchRenderingMode(String text) {
+        Declaration declaration = Declaration.parse(text);
+
+        return registry.getRenderingMode(declaration.name, declaration.publicId, declaration.systemId, declaration.malformed);
+    }
+
+    /**
+     * Fetches the rendering mode triggered by the parts of the document type declaration
+     * <p>
+     * A document without a document type declaration is rendered in quirks mode.
+     *
+     * @param name     Document type name
+     * @param publicId Public identifier (empty if missing)
+     * @param systemId System identifier (empty if missing)
+     * @return Rendering mode
+     */
+    public RenderingMode fetchRenderingMode(String name, String publicId, String systemId) {
+        return registry.getRenderingMode(name, publicId, systemId, false);
+    }
+
+    /**
+     * Fetches the document type from the parts of the declaration
+     *
+     * @param name      Document type name
+     * @param publicId  Public identifier (empty if missing)
+     * @param systemId  System identifier (empty if missing)
+     * @param malformed true if the declaration is malformed
+     * @return Document type with version
+     */
+    private String fetchDocumentType(String name, String publicId, String systemId, boolean malformed) {
+        if (malformed || !name.equalsIgnoreCase("html")) {
+            return DocumentType.UNKNOWN.toString();
+        }
 
         // HTML5 check
-        if (text.matches(DocumentType.HTML5.getPattern())) {
-            return DocumentType.HTML5.toString();
-        } else {
-            // HTML check
-            String version = matchVersion(text, DocumentType.HTML.getPattern());
-            if (version != null) {
-                return DocumentType.HTML.toString() + " " + version;
+        if (publicId.isEmpty()) {
+            if (systemId.isEmpty() || registry.isLegacyCompat(systemId)) {
+                return DocumentType.HTML5.toString();
             }
 
-            // XHTML check
-            version = matchVersion(text, DocumentType.XHTML.getPattern());
-            if (version != null) {
-                return DocumentType.XHTML.toString() + " " + version;
-            }
+            return DocumentType.UNKNOWN.toString();
+        }
+
+        // known public identifiers
+        String label = registry.getLabel(publicId);
+        if (label != null) {
+            return label;
+        }
+
+        // HTML check
+        String version = extractVersion(publicId, " HTML ");
+        if (version != null) {
+            return DocumentType.HTML.toString() + " " + version;
+        }
+
+        // XHTML check
+        version = extractVersion(publicId, " XHTML ");
+        if (version != null) {
+            return DocumentType.XHTML.toString() + " " + version;
         }
 
         // not supported types
@@ -67,38 +135,135 @@ public class DocumentTypeFetcher {
     }
 
     /**
-     * Matches the document type version
+     * Matches the version of a public identifier which is not known
+     * <p>
+     * The version is the text between the last occurrence of the marker and the next "//" (e.g. "4.01" for
+     * "-//W3C//DTD HTML 4.01//EN" and the marker " HTML ")
      *
-     * @param text          Document type text to be matched
-     * @param patternString Regular expression pattern
-     * @return Matched version
+     * @param publicId Public identifier
+     * @param marker   The marker preceding the version
+     * @return Matched version or null
      */
-    protected String matchVersion(String text, String patternString) {
-        String version = null;
-
-        Pattern pattern = Pattern.compile(patternString);
-
-        Matcher matcher = pattern.matcher(text);
-        if (matcher.find()) {
-            version = matcher.group(1);
+    private static String extractVersion(String publicId, String marker) {
+        for (int start = publicId.length() - marker.length(); start > 0; start--) {
+            if (publicId.regionMatches(true, start, marker, 0, marker.length())) {
+                int versionStart = start + marker.length();
+                // the version and the text after "//" can not be empty
+                int versionEnd = publicId.indexOf("//", versionStart + 1);
+                if (versionEnd > 0 && versionEnd + 2 < publicId.length()) {
+                    return publicId.substring(versionStart, versionEnd);
+                }
+            }
         }
 
-        return version;
+        return null;
     }
 
     /**
-     * Normalize the document type declaration text by replacing new lines and multiple occurrence of spaces
-     *
-     * @param declaration Document type declaration
-     * @return Html document type
+     * The parts of a document type declaration text
      */
-    protected String normalizeDeclaration(String declaration) {
-        // replace new line with space
-        declaration = declaration.replace("\n", " ");
+    static class Declaration {
+        private String name = "";
+        private String publicId = "";
+        private String systemId = "";
+        private boolean malformed = false;
+
+        /**
+         * Parses the document type declaration text without any regular expression
+         * <p>
+         * Supported forms: &lt;!DOCTYPE name&gt;, &lt;!DOCTYPE name PUBLIC "public" ["system"]&gt;,
+         * &lt;!DOCTYPE name SYSTEM "system"&gt; and &lt;!DOCTYPE name "system"&gt;
+         *
+         * @param text Document type declaration text
+         * @return Parsed declaration
+         */
+        static Declaration parse(String text) {
+            Declaration declaration = new Declaration();
+
+            int position = skipWhitespace(text, 0);
+            if (!text.regionMatches(true, position, KEYWORD_DOCTYPE, 0, KEYWORD_DOCTYPE.length())) {
+                declaration.malformed = true;
+                return declaration;
+            }
+            position = skipWhitespace(text, position + KEYWORD_DOCTYPE.length());
+
+            // name
+            int nameEnd = position;
+            while (nameEnd < text.length() && !Character.isWhitespace(text.charAt(nameEnd)) && text.charAt(nameEnd) != '>') {
+                nameEnd++;
+            }
+            declaration.name = text.substring(position, nameEnd);
+            position = skipWhitespace(text, nameEnd);
+
+            if (text.regionMatches(true, position, KEYWORD_PUBLIC, 0, KEYWORD_PUBLIC.length())) {
+                position = skipWhitespace(text, position + KEYWORD_PUBLIC.length());
+                int end = quotedEnd(text, position);
+                if (end < 0) {
+                    // the public identifier is missing
+                    declaration.malformed = true;
+                    return declaration;
+                }
+                declaration.publicId = text.substring(position + 1, end);
+                position = skipWhitespace(text, end + 1);
+            } else if (text.regionMatches(true, position, KEYWORD_SYSTEM, 0, KEYWORD_SYSTEM.length())) {
+                position = skipWhitespace(text, position + KEYWORD_SYSTEM.length());
+                if (quotedEnd(text, position) < 0) {
+                    // the system identifier is missing
+                    declaration.malformed = true;
+                    return declaration;
+                }
+            }
+
+            int end = quotedEnd(text, position);
+            if (end >= 0) {
+                declaration.systemId = text.substring(position + 1, end);
+                position = skipWhitespace(text, end + 1);
+            }
 
-        // multiple spaces with single space
-        declaration = declaration.replaceAll("\\s{2,}", " ").trim();
+            if (position >= text.length() || text.charAt(position) != '>') {
+                declaration.malformed = true;
+            }
+
+            return declaration;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getPublicId() {
+            return publicId;
+        }
+
+        String getSystemId() {
+            return systemId;
+        }
 
-        return declaration;
+        boolean isMalformed() {
+            return malformed;
+        }
+
+        private static int skipWhitespace(String text, int position) {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+
+            return position;
+        }
+
+        /**
+         * Finds the closing quote of the quoted string starting at the position
+         *
+         * @param text     Declaration text
+         * @param position Position of the opening quote
+         * @return Position of the closing quote or -1 if there is no quoted string
+         */
+        private static int quotedEnd(String text, int position) {
+            if (position >= text.length() || (text.charAt(position) != '"' && text.charAt(position) != '\'')) {
+                return -1;
+            }
+
+            return text.indexOf(text.charAt(position), position + 1);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,365 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import java.util.Arrays;
+
+/**
+ * Registry of the known document type public identifiers
+ * <p>
+ * The public identifiers of the standard document types and the identifier lists of the html parsing specification
+ * which decide the rendering mode are compiled into a case insensitive trie. Looking up an identifier walks the trie
+ * once and does not allocate any object.
+ *
+ * @link https://html.spec.whatwg.org/multipage/parsing.html#the-initial-insertion-mode
+ * @link https://www.w3.org/QA/2002/04/valid-dtd-list.html
+ */
+public class DocumentTypeRegistry {
+
+    // the public identifier is one of the known document types
+    static final int KNOWN = 1;
+    // quirks mode if the public identifier is equal to the key
+    static final int QUIRKS_EXACT = 1 << 1;
+    // quirks mode if the public identifier starts with the key
+    static final int QUIRKS_PREFIX = 1 << 2;
+    // quirks mode if the public identifier starts with the key and the system identifier is missing
+    static final int QUIRKS_PREFIX_WITHOUT_SYSTEM_ID = 1 << 3;
+    // limited quirks mode if the public identifier starts with the key
+    static final int LIMITED_QUIRKS_PREFIX = 1 << 4;
+    // limited quirks mode if the public identifier starts with the key and the system identifier exists
+    static final int LIMITED_QUIRKS_PREFIX_WITH_SYSTEM_ID = 1 << 5;
+
+    private static final String LEGACY_COMPAT_SYSTEM_ID = "about:legacy-compat";
+    private static final String QUIRKS_SYSTEM_ID = "http://www.ibm.com/data/dtd/v11/ibmxhtml1-transitional.dtd";
+
+    // public identifier and the document type label
+    private static final String[][] KNOWN_DOCUMENT_TYPES = {
+        {"-//IETF//DTD HTML 2.0//EN", "HTML 2.0"},
+        {"-//IETF//DTD HTML 2.0 Level 1//EN", "HTML 2.0 Level 1"},
+        {"-//IETF//DTD HTML 2.0 Level 2//EN", "HTML 2.0 Level 2"},
+        {"-//IETF//DTD HTML 2.0 Strict//EN", "HTML 2.0 Strict"},
+        {"-//IETF//DTD HTML 2.0 Strict Level 1//EN", "HTML 2.0 Strict Level 1"},
+        {"-//IETF//DTD HTML 2.0 Strict Level 2//EN", "HTML 2.0 Strict Level 2"},
+        {"-//IETF//DTD HTML 2.1E//EN", "HTML 2.1E"},
+        {"-//IETF//DTD HTML 3.0//EN", "HTML 3.0"},
+        {"-//W3O//DTD W3 HTML 3.0//EN", "HTML 3.0"},
+        {"-//W3C//DTD HTML 3 1995-03-24//EN", "HTML 3 1995-03-24"},
+        {"-//W3C//DTD HTML 3.2//EN", "HTML 3.2"},
+        {"-//W3C//DTD HTML 3.2 Final//EN", "HTML 3.2 Final"},
+        {"-//W3C//DTD HTML 3.2 Draft//EN", "HTML 3.2 Draft"},
+        {"-//IETF//DTD HTML 3.2//EN", "HTML 3.2"},
+        {"-//W3C//DTD HTML 4.0//EN", "HTML 4.0"},
+        {"-//W3C//DTD HTML 4.0 Transitional//EN", "HTML 4.0 Transitional"},
+        {"-//W3C//DTD HTML 4.0 Frameset//EN", "HTML 4.0 Frameset"},
+        {"-//W3C//DTD HTML 4.01//EN", "HTML 4.01"},
+        {"-//W3C//DTD HTML 4.01 Transitional//EN", "HTML 4.01 Transitional"},
+        {"-//W3C//DTD HTML 4.01 Frameset//EN", "HTML 4.01 Frameset"},
+        {"-//W3C//DTD HTML 4.01+RDFa 1.1//EN", "HTML 4.01+RDFa 1.1"},
+        {"-//W3C//DTD HTML+RDFa 1.1//EN", "HTML+RDFa 1.1"},
+        {"ISO/IEC 15445:2000//DTD HTML//EN", "ISO HTML"},
+        {"-//W3C//DTD XHTML 1.0 Strict//EN", "XHTML 1.0 Strict"},
+        {"-//W3C//DTD XHTML 1.0 Transitional//EN", "XHTML 1.0 Transitional"},
+        {"-//W3C//DTD XHTML 1.0 Frameset//EN", "XHTML 1.0 Frameset"},
+        {"-//W3C//DTD XHTML 1.1//EN", "XHTML 1.1"},
+        {"-//W3C//DTD XHTML Basic 1.0//EN", "XHTML Basic 1.0"},
+        {"-//W3C//DTD XHTML Basic 1.1//EN", "XHTML Basic 1.1"},
+        {"-//W3C//DTD XHTML 1.1 plus MathML 2.0//EN", "XHTML 1.1 plus MathML 2.0"},
+        {"-//W3C//DTD XHTML 1.1 plus MathML 2.0 plus SVG 1.1//EN", "XHTML 1.1 plus MathML 2.0 plus SVG 1.1"},
+        {"-//W3C//DTD XHTML-Print 1.0//EN", "XHTML-Print 1.0"},
+        {"-//W3C//DTD XHTML+RDFa 1.0//EN", "XHTML+RDFa 1.0"},
+        {"-//W3C//DTD XHTML+RDFa 1.1//EN", "XHTML+RDFa 1.1"},
+        {"-//WAPFORUM//DTD XHTML Mobile 1.0//EN", "XHTML Mobile 1.0"},
+        {"-//WAPFORUM//DTD XHTML Mobile 1.1//EN", "XHTML Mobile 1.1"},
+        {"-//WAPFORUM//DTD XHTML Mobile 1.2//EN", "XHTML Mobile 1.2"},
+        {"-//Netscape Comm. Corp.//DTD HTML//EN", "Netscape HTML"},
+        {"-//Netscape Comm. Corp.//DTD Strict HTML//EN", "Netscape Strict HTML"},
+        {"-//Microsoft//DTD Internet Explorer 2.0 HTML//EN", "Internet Explorer 2.0 HTML"},
+        {"-//Microsoft//DTD Internet Explorer 3.0 HTML//EN", "Internet Explorer 3.0 HTML"},
+        {"-//Sun Microsystems Corp.//DTD HotJava HTML//EN", "HotJava HTML"},
+        {"-//WebTechs//DTD Mozilla HTML 2.0//EN", "Mozilla HTML 2.0"},
+        {"-//WebTechs//DTD Mozilla HTML//EN", "Mozilla HTML"}
+    };
+
+    private static final String[] QUIRKS_EXACT_PUBLIC_IDS = {
+        "-//W3O//DTD W3 HTML Strict 3.0//EN//",
+        "-/W3C/DTD HTML 4.0 Transitional/EN",
+        "HTML"
+    };
+
+    private static final String[] QUIRKS_PUBLIC_ID_PREFIXES = {
+        "+//Silmaril//dtd html Pro v0r11 19970101//",
+        "-//AS//DTD HTML 3.0 asWedit + extensions//",
+        "-//AdvaSoft Ltd//DTD HTML 3.0 asWedit + extensions//",
+        "-//IETF//DTD HTML 2.0 Level 1//",
+        "-//IETF//DTD HTML 2.0 Level 2//",
+        "-//IETF//DTD HTML 2.0 Strict Level 1//",
+        "-//IETF//DTD HTML 2.0 Strict Level 2//",
+        "-//IETF//DTD HTML 2.0 Strict//",
+        "-//IETF//DTD HTML 2.0//",
+        "-//IETF//DTD HTML 2.1E//",
+        "-//IETF//DTD HTML 3.0//",
+        "-//IETF//DTD HTML 3.2 Final//",
+        "-//IETF//DTD HTML 3.2//",
+        "-//IETF//DTD HTML 3//",
+        "-//IETF//DTD HTML Level 0//",
+        "-//IETF//DTD HTML Level 1//",
+        "-//IETF//DTD HTML Level 2//",
+        "-//IETF//DTD HTML Level 3//",
+        "-//IETF//DTD HTML Strict Level 0//",
+        "-//IETF//DTD HTML Strict Level 1//",
+        "-//IETF//DTD HTML Strict Level 2//",
+        "-//IETF//DTD HTML Strict Level 3//",
+        "-//IETF//DTD HTML Strict//",
+        "-//IETF//DTD HTML//",
+        "-//Metrius//DTD Metrius Presentational//",
+        "-//Microsoft//DTD Internet Explorer 2.0 HTML Strict//",
+        "-//Microsoft//DTD Internet Explorer 2.0 HTML//",
+        "-//Microsoft//DTD Internet Explorer 2.0 Tables//",
+        "-//Microsoft//DTD Internet Explorer 3.0 HTML Strict//",
+        "-//Microsoft//DTD Internet Explorer 3.0 HTML//",
+        "-//Microsoft//DTD Internet Explorer 3.0 Tables//",
+        "-//Netscape Comm. Corp.//DTD HTML//",
+        "-//Netscape Comm. Corp.//DTD Strict HTML//",
+        "-//O'Reilly and Associates//DTD HTML 2.0//",
+        "-//O'Reilly and Associates//DTD HTML Extended 1.0//",
+        "-//O'Reilly and Associates//DTD HTML Extended Relaxed 1.0//",
+        "-//SQ//DTD HTML 2.0 HoTMetaL + extensions//",
+        "-//SoftQuad Software//DTD HoTMetaL PRO 6.0::19990601::extensions to HTML 4.0//",
+        "-//SoftQuad//DTD HoTMetaL PRO 4.0::19971010::extensions to HTML 4.0//",
+        "-//Spyglass//DTD HTML 2.0 Extended//",
+        "-//Sun Microsystems Corp.//DTD HotJava HTML//",
+        "-//Sun Microsystems Corp.//DTD HotJava Strict HTML//",
+        "-//W3C//DTD HTML 3 1995-03-24//",
+        "-//W3C//DTD HTML 3.2 Draft//",
+        "-//W3C//DTD HTML 3.2 Final//",
+        "-//W3C//DTD HTML 3.2//",
+        "-//W3C//DTD HTML 3.2S Draft//",
+        "-//W3C//DTD HTML 4.0 Frameset//",
+        "-//W3C//DTD HTML 4.0 Transitional//",
+        "-//W3C//DTD HTML Experimental 19960712//",
+        "-//W3C//DTD HTML Experimental 970421//",
+        "-//W3C//DTD W3 HTML//",
+        "-//W3O//DTD W3 HTML 3.0//",
+        "-//WebTechs//DTD Mozilla HTML 2.0//",
+        "-//WebTechs//DTD Mozilla HTML//"
+    };
+
+    private static final String[] SYSTEM_ID_DEPENDENT_PUBLIC_ID_PREFIXES = {
+        "-//W3C//DTD HTML 4.01 Frameset//",
+        "-//W3C//DTD HTML 4.01 Transitional//"
+    };
+
+    private static final String[] LIMITED_QUIRKS_PUBLIC_ID_PREFIXES = {
+        "-//W3C//DTD XHTML 1.0 Frameset//",
+        "-//W3C//DTD XHTML 1.0 Transitional//"
+    };
+
+    private static final DocumentTypeRegistry instance = new DocumentTypeRegistry();
+
+    // trie nodes: the character of the node, the first child, the next sibling, the flags and the label index
+    private char[] nodeChars = new char[256];
+    private int[] firstChild = new int[256];
+    private int[] nextSibling = new int[256];
+    private int[] flags = new int[256];
+    private int[] labelIndex = new int[256];
+    private int nodeCount = 1;
+
+    private final String[] labels;
+
+    private DocumentTypeRegistry() {
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(labelIndex, -1);
+
+        labels = new String[KNOWN_DOCUMENT_TYPES.length];
+        for (int i = 0; i < KNOWN_DOCUMENT_TYPES.length; i++) {
+            labels[i] = KNOWN_DOCUMENT_TYPES[i][1];
+            int node = insert(KNOWN_DOCUMENT_TYPES[i][0], KNOWN);
+            labelIndex[node] = i;
+        }
+        for (String publicId : QUIRKS_EXACT_PUBLIC_IDS) {
+            insert(publicId, QUIRKS_EXACT);
+        }
+        for (String prefix : QUIRKS_PUBLIC_ID_PREFIXES) {
+            insert(prefix, QUIRKS_PREFIX);
+        }
+        for (String prefix : SYSTEM_ID_DEPENDENT_PUBLIC_ID_PREFIXES) {
+            insert(prefix, QUIRKS_PREFIX_WITHOUT_SYSTEM_ID | LIMITED_QUIRKS_PREFIX_WITH_SYSTEM_ID);
+        }
+        for (String prefix : LIMITED_QUIRKS_PUBLIC_ID_PREFIXES) {
+            insert(prefix, LIMITED_QUIRKS_PREFIX);
+        }
+
+        // release the unused capacity
+        nodeChars = Arrays.copyOf(nodeChars, nodeCount);
+        firstChild = Arrays.copyOf(firstChild, nodeCount);
+        nextSibling = Arrays.copyOf(nextSibling, nodeCount);
+        flags = Arrays.copyOf(flags, nodeCount);
+        labelIndex = Arrays.copyOf(labelIndex, nodeCount);
+    }
+
+    /**
+     * Gets the shared registry
+     *
+     * @return The document type registry
+     */
+    public static DocumentTypeRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the label of the known document type
+     *
+     * @param publicId Public identifier
+     * @return Document type label or null if the public identifier is not known
+     */
+    public String getLabel(CharSequence publicId) {
+        int node = find(publicId);
+        if (node < 0 || labelIndex[node] < 0) {
+            return null;
+        }
+
+        return labels[labelIndex[node]];
+    }
+
+    /**
+     * Gets the rendering mode triggered by the document type declaration
+     *
+     * @param name        Document type name
+     * @param publicId    Public identifier (empty if missing)
+     * @param systemId    System identifier (empty if missing)
+     * @param forceQuirks true if the declaration is malformed
+     * @return Rendering mode
+     */
+    public DocumentTypeFetcher.RenderingMode getRenderingMode(CharSequence name, CharSequence publicId, CharSequence systemId, boolean forceQuirks) {
+        if (forceQuirks || !equalsIgnoreCase(name, "html") || equalsIgnoreCase(systemId, QUIRKS_SYSTEM_ID)) {
+            return DocumentTypeFetcher.RenderingMode.QUIRKS;
+        }
+
+        int matched = match(publicId);
+        boolean hasSystemId = systemId.length() > 0;
+
+        if ((matched & (QUIRKS_EXACT | QUIRKS_PREFIX)) != 0
+            || (!hasSystemId && (matched & QUIRKS_PREFIX_WITHOUT_SYSTEM_ID) != 0)) {
+            return DocumentTypeFetcher.RenderingMode.QUIRKS;
+        }
+        if ((matched & LIMITED_QUIRKS_PREFIX) != 0
+            || (hasSystemId && (matched & LIMITED_QUIRKS_PREFIX_WITH_SYSTEM_ID) != 0)) {
+            return DocumentTypeFetcher.RenderingMode.LIMITED_QUIRKS;
+        }
+
+        return DocumentTypeFetcher.RenderingMode.NO_QUIRKS;
+    }
+
+    /**
+     * Checks whether the system identifier is the legacy compatible one of the html5 document type
+     *
+     * @param systemId System identifier
+     * @return true if the system identifier is about:legacy-compat
+     */
+    public boolean isLegacyCompat(CharSequence systemId) {
+        return equalsIgnoreCase(systemId, LEGACY_COMPAT_SYSTEM_ID);
+    }
+
+    /**
+     * Walks the trie with the public identifier and collects the flags of the matching keys
+     *
+     * @param publicId Public identifier
+     * @return Flags of the matching prefixes and the flags of the equal key
+     */
+    int match(CharSequence publicId) {
+        int matched = 0;
+        int node = 0;
+        for (int i = 0; i < publicId.length(); i++) {
+            node = child(node, toLowerCase(publicId.charAt(i)));
+            if (node < 0) {
+                // no equal key, only the prefixes matched so far
+                return matched;
+            }
+            matched |= flags[node] & (QUIRKS_PREFIX | QUIRKS_PREFIX_WITHOUT_SYSTEM_ID | LIMITED_QUIRKS_PREFIX | LIMITED_QUIRKS_PREFIX_WITH_SYSTEM_ID);
+        }
+
+        return matched | (flags[node] & (KNOWN | QUIRKS_EXACT));
+    }
+
+    /**
+     * Finds the node of the key equal to the public identifier
+     *
+     * @param publicId Public identifier
+     * @return Node index or -1 if there is no such key
+     */
+    private int find(CharSequence publicId) {
+        int node = 0;
+        for (int i = 0; i < publicId.length() && node >= 0; i++) {
+            node = child(node, toLowerCase(publicId.charAt(i)));
+        }
+
+        return node;
+    }
+
+    /**
+     * Inserts the key into the trie
+     *
+     * @param key      Key
+     * @param keyFlags Flags of the key
+     * @return Node index of the key
+     */
+    private int insert(String key, int keyFlags) {
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = toLowerCase(key.charAt(i));
+            int next = child(node, c);
+            if (next < 0) {
+                next = newNode(c);
+                nextSibling[next] = firstChild[node];
+                firstChild[node] = next;
+            }
+            node = next;
+        }
+        flags[node] |= keyFlags;
+
+        return node;
+    }
+
+    private int newNode(char c) {
+        if (nodeCount == nodeChars.length) {
+            int capacity = nodeCount * 2;
+            nodeChars = Arrays.copyOf(nodeChars, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            labelIndex = Arrays.copyOf(labelIndex, capacity);
+            Arrays.fill(firstChild, nodeCount, capacity, -1);
+            Arrays.fill(nextSibling, nodeCount, capacity, -1);
+            Arrays.fill(labelIndex, nodeCount, capacity, -1);
+        }
+        nodeChars[nodeCount] = c;
+
+        return nodeCount++;
+    }
+
+    private int child(int node, char c) {
+        for (int next = firstChild[node]; next >= 0; next = nextSibling[next]) {
+            if (nodeChars[next] == c) {
+                return next;
+            }
+        }
+
+        return -1;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, String value) {
+        if (text.length() != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (toLowerCase(text.charAt(i)) != toLowerCase(value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,1105 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import org.jsoup.nodes.Entities;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Event based html tokenizer reading the characters of a document once
+ * <p>
+ * The tokens (the document type, the start and the end tags and the character data) are passed to the handler as
+ * they are read, nothing is kept after a token is handled. The states follow the tokenization of the html
+ * specification the way the jsoup parser implements it (e.g. a "&lt;" ends a tag name), so the tokens are the ones
+ * the jsoup tree builder gets. The character data is passed in chunks of the read buffer with its character
+ * references decoded; a text token made of a single NUL (which jsoup ignores in the body) is passed alone and the
+ * NULs in the content of the text elements are replaced. An attribute value is cut at
+ * {@value #MAX_ATTRIBUTE_VALUE_LENGTH} characters, so the memory is bounded by the buffer and the attributes of one
+ * tag. An instance is not thread safe and reads one document.
+ */
+final class HtmlTokenizer {
+
+    /**
+     * The content of the element is markup
+     */
+    static final int DATA = 0;
+
+    /**
+     * The content of the element is text with character references (title, textarea)
+     */
+    static final int RCDATA = 1;
+
+    /**
+     * The content of the element is text (style, xmp, iframe, noembed, noframes)
+     */
+    static final int RAWTEXT = 2;
+
+    /**
+     * The content of the element is script data, its end tag is not matched in an escaped "&lt;script&gt;"
+     */
+    static final int SCRIPT_DATA = 3;
+
+    /**
+     * The rest of the document is text
+     */
+    static final int PLAINTEXT = 4;
+
+    static final int MAX_ATTRIBUTE_VALUE_LENGTH = 8 * 1024;
+
+    // the size of the jsoup read buffer
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    // the longest look ahead (a named character reference)
+    private static final int MAX_LOOK_AHEAD = 64;
+
+    private static final int EOF = -1;
+
+    // a document type declaration ended in an identifier
+    private static final int ABRUPT = -2;
+
+    private static final char REPLACEMENT = '�';
+
+    // the characters of the numeric references from 0x80 to 0x9F (windows-1252)
+    private static final char[] WINDOWS_1252 = {
+        '€', '\u0081', '‚', 'ƒ', '„', '…', '†', '‡',
+        'ˆ', '‰', 'Š', '‹', 'Œ', '\u008D', 'Ž', '\u008F',
+        '\u0090', '‘', '’', '“', '”', '•', '–', '—',
+        '˜', '™', 'š', '›', 'œ', '\u009D', 'ž', 'Ÿ'
+    };
+
+    private final Reader reader;
+
+    private final Handler handler;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+    private final Tag tag = new Tag();
+
+    private final StringBuilder name = new StringBuilder();
+
+    private final StringBuilder publicId = new StringBuilder();
+
+    private final StringBuilder systemId = new StringBuilder();
+
+    // the content state set by the handler for the current element and the name of its end tag
+    private int contentState = DATA;
+    private String contentEndTag;
+
+    // the line feed following the current start tag is skipped
+    private boolean skipLineFeed = false;
+
+    // characters of the current text token were read, the first one is a NUL not passed yet
+    private boolean inText = false;
+    private boolean pendingNul = false;
+
+    HtmlTokenizer(Reader reader, Handler handler) {
+        this.reader = reader;
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the content state of the element of the handled start tag, the state ends at the end tag of the element
+     *
+     * @param state      The content state ({@link #RCDATA}, {@link #RAWTEXT}, {@link #SCRIPT_DATA} or
+     *                   {@link #PLAINTEXT})
+     * @param endTagName The name of the element
+     */
+    void setContentState(int state, String endTagName) {
+        this.contentState = state;
+        this.contentEndTag = endTagName;
+    }
+
+    /**
+     * Skips the line feed following the handled start tag, e.g. the first line feed of a pre
+     */
+    void skipLineFeed() {
+        this.skipLineFeed = true;
+    }
+
+    /**
+     * Reads the document and passes its tokens to the handler until the end of the document or the handler is done
+     *
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    void run() throws IOException {
+        while (!handler.isDone()) {
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                fill(1);
+                if (charAt(0) == '\n') {
+                    position++;
+                }
+            }
+            int state = contentState;
+            contentState = DATA;
+            if (state == DATA) {
+                if (!readData()) {
+                    break;
+                }
+            } else if (state == PLAINTEXT) {
+                readText();
+                break;
+            } else if (!readContent(state)) {
+                break;
+            }
+        }
+        endText();
+        handler.end();
+    }
+
+    /**
+     * Reads the character data and the markup following it
+     *
+     * @return false at the end of the document
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private boolean readData() throws IOException {
+        while (true) {
+            int start = position;
+            while (position < limit && buffer[position] != '<' && buffer[position] != '&') {
+                position++;
+            }
+            if (position > start) {
+                text(buffer, start, position);
+            }
+            if (position == limit) {
+                if (!fill(MAX_LOOK_AHEAD)) {
+                    return false;
+                }
+                continue;
+            }
+            fill(MAX_LOOK_AHEAD);
+            if (buffer[position] == '&') {
+                position++;
+                String reference = readCharacterReference(false);
+                text(reference != null ? reference : "&");
+                continue;
+            }
+
+            readMarkup();
+
+            return true;
+        }
+    }
+
+    /**
+     * Reads the markup starting with "&lt;" (a tag, a comment, a document type or a lone "&lt;")
+     *
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private void readMarkup() throws IOException {
+        fill(MAX_LOOK_AHEAD);
+        int c = charAt(1);
+        if (c == '!') {
+            position += 2;
+            if (matches("--")) {
+                position += 2;
+                skipComment();
+            } else if (matchesIgnoreCase("DOCTYPE")) {
+                position += 7;
+                readDoctype();
+            } else if (matches("[CDATA[")) {
+                position += 7;
+                readCdata();
+            } else {
+                skipTo('>');
+            }
+        } else if (c == '/') {
+            position += 2;
+            int next = charAt(0);
+            if (isAsciiLetter(next)) {
+                readTag(false);
+            } else if (next == '>') {
+                position++;
+            } else if (next == EOF) {
+                text("</");
+            } else {
+                // bogus comment
+                skipTo('>');
+            }
+        } else if (isAsciiLetter(c)) {
+            position++;
+            readTag(true);
+        } else if (c == '?') {
+            // bogus comment
+            position++;
+            skipTo('>');
+        } else {
+            position++;
+            text("<");
+        }
+    }
+
+    /**
+     * Reads the content of a RCDATA, a RAWTEXT or a script data element until its end tag
+     *
+     * @param state The content state
+     * @return false at the end of the document
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private boolean readContent(int state) throws IOException {
+        String endTag = contentEndTag;
+        // the script data escape state: 0 not escaped, 1 escaped ("<!--"), 2 double escaped ("<!--<script")
+        int escape = 0;
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '<' || c == 0 || (c == '&' && state == RCDATA) || (c == '-' && state == SCRIPT_DATA)) {
+                    break;
+                }
+                position++;
+            }
+            if (position > start) {
+                text(buffer, start, position);
+            }
+            if (position == limit) {
+                if (!fill(MAX_LOOK_AHEAD)) {
+                    return false;
+                }
+                continue;
+            }
+            fill(MAX_LOOK_AHEAD);
+
+            char c = buffer[position];
+            if (c == 0) {
+                position++;
+                text(String.valueOf(REPLACEMENT));
+            } else if (c == '&') {
+                position++;
+                String reference = readCharacterReference(false);
+                text(reference != null ? reference : "&");
+            } else if (c == '-') {
+                // "-->" ends the escaped script data
+                if (escape != 0 && matches("-->")) {
+                    escape = 0;
+                    position += 3;
+                    text("-->");
+                } else {
+                    position++;
+                    text("-");
+                }
+            } else if (escape != 2 && charAt(1) == '/' && isEndTag(endTag, 2)) {
+                position += 2;
+                readTag(false);
+                return true;
+            } else if (state == SCRIPT_DATA && escape == 0 && matches("<!--")) {
+                escape = 1;
+                position += 4;
+                text("<!--");
+            } else if (state == SCRIPT_DATA && escape == 1 && isEndTag("script", 1)) {
+                escape = 2;
+                position++;
+                text("<");
+            } else if (escape == 2 && charAt(1) == '/' && isEndTag("script", 2)) {
+                escape = 1;
+                position += 2;
+                text("</");
+            } else if (state == RCDATA && isAsciiLetter(charAt(1)) && !isEndTagAhead(endTag)) {
+                // jsoup ends the element at a start tag if its end tag is not in the read ahead characters
+                endText();
+                handler.endTag(endTag);
+                position++;
+                readTag(true);
+                return true;
+            } else {
+                position++;
+                text("<");
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of the document as text
+     *
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private void readText() throws IOException {
+        while (!handler.isDone() && fill(1)) {
+            int start = position;
+            while (position < limit && buffer[position] != 0) {
+                position++;
+            }
+            if (position > start) {
+                text(buffer, start, position);
+            }
+            if (position < limit) {
+                position++;
+                text(String.valueOf(REPLACEMENT));
+            }
+        }
+    }
+
+    /**
+     * Checks whether the end tag of the element (in lower or in upper case) is in the buffered characters following
+     * the position, the buffer is filled as the jsoup reader buffers the document
+     *
+     * @param tagName The element name
+     * @return true if the end tag is found
+     * @throws IOException If the document cannot be read
+     */
+    private boolean isEndTagAhead(String tagName) throws IOException {
+        fill(BUFFER_SIZE);
+        String lowerCase = "</" + tagName;
+        String upperCase = lowerCase.toUpperCase(Locale.ROOT);
+        for (int i = position + 1; i <= limit - lowerCase.length(); i++) {
+            if (regionMatches(i, lowerCase) || regionMatches(i, upperCase)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean regionMatches(int start, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the name of the element follows the position and it is followed by a whitespace, "/" or "&gt;"
+     *
+     * @param tagName The element name
+     * @param offset  The offset of the name from the position
+     * @return true if the name is matched
+     */
+    private boolean isEndTag(String tagName, int offset) {
+        for (int i = 0; i < tagName.length(); i++) {
+            if (toLowerCase(charAt(offset + i)) != tagName.charAt(i)) {
+                return false;
+            }
+        }
+        int next = charAt(offset + tagName.length());
+
+        return isWhitespace(next) || next == '/' || next == '>';
+    }
+
+    /**
+     * Reads a start or an end tag following its "&lt;" or "&lt;/", the attributes of an end tag are dropped
+     *
+     * @param start true for a start tag
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private void readTag(boolean start) throws IOException {
+        tag.clear();
+        name.setLength(0);
+
+        // the tag name
+        int c;
+        while (true) {
+            c = read();
+            if (c == EOF) {
+                return;
+            } else if (isWhitespace(c)) {
+                break;
+            } else if (c == '/' || c == '>') {
+                break;
+            } else if (c == '<') {
+                // the jsoup tokenizer emits the tag and reads the "<" again
+                position--;
+                emitTag(start);
+                return;
+            } else if (c != 0) {
+                name.append(toLowerCase(c));
+            }
+        }
+        tag.name = name.toString();
+
+        // the attributes
+        while (true) {
+            if (c == '>') {
+                emitTag(start);
+                return;
+            } else if (c == '/') {
+                c = read();
+                if (c == '>') {
+                    tag.selfClosing = true;
+                    emitTag(start);
+                    return;
+                }
+                continue;
+            } else if (c == EOF) {
+                return;
+            } else if (isWhitespace(c)) {
+                c = read();
+                continue;
+            } else if (c == '<') {
+                position--;
+                emitTag(start);
+                return;
+            }
+
+            c = readAttribute(c);
+        }
+    }
+
+    /**
+     * Reads an attribute starting with the given character
+     *
+     * @param first The first character of the attribute name
+     * @return The character following the attribute
+     * @throws IOException If the document cannot be read
+     */
+    private int readAttribute(int first) throws IOException {
+        StringBuilder attributeName = tag.newAttribute();
+        attributeName.append(toLowerCase(first));
+
+        int c;
+        while (true) {
+            c = read();
+            if (c == EOF || isWhitespace(c) || c == '/' || c == '>' || c == '=') {
+                break;
+            }
+            attributeName.append(toLowerCase(c));
+        }
+        while (isWhitespace(c)) {
+            c = read();
+        }
+        if (c != '=') {
+            tag.endAttribute();
+            return c;
+        }
+
+        // the value
+        c = read();
+        while (isWhitespace(c)) {
+            c = read();
+        }
+        StringBuilder value = tag.value();
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while (true) {
+                c = read();
+                if (c == EOF || c == quote) {
+                    break;
+                }
+                appendValue(value, c);
+            }
+            tag.endAttribute();
+
+            return c == EOF ? EOF : read();
+        } else if (c == '>') {
+            tag.endAttribute();
+            return c;
+        }
+
+        while (c != EOF && !isWhitespace(c) && c != '>') {
+            appendValue(value, c);
+            c = read();
+        }
+        tag.endAttribute();
+
+        return c;
+    }
+
+    private void appendValue(StringBuilder value, int c) throws IOException {
+        String reference = null;
+        if (c == '&') {
+            fill(MAX_LOOK_AHEAD);
+            reference = readCharacterReference(true);
+        }
+        if (value.length() < MAX_ATTRIBUTE_VALUE_LENGTH) {
+            if (reference != null) {
+                value.append(reference);
+            } else if (c != 0) {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private void emitTag(boolean start) throws IOException {
+        endText();
+        if (tag.name == null) {
+            tag.name = name.toString();
+        }
+        if (start) {
+            handler.startTag(tag);
+        } else {
+            handler.endTag(tag.name);
+        }
+    }
+
+    /**
+     * Reads a character reference following its "&amp;" the way the jsoup tokenizer does
+     * <p>
+     * A named reference without ";" is decoded if it is a base entity (e.g. "&amp;amp"), but not in an attribute value
+     * if it is followed by a letter, a digit, "=", "-" or "_". A numeric reference is decoded with the windows-1252
+     * replacements of the code points 0x80 to 0x9F.
+     *
+     * @param inAttribute true in an attribute value
+     * @return The referenced characters or null if it is not a reference
+     */
+    private String readCharacterReference(boolean inAttribute) {
+        int c = charAt(0);
+        if (c == '#') {
+            boolean hex = charAt(1) == 'x' || charAt(1) == 'X';
+            int offset = hex ? 2 : 1;
+            int end = offset;
+            long value = 0;
+            while (end < MAX_LOOK_AHEAD) {
+                int digit = Character.digit(charAt(end), hex ? 16 : 10);
+                if (digit < 0 || charAt(end) > 'z') {
+                    break;
+                }
+                if (value <= Character.MAX_CODE_POINT) {
+                    value = value * (hex ? 16 : 10) + digit;
+                }
+                end++;
+            }
+            if (end == offset) {
+                return null;
+            }
+            position += charAt(end) == ';' ? end + 1 : end;
+
+            if (value > Character.MAX_CODE_POINT || (value >= 0xD800 && value <= 0xDFFF)) {
+                return String.valueOf(REPLACEMENT);
+            } else if (value >= 0x80 && value <= 0x9F) {
+                return String.valueOf(WINDOWS_1252[(int) value - 0x80]);
+            }
+
+            return new String(Character.toChars((int) value));
+        }
+
+        // the letters then the digits
+        int end = 0;
+        while (end < MAX_LOOK_AHEAD && charAt(end) != EOF && Character.isLetter(charAt(end))) {
+            end++;
+        }
+        while (end < MAX_LOOK_AHEAD && charAt(end) != EOF && Character.isDigit(charAt(end))) {
+            end++;
+        }
+        if (end == 0 || end == MAX_LOOK_AHEAD) {
+            return null;
+        }
+
+        String entityName = new String(buffer, position, end);
+        boolean terminated = charAt(end) == ';';
+        if (!Entities.isBaseNamedEntity(entityName) && !(terminated && Entities.isNamedEntity(entityName))) {
+            return null;
+        }
+        int next = charAt(end);
+        if (inAttribute && next != EOF && (Character.isLetterOrDigit(next) || next == '=' || next == '-' || next == '_')) {
+            return null;
+        }
+        position += terminated ? end + 1 : end;
+
+        return Entities.getByName(entityName);
+    }
+
+    /**
+     * Reads a document type declaration following its "&lt;!DOCTYPE"
+     * <p>
+     * A declaration without a name or with a missing identifier forces the quirks mode.
+     *
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private void readDoctype() throws IOException {
+        name.setLength(0);
+        publicId.setLength(0);
+        systemId.setLength(0);
+        boolean forceQuirks = false;
+
+        int c = read();
+        if (!isWhitespace(c) && c != '>' && c != EOF) {
+            // the jsoup tokenizer drops the character following the keyword
+            c = read();
+        }
+        c = skipWhitespace(c);
+        if (c == '>' || c == EOF) {
+            forceQuirks = true;
+        }
+
+        // the name
+        while (c != EOF && c != '>' && !isWhitespace(c)) {
+            if (c != 0) {
+                name.append(toLowerCase(c));
+            }
+            c = read();
+        }
+        c = skipWhitespace(c);
+
+        if (c == EOF) {
+            forceQuirks = true;
+        } else if (c != '>') {
+            position--;
+            fill(MAX_LOOK_AHEAD);
+            boolean isPublic = matchesIgnoreCase("PUBLIC");
+            if (isPublic || matchesIgnoreCase("SYSTEM")) {
+                position += 6;
+                c = skipWhitespace(read());
+                if (isPublic && isQuote(c)) {
+                    c = readIdentifier(c, publicId);
+                    if (isQuote(c)) {
+                        c = readIdentifier(c, systemId);
+                    } else if (c != '>' && c != ABRUPT) {
+                        forceQuirks = true;
+                    }
+                } else if (!isPublic && isQuote(c)) {
+                    c = readIdentifier(c, systemId);
+                } else {
+                    forceQuirks = true;
+                }
+            } else {
+                forceQuirks = true;
+                c = read();
+            }
+
+            if (c == ABRUPT || c == EOF) {
+                forceQuirks = true;
+            } else if (c != '>') {
+                // bogus document type
+                skipTo('>');
+            }
+        }
+
+        endText();
+        handler.doctype(name.toString(), publicId.toString(), systemId.toString(), forceQuirks);
+    }
+
+    /**
+     * Reads a quoted identifier of the document type declaration
+     *
+     * @param quote      The opening quote
+     * @param identifier The identifier
+     * @return The character following the identifier and the whitespace or {@link #ABRUPT} if the declaration ended
+     * in the identifier
+     * @throws IOException If the document cannot be read
+     */
+    private int readIdentifier(int quote, StringBuilder identifier) throws IOException {
+        while (true) {
+            int c = read();
+            if (c == quote) {
+                return skipWhitespace(read());
+            } else if (c == '>' || c == EOF) {
+                return ABRUPT;
+            }
+            identifier.append((char) c);
+        }
+    }
+
+    private int skipWhitespace(int c) throws IOException {
+        while (isWhitespace(c)) {
+            c = read();
+        }
+
+        return c;
+    }
+
+    /**
+     * Skips a comment following its "&lt;!--", it ends at "--&gt;" or "--!&gt;" (or "&gt;" right after the start)
+     *
+     * @throws IOException If the document cannot be read
+     */
+    private void skipComment() throws IOException {
+        endText();
+        fill(2);
+        if (matches(">")) {
+            position++;
+            return;
+        } else if (matches("->")) {
+            position += 2;
+            return;
+        }
+
+        int dashes = 0;
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == '-') {
+                dashes++;
+            } else if (c == '>' && dashes >= 2) {
+                return;
+            } else if (c == '!' && dashes >= 2 && charAt(0) == '>') {
+                position++;
+                return;
+            } else {
+                dashes = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads a CDATA section following its "&lt;![CDATA[" as text
+     *
+     * @throws IOException If the document cannot be read or the handler fails
+     */
+    private void readCdata() throws IOException {
+        // the section is a text token
+        endText();
+        while (fill(3)) {
+            int start = position;
+            while (position < limit && buffer[position] != ']') {
+                position++;
+            }
+            if (position > start) {
+                text(buffer, start, position);
+            }
+            if (fill(3) && matches("]]>")) {
+                position += 3;
+                endText();
+                return;
+            } else if (position < limit) {
+                position++;
+                text("]");
+            }
+        }
+    }
+
+    /**
+     * Skips the characters until the given character (inclusive)
+     *
+     * @param end The end character
+     * @throws IOException If the document cannot be read
+     */
+    private void skipTo(char end) throws IOException {
+        endText();
+        int c;
+        do {
+            c = read();
+        } while (c != EOF && c != end);
+    }
+
+    private void text(String text) throws IOException {
+        char[] chars = text.toCharArray();
+        text(chars, 0, chars.length);
+    }
+
+    /**
+     * Passes characters of the current text token to the handler
+     *
+     * @param chars The characters
+     * @param start The start index
+     * @param end   The end index (exclusive)
+     * @throws IOException If the handler fails
+     */
+    private void text(char[] chars, int start, int end) throws IOException {
+        if (end - start == 1 && chars[start] == 0) {
+            if (!inText) {
+                // the token may be a single NUL
+                inText = true;
+                pendingNul = true;
+                return;
+            }
+            chars = new char[]{REPLACEMENT};
+            start = 0;
+            end = 1;
+        }
+        if (pendingNul) {
+            pendingNul = false;
+            handler.text(new char[]{REPLACEMENT}, 0, 1);
+        }
+        inText = true;
+        handler.text(chars, start, end);
+    }
+
+    /**
+     * Ends the current text token before another token
+     *
+     * @throws IOException If the handler fails
+     */
+    private void endText() throws IOException {
+        if (pendingNul) {
+            pendingNul = false;
+            handler.text(new char[]{0}, 0, 1);
+        }
+        inText = false;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill(1)) {
+            return EOF;
+        }
+
+        return buffer[position++];
+    }
+
+    /**
+     * Gets the character at the offset from the position, the look ahead must be filled before
+     *
+     * @param offset The offset
+     * @return The character or {@link #EOF}
+     */
+    private int charAt(int offset) {
+        return position + offset < limit ? buffer[position + offset] : EOF;
+    }
+
+    private boolean matches(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.toUpperCase(charAt(i)) != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Fills the buffer so at least the given number of characters follow the position (unless the document ends)
+     *
+     * @param count The number of characters
+     * @return true if at least one character follows the position
+     * @throws IOException If the document cannot be read
+     */
+    private boolean fill(int count) throws IOException {
+        if (limit - position < count && !endOfInput) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < count && !endOfInput) {
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    limit += read;
+                }
+            }
+        }
+
+        return position < limit;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isQuote(int c) {
+        return c == '"' || c == '\'';
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static char toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : (char) c;
+    }
+
+    /**
+     * Receives the tokens of the document
+     */
+    interface Handler {
+
+        /**
+         * Receives a document type declaration
+         *
+         * @param name        The lower cased name
+         * @param publicId    Public identifier (empty if missing)
+         * @param systemId    System identifier (empty if missing)
+         * @param forceQuirks true if the declaration is malformed and forces the quirks mode
+         * @throws IOException If the handling fails
+         */
+        void doctype(String name, String publicId, String systemId, boolean forceQuirks) throws IOException;
+
+        /**
+         * Receives a start tag, the tag is reused for the next start tag
+         *
+         * @param tag The start tag
+         * @throws IOException If the handling fails
+         */
+        void startTag(Tag tag) throws IOException;
+
+        /**
+         * Receives an end tag
+         *
+         * @param name The lower cased name
+         * @throws IOException If the handling fails
+         */
+        void endTag(String name) throws IOException;
+
+        /**
+         * Receives character data, the characters are valid during the call only
+         *
+         * @param chars The characters
+         * @param start The start index (inclusive)
+         * @param end   The end index (exclusive)
+         * @throws IOException If the handling fails
+         */
+        void text(char[] chars, int start, int end) throws IOException;
+
+        /**
+         * Receives the end of the document
+         *
+         * @throws IOException If the handling fails
+         */
+        void end() throws IOException;
+
+        /**
+         * Checks whether the handler needs no more tokens
+         *
+         * @return true if the rest of the document is not read
+         */
+        boolean isDone();
+    }
+
+    /**
+     * A start tag with its lower cased name and attributes, the first one of the duplicate attributes is kept
+     */
+    static final class Tag {
+        private String name;
+        private boolean selfClosing;
+        private int attributeCount;
+        private final List<StringBuilder> attributeNames = new ArrayList<>();
+        private final List<StringBuilder> attributeValues = new ArrayList<>();
+
+        Tag() {
+        }
+
+        /**
+         * Initiates a start tag without attributes, e.g. for an element implied by the tree builder
+         *
+         * @param name The lower cased name
+         */
+        Tag(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Renames the tag, e.g. an "image" start tag is handled as "img"
+         *
+         * @param name The lower cased name
+         */
+        void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds an attribute to a tag built by the tree builder, e.g. to an input of an expanded isindex
+         *
+         * @param attributeName The lower cased attribute name
+         * @param value         The attribute value
+         */
+        void addAttribute(String attributeName, String value) {
+            newAttribute().append(attributeName);
+            value().append(value);
+            endAttribute();
+        }
+
+        private void clear() {
+            name = null;
+            selfClosing = false;
+            attributeCount = 0;
+        }
+
+        private StringBuilder newAttribute() {
+            if (attributeCount == attributeNames.size()) {
+                attributeNames.add(new StringBuilder());
+                attributeValues.add(new StringBuilder());
+            }
+            attributeNames.get(attributeCount).setLength(0);
+            attributeValues.get(attributeCount).setLength(0);
+
+            return attributeNames.get(attributeCount);
+        }
+
+        private StringBuilder value() {
+            return attributeValues.get(attributeCount);
+        }
+
+        private void endAttribute() {
+            StringBuilder attributeName = attributeNames.get(attributeCount);
+            for (int i = 0; i < attributeCount; i++) {
+                if (contentEquals(attributeNames.get(i), attributeName)) {
+                    // a duplicate attribute is dropped
+                    return;
+                }
+            }
+            attributeCount++;
+        }
+
+        /**
+         * Gets the lower cased name of the tag
+         *
+         * @return The tag name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Checks whether the tag ends with "/&gt;"
+         *
+         * @return true for a self-closing tag
+         */
+        boolean isSelfClosing() {
+            return selfClosing;
+        }
+
+        /**
+         * Gets the number of the attributes
+         *
+         * @return The number of the attributes
+         */
+        int getAttributeCount() {
+            return attributeCount;
+        }
+
+        /**
+         * Gets the name of an attribute
+         *
+         * @param index The attribute index
+         * @return The lower cased attribute name
+         */
+        String getAttributeName(int index) {
+            return attributeNames.get(index).toString();
+        }
+
+        /**
+         * Gets the value of an attribute
+         *
+         * @param index The attribute index
+         * @return The attribute value
+         */
+        String getAttributeValue(int index) {
+            return attributeValues.get(index).toString();
+        }
+
+        /**
+         * Gets the value of the attribute
+         *
+         * @param attributeName The lower cased attribute name
+         * @return The attribute value or null if the tag does not have it
+         */
+        String attr(String attributeName) {
+            for (int i = 0; i < attributeCount; i++) {
+                if (contentEquals(attributeNames.get(i), attributeName)) {
+                    return attributeValues.get(i).toString();
+                }
+            }
+
+            return null;
+        }
+
+        private static boolean contentEquals(CharSequence first, CharSequence second) {
+            if (first.length() != second.length()) {
+                return false;
+            }
+            for (int i = 0; i < first.length(); i++) {
+                if (first.charAt(i) != second.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
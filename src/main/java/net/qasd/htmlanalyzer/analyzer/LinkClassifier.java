@@ -0,0 +1,283 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.util.PublicSuffixList;
+
+/**
+ * Classifies the links of a page as same-host, same-site or third-party
+ * <p>
+ * The host is extracted by scanning the link characters once, no substring or regex matcher is created. A link
+ * without a host (relative, "mailto:", "data:" etc.) is a same-host link. Two hosts are on the same site if their
+ * registrable domains (eTLD+1) are the same, e.g. "cdn.example.com" and "www.example.com". The host names of the
+ * third-party links are interned by the classifier, so a host string is created only when a host is seen first. An
+ * instance is not thread safe and should be used for one page only.
+ */
+public class LinkClassifier {
+
+    /**
+     * The link types
+     */
+    public enum LinkType {
+        SAME_HOST,
+        SAME_SITE,
+        THIRD_PARTY
+    }
+
+    private static final long NO_HOST = -1;
+
+    private final String host;
+
+    // the registrable domain of the page or null if it has none (e.g. an ip address)
+    private final String registrableDomain;
+
+    private final PublicSuffixList publicSuffixList;
+
+    // the start and the end of the host of the last classified link
+    private int hostStart;
+    private int hostEnd;
+
+    // open addressing table of the interned third-party hosts
+    private String[] hosts = new String[16];
+    private int hostCount = 0;
+
+    private LinkClassifier(String host, PublicSuffixList publicSuffixList) {
+        this.host = stripTrailingDot(host.toLowerCase());
+        this.publicSuffixList = publicSuffixList;
+        this.registrableDomain = publicSuffixList.getRegistrableDomain(this.host);
+    }
+
+    /**
+     * Initiates a new instance of LinkClassifier with the default public suffix list
+     *
+     * @param host The host of the page
+     * @return A new instance of LinkClassifier
+     */
+    public static LinkClassifier newInstance(String host) {
+        return new LinkClassifier(host, PublicSuffixList.getDefault());
+    }
+
+    /**
+     * Initiates a new instance of LinkClassifier
+     *
+     * @param host             The host of the page
+     * @param publicSuffixList The public suffix list
+     * @return A new instance of LinkClassifier
+     */
+    public static LinkClassifier newInstance(String host, PublicSuffixList publicSuffixList) {
+        return new LinkClassifier(host, publicSuffixList);
+    }
+
+    /**
+     * Classifies the link
+     *
+     * @param link The link (the href or src attribute value)
+     * @return The link type
+     */
+    public LinkType classify(CharSequence link) {
+        long range = findHost(link);
+        if (range == NO_HOST) {
+            return LinkType.SAME_HOST;
+        }
+
+        hostStart = (int) (range >>> 32);
+        hostEnd = (int) range;
+        if (regionEquals(host, link, hostStart, hostEnd)) {
+            return LinkType.SAME_HOST;
+        }
+
+        if (registrableDomain != null) {
+            int domainStart = publicSuffixList.registrableDomainStart(link, hostStart, hostEnd);
+            if (domainStart >= 0 && regionEquals(registrableDomain, link, domainStart, hostEnd)) {
+                return LinkType.SAME_SITE;
+            }
+        }
+
+        return LinkType.THIRD_PARTY;
+    }
+
+    /**
+     * Gets the host of the last classified link which is not a same-host link
+     *
+     * @param link The last classified link
+     * @return The host name in lower case, the same instance for the same host
+     */
+    public String getHost(CharSequence link) {
+        int mask = hosts.length - 1;
+        int index = hash(link, hostStart, hostEnd) & mask;
+        while (hosts[index] != null) {
+            if (regionEquals(hosts[index], link, hostStart, hostEnd)) {
+                return hosts[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        String linkHost = link.subSequence(hostStart, hostEnd).toString().toLowerCase();
+        hosts[index] = linkHost;
+        if (++hostCount * 2 > hosts.length) {
+            rehash();
+        }
+
+        return linkHost;
+    }
+
+    /**
+     * Finds the host of the link
+     * <p>
+     * The host is between the "//" following the scheme (or at the start) and the first "/", "?", "#" or "\"; the
+     * user info, the port and the trailing dot are excluded.
+     *
+     * @param link The link
+     * @return The start index in the high and the end index in the low 32 bits or {@link #NO_HOST}
+     */
+    static long findHost(CharSequence link) {
+        int start = 0;
+        int end = link.length();
+        // the attribute values may have surrounding whitespace
+        while (start < end && link.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && link.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int authorityStart;
+        if (startsWithSlashes(link, start, end)) {
+            authorityStart = start + 2;
+        } else {
+            int schemeEnd = findSchemeEnd(link, start, end);
+            if (schemeEnd < 0 || !startsWithSlashes(link, schemeEnd + 1, end)) {
+                // relative link or a scheme without authority (e.g. mailto:, data:, javascript:)
+                return NO_HOST;
+            }
+            authorityStart = schemeEnd + 3;
+        }
+
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end) {
+            char c = link.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#' || c == '\\') {
+                break;
+            }
+            authorityEnd++;
+        }
+
+        // skip the user info
+        int hostStart = authorityStart;
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            if (link.charAt(i) == '@') {
+                hostStart = i + 1;
+                break;
+            }
+        }
+
+        int hostEnd = authorityEnd;
+        if (hostStart < hostEnd && link.charAt(hostStart) == '[') {
+            // ipv6 literal, the port follows the closing bracket
+            for (int i = hostStart; i < authorityEnd; i++) {
+                if (link.charAt(i) == ']') {
+                    hostEnd = i + 1;
+                    break;
+                }
+            }
+        } else {
+            for (int i = hostStart; i < authorityEnd; i++) {
+                if (link.charAt(i) == ':') {
+                    hostEnd = i;
+                    break;
+                }
+            }
+        }
+        if (hostEnd > hostStart && link.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+
+        if (hostStart >= hostEnd) {
+            return NO_HOST;
+        }
+
+        return ((long) hostStart << 32) | hostEnd;
+    }
+
+    /**
+     * Finds the colon ending the scheme (a letter followed by letters, digits, "+", "-" or ".")
+     *
+     * @param link  The link
+     * @param start The start index
+     * @param end   The end index
+     * @return The index of the colon or -1 if the link has no scheme
+     */
+    private static int findSchemeEnd(CharSequence link, int start, int end) {
+        if (start >= end || !isLetter(link.charAt(start))) {
+            return -1;
+        }
+        for (int i = start + 1; i < end; i++) {
+            char c = link.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            if (!isLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean startsWithSlashes(CharSequence link, int start, int end) {
+        return start + 1 < end && link.charAt(start) == '/' && link.charAt(start + 1) == '/';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Compares the lower case string with the region ignoring the case
+     *
+     * @param lowerCase The lower case string
+     * @param chars     The characters
+     * @param start     The start index of the region
+     * @param end       The end index of the region
+     * @return true if they are equal
+     */
+    private static boolean regionEquals(String lowerCase, CharSequence chars, int start, int end) {
+        if (lowerCase.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            char c = chars.charAt(start + i);
+            if (lowerCase.charAt(i) != c && lowerCase.charAt(i) != Character.toLowerCase(c)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(chars.charAt(i));
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private void rehash() {
+        String[] interned = hosts;
+        hosts = new String[interned.length * 2];
+        int mask = hosts.length - 1;
+        for (String internedHost : interned) {
+            if (internedHost != null) {
+                int index = hash(internedHost, 0, internedHost.length()) & mask;
+                while (hosts[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                hosts[index] = internedHost;
+            }
+        }
+    }
+
+    private static String stripTrailingDot(String host) {
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+}
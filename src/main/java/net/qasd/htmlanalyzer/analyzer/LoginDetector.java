@@ -1,24 +1,42 @@
 package net.qasd.htmlanalyzer.analyzer;
 
+import net.qasd.htmlanalyzer.util.DictionaryStore;
 import net.qasd.htmlanalyzer.util.DictionaryUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class LoginDetector {
 
     private static final String FORM_METHOD_POST = "POST";
 
+    private final DictionaryStore dictionaryStore;
+
+    private LoginDetector(DictionaryStore dictionaryStore) {
+        this.dictionaryStore = dictionaryStore;
+    }
+
     /**
-     * Initiates a new instance of LoginDetector
+     * Initiates a new instance of LoginDetector using the shared dictionaries
      *
      * @return A new instance of LoginDetector
      */
     public static LoginDetector newInstance() {
-        return new LoginDetector();
+        return new LoginDetector(DictionaryStore.getDefault());
+    }
+
+    /**
+     * Initiates a new instance of LoginDetector using the dictionaries of the given store
+     *
+     * @param dictionaryStore Dictionary store
+     * @return A new instance of LoginDetector
+     */
+    public static LoginDetector newInstance(DictionaryStore dictionaryStore) {
+        return new LoginDetector(dictionaryStore);
     }
 
     /**
@@ -32,10 +50,28 @@ public class LoginDetector {
         // collect all form elements
         Elements formElements = document.select("form");
 
+        List<FormCandidate> formCandidates = new ArrayList<>(formElements.size());
         for (Element element : formElements) {
-            if (existsPasswordField(element)) {
+            formCandidates.add(FormCandidate.of(element));
+        }
+
+        return hasLoginForm(formCandidates);
+    }
+
+    /**
+     * Checks whether any of the collected form candidates is a login form
+     * <p>
+     * The candidates are evaluated in the document order and the evaluation stops at the first login form
+     *
+     * @param formCandidates Form candidates collected from the html document
+     * @return true if any candidate is a login form
+     * @throws IOException If any io action fails for the dictionary loading
+     */
+    public boolean hasLoginForm(List<FormCandidate> formCandidates) throws IOException {
+        for (FormCandidate candidate : formCandidates) {
+            if (existsPasswordField(candidate)) {
                 return true;
-            } else if (isTwoStepLogin(element)) {
+            } else if (isTwoStepLogin(candidate)) {
                 return true;
             }
         }
@@ -50,9 +86,18 @@ public class LoginDetector {
      * @return true If the form has ONLY one password field
      */
     protected boolean existsPasswordField(Element formElement) {
+        return existsPasswordField(FormCandidate.of(formElement));
+    }
+
+    /**
+     * Checks whether the form candidate has ONLY one password field
+     *
+     * @param formCandidate Form candidate
+     * @return true If the form has ONLY one password field
+     */
+    protected boolean existsPasswordField(FormCandidate formCandidate) {
         // if there is ONLY one password field then assume it as login form
-        Elements passwordElements = formElement.select("input[type=password]");
-        if (passwordElements.size() == 1) {
+        if (formCandidate.getPasswordFieldCount() == 1) {
             return true;
         }
         //else might be a registration form
@@ -75,26 +120,34 @@ public class LoginDetector {
      * @throws IOException If any io action fails for the dictionary loading
      */
     protected boolean isTwoStepLogin(Element formElement) throws IOException {
-        String formMethod = formElement.attr("method");
-        String formAction = formElement.attr("action");
+        return isTwoStepLogin(FormCandidate.of(formElement));
+    }
+
+    /**
+     * Checks whether the form candidate is a two step login form
+     *
+     * @param formCandidate Form candidate
+     * @return true If the form is a two step login form
+     * @throws IOException If any io action fails for the dictionary loading
+     * @see #isTwoStepLogin(Element)
+     */
+    protected boolean isTwoStepLogin(FormCandidate formCandidate) throws IOException {
+        String formMethod = formCandidate.getMethod();
+        String formAction = formCandidate.getAction();
 
         if (!formMethod.trim().isEmpty()
             && !formAction.trim().isEmpty()) {
             // the method is POST
             if (formMethod.equalsIgnoreCase(FORM_METHOD_POST)) {
                 // if action is allowed
-                if (existsInDictionary(formAction, DictionaryUtil.getDictionaryFromResourceFile(DictionaryUtil.FILE_NAME_LOGIN_ACTION))) {
+                if (dictionaryStore.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION).matches(formAction)) {
                     // contains ONLY one text field
-                    Elements textElements = formElement.select("input[type=text]");
-                    if (textElements.size() == 1) {
+                    if (formCandidate.getTextFieldCount() == 1) {
                         // get the name of the field
-                        String textElementName = textElements.get(0).attr("name");
-                        if (textElementName.trim().isEmpty()) {
-                            textElementName = textElements.get(0).id();
-                        }
+                        String textElementName = formCandidate.getTextFieldName();
                         if (!textElementName.trim().isEmpty()) {
                             // if field name is allowed
-                            if (existsInDictionary(textElementName, DictionaryUtil.getDictionaryFromResourceFile(DictionaryUtil.FILE_NAME_USERNAME))) {
+                            if (dictionaryStore.getDictionary(DictionaryUtil.FILE_NAME_USERNAME).matches(textElementName)) {
                                 return true;
                             }
                         }
@@ -107,22 +160,100 @@ public class LoginDetector {
     }
 
     /**
-     * Checks whether the given text exists in the dictionary
-     *
-     * @param text       Text to be looked up
-     * @param dictionary List of dictionary items
-     * @return true If the given text is matched in the dictionary
+     * The form properties needed by the login detection
+     * <p>
+     * A candidate can be built from a form element or collected while traversing the document
      */
-    protected boolean existsInDictionary(String text, List<String> dictionary) {
-        // normalize it for the dictionary look up
-        text = text.replaceAll("[^A-Za-z ]", "").toLowerCase();
+    public static class FormCandidate {
+        private final String method;
+        private final String action;
+        private int passwordFieldCount = 0;
+        private int textFieldCount = 0;
+        private String textFieldName = "";
 
-        for (String item : dictionary) {
-            if (text.contains(item.toLowerCase())) {
-                return true;
+        public FormCandidate(String method, String action) {
+            this.method = method;
+            this.action = action;
+        }
+
+        /**
+         * Builds a form candidate from the given form element
+         *
+         * @param formElement Form element
+         * @return Form candidate
+         */
+        public static FormCandidate of(Element formElement) {
+            FormCandidate candidate = new FormCandidate(formElement.attr("method"), formElement.attr("action"));
+            for (Element input : formElement.select("input[type=password], input[type=text]")) {
+                candidate.addInput(input);
             }
+
+            return candidate;
         }
 
-        return false;
+        /**
+         * Adds a descendant input element of the form
+         *
+         * @param input Input element
+         */
+        public void addInput(Element input) {
+            addInput(input.attr("type"), input.attr("name"), input.id());
+        }
+
+        /**
+         * Adds a descendant input element of the form by its attributes
+         *
+         * @param type The type attribute (empty if missing)
+         * @param name The name attribute (empty if missing)
+         * @param id   The id attribute (empty if missing)
+         */
+        public void addInput(String type, String name, String id) {
+            type = type.trim();
+            if (type.equalsIgnoreCase("password")) {
+                passwordFieldCount++;
+            } else if (type.equalsIgnoreCase("text")) {
+                // the name of the first text field is used (if name is not defined then id)
+                if (textFieldCount == 0) {
+                    textFieldName = name;
+                    if (textFieldName.trim().isEmpty()) {
+                        textFieldName = id;
+                    }
+                }
+                textFieldCount++;
+            }
+        }
+
+        /**
+         * Adds the inputs collected by another candidate, e.g. for a part of the form
+         *
+         * @param inputs The candidate having the inputs, they follow the inputs of this candidate in the form
+         */
+        public void addInputs(FormCandidate inputs) {
+            if (textFieldCount == 0) {
+                textFieldName = inputs.textFieldName;
+            }
+            passwordFieldCount += inputs.passwordFieldCount;
+            textFieldCount += inputs.textFieldCount;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public int getPasswordFieldCount() {
+            return passwordFieldCount;
+        }
+
+        public int getTextFieldCount() {
+            return textFieldCount;
+        }
+
+        public String getTextFieldName() {
+            return textFieldName;
+        }
     }
 }
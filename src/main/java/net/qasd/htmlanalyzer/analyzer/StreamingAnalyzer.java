@@ -0,0 +1,223 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.util.MutableInteger;
+import org.jsoup.internal.StringUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the built-in analyzers on the characters of a document without building its DOM
+ * <p>
+ * The document is tokenized and its tree construction is run on the stack of the open elements only, the analyzers
+ * get the elements as they are created; the memory depends on the nesting depth of the document and not on its
+ * length. The values are the same as the ones of {@link AnalyzerEngine} on the jsoup document, except the order of
+ * the external hosts may differ when the links are moved by the tree construction (e.g. out of a table). Only the
+ * built-in analyzers are supported, as the other ones visit the nodes. An instance is immutable and can be shared by
+ * the threads.
+ */
+public class StreamingAnalyzer {
+
+    private static final StreamingAnalyzer defaultAnalyzer = newInstance(getBuiltinNames());
+
+    private final Set<String> names;
+
+    private final boolean headOnly;
+
+    private StreamingAnalyzer(Collection<Analyzer> analyzers) {
+        Set<String> analyzerNames = new LinkedHashSet<>();
+        boolean allHeadOnly = true;
+        for (Analyzer analyzer : analyzers) {
+            analyzerNames.add(analyzer.getName());
+            allHeadOnly &= analyzer.isHeadOnly();
+        }
+        this.names = Collections.unmodifiableSet(analyzerNames);
+        this.headOnly = allHeadOnly;
+    }
+
+    /**
+     * Gets the streaming analyzer running all built-in analyzers
+     *
+     * @return The default streaming analyzer
+     */
+    public static StreamingAnalyzer getDefault() {
+        return defaultAnalyzer;
+    }
+
+    /**
+     * Initiates a new instance of StreamingAnalyzer for the selected built-in analyzers
+     *
+     * @param names The names of the selected analyzers, their dependencies are selected too
+     * @return A new instance of StreamingAnalyzer
+     * @throws AnalyzerRegistry.UnknownAnalyzerException If an analyzer is not a built-in analyzer
+     */
+    public static StreamingAnalyzer newInstance(Collection<String> names) {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        for (Analyzer analyzer : BuiltinAnalyzers.getAll()) {
+            registry.register(analyzer);
+        }
+
+        return new StreamingAnalyzer(registry.resolve(names));
+    }
+
+    private static Set<String> getBuiltinNames() {
+        Set<String> builtinNames = new LinkedHashSet<>();
+        for (Analyzer analyzer : BuiltinAnalyzers.getAll()) {
+            builtinNames.add(analyzer.getName());
+        }
+
+        return builtinNames;
+    }
+
+    /**
+     * Gets the names of the analyzers run by the streaming analyzer
+     *
+     * @return The analyzer names in the dependency order, including the dependencies
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Checks whether the streaming analyzer only reads the head of the documents
+     *
+     * @return true if all analyzers need only the head
+     */
+    public boolean isHeadOnly() {
+        return headOnly;
+    }
+
+    /**
+     * Reads the document and sets the values of the result
+     * <p>
+     * The reader is read until the end of the document, or until the body starts if only the head is needed; it is
+     * not closed.
+     *
+     * @param reader The reader of the html document
+     * @param url    The url of the document
+     * @param result Html analyzer result
+     * @throws IOException If the document cannot be read or the login detection fails for the dictionary loading
+     */
+    public void analyze(Reader reader, URL url, HtmlAnalyzerResult result) throws IOException {
+        Collector collector = new Collector(url.getHost());
+        new StreamingTreeBuilder(collector, headOnly).build(reader);
+        if (collector.loginFailure != null) {
+            throw collector.loginFailure;
+        }
+
+        if (names.contains(BuiltinAnalyzers.DOCTYPE)) {
+            if (collector.documentType != null) {
+                DocumentTypeFetcher typeFetcher = DocumentTypeFetcher.newInstance();
+                String[] documentType = collector.documentType;
+                result.setDocumentType(typeFetcher.fetchDocumentType(documentType[0], documentType[1], documentType[2]));
+                result.setRenderingMode(typeFetcher.fetchRenderingMode(documentType[0], documentType[1], documentType[2]));
+            } else {
+                // the browsers render a document without document type in quirks mode
+                result.setRenderingMode(DocumentTypeFetcher.RenderingMode.QUIRKS);
+            }
+        }
+        if (names.contains(BuiltinAnalyzers.TITLE)) {
+            result.setTitle(collector.title != null ? StringUtil.normaliseWhitespace(collector.title).trim() : "");
+        }
+        if (names.contains(BuiltinAnalyzers.HEADINGS)) {
+            result.setHeadingCounts(collector.headingCounts);
+        }
+        if (names.contains(BuiltinAnalyzers.LINKS)) {
+            result.setHyperMediaLinkSums(collector.hyperMediaLinkSums);
+        }
+        if (names.contains(BuiltinAnalyzers.LOGIN)) {
+            result.setHasLoginForm(collector.hasLoginForm);
+        }
+        result.setAnalyzers(names);
+    }
+
+    /**
+     * Collects the values of the analyzers from the elements of the document
+     */
+    private static class Collector implements StreamingTreeBuilder.Sink {
+        private final LinkClassifier linkClassifier;
+        private final LoginDetector loginDetector = LoginDetector.newInstance();
+
+        // name, public id and system id
+        private String[] documentType;
+        private String title;
+        private int[] headingCounts = new int[HtmlAnalyzerResult.MAX_HEADING_LEVEL];
+        private TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums = new TagAnalyzers.HyperMediaLinkSums();
+        private boolean hasLoginForm = false;
+        private IOException loginFailure;
+
+        // the values before the body (the element a frameset may replace), restored if it is replaced
+        private int[] savedHeadingCounts;
+        private TagAnalyzers.HyperMediaLinkSums savedHyperMediaLinkSums;
+        private boolean savedHasLoginForm;
+
+        Collector(String host) {
+            this.linkClassifier = LinkClassifier.newInstance(host);
+        }
+
+        @Override
+        public void doctype(String name, String publicId, String systemId) {
+            documentType = new String[]{name, publicId, systemId};
+        }
+
+        @Override
+        public void title(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public void heading(int level) {
+            headingCounts[level - 1]++;
+        }
+
+        @Override
+        public void link(String link) {
+            TagAnalyzers.countHypermediaLink(link, linkClassifier, hyperMediaLinkSums);
+        }
+
+        @Override
+        public void form(LoginDetector.FormCandidate candidate) {
+            // a completed form is checked right away, it is not kept
+            if (!hasLoginForm && loginFailure == null) {
+                try {
+                    hasLoginForm = loginDetector.hasLoginForm(Collections.singletonList(candidate));
+                } catch (IOException ioException) {
+                    loginFailure = ioException;
+                }
+            }
+        }
+
+        @Override
+        public void replaceableStarted() {
+            savedHeadingCounts = headingCounts.clone();
+            savedHyperMediaLinkSums = copy(hyperMediaLinkSums);
+            savedHasLoginForm = hasLoginForm;
+        }
+
+        @Override
+        public void replaced() {
+            if (savedHeadingCounts != null) {
+                headingCounts = savedHeadingCounts;
+                hyperMediaLinkSums = savedHyperMediaLinkSums;
+                hasLoginForm = savedHasLoginForm;
+            }
+        }
+
+        private static TagAnalyzers.HyperMediaLinkSums copy(TagAnalyzers.HyperMediaLinkSums sums) {
+            TagAnalyzers.HyperMediaLinkSums copy = new TagAnalyzers.HyperMediaLinkSums(sums.getInternal().getValue(),
+                sums.getExternal().getValue(), sums.getSameSite());
+            for (Map.Entry<String, MutableInteger> host : sums.getExternalHosts().entrySet()) {
+                copy.getExternalHosts().put(host.getKey(), new MutableInteger(host.getValue().getValue()));
+            }
+
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,2147 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import org.jsoup.parser.Tag;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the tree construction of the jsoup parser on the tokens of a document without building its nodes
+ * <p>
+ * Only the names of the open elements and their ancestors (with the inputs counted in them), the active formatting
+ * elements and the form element pointer are kept, so the memory depends on the nesting depth of the document and not
+ * on its length. The insertion modes, the implied and the closed elements, the foster parenting, the reconstruction of
+ * the formatting elements, the adoption agency and the expansion of an isindex follow the jsoup tree builder, so the
+ * sink gets an element where the jsoup document has one (e.g. a reconstructed link is reported again). A form is
+ * passed to the sink when none of its descendants is open anymore, with the inputs which are its descendants in the
+ * jsoup document (e.g. a block moved out of a closed form by the adoption agency takes its inputs along). The elements
+ * reported between the start of the body and its replacement by a frameset are not in the document, the sink is told
+ * about both. An instance is not thread safe and builds one document.
+ */
+final class StreamingTreeBuilder implements HtmlTokenizer.Handler {
+
+    // jsoup limits the scope checks to the top of the stack
+    private static final int MAX_SCOPE_SEARCH_DEPTH = 100;
+
+    // jsoup keeps up to three identical formatting elements in the last ones
+    private static final int MAX_USED_FORMATTING_ELEMENTS = 12;
+
+    private static final Set<String> SCOPE = set("applet", "caption", "html", "marquee", "object", "table", "td", "th");
+    private static final Set<String> LIST_SCOPE = set("ol", "ul");
+    private static final Set<String> BUTTON_SCOPE = set("button");
+    private static final Set<String> TABLE_SCOPE = set("html", "table");
+    private static final Set<String> SELECT_SCOPE = set("optgroup", "option");
+    private static final Set<String> HEADINGS = set("h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Set<String> IMPLIED_END_TAGS = set("dd", "dt", "li", "optgroup", "option", "p", "rb", "rp", "rt", "rtc");
+    private static final Set<String> THOROUGH_IMPLIED_END_TAGS = set("caption", "colgroup", "dd", "dt", "li", "optgroup",
+        "option", "p", "rb", "rp", "rt", "rtc", "tbody", "td", "tfoot", "th", "thead", "tr");
+    private static final Set<String> SPECIAL = set("address", "applet", "area", "article", "aside", "base", "basefont",
+        "bgsound", "blockquote", "body", "br", "button", "caption", "center", "col", "colgroup", "command", "dd",
+        "details", "dir", "div", "dl", "dt", "embed", "fieldset", "figcaption", "figure", "footer", "form", "frame",
+        "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "hr", "html", "iframe", "img",
+        "input", "isindex", "li", "link", "listing", "marquee", "menu", "meta", "nav", "noembed", "noframes", "noscript",
+        "object", "ol", "p", "param", "plaintext", "pre", "script", "section", "select", "style", "summary", "table",
+        "tbody", "td", "textarea", "tfoot", "th", "thead", "title", "tr", "ul", "wbr", "xmp");
+    private static final Set<String> HEAD_EMPTY = set("base", "basefont", "bgsound", "command", "link");
+    private static final Set<String> HEAD_NOSCRIPT_HEAD = set("basefont", "bgsound", "link", "meta", "noframes", "style");
+    private static final Set<String> BODY_START_TO_HEAD = set("base", "basefont", "bgsound", "command", "link", "meta",
+        "noframes", "script", "style", "template", "title");
+    private static final Set<String> BODY_START_P_CLOSERS = set("address", "article", "aside", "blockquote", "center",
+        "details", "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup", "menu", "nav",
+        "ol", "p", "section", "summary", "ul");
+    private static final Set<String> BODY_START_LI_BREAKERS = set("address", "div", "p");
+    private static final Set<String> BODY_START_APPLETS = set("applet", "marquee", "object");
+    private static final Set<String> BODY_START_EMPTY = set("area", "br", "embed", "img", "keygen", "wbr");
+    private static final Set<String> BODY_START_MEDIA = set("param", "source", "track");
+    private static final Set<String> BODY_START_DROP = set("caption", "col", "colgroup", "frame", "head", "tbody", "td",
+        "tfoot", "th", "thead", "tr");
+    private static final Set<String> BODY_END_CLOSERS = set("address", "article", "aside", "blockquote", "button",
+        "center", "details", "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup",
+        "listing", "menu", "nav", "ol", "pre", "section", "summary", "ul");
+    private static final Set<String> FORMATTING = set("a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small",
+        "strike", "strong", "tt", "u");
+    private static final Set<String> TABLE_FOSTER = set("table", "tbody", "tfoot", "thead", "tr");
+    private static final Set<String> TABLE_SECTIONS = set("tbody", "tfoot", "thead");
+    private static final Set<String> TABLE_END_ERRORS = set("body", "caption", "col", "colgroup", "html", "tbody", "td",
+        "tfoot", "th", "thead", "tr");
+    private static final Set<String> CAPTION_EXITS = set("caption", "col", "colgroup", "tbody", "td", "tfoot", "th",
+        "thead", "tr");
+    private static final Set<String> CAPTION_END_IGNORED = set("body", "col", "colgroup", "html", "tbody", "td", "tfoot",
+        "th", "thead", "tr");
+    private static final Set<String> TABLE_BODY_EXITS = set("caption", "col", "colgroup", "tbody", "tfoot", "thead");
+    private static final Set<String> TABLE_BODY_END_IGNORED = set("body", "caption", "col", "colgroup", "html", "td",
+        "th", "tr");
+    private static final Set<String> ROW_EXITS = set("caption", "col", "colgroup", "tbody", "tfoot", "thead", "tr");
+    private static final Set<String> ROW_END_IGNORED = set("body", "caption", "col", "colgroup", "html", "td", "th");
+    private static final Set<String> CELL_END_IGNORED = set("body", "caption", "col", "colgroup", "html");
+    private static final Set<String> SELECT_EXITS = set("input", "keygen", "textarea");
+    private static final Set<String> TEMPLATE_TO_HEAD = set("base", "basefont", "bgsound", "link", "meta", "noframes",
+        "script", "style", "template", "title");
+    private static final Set<String> TEMPLATE_TO_TABLE = set("caption", "colgroup", "tbody", "tfoot", "thead");
+    private static final Set<String> SELECT_TABLE_EXITS = set("caption", "table", "tbody", "td", "tfoot", "th", "thead", "tr");
+
+    private final Sink sink;
+
+    private final boolean headOnly;
+
+    private HtmlTokenizer tokenizer;
+
+    private Mode mode = Mode.INITIAL;
+
+    private Mode originalMode;
+
+    // the insertion modes of the open templates
+    private final List<Mode> templateModes = new ArrayList<>();
+
+    private final List<OpenElement> stack = new ArrayList<>();
+
+    // null entries are the markers
+    private final List<FormattingElement> formattingElements = new ArrayList<>();
+
+    private OpenElement headElement;
+
+    private OpenElement rootElement;
+
+    // the body (or the frameset) of the root element
+    private OpenElement bodyElement;
+
+    private OpenElement formElement;
+
+    // the action of the isindex expanded to a form while the form is inserted
+    private String isindexAction;
+
+    private boolean quirks = false;
+
+    private boolean framesetOk = true;
+
+    private boolean fosterInserts = false;
+
+    // the name of the element inserted by a self-closing start tag, its end tag follows
+    private String selfClosed;
+
+    // the text of the first title of the head while it is read
+    private StringBuilder title;
+
+    private boolean titleFound = false;
+
+    private boolean done = false;
+
+    /**
+     * Initiates a new instance of StreamingTreeBuilder
+     *
+     * @param sink     The sink of the elements
+     * @param headOnly true if the document is read until the body starts
+     */
+    StreamingTreeBuilder(Sink sink, boolean headOnly) {
+        this.sink = sink;
+        this.headOnly = headOnly;
+    }
+
+    /**
+     * Reads the document and passes its elements to the sink
+     *
+     * @param reader The reader of the document
+     * @throws IOException If the document cannot be read or the sink fails
+     */
+    void build(Reader reader) throws IOException {
+        tokenizer = new HtmlTokenizer(reader, this);
+        tokenizer.run();
+    }
+
+    @Override
+    public void doctype(String name, String publicId, String systemId, boolean forceQuirks) {
+        // a document type is only accepted before any other token
+        if (mode == Mode.INITIAL) {
+            sink.doctype(name, publicId, systemId);
+            quirks = forceQuirks;
+            mode = Mode.BEFORE_HTML;
+        }
+    }
+
+    @Override
+    public void startTag(HtmlTokenizer.Tag tag) {
+        processStartTag(tag);
+
+        if (selfClosed != null && !done) {
+            // the element of a self-closing tag is closed right away, its content is empty
+            String name = selfClosed;
+            selfClosed = null;
+            processEndTag(name);
+        }
+        selfClosed = null;
+    }
+
+    @Override
+    public void endTag(String name) {
+        processEndTag(name);
+    }
+
+    @Override
+    public void text(char[] chars, int start, int end) {
+        processText(chars, start, end);
+    }
+
+    @Override
+    public void end() {
+        finishTitle();
+        // the root and the body get the attributes of the later start tags, their links are known at the end
+        finishLink(rootElement);
+        finishLink(bodyElement);
+        while (!stack.isEmpty()) {
+            pop();
+        }
+        done = true;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    private boolean processStartTag(HtmlTokenizer.Tag tag) {
+        return !done && startTag(mode, tag);
+    }
+
+    private boolean processStartTag(String name) {
+        return processStartTag(new HtmlTokenizer.Tag(name));
+    }
+
+    private boolean processEndTag(String name) {
+        return !done && endTag(mode, name);
+    }
+
+    private boolean processText(char[] chars, int start, int end) {
+        return !done && text(mode, chars, start, end);
+    }
+
+    private boolean startTag(Mode mode, HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        switch (mode) {
+            case INITIAL:
+                this.mode = Mode.BEFORE_HTML;
+                return processStartTag(tag);
+            case BEFORE_HTML:
+                if (name.equals("html")) {
+                    insert(tag);
+                    this.mode = Mode.BEFORE_HEAD;
+                    return true;
+                }
+                insert("html");
+                this.mode = Mode.BEFORE_HEAD;
+                return processStartTag(tag);
+            case BEFORE_HEAD:
+                if (name.equals("html")) {
+                    return startTag(Mode.IN_BODY, tag);
+                } else if (name.equals("head")) {
+                    headElement = insert(tag);
+                    this.mode = Mode.IN_HEAD;
+                    return true;
+                }
+                processStartTag("head");
+                return processStartTag(tag);
+            case IN_HEAD:
+                return inHeadStartTag(tag);
+            case IN_HEAD_NOSCRIPT:
+                if (name.equals("html")) {
+                    return startTag(Mode.IN_BODY, tag);
+                } else if (HEAD_NOSCRIPT_HEAD.contains(name)) {
+                    return startTag(Mode.IN_HEAD, tag);
+                }
+                // any other tag is inserted as text
+                return !name.equals("head") && !name.equals("noscript");
+            case AFTER_HEAD:
+                return afterHeadStartTag(tag);
+            case IN_BODY:
+                return inBodyStartTag(tag);
+            case IN_TABLE:
+                return inTableStartTag(tag);
+            case IN_CAPTION:
+                if (CAPTION_EXITS.contains(name)) {
+                    return processEndTag("caption") && processStartTag(tag);
+                }
+                return startTag(Mode.IN_BODY, tag);
+            case IN_COLUMN_GROUP:
+                if (name.equals("html")) {
+                    return startTag(Mode.IN_BODY, tag);
+                } else if (name.equals("col")) {
+                    insertEmpty(tag);
+                    return true;
+                } else if (name.equals("template")) {
+                    return startTag(Mode.IN_HEAD, tag);
+                }
+                return exitColumnGroup() && processStartTag(tag);
+            case IN_TABLE_BODY:
+                if (name.equals("tr")) {
+                    clearStackToContext("tbody", "tfoot", "thead", "template");
+                    insert(tag);
+                    this.mode = Mode.IN_ROW;
+                    return true;
+                } else if (name.equals("td") || name.equals("th")) {
+                    processStartTag("tr");
+                    return processStartTag(tag);
+                } else if (TABLE_BODY_EXITS.contains(name)) {
+                    return exitTableBody() && processStartTag(tag);
+                }
+                return startTag(Mode.IN_TABLE, tag);
+            case IN_ROW:
+                if (name.equals("td") || name.equals("th")) {
+                    clearStackToContext("tr", "template");
+                    insert(tag);
+                    this.mode = Mode.IN_CELL;
+                    formattingElements.add(null);
+                    return true;
+                } else if (ROW_EXITS.contains(name)) {
+                    return processEndTag("tr") && processStartTag(tag);
+                }
+                return startTag(Mode.IN_TABLE, tag);
+            case IN_CELL:
+                if (CAPTION_EXITS.contains(name)) {
+                    if (!inTableScope("td") && !inTableScope("th")) {
+                        return false;
+                    }
+                    closeCell();
+                    return processStartTag(tag);
+                }
+                return startTag(Mode.IN_BODY, tag);
+            case IN_SELECT:
+                return inSelectStartTag(tag);
+            case IN_SELECT_IN_TABLE:
+                if (SELECT_TABLE_EXITS.contains(name)) {
+                    popStackToClose("select");
+                    resetInsertionMode();
+                    return processStartTag(tag);
+                }
+                return inSelectStartTag(tag);
+            case IN_TEMPLATE:
+                if (TEMPLATE_TO_HEAD.contains(name)) {
+                    return startTag(Mode.IN_HEAD, tag);
+                } else if (TEMPLATE_TO_TABLE.contains(name)) {
+                    return switchTemplateMode(Mode.IN_TABLE, tag);
+                } else if (name.equals("col")) {
+                    return switchTemplateMode(Mode.IN_COLUMN_GROUP, tag);
+                } else if (name.equals("tr")) {
+                    return switchTemplateMode(Mode.IN_TABLE_BODY, tag);
+                } else if (name.equals("td") || name.equals("th")) {
+                    return switchTemplateMode(Mode.IN_ROW, tag);
+                }
+                return switchTemplateMode(Mode.IN_BODY, tag);
+            case AFTER_BODY:
+            case AFTER_AFTER_BODY:
+                if (name.equals("html")) {
+                    return startTag(Mode.IN_BODY, tag);
+                }
+                resetBody();
+                return processStartTag(tag);
+            case IN_FRAMESET:
+                switch (name) {
+                    case "html":
+                        return startTag(Mode.IN_BODY, tag);
+                    case "frameset":
+                        insert(tag);
+                        return true;
+                    case "frame":
+                        insertEmpty(tag);
+                        return true;
+                    case "noframes":
+                        return startTag(Mode.IN_HEAD, tag);
+                    default:
+                        return false;
+                }
+            case AFTER_FRAMESET:
+            case AFTER_AFTER_FRAMESET:
+                if (name.equals("html")) {
+                    return startTag(Mode.IN_BODY, tag);
+                } else if (name.equals("noframes")) {
+                    return startTag(Mode.IN_HEAD, tag);
+                }
+                return false;
+            default:
+                // the tokenizer passes no tags in the text of the raw text elements
+                return true;
+        }
+    }
+
+    private boolean inHeadStartTag(HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        if (name.equals("html")) {
+            return startTag(Mode.IN_BODY, tag);
+        } else if (HEAD_EMPTY.contains(name) || name.equals("meta")) {
+            insertEmpty(tag);
+        } else if (name.equals("title")) {
+            insertText(tag, HtmlTokenizer.RCDATA);
+        } else if (name.equals("noframes") || name.equals("style")) {
+            insertText(tag, HtmlTokenizer.RAWTEXT);
+        } else if (name.equals("noscript")) {
+            insert(tag);
+            mode = Mode.IN_HEAD_NOSCRIPT;
+        } else if (name.equals("script")) {
+            insertText(tag, HtmlTokenizer.SCRIPT_DATA);
+        } else if (name.equals("head")) {
+            return false;
+        } else if (name.equals("template")) {
+            insert(tag);
+            formattingElements.add(null);
+            framesetOk = false;
+            mode = Mode.IN_TEMPLATE;
+            templateModes.add(Mode.IN_TEMPLATE);
+        } else {
+            processEndTag("head");
+            return processStartTag(tag);
+        }
+
+        return true;
+    }
+
+    private boolean afterHeadStartTag(HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        if (name.equals("html")) {
+            return startTag(Mode.IN_BODY, tag);
+        } else if (name.equals("body")) {
+            insert(tag);
+            framesetOk = false;
+            mode = Mode.IN_BODY;
+        } else if (name.equals("frameset")) {
+            insert(tag);
+            mode = Mode.IN_FRAMESET;
+        } else if (BODY_START_TO_HEAD.contains(name)) {
+            // the element is added to the closed head
+            OpenElement head = headElement;
+            push(head);
+            startTag(Mode.IN_HEAD, tag);
+            remove(head);
+        } else if (name.equals("head")) {
+            return false;
+        } else {
+            processStartTag("body");
+            framesetOk = true;
+            return processStartTag(tag);
+        }
+
+        return true;
+    }
+
+    private boolean inBodyStartTag(HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        switch (name) {
+            case "a":
+                if (getActiveFormattingElement("a") != null) {
+                    processEndTag("a");
+                    OpenElement remaining = getFromStack("a");
+                    if (remaining != null) {
+                        removeFromActiveFormattingElements(remaining);
+                        remove(remaining);
+                    }
+                }
+                reconstructFormattingElements();
+                pushActiveFormattingElement(insert(tag), tag);
+                break;
+            case "li":
+                framesetOk = false;
+                for (int i = stack.size() - 1; i > 0; i--) {
+                    String elementName = stack.get(i).name;
+                    if (elementName.equals("li")) {
+                        processEndTag("li");
+                        break;
+                    }
+                    if (SPECIAL.contains(elementName) && !BODY_START_LI_BREAKERS.contains(elementName)) {
+                        break;
+                    }
+                }
+                closePInButtonScope();
+                insert(tag);
+                break;
+            case "html":
+                if (onStack("template")) {
+                    return false;
+                }
+                if (!stack.isEmpty()) {
+                    mergeAttributes(stack.get(0), tag);
+                }
+                break;
+            case "body":
+                if (stack.size() == 1 || (stack.size() > 2 && !stack.get(1).name.equals("body")) || onStack("template")) {
+                    return false;
+                }
+                framesetOk = false;
+                OpenElement body = getFromStack("body");
+                if (body != null) {
+                    mergeAttributes(body, tag);
+                }
+                break;
+            case "frameset":
+                if (stack.size() == 1 || (stack.size() > 2 && !stack.get(1).name.equals("body")) || !framesetOk) {
+                    return false;
+                }
+                // the second element (the body) is replaced by the frameset
+                boolean bodyReplaced = stack.get(1) == bodyElement;
+                while (stack.size() > 1) {
+                    pop();
+                }
+                sink.replaced();
+                OpenElement frameset = insert(tag);
+                if (bodyReplaced) {
+                    bodyElement = frameset;
+                }
+                mode = Mode.IN_FRAMESET;
+                break;
+            case "form":
+                if (formElement != null && !onStack("template")) {
+                    return false;
+                }
+                closePInButtonScope();
+                insertForm(tag, true, true);
+                break;
+            case "isindex":
+                if (formElement != null) {
+                    return false;
+                }
+                expandIsindex(tag);
+                break;
+            case "plaintext":
+                closePInButtonScope();
+                insert(tag);
+                tokenizer.setContentState(HtmlTokenizer.PLAINTEXT, null);
+                break;
+            case "button":
+                if (inButtonScope("button")) {
+                    processEndTag("button");
+                    return processStartTag(tag);
+                }
+                reconstructFormattingElements();
+                insert(tag);
+                framesetOk = false;
+                break;
+            case "nobr":
+                reconstructFormattingElements();
+                if (inScope("nobr")) {
+                    processEndTag("nobr");
+                    reconstructFormattingElements();
+                }
+                pushActiveFormattingElement(insert(tag), tag);
+                break;
+            case "table":
+                if (!quirks) {
+                    closePInButtonScope();
+                }
+                insert(tag);
+                framesetOk = false;
+                mode = Mode.IN_TABLE;
+                break;
+            case "input":
+                reconstructFormattingElements();
+                insertEmpty(tag);
+                if (!"hidden".equalsIgnoreCase(tag.attr("type"))) {
+                    framesetOk = false;
+                }
+                break;
+            case "hr":
+                closePInButtonScope();
+                insertEmpty(tag);
+                framesetOk = false;
+                break;
+            case "image":
+                if (getFromStack("svg") == null) {
+                    tag.setName("img");
+                    return processStartTag(tag);
+                }
+                insert(tag);
+                break;
+            case "textarea":
+                if (tag.isSelfClosing()) {
+                    // jsoup closes a self-closing textarea without changing the mode
+                    insert(tag);
+                } else {
+                    insertText(tag, HtmlTokenizer.RCDATA);
+                    framesetOk = false;
+                }
+                break;
+            case "xmp":
+                closePInButtonScope();
+                reconstructFormattingElements();
+                framesetOk = false;
+                insertText(tag, HtmlTokenizer.RAWTEXT);
+                break;
+            case "iframe":
+                framesetOk = false;
+                insertText(tag, HtmlTokenizer.RAWTEXT);
+                break;
+            case "noembed":
+                insertText(tag, HtmlTokenizer.RAWTEXT);
+                break;
+            case "select":
+                reconstructFormattingElements();
+                insert(tag);
+                framesetOk = false;
+                if (!tag.isSelfClosing()) {
+                    if (mode == Mode.IN_TABLE || mode == Mode.IN_CAPTION || mode == Mode.IN_TABLE_BODY
+                        || mode == Mode.IN_ROW || mode == Mode.IN_CELL) {
+                        mode = Mode.IN_SELECT_IN_TABLE;
+                    } else {
+                        mode = Mode.IN_SELECT;
+                    }
+                }
+                break;
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                closePInButtonScope();
+                if (HEADINGS.contains(currentName())) {
+                    pop();
+                }
+                insert(tag);
+                break;
+            case "pre":
+            case "listing":
+                closePInButtonScope();
+                insert(tag);
+                tokenizer.skipLineFeed();
+                framesetOk = false;
+                break;
+            case "dd":
+            case "dt":
+                framesetOk = false;
+                for (int i = stack.size() - 1; i > 0; i--) {
+                    String elementName = stack.get(i).name;
+                    if (elementName.equals("dd") || elementName.equals("dt")) {
+                        processEndTag(elementName);
+                        break;
+                    }
+                    if (SPECIAL.contains(elementName) && !BODY_START_LI_BREAKERS.contains(elementName)) {
+                        break;
+                    }
+                }
+                closePInButtonScope();
+                insert(tag);
+                break;
+            case "optgroup":
+            case "option":
+                if (currentName().equals("option")) {
+                    processEndTag("option");
+                }
+                reconstructFormattingElements();
+                insert(tag);
+                break;
+            case "rp":
+            case "rt":
+                // jsoup drops them outside a ruby
+                if (inScope("ruby")) {
+                    generateImpliedEndTags(null);
+                    while (!stack.isEmpty() && !currentName().equals("ruby")) {
+                        pop();
+                    }
+                    insert(tag);
+                }
+                break;
+            default:
+                if (BODY_START_EMPTY.contains(name)) {
+                    reconstructFormattingElements();
+                    insertEmpty(tag);
+                    framesetOk = false;
+                } else if (BODY_START_P_CLOSERS.contains(name)) {
+                    closePInButtonScope();
+                    insert(tag);
+                } else if (FORMATTING.contains(name)) {
+                    reconstructFormattingElements();
+                    pushActiveFormattingElement(insert(tag), tag);
+                } else if (!Tag.isKnownTag(name)) {
+                    // jsoup has no rules for the custom tags, the formatting elements are not reconstructed
+                    insert(tag);
+                } else if (BODY_START_TO_HEAD.contains(name)) {
+                    return startTag(Mode.IN_HEAD, tag);
+                } else if (BODY_START_APPLETS.contains(name)) {
+                    reconstructFormattingElements();
+                    insert(tag);
+                    formattingElements.add(null);
+                    framesetOk = false;
+                } else if (BODY_START_MEDIA.contains(name)) {
+                    insertEmpty(tag);
+                } else if (BODY_START_DROP.contains(name)) {
+                    return false;
+                } else {
+                    reconstructFormattingElements();
+                    insert(tag);
+                }
+        }
+
+        return true;
+    }
+
+    /**
+     * Inserts the form jsoup builds for an isindex: a form with the action of the isindex, having a labeled input
+     * with the other attributes of the isindex and named "isindex" between two rules
+     *
+     * @param tag The isindex start tag
+     */
+    private void expandIsindex(HtmlTokenizer.Tag tag) {
+        // the attributes are copied before the tags are processed
+        HtmlTokenizer.Tag input = new HtmlTokenizer.Tag("input");
+        for (int i = 0; i < tag.getAttributeCount(); i++) {
+            String attributeName = tag.getAttributeName(i);
+            if (!attributeName.equals("action") && !attributeName.equals("name") && !attributeName.equals("prompt")) {
+                input.addAttribute(attributeName, tag.getAttributeValue(i));
+            }
+        }
+        input.addAttribute("name", "isindex");
+        String prompt = tag.attr("prompt");
+        char[] label = (prompt != null ? prompt : "This is a searchable index. Enter search keywords: ").toCharArray();
+
+        isindexAction = tag.attr("action");
+        processStartTag("form");
+        isindexAction = null;
+        processStartTag("hr");
+        processStartTag("label");
+        processText(label, 0, label.length);
+        processStartTag(input);
+        processEndTag("label");
+        processStartTag("hr");
+        processEndTag("form");
+    }
+
+    private boolean inTableStartTag(HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        switch (name) {
+            case "caption":
+                clearStackToContext("table", "template");
+                formattingElements.add(null);
+                insert(tag);
+                mode = Mode.IN_CAPTION;
+                return true;
+            case "colgroup":
+                clearStackToContext("table", "template");
+                insert(tag);
+                mode = Mode.IN_COLUMN_GROUP;
+                return true;
+            case "col":
+                clearStackToContext("table", "template");
+                processStartTag("colgroup");
+                return processStartTag(tag);
+            case "tbody":
+            case "tfoot":
+            case "thead":
+                clearStackToContext("table", "template");
+                insert(tag);
+                mode = Mode.IN_TABLE_BODY;
+                return true;
+            case "td":
+            case "th":
+            case "tr":
+                clearStackToContext("table", "template");
+                processStartTag("tbody");
+                return processStartTag(tag);
+            case "table":
+                if (!inTableScope(name)) {
+                    return false;
+                }
+                popStackToClose(name);
+                if (!resetInsertionMode()) {
+                    insert(tag);
+                    return true;
+                }
+                return processStartTag(tag);
+            case "script":
+            case "style":
+            case "template":
+                return startTag(Mode.IN_HEAD, tag);
+            case "input":
+                if (!"hidden".equalsIgnoreCase(tag.attr("type"))) {
+                    return fosterStartTag(tag);
+                }
+                insertEmpty(tag);
+                return true;
+            case "form":
+                if (formElement != null || onStack("template")) {
+                    return false;
+                }
+                // the form is not opened, it cannot have descendants
+                insertForm(tag, false, false);
+                return true;
+            default:
+                return fosterStartTag(tag);
+        }
+    }
+
+    private boolean fosterStartTag(HtmlTokenizer.Tag tag) {
+        fosterInserts = true;
+        boolean processed = startTag(Mode.IN_BODY, tag);
+        fosterInserts = false;
+
+        return processed;
+    }
+
+    private boolean inSelectStartTag(HtmlTokenizer.Tag tag) {
+        String name = tag.getName();
+        switch (name) {
+            case "html":
+                return startTag(Mode.IN_BODY, tag);
+            case "option":
+                if (currentName().equals("option")) {
+                    processEndTag("option");
+                }
+                insert(tag);
+                return true;
+            case "optgroup":
+                if (currentName().equals("option")) {
+                    processEndTag("option");
+                }
+                if (currentName().equals("optgroup")) {
+                    processEndTag("optgroup");
+                }
+                insert(tag);
+                return true;
+            case "select":
+                return processEndTag("select");
+            case "script":
+            case "template":
+                return startTag(Mode.IN_HEAD, tag);
+            default:
+                if (SELECT_EXITS.contains(name)) {
+                    if (!inSelectScope("select")) {
+                        return false;
+                    }
+                    processEndTag("select");
+                    return processStartTag(tag);
+                }
+                return false;
+        }
+    }
+
+    private boolean endTag(Mode mode, String name) {
+        switch (mode) {
+            case INITIAL:
+                this.mode = Mode.BEFORE_HTML;
+                return processEndTag(name);
+            case BEFORE_HTML:
+                if (!isBeforeHeadEnd(name)) {
+                    return false;
+                }
+                insert("html");
+                this.mode = Mode.BEFORE_HEAD;
+                return processEndTag(name);
+            case BEFORE_HEAD:
+                if (!isBeforeHeadEnd(name)) {
+                    return false;
+                }
+                processStartTag("head");
+                return processEndTag(name);
+            case IN_HEAD:
+                if (name.equals("head")) {
+                    pop();
+                    this.mode = Mode.AFTER_HEAD;
+                    return true;
+                } else if (name.equals("body") || name.equals("br") || name.equals("html")) {
+                    processEndTag("head");
+                    return processEndTag(name);
+                } else if (name.equals("template")) {
+                    return endTemplate();
+                }
+                return false;
+            case IN_HEAD_NOSCRIPT:
+                if (name.equals("noscript")) {
+                    pop();
+                    this.mode = Mode.IN_HEAD;
+                    return true;
+                }
+                return false;
+            case AFTER_HEAD:
+                if (name.equals("body") || name.equals("br") || name.equals("html")) {
+                    processStartTag("body");
+                    framesetOk = true;
+                    return processEndTag(name);
+                } else if (name.equals("template")) {
+                    return endTag(Mode.IN_HEAD, name);
+                }
+                return false;
+            case IN_BODY:
+                return inBodyEndTag(name);
+            case TEXT:
+                finishTitle();
+                pop();
+                this.mode = originalMode;
+                return true;
+            case IN_TABLE:
+                return inTableEndTag(name);
+            case IN_CAPTION:
+                if (name.equals("caption")) {
+                    if (!inTableScope(name)) {
+                        return false;
+                    }
+                    generateImpliedEndTags(null);
+                    popStackToClose("caption");
+                    clearFormattingElementsToLastMarker();
+                    this.mode = Mode.IN_TABLE;
+                    return true;
+                } else if (name.equals("table")) {
+                    return processEndTag("caption") && processEndTag(name);
+                } else if (CAPTION_END_IGNORED.contains(name)) {
+                    return false;
+                }
+                return endTag(Mode.IN_BODY, name);
+            case IN_COLUMN_GROUP:
+                if (name.equals("colgroup")) {
+                    if (!currentName().equals(name)) {
+                        return false;
+                    }
+                    pop();
+                    this.mode = Mode.IN_TABLE;
+                    return true;
+                } else if (name.equals("template")) {
+                    return endTag(Mode.IN_HEAD, name);
+                }
+                return exitColumnGroup() && processEndTag(name);
+            case IN_TABLE_BODY:
+                if (TABLE_SECTIONS.contains(name)) {
+                    if (!inTableScope(name)) {
+                        return false;
+                    }
+                    clearStackToContext("tbody", "tfoot", "thead", "template");
+                    pop();
+                    this.mode = Mode.IN_TABLE;
+                    return true;
+                } else if (name.equals("table")) {
+                    return exitTableBody() && processEndTag(name);
+                } else if (TABLE_BODY_END_IGNORED.contains(name)) {
+                    return false;
+                }
+                return endTag(Mode.IN_TABLE, name);
+            case IN_ROW:
+                if (name.equals("tr")) {
+                    if (!inTableScope(name)) {
+                        return false;
+                    }
+                    clearStackToContext("tr", "template");
+                    pop();
+                    this.mode = Mode.IN_TABLE_BODY;
+                    return true;
+                } else if (name.equals("table")) {
+                    return processEndTag("tr") && processEndTag(name);
+                } else if (TABLE_SECTIONS.contains(name)) {
+                    if (!inTableScope(name) || !inTableScope("tr")) {
+                        return false;
+                    }
+                    clearStackToContext("tr", "template");
+                    pop();
+                    this.mode = Mode.IN_TABLE_BODY;
+                    return true;
+                } else if (ROW_END_IGNORED.contains(name)) {
+                    return false;
+                }
+                return endTag(Mode.IN_TABLE, name);
+            case IN_CELL:
+                if (name.equals("td") || name.equals("th")) {
+                    if (!inTableScope(name)) {
+                        this.mode = Mode.IN_ROW;
+                        return false;
+                    }
+                    generateImpliedEndTags(null);
+                    popStackToClose(name);
+                    clearFormattingElementsToLastMarker();
+                    this.mode = Mode.IN_ROW;
+                    return true;
+                } else if (CELL_END_IGNORED.contains(name)) {
+                    return false;
+                } else if (name.equals("table") || TABLE_SECTIONS.contains(name) || name.equals("tr")) {
+                    if (!inTableScope(name)) {
+                        return false;
+                    }
+                    closeCell();
+                    return processEndTag(name);
+                }
+                return endTag(Mode.IN_BODY, name);
+            case IN_SELECT:
+                return inSelectEndTag(name);
+            case IN_SELECT_IN_TABLE:
+                if (SELECT_TABLE_EXITS.contains(name)) {
+                    if (!inTableScope(name)) {
+                        return false;
+                    }
+                    popStackToClose("select");
+                    resetInsertionMode();
+                    return processEndTag(name);
+                }
+                return inSelectEndTag(name);
+            case IN_TEMPLATE:
+                return name.equals("template") && endTag(Mode.IN_HEAD, name);
+            case AFTER_BODY:
+                if (name.equals("html")) {
+                    if (onStack("html")) {
+                        popStackToClose("html");
+                    }
+                    this.mode = Mode.AFTER_AFTER_BODY;
+                    return true;
+                }
+                resetBody();
+                return processEndTag(name);
+            case AFTER_AFTER_BODY:
+                resetBody();
+                return processEndTag(name);
+            case IN_FRAMESET:
+                if (name.equals("frameset")) {
+                    if (currentName().equals("html")) {
+                        return false;
+                    }
+                    pop();
+                    if (!currentName().equals("frameset")) {
+                        this.mode = Mode.AFTER_FRAMESET;
+                    }
+                    return true;
+                }
+                return false;
+            case AFTER_FRAMESET:
+                if (name.equals("html")) {
+                    this.mode = Mode.AFTER_AFTER_FRAMESET;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private boolean inBodyEndTag(String name) {
+        switch (name) {
+            case "template":
+                return endTag(Mode.IN_HEAD, name);
+            case "body":
+                if (!inScope("body")) {
+                    return false;
+                }
+                // jsoup closes the body like any other element
+                anyOtherEndTag(name);
+                mode = Mode.AFTER_BODY;
+                return true;
+            case "html":
+                return processEndTag("body") && processEndTag(name);
+            case "form":
+                if (!onStack("template")) {
+                    OpenElement currentForm = formElement;
+                    formElement = null;
+                    if (currentForm == null || !inScope(name)) {
+                        return false;
+                    }
+                    generateImpliedEndTags(null);
+                    remove(currentForm);
+                } else {
+                    if (!inScope(name)) {
+                        return false;
+                    }
+                    generateImpliedEndTags(null);
+                    popStackToClose(name);
+                }
+                return true;
+            case "p":
+                if (!inButtonScope(name)) {
+                    // an empty paragraph is inserted and closed
+                    processStartTag(name);
+                    return processEndTag(name);
+                }
+                generateImpliedEndTags(name);
+                popStackToClose(name);
+                return true;
+            case "li":
+                if (!inScope(name, SCOPE, LIST_SCOPE)) {
+                    return false;
+                }
+                generateImpliedEndTags(name);
+                popStackToClose(name);
+                return true;
+            case "dd":
+            case "dt":
+                if (!inScope(name)) {
+                    return false;
+                }
+                generateImpliedEndTags(name);
+                popStackToClose(name);
+                return true;
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                if (!inScope(HEADINGS, SCOPE, null)) {
+                    return false;
+                }
+                generateImpliedEndTags(name);
+                popStackToClose(HEADINGS);
+                return true;
+            case "br":
+                processStartTag(name);
+                return false;
+            default:
+                if (FORMATTING.contains(name)) {
+                    return adoptionAgency(name);
+                } else if (BODY_END_CLOSERS.contains(name)) {
+                    if (!inScope(name)) {
+                        return false;
+                    }
+                    generateImpliedEndTags(null);
+                    popStackToClose(name);
+                    return true;
+                } else if (BODY_START_APPLETS.contains(name)) {
+                    if (!inScope("name")) {
+                        if (!inScope(name)) {
+                            return false;
+                        }
+                        generateImpliedEndTags(null);
+                        popStackToClose(name);
+                        clearFormattingElementsToLastMarker();
+                    }
+                    return true;
+                }
+                return anyOtherEndTag(name);
+        }
+    }
+
+    private boolean anyOtherEndTag(String name) {
+        if (getFromStack(name) == null) {
+            return false;
+        }
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            String elementName = stack.get(i).name;
+            if (elementName.equals(name)) {
+                generateImpliedEndTags(name);
+                popStackToClose(name);
+                break;
+            } else if (SPECIAL.contains(elementName)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes a formatting element the way the jsoup adoption agency does, the formatting element is cloned into the
+     * furthest block
+     *
+     * @param name The name of the formatting element
+     * @return false if the end tag is ignored
+     */
+    private boolean adoptionAgency(String name) {
+        for (int i = 0; i < 8; i++) {
+            FormattingElement formatting = getActiveFormattingElement(name);
+            if (formatting == null) {
+                return anyOtherEndTag(name);
+            }
+            OpenElement formatElement = formatting.element;
+            if (!stack.contains(formatElement)) {
+                formattingElements.remove(formatting);
+                return true;
+            } else if (!inScope(formatElement.name)) {
+                return false;
+            }
+
+            OpenElement furthestBlock = null;
+            OpenElement commonAncestor = null;
+            boolean seenFormattingElement = false;
+            int bookmark = -1;
+            for (int j = 1; j < stack.size() && j < 64; j++) {
+                OpenElement element = stack.get(j);
+                if (element == formatElement) {
+                    commonAncestor = stack.get(j - 1);
+                    seenFormattingElement = true;
+                    bookmark = formattingElements.indexOf(formatting);
+                } else if (seenFormattingElement && SPECIAL.contains(element.name)) {
+                    furthestBlock = element;
+                    break;
+                }
+            }
+            if (furthestBlock == null) {
+                popStackToClose(formatElement.name);
+                formattingElements.remove(formatting);
+                return true;
+            }
+
+            // the elements between the formatting element and the furthest block are replaced by clones without
+            // attributes (jsoup stops moving up at the first element which is not a formatting element), each clone
+            // becomes the parent of the element moved before it
+            OpenElement node = furthestBlock;
+            OpenElement lastNode = furthestBlock;
+            for (int j = 0; j < 3; j++) {
+                int position = stack.indexOf(node);
+                if (position >= 0) {
+                    node = stack.get(position - 1);
+                }
+                FormattingElement nodeFormatting = getFormattingElement(node);
+                if (nodeFormatting == null) {
+                    remove(node);
+                    continue;
+                } else if (node == formatElement) {
+                    break;
+                }
+
+                OpenElement replacement = new OpenElement(node.name, commonAncestor, null);
+                FormattingElement replacementFormatting = new FormattingElement(node.name,
+                    Collections.<String>emptyList(), null);
+                replacementFormatting.element = replacement;
+                formattingElements.set(formattingElements.indexOf(nodeFormatting), replacementFormatting);
+                nodeFormatting = replacementFormatting;
+                replace(node, replacement);
+                node = replacement;
+                if (lastNode == furthestBlock) {
+                    bookmark = formattingElements.indexOf(nodeFormatting) + 1;
+                }
+                move(lastNode, node);
+                lastNode = node;
+            }
+            // the moved elements leave the formatting element, e.g. a block leaves the form closed inside a link
+            move(lastNode, TABLE_FOSTER.contains(commonAncestor.name) ? getFosterParent() : commonAncestor);
+
+            // the clone of the formatting element is the only child of the furthest block, the children moved into
+            // the clone keep the furthest block as their parent as their enclosing forms do not change
+            created(formatElement.name, formatting.link);
+            OpenElement adopter = new OpenElement(formatElement.name, furthestBlock, null);
+            FormattingElement adopterFormatting = new FormattingElement(formatting.name, formatting.attributes, formatting.link);
+            adopterFormatting.element = adopter;
+            formattingElements.remove(formatting);
+            pushWithBookmark(adopterFormatting, bookmark);
+            remove(formatElement);
+            push(stack.indexOf(furthestBlock) + 1, adopter);
+        }
+
+        return true;
+    }
+
+    private boolean inTableEndTag(String name) {
+        if (name.equals("table")) {
+            if (!inTableScope(name)) {
+                return false;
+            }
+            popStackToClose(name);
+            resetInsertionMode();
+            return true;
+        } else if (TABLE_END_ERRORS.contains(name)) {
+            return false;
+        } else if (name.equals("template")) {
+            return endTag(Mode.IN_HEAD, name);
+        }
+
+        fosterInserts = true;
+        boolean processed = endTag(Mode.IN_BODY, name);
+        fosterInserts = false;
+
+        return processed;
+    }
+
+    private boolean inSelectEndTag(String name) {
+        switch (name) {
+            case "optgroup":
+                if (currentName().equals("option") && stack.size() > 1
+                    && stack.get(stack.size() - 2).name.equals("optgroup")) {
+                    processEndTag("option");
+                }
+                if (currentName().equals("optgroup")) {
+                    pop();
+                    return true;
+                }
+                return false;
+            case "option":
+                if (currentName().equals("option")) {
+                    pop();
+                    return true;
+                }
+                return false;
+            case "select":
+                if (!inSelectScope(name)) {
+                    return false;
+                }
+                popStackToClose(name);
+                resetInsertionMode();
+                return true;
+            case "template":
+                return endTag(Mode.IN_HEAD, name);
+            default:
+                return false;
+        }
+    }
+
+    private boolean endTemplate() {
+        if (!onStack("template")) {
+            return false;
+        }
+        while (THOROUGH_IMPLIED_END_TAGS.contains(currentName())) {
+            pop();
+        }
+        popStackToClose("template");
+        clearFormattingElementsToLastMarker();
+        if (!templateModes.isEmpty()) {
+            templateModes.remove(templateModes.size() - 1);
+        }
+        resetInsertionMode();
+
+        return true;
+    }
+
+    private boolean text(Mode mode, char[] chars, int start, int end) {
+        boolean whitespace = isWhitespace(chars, start, end);
+        switch (mode) {
+            case INITIAL:
+                if (whitespace) {
+                    return true;
+                }
+                this.mode = Mode.BEFORE_HTML;
+                return processText(chars, start, end);
+            case BEFORE_HTML:
+                if (whitespace) {
+                    return true;
+                }
+                insert("html");
+                this.mode = Mode.BEFORE_HEAD;
+                return processText(chars, start, end);
+            case BEFORE_HEAD:
+                if (whitespace) {
+                    return true;
+                }
+                processStartTag("head");
+                return processText(chars, start, end);
+            case IN_HEAD:
+                if (whitespace) {
+                    return true;
+                }
+                processEndTag("head");
+                return processText(chars, start, end);
+            case AFTER_HEAD:
+                if (whitespace) {
+                    return true;
+                }
+                processStartTag("body");
+                framesetOk = true;
+                return processText(chars, start, end);
+            case AFTER_BODY:
+            case AFTER_AFTER_BODY:
+                if (whitespace) {
+                    return true;
+                }
+                resetBody();
+                return processText(chars, start, end);
+            case IN_BODY:
+            case IN_CAPTION:
+            case IN_CELL:
+            case IN_TEMPLATE:
+                if (isNul(chars, start, end)) {
+                    return false;
+                }
+                // the text is added to the reconstructed formatting elements
+                reconstructFormattingElements();
+                if (!whitespace) {
+                    framesetOk = false;
+                }
+                return true;
+            case TEXT:
+                if (title != null) {
+                    title.append(chars, start, end - start);
+                }
+                return true;
+            case IN_TABLE:
+            case IN_TABLE_BODY:
+            case IN_ROW:
+                if (isNul(chars, start, end) || (whitespace && TABLE_FOSTER.contains(currentName()))) {
+                    return true;
+                }
+                fosterInserts = true;
+                reconstructFormattingElements();
+                fosterInserts = false;
+                if (!whitespace) {
+                    framesetOk = false;
+                }
+                return true;
+            case IN_COLUMN_GROUP:
+                if (whitespace) {
+                    return true;
+                }
+                return exitColumnGroup() && processText(chars, start, end);
+            case AFTER_AFTER_FRAMESET:
+                if (whitespace) {
+                    reconstructFormattingElements();
+                }
+                return true;
+            default:
+                // the text of a select, a frameset and the text inserted in a head noscript
+                return true;
+        }
+    }
+
+    /**
+     * Reopens the body closed by its end tag, e.g. for the content following "&lt;/html&gt;"
+     */
+    private void resetBody() {
+        if (!onStack("body")) {
+            if (bodyElement != null) {
+                push(bodyElement);
+            } else {
+                insert("body");
+            }
+        }
+        mode = Mode.IN_BODY;
+    }
+
+    /**
+     * Builds the template contents in the insertion mode of their first tag
+     */
+    private boolean switchTemplateMode(Mode templateMode, HtmlTokenizer.Tag tag) {
+        templateModes.set(templateModes.size() - 1, templateMode);
+        mode = templateMode;
+        return processStartTag(tag);
+    }
+
+    private boolean exitColumnGroup() {
+        if (!currentName().equals("colgroup")) {
+            return false;
+        }
+        pop();
+        mode = Mode.IN_TABLE;
+
+        return true;
+    }
+
+    private boolean exitTableBody() {
+        if (!(inTableScope("tbody") || inTableScope("thead") || inScope("tfoot"))) {
+            return false;
+        }
+        clearStackToContext("tbody", "tfoot", "thead", "template");
+
+        return processEndTag(currentName());
+    }
+
+    private void closeCell() {
+        if (inTableScope("td")) {
+            processEndTag("td");
+        } else {
+            processEndTag("th");
+        }
+    }
+
+    private void closePInButtonScope() {
+        if (inButtonScope("p")) {
+            processEndTag("p");
+        }
+    }
+
+    private static boolean isBeforeHeadEnd(String name) {
+        return name.equals("body") || name.equals("br") || name.equals("head") || name.equals("html");
+    }
+
+    private boolean resetInsertionMode() {
+        Mode previous = mode;
+        int bottom = stack.size() - 1;
+        if (bottom < 0) {
+            mode = Mode.IN_BODY;
+        }
+        for (int i = bottom; i >= 0; i--) {
+            boolean last = i == 0;
+            String name = stack.get(i).name;
+            Mode found = null;
+            switch (name) {
+                case "select":
+                    found = Mode.IN_SELECT;
+                    break;
+                case "td":
+                case "th":
+                    found = last ? null : Mode.IN_CELL;
+                    break;
+                case "tr":
+                    found = Mode.IN_ROW;
+                    break;
+                case "tbody":
+                case "thead":
+                case "tfoot":
+                    found = Mode.IN_TABLE_BODY;
+                    break;
+                case "caption":
+                    found = Mode.IN_CAPTION;
+                    break;
+                case "colgroup":
+                    found = Mode.IN_COLUMN_GROUP;
+                    break;
+                case "table":
+                    found = Mode.IN_TABLE;
+                    break;
+                case "template":
+                    found = templateModes.isEmpty() ? Mode.IN_BODY : templateModes.get(templateModes.size() - 1);
+                    break;
+                case "body":
+                    found = Mode.IN_BODY;
+                    break;
+                case "head":
+                    found = last ? null : Mode.IN_HEAD;
+                    break;
+                case "frameset":
+                    found = Mode.IN_FRAMESET;
+                    break;
+                case "html":
+                    found = headElement == null ? Mode.BEFORE_HEAD : Mode.AFTER_HEAD;
+                    break;
+                default:
+                    break;
+            }
+            if (found != null) {
+                mode = found;
+                break;
+            }
+            if (last) {
+                mode = Mode.IN_BODY;
+            }
+        }
+
+        return mode != previous;
+    }
+
+    // the elements
+
+    private OpenElement insert(HtmlTokenizer.Tag tag) {
+        if (tag.getName().equals("form")) {
+            return insertForm(tag, true, false);
+        }
+
+        OpenElement element;
+        if (tag.getName().equals("html") || tag.getName().equals("body")) {
+            element = insert(tag.getName(), null);
+            mergeAttributes(element, tag);
+        } else {
+            element = insert(tag.getName(), getLink(tag));
+        }
+        if (tag.isSelfClosing()) {
+            // the content state set after the insertion (e.g. for a plaintext) is kept
+            tokenizer.setContentState(HtmlTokenizer.DATA, null);
+            selfClosed = tag.getName();
+        }
+
+        return element;
+    }
+
+    private OpenElement insert(String name) {
+        return insert(name, null);
+    }
+
+    private OpenElement insert(String name, String link) {
+        startReplaceable(name);
+        OpenElement element = new OpenElement(name, getInsertionParent(), null);
+        created(name, link);
+        push(element);
+
+        if (name.equals("html") && rootElement == null) {
+            rootElement = element;
+        }
+        if ((name.equals("body") || name.equals("frameset")) && stack.size() == 2 && bodyElement == null) {
+            bodyElement = element;
+            // the rest of the document is not needed
+            done = headOnly;
+        }
+
+        return element;
+    }
+
+    /**
+     * Inserts an element which is closed right away (a void element)
+     *
+     * @param tag The start tag
+     */
+    private void insertEmpty(HtmlTokenizer.Tag tag) {
+        created(tag.getName(), getLink(tag));
+
+        OpenElement parent = getInsertionParent();
+        if (tag.getName().equals("input") && parent != null) {
+            // the input is added to the enclosing forms when the subtrees having it are complete
+            if (parent.inputs == null) {
+                parent.inputs = new LoginDetector.FormCandidate("", "");
+            }
+            parent.inputs.addInput(getValue(tag, "type"), getValue(tag, "name"), getValue(tag, "id"));
+        }
+    }
+
+    private OpenElement insertForm(HtmlTokenizer.Tag tag, boolean open, boolean checkTemplate) {
+        if (open) {
+            startReplaceable("form");
+        }
+        created("form", getLink(tag));
+        boolean pointed = !checkTemplate || !onStack("template");
+        // jsoup sets the action of an expanded isindex on the form element pointer
+        String action = pointed && isindexAction != null ? isindexAction : getValue(tag, "action");
+        LoginDetector.FormCandidate candidate = new LoginDetector.FormCandidate(getValue(tag, "method"), action);
+        OpenElement form = new OpenElement("form", getInsertionParent(), candidate);
+        if (pointed) {
+            formElement = form;
+        }
+
+        if (open) {
+            push(form);
+        } else {
+            sink.form(candidate);
+        }
+
+        return form;
+    }
+
+    /**
+     * Inserts an element having text content (e.g. a title or a script)
+     *
+     * @param tag   The start tag
+     * @param state The content state of the tokenizer
+     */
+    private void insertText(HtmlTokenizer.Tag tag, int state) {
+        OpenElement parent = getInsertionParent();
+        if (tag.getName().equals("title") && !titleFound && parent != null && parent.inHead) {
+            titleFound = true;
+            title = new StringBuilder();
+        }
+
+        tokenizer.setContentState(state, tag.getName());
+        insert(tag);
+        originalMode = mode;
+        mode = Mode.TEXT;
+    }
+
+    private void finishTitle() {
+        if (title != null) {
+            sink.title(title.toString());
+            title = null;
+        }
+    }
+
+    private void created(String name, String link) {
+        if (TagAnalyzers.isHeadingTag(name)) {
+            sink.heading(name.charAt(1) - '0');
+        }
+        if (link != null) {
+            sink.link(link);
+        }
+    }
+
+    /**
+     * Adds the link attributes missing from the root or the body, e.g. of a second html start tag
+     *
+     * @param element The element
+     * @param tag     The start tag
+     */
+    private void mergeAttributes(OpenElement element, HtmlTokenizer.Tag tag) {
+        if (element.href == null) {
+            element.href = tag.attr("href");
+        }
+        if (element.src == null) {
+            element.src = tag.attr("src");
+        }
+    }
+
+    private void finishLink(OpenElement element) {
+        if (element != null && element.href != null) {
+            sink.link(element.href);
+        } else if (element != null && element.src != null) {
+            sink.link(element.src);
+        }
+    }
+
+    /**
+     * Gets the parent of the inserted element: the current element, or the parent of the last table for a fostered
+     * element which is inserted before it
+     *
+     * @return The parent element or null if the stack is empty
+     */
+    private OpenElement getInsertionParent() {
+        if (stack.isEmpty()) {
+            return null;
+        }
+
+        OpenElement current = stack.get(stack.size() - 1);
+        if (fosterInserts && TABLE_FOSTER.contains(current.name)) {
+            return getFosterParent();
+        }
+
+        return current;
+    }
+
+    /**
+     * Gets the parent of a fostered element: the parent of the last table, or the element before the table on the
+     * stack if the table has no parent
+     *
+     * @return The foster parent element
+     */
+    private OpenElement getFosterParent() {
+        int index = stack.size() - 1;
+        while (index > 0 && !stack.get(index).name.equals("table")) {
+            index--;
+        }
+        if (index == 0) {
+            return stack.get(0);
+        }
+
+        OpenElement table = stack.get(index);
+        return table.parent != null ? table.parent : stack.get(index - 1);
+    }
+
+    /**
+     * Tells the sink about an element a frameset may replace: the second one on the stack, while the frameset is
+     * allowed
+     *
+     * @param name The name of the inserted element
+     */
+    private void startReplaceable(String name) {
+        // the frameset is allowed again right after the body is inserted for a tag or a text after the head
+        if (stack.size() == 1 && (framesetOk || name.equals("body"))) {
+            sink.replaceableStarted();
+        }
+    }
+
+    private static String getLink(HtmlTokenizer.Tag tag) {
+        String href = tag.attr("href");
+
+        return href != null ? href : tag.attr("src");
+    }
+
+    private static String getValue(HtmlTokenizer.Tag tag, String name) {
+        String value = tag.attr(name);
+
+        return value != null ? value : "";
+    }
+
+    // the stack of the open elements
+
+    private void push(OpenElement element) {
+        push(stack.size(), element);
+    }
+
+    private void push(int index, OpenElement element) {
+        stack.add(index, element);
+        opened(element);
+    }
+
+    private void pop() {
+        removeAt(stack.size() - 1);
+    }
+
+    private void remove(OpenElement element) {
+        int index = stack.lastIndexOf(element);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    private void removeAt(int index) {
+        closed(stack.remove(index));
+    }
+
+    private void replace(OpenElement element, OpenElement replacement) {
+        stack.set(stack.lastIndexOf(element), replacement);
+        opened(replacement);
+        closed(element);
+    }
+
+    /**
+     * Moves an element and its subtree to another parent, the inputs of the subtree leave the forms of the previous
+     * parent
+     *
+     * @param element The moved element
+     * @param parent  The new parent
+     */
+    private void move(OpenElement element, OpenElement parent) {
+        OpenElement previous = element.parent;
+        element.parent = parent;
+        if (element.openCount > 0) {
+            opened(parent);
+            closed(previous);
+        }
+    }
+
+    /**
+     * Counts an opened element in its subtree and in the subtrees of its ancestors until one of them is already
+     * incomplete
+     *
+     * @param element The opened element, or the parent getting an incomplete child
+     */
+    private static void opened(OpenElement element) {
+        for (OpenElement ancestor = element; ancestor != null && ancestor.openCount++ == 0; ) {
+            ancestor = ancestor.parent;
+        }
+    }
+
+    /**
+     * Counts a closed element in its subtree, a complete subtree is counted in its parent and its inputs are added
+     * to the parent (a complete form is passed to the sink)
+     *
+     * @param element The closed element, or the parent losing an incomplete child
+     */
+    private void closed(OpenElement element) {
+        for (OpenElement ancestor = element; ancestor != null && --ancestor.openCount == 0; ) {
+            if (ancestor.candidate != null) {
+                sink.form(ancestor.candidate);
+            }
+            OpenElement parent = ancestor.parent;
+            if (ancestor.inputs != null && parent != null) {
+                if (parent.inputs == null) {
+                    parent.inputs = new LoginDetector.FormCandidate("", "");
+                }
+                parent.inputs.addInputs(ancestor.inputs);
+            }
+            // the inputs are added once, e.g. the head is reopened for the elements following it
+            ancestor.inputs = null;
+            ancestor = parent;
+        }
+    }
+
+    private String currentName() {
+        return stack.isEmpty() ? "" : stack.get(stack.size() - 1).name;
+    }
+
+    private OpenElement getFromStack(String name) {
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            if (stack.get(i).name.equals(name)) {
+                return stack.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    private boolean onStack(String name) {
+        return getFromStack(name) != null;
+    }
+
+    private void popStackToClose(String name) {
+        while (!stack.isEmpty()) {
+            String elementName = stack.get(stack.size() - 1).name;
+            pop();
+            if (elementName.equals(name)) {
+                break;
+            }
+        }
+    }
+
+    private void popStackToClose(Set<String> names) {
+        while (!stack.isEmpty()) {
+            String elementName = stack.get(stack.size() - 1).name;
+            pop();
+            if (names.contains(elementName)) {
+                break;
+            }
+        }
+    }
+
+    private void clearStackToContext(String... names) {
+        List<String> context = Arrays.asList(names);
+        while (!stack.isEmpty() && !context.contains(currentName()) && !currentName().equals("html")) {
+            pop();
+        }
+    }
+
+    private void generateImpliedEndTags(String excluded) {
+        while (IMPLIED_END_TAGS.contains(currentName()) && !currentName().equals(excluded)) {
+            pop();
+        }
+    }
+
+    private boolean inScope(String name) {
+        return inScope(name, SCOPE, null);
+    }
+
+    private boolean inButtonScope(String name) {
+        return inScope(name, SCOPE, BUTTON_SCOPE);
+    }
+
+    private boolean inTableScope(String name) {
+        return inScope(name, TABLE_SCOPE, null);
+    }
+
+    private boolean inScope(String name, Set<String> boundaries, Set<String> extraBoundaries) {
+        return inScope(Collections.singleton(name), boundaries, extraBoundaries);
+    }
+
+    private boolean inScope(Set<String> names, Set<String> boundaries, Set<String> extraBoundaries) {
+        int bottom = stack.size() - 1;
+        int top = bottom > MAX_SCOPE_SEARCH_DEPTH ? bottom - MAX_SCOPE_SEARCH_DEPTH : 0;
+        for (int i = bottom; i >= top; i--) {
+            String elementName = stack.get(i).name;
+            if (names.contains(elementName)) {
+                return true;
+            }
+            if (boundaries.contains(elementName) || (extraBoundaries != null && extraBoundaries.contains(elementName))) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean inSelectScope(String name) {
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            String elementName = stack.get(i).name;
+            if (elementName.equals(name)) {
+                return true;
+            }
+            if (!SELECT_SCOPE.contains(elementName)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    // the list of the active formatting elements
+
+    private FormattingElement getActiveFormattingElement(String name) {
+        for (int i = formattingElements.size() - 1; i >= 0; i--) {
+            FormattingElement formatting = formattingElements.get(i);
+            if (formatting == null) {
+                break;
+            }
+            if (formatting.name.equals(name)) {
+                return formatting;
+            }
+        }
+
+        return null;
+    }
+
+    private FormattingElement getFormattingElement(OpenElement element) {
+        for (int i = formattingElements.size() - 1; i >= 0; i--) {
+            FormattingElement formatting = formattingElements.get(i);
+            if (formatting != null && formatting.element == element) {
+                return formatting;
+            }
+        }
+
+        return null;
+    }
+
+    private void removeFromActiveFormattingElements(OpenElement element) {
+        FormattingElement formatting = getFormattingElement(element);
+        if (formatting != null) {
+            formattingElements.remove(formatting);
+        }
+    }
+
+    private void pushActiveFormattingElement(OpenElement element, HtmlTokenizer.Tag tag) {
+        FormattingElement formatting = new FormattingElement(element.name, getAttributes(tag), getLink(tag));
+        formatting.element = element;
+        pushWithBookmark(formatting, formattingElements.size());
+    }
+
+    private void pushWithBookmark(FormattingElement formatting, int bookmark) {
+        // at most three identical elements are kept after the last marker
+        int seen = 0;
+        int ceil = Math.max(formattingElements.size() - 1 - MAX_USED_FORMATTING_ELEMENTS, 0);
+        for (int i = formattingElements.size() - 1; i >= ceil; i--) {
+            FormattingElement other = formattingElements.get(i);
+            if (other == null) {
+                break;
+            }
+            if (other.name.equals(formatting.name) && other.attributes.equals(formatting.attributes)) {
+                seen++;
+            }
+            if (seen == 3) {
+                formattingElements.remove(i);
+                break;
+            }
+        }
+
+        if (bookmark >= 0 && bookmark <= formattingElements.size()) {
+            formattingElements.add(bookmark, formatting);
+        } else {
+            formattingElements.add(formatting);
+        }
+    }
+
+    private void clearFormattingElementsToLastMarker() {
+        while (!formattingElements.isEmpty()) {
+            if (formattingElements.remove(formattingElements.size() - 1) == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reopens the formatting elements closed by the end of a block, e.g. the link of "&lt;a&gt;&lt;p&gt;" in the next
+     * paragraph
+     *
+     */
+    private void reconstructFormattingElements() {
+        int size = formattingElements.size();
+        if (size == 0) {
+            return;
+        }
+        FormattingElement last = formattingElements.get(size - 1);
+        if (last == null || stack.contains(last.element)) {
+            return;
+        }
+
+        int ceil = Math.max(size - MAX_USED_FORMATTING_ELEMENTS, 0);
+        int position = size - 1;
+        boolean skip = false;
+        while (true) {
+            if (position == ceil) {
+                skip = true;
+                break;
+            }
+            FormattingElement entry = formattingElements.get(--position);
+            if (entry == null || stack.contains(entry.element)) {
+                break;
+            }
+        }
+
+        while (true) {
+            if (!skip) {
+                position++;
+            }
+            skip = false;
+            FormattingElement entry = formattingElements.get(position);
+            entry.element = insert(entry.name, entry.link);
+            if (position == size - 1) {
+                break;
+            }
+        }
+    }
+
+    private static List<String> getAttributes(HtmlTokenizer.Tag tag) {
+        // the names and the values in the order of the tag, jsoup compares the attributes in order
+        List<String> attributes = new ArrayList<>(tag.getAttributeCount() * 2);
+        for (int i = 0; i < tag.getAttributeCount(); i++) {
+            attributes.add(tag.getAttributeName(i));
+            attributes.add(tag.getAttributeValue(i));
+        }
+
+        return attributes;
+    }
+
+    private static boolean isWhitespace(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\f' && c != '\r') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isNul(char[] chars, int start, int end) {
+        // the tokenizer passes a text token made of a single NUL alone
+        return end - start == 1 && chars[start] == 0;
+    }
+
+    private static Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * The insertion modes of the tree construction
+     */
+    private enum Mode {
+        INITIAL, BEFORE_HTML, BEFORE_HEAD, IN_HEAD, IN_HEAD_NOSCRIPT, AFTER_HEAD, IN_BODY, TEXT, IN_TABLE, IN_CAPTION,
+        IN_COLUMN_GROUP, IN_TABLE_BODY, IN_ROW, IN_CELL, IN_SELECT, IN_SELECT_IN_TABLE, IN_TEMPLATE, AFTER_BODY,
+        IN_FRAMESET, AFTER_FRAMESET, AFTER_AFTER_BODY, AFTER_AFTER_FRAMESET
+    }
+
+    /**
+     * An element of the stack of the open elements, or a closed element having open descendants
+     */
+    private static class OpenElement {
+        private final String name;
+
+        // the element is the head or one of its descendants
+        private final boolean inHead;
+
+        // the form candidate of a form element
+        private final LoginDetector.FormCandidate candidate;
+
+        // the parent in the document, it is changed when the adoption agency moves the element
+        private OpenElement parent;
+
+        // the number of the open elements of the subtree including itself, the subtree is complete at 0
+        private int openCount = 0;
+
+        // the inputs of the complete part of the subtree, they are added to the parent when the subtree is complete
+        // (the login detection uses the name of a text field only if it is the single one, their order is not kept)
+        private LoginDetector.FormCandidate inputs;
+
+        // the link attributes of the root and the body, the ones of the other elements are reported when created
+        private String href;
+        private String src;
+
+        OpenElement(String name, OpenElement parent, LoginDetector.FormCandidate candidate) {
+            this.name = name;
+            this.parent = parent;
+            this.inHead = name.equals("head") || parent != null && parent.inHead;
+            this.candidate = candidate;
+            this.inputs = candidate;
+        }
+    }
+
+    /**
+     * An entry of the list of the active formatting elements
+     */
+    private static class FormattingElement {
+        private final String name;
+        private final List<String> attributes;
+        private final String link;
+
+        // the element on the stack, the entry is reopened by a clone when it is closed
+        private OpenElement element;
+
+        FormattingElement(String name, List<String> attributes, String link) {
+            this.name = name;
+            this.attributes = attributes;
+            this.link = link;
+        }
+    }
+
+    /**
+     * Gets the elements of the document from the builder
+     */
+    interface Sink {
+
+        /**
+         * Gets the document type declaration
+         *
+         * @param name     The lower cased name
+         * @param publicId Public identifier (empty if missing)
+         * @param systemId System identifier (empty if missing)
+         */
+        void doctype(String name, String publicId, String systemId);
+
+        /**
+         * Gets the text of the first title element of the head
+         *
+         * @param title The text of the title
+         */
+        void title(String title);
+
+        /**
+         * Gets a heading element
+         *
+         * @param level The level of the heading (1-6)
+         */
+        void heading(int level);
+
+        /**
+         * Gets the href (or the src) attribute of an element having one
+         *
+         * @param link The link
+         */
+        void link(String link);
+
+        /**
+         * Gets a completed form
+         *
+         * @param candidate The form candidate with the inputs of the form
+         */
+        void form(LoginDetector.FormCandidate candidate);
+
+        /**
+         * Gets the start of an element a frameset may replace (e.g. the body), before the element is reported
+         */
+        void replaceableStarted();
+
+        /**
+         * Gets the replacement by a frameset of the last element started as replaceable, the elements reported since
+         * its start are removed from the document
+         */
+        void replaced();
+    }
+}
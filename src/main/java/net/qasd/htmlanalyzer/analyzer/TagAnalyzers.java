@@ -2,21 +2,18 @@ package net.qasd.htmlanalyzer.analyzer;
 
 import net.qasd.htmlanalyzer.util.MutableInteger;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
 public class TagAnalyzers {
 
-    // possible external hypermedia links:
-    // protocol://different_host/path?query
-    // //different_host/path?query
-    private static final String EXTERNAL_LINKS_REGEX_TEMPLATE = "(?:.+:\\/\\/|\\/\\/)((?!%s)[^/]+)(?:\\/.*)?";
     private static final List<String> headingTags = new ArrayList<>(6);
 
     // prepare the heading tags (h1 to h6)
@@ -36,26 +33,37 @@ public class TagAnalyzers {
 
         // loop through the found headings to sum up the occurrences by heading level
         Map<String, MutableInteger> headingLevelCounter = new HashMap<>();
-        headings.forEach(heading -> {
-            String headingLevel = heading.tagName();
-            MutableInteger count = headingLevelCounter.get(headingLevel);
-            // initial entry
-            if (count == null) {
-                headingLevelCounter.put(headingLevel, new MutableInteger(1));
-            } else {
-                // update the existing value
-                count.setValue(count.getValue() + 1);
-            }
-        });
+        headings.forEach(heading -> countHeading(heading.tagName(), headingLevelCounter));
 
         return headingLevelCounter;
     }
 
+    /**
+     * Increases the occurrence of the given heading level
+     *
+     * @param headingLevel        Heading level (tag name of the heading)
+     * @param headingLevelCounter Sums of the heading levels to be updated
+     */
+    static void countHeading(String headingLevel, Map<String, MutableInteger> headingLevelCounter) {
+        MutableInteger count = headingLevelCounter.get(headingLevel);
+        // initial entry
+        if (count == null) {
+            headingLevelCounter.put(headingLevel, new MutableInteger(1));
+        } else {
+            // update the existing value
+            count.setValue(count.getValue() + 1);
+        }
+    }
+
     /**
      * Sums up the internal and external links
+     * <p>
+     * The links to the same host and to the other hosts of the same site (e.g. "cdn.example.com" for
+     * "www.example.com") are internal, the third-party links are external.
      *
      * @param document Parsed html document
-     * @return the sumps of the internal/external links
+     * @param host     The host of the page
+     * @return the sums of the internal/external links
      */
     public static HyperMediaLinkSums sumUpHypermediaLinks(Document document, String host) {
         HyperMediaLinkSums result = new HyperMediaLinkSums();
@@ -63,37 +71,91 @@ public class TagAnalyzers {
         // collect all elements with href and src (a[href], link[href], area[href], img[src], script[src])
         Elements hyperMediaElements = document.select("[href], [src]");
 
-        // compile to regex patter to us it for all found elements
-        Pattern externalLinksPattern = Pattern.compile(
-            String.format(EXTERNAL_LINKS_REGEX_TEMPLATE, Pattern.quote(host))
-        );
+        LinkClassifier linkClassifier = LinkClassifier.newInstance(host);
 
-        hyperMediaElements.forEach(element -> {
-            // get the link from either href or src attribute
-            String link;
-            if (element.hasAttr("href")) {
-                link = element.attr("href");
-            } else {
-                link = element.attr("src");
-            }
-
-            // if external regex matches increase the count
-            if (externalLinksPattern.matcher(link).matches()) {
-                result.external.setValue(result.external.getValue() + 1);
-            } else {//any empty link counts as internal
-                result.internal.setValue(result.internal.getValue() + 1);
-            }
-        });
+        hyperMediaElements.forEach(element -> countHypermediaLink(element, linkClassifier, result));
 
         return result;
     }
 
+    /**
+     * Checks whether the given tag name is a heading tag (h1 to h6)
+     *
+     * @param tagName Tag name
+     * @return true if the tag is a heading
+     */
+    static boolean isHeadingTag(String tagName) {
+        return tagName.length() == 2
+            && (tagName.charAt(0) == 'h' || tagName.charAt(0) == 'H')
+            && tagName.charAt(1) >= '1' && tagName.charAt(1) <= '6';
+    }
+
+    /**
+     * Counts the link of a hypermedia element (an element having href or src) as internal or external
+     *
+     * @param element        Element with href or src attribute
+     * @param linkClassifier The link classifier of the page
+     * @param sums           Sums to be updated
+     */
+    static void countHypermediaLink(Element element, LinkClassifier linkClassifier, HyperMediaLinkSums sums) {
+        // get the link from either href or src attribute
+        String link;
+        if (element.hasAttr("href")) {
+            link = element.attr("href");
+        } else {
+            link = element.attr("src");
+        }
+
+        countHypermediaLink(link, linkClassifier, sums);
+    }
+
+    /**
+     * Counts the link (the href or src attribute value) as internal or external
+     *
+     * @param link           The link
+     * @param linkClassifier The link classifier of the page
+     * @param sums           Sums to be updated
+     */
+    static void countHypermediaLink(String link, LinkClassifier linkClassifier, HyperMediaLinkSums sums) {
+        switch (linkClassifier.classify(link)) {
+            case THIRD_PARTY:
+                sums.external.setValue(sums.external.getValue() + 1);
+                sums.countExternalHost(linkClassifier.getHost(link));
+                break;
+            case SAME_SITE:
+                sums.sameSite++;
+                sums.internal.setValue(sums.internal.getValue() + 1);
+                break;
+            default:
+                // any relative or empty link counts as internal
+                sums.internal.setValue(sums.internal.getValue() + 1);
+        }
+    }
+
     /**
      * Simple class to store hypermedia link sums
      */
     public static class HyperMediaLinkSums {
         private MutableInteger internal = new MutableInteger(0);
         private MutableInteger external = new MutableInteger(0);
+        private int sameSite = 0;
+        private final Map<String, MutableInteger> externalHosts = new LinkedHashMap<>();
+
+        public HyperMediaLinkSums() {
+        }
+
+        /**
+         * Initiates the sums with the given counts
+         *
+         * @param internal The number of the internal links
+         * @param external The number of the external links
+         * @param sameSite The number of the internal links to the other hosts of the same site
+         */
+        public HyperMediaLinkSums(int internal, int external, int sameSite) {
+            this.internal.setValue(internal);
+            this.external.setValue(external);
+            this.sameSite = sameSite;
+        }
 
         public MutableInteger getInternal() {
             return internal;
@@ -103,6 +165,33 @@ public class TagAnalyzers {
             return external;
         }
 
+        /**
+         * Gets the number of the internal links to the other hosts of the same site
+         *
+         * @return The number of the same site links
+         */
+        public int getSameSite() {
+            return sameSite;
+        }
+
+        /**
+         * Gets the number of the external links by host
+         *
+         * @return The link counts by host in the order the hosts are first seen
+         */
+        public Map<String, MutableInteger> getExternalHosts() {
+            return externalHosts;
+        }
+
+        private void countExternalHost(String host) {
+            MutableInteger count = externalHosts.get(host);
+            if (count == null) {
+                externalHosts.put(host, new MutableInteger(1));
+            } else {
+                count.setValue(count.getValue() + 1);
+            }
+        }
+
         public String toString() {
             return String.format("{internal=%d, external=%d}", internal.getValue(), external.getValue());
         }
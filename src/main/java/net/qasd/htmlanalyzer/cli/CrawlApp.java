@@ -0,0 +1,220 @@
+package net.qasd.htmlanalyzer.cli;
+
+import net.qasd.htmlanalyzer.SiteCrawler;
+import net.qasd.htmlanalyzer.SiteReport;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+import net.qasd.htmlanalyzer.util.PoliteFetcher;
+import net.qasd.htmlanalyzer.util.PooledFetcher;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import net.qasd.htmlanalyzer.web.ResultJsonWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command line entry point crawling a site from a seed url and analyzing its pages
+ * <p>
+ * The page results are written to the standard output (or the output file) as newline delimited json; the site report
+ * is written as json to the report file or to the standard error.
+ */
+public class CrawlApp {
+
+    public static final String USAGE = "Usage: java -cp htmlanalyzer-jar-with-dependencies.jar net.qasd.htmlanalyzer.cli.CrawlApp [options] <seed url>\n"
+        + "  --depth <n>            the maximum number of the links from the seed to a page (2)\n"
+        + "  --max-pages <n>        the maximum number of the crawled pages (100)\n"
+        + "  --concurrency <n>      the maximum number of the pages fetched at the same time (8)\n"
+        + "  --host-concurrency <n> the maximum number of the pages of a host fetched at the same time (4)\n"
+        + "  --delay <ms>           the minimum delay between the fetches of a host in milliseconds (0)\n"
+        + "  --analyzers <list>     the comma separated analyzers to run (all)\n"
+        + "  --output <file>        the output file of the page results (the standard output)\n"
+        + "  --report <file>        the output file of the site report (the standard error)\n"
+        + "  --pooled               fetches the pages with the pooled asynchronous fetcher\n";
+
+    public static void main(String[] args) {
+        // the analyzer logs every page at info level
+        if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+        }
+
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command
+     *
+     * @param args The command line arguments
+     * @param out  The standard output
+     * @param err  The standard error
+     * @return The exit code
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        AnalyzerEngine engine;
+        try {
+            options = Options.parse(args);
+            engine = AnalyzerEngine.newInstance(options.analyzers);
+        } catch (IllegalArgumentException usageException) {
+            err.println(usageException.getMessage());
+            err.print(USAGE);
+            return OfflineApp.EXIT_USAGE;
+        }
+
+        PooledFetcher pooledFetcher = options.pooled ? PooledFetcher.newInstance() : null;
+        Fetcher fetcher = pooledFetcher != null ? pooledFetcher : UrlReader.newInstance();
+
+        SiteReport report;
+        try (Writer writer = OfflineApp.openOutput(options.output, out);
+             PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings()
+                 .setMaxFetches(options.concurrency)
+                 .setMaxFetchesPerHost(options.hostConcurrency)
+                 .setMinDelayMillis(options.delayMillis));
+             SiteCrawler siteCrawler = SiteCrawler.newInstance(politeFetcher, engine, options.concurrency)) {
+            JsonWriter json = JsonWriter.newInstance(writer);
+            report = siteCrawler.crawl(options.seed, options.depth, options.maxPages, batchResult -> {
+                ResultJsonWriter.write(json, batchResult.getUrl(), batchResult.getResult(), batchResult.getElapsedMillis());
+                json.newLine();
+            });
+        } catch (IOException outputException) {
+            err.println("The site cannot be crawled: " + outputException.getMessage());
+            return OfflineApp.EXIT_FAILED;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            err.println("The crawling is interrupted");
+            return OfflineApp.EXIT_FAILED;
+        } finally {
+            if (pooledFetcher != null) {
+                pooledFetcher.close();
+            }
+        }
+
+        try (Writer writer = OfflineApp.openOutput(options.report, err)) {
+            JsonWriter json = JsonWriter.newInstance(writer);
+            ResultJsonWriter.write(json, report);
+            json.newLine();
+        } catch (IOException reportException) {
+            err.println("The site report cannot be written: " + reportException.getMessage());
+            return OfflineApp.EXIT_FAILED;
+        }
+
+        return OfflineApp.EXIT_OK;
+    }
+
+    /**
+     * The command line options
+     */
+    static class Options {
+        int depth = 2;
+        int maxPages = 100;
+        int concurrency = 8;
+        int hostConcurrency = 4;
+        long delayMillis = 0;
+        String analyzers;
+        Path output;
+        Path report;
+        boolean pooled;
+        URL seed;
+
+        /**
+         * Parses the command line arguments
+         *
+         * @param args The command line arguments
+         * @return The options
+         * @throws IllegalArgumentException If an argument is not valid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--depth":
+                        options.depth = nonNegative(value(args, ++i, arg), arg);
+                        break;
+                    case "--max-pages":
+                        options.maxPages = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--concurrency":
+                        options.concurrency = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--host-concurrency":
+                        options.hostConcurrency = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--delay":
+                        options.delayMillis = nonNegative(value(args, ++i, arg), arg);
+                        break;
+                    case "--analyzers":
+                        options.analyzers = value(args, ++i, arg);
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--report":
+                        options.report = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--pooled":
+                        options.pooled = true;
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("The option \"" + arg + "\" is not known");
+                        }
+                        if (options.seed != null) {
+                            throw new IllegalArgumentException("Please give only one seed url");
+                        }
+                        try {
+                            options.seed = new URL(arg);
+                        } catch (MalformedURLException urlException) {
+                            throw new IllegalArgumentException("The seed url \"" + arg + "\" is not valid");
+                        }
+                        String protocol = options.seed.getProtocol().toLowerCase(Locale.ROOT);
+                        if (!"http".equals(protocol) && !"https".equals(protocol)) {
+                            throw new IllegalArgumentException("The seed url must be an http or https url");
+                        }
+                }
+            }
+
+            if (options.seed == null) {
+                throw new IllegalArgumentException("Please give the seed url to crawl");
+            }
+
+            return options;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("The option \"" + option + "\" requires a value");
+            }
+
+            return args[index];
+        }
+
+        private static int positive(String value, String option) {
+            return atLeast(value, option, 1, "a positive number");
+        }
+
+        private static int nonNegative(String value, String option) {
+            return atLeast(value, option, 0, "a non negative number");
+        }
+
+        private static int atLeast(String value, String option, int minimum, String requirement) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number >= minimum) {
+                    return number;
+                }
+            } catch (NumberFormatException numberException) {
+                // reported below
+            }
+
+            throw new IllegalArgumentException("The option \"" + option + "\" requires " + requirement);
+        }
+    }
+}
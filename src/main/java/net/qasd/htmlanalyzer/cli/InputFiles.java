@@ -0,0 +1,160 @@
+package net.qasd.htmlanalyzer.cli;
+
+import net.qasd.htmlanalyzer.util.WarcReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Iterates the html files of the command line inputs
+ * <p>
+ * An input is a directory (the ".html", ".htm", ".warc" and ".warc.gz" files in it recursively), a glob (e.g.
+ * "pages/**&#47;*.html"), a file list prefixed with "@" (one path per line), "-" for the paths on the standard input,
+ * or a file. The inputs are walked lazily one after the other, so the paths are never collected in memory.
+ */
+class InputFiles implements Iterator<Path>, Closeable {
+
+    static final String STANDARD_INPUT = "-";
+    static final String FILE_LIST_PREFIX = "@";
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private final Iterator<String> inputs;
+
+    private final BufferedReader standardInput;
+
+    private Stream<Path> stream;
+
+    private Iterator<Path> current = Collections.emptyIterator();
+
+    /**
+     * @param inputs        The command line inputs
+     * @param standardInput The reader of the standard input
+     */
+    InputFiles(List<String> inputs, BufferedReader standardInput) {
+        this.inputs = inputs.iterator();
+        this.standardInput = standardInput;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            closeStream();
+            if (!inputs.hasNext()) {
+                return false;
+            }
+            stream = open(inputs.next());
+            current = stream.iterator();
+        }
+
+        return true;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    /**
+     * Opens the paths of the input
+     *
+     * @param input The command line input
+     * @return The lazy stream of the paths
+     */
+    private Stream<Path> open(String input) {
+        try {
+            if (STANDARD_INPUT.equals(input)) {
+                return toPaths(standardInput.lines());
+            }
+            if (input.startsWith(FILE_LIST_PREFIX)) {
+                return toPaths(Files.lines(Paths.get(input.substring(FILE_LIST_PREFIX.length()))));
+            }
+
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                return Files.find(path, Integer.MAX_VALUE, (file, attributes) -> attributes.isRegularFile() && isInputFile(file));
+            }
+
+            int globStart = indexOfGlob(input);
+            if (globStart >= 0) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                Path base = getGlobBase(input, globStart);
+                if (!Files.isDirectory(base)) {
+                    return Stream.empty();
+                }
+                return Files.find(base, Integer.MAX_VALUE, (file, attributes) -> attributes.isRegularFile() && matcher.matches(file));
+            }
+
+            // a missing file is reported as a failed result
+            return Stream.of(path);
+        } catch (IOException openException) {
+            throw new UncheckedIOException(openException);
+        }
+    }
+
+    private static Stream<Path> toPaths(Stream<String> lines) {
+        return lines.map(String::trim).filter(line -> !line.isEmpty()).map(Paths::get);
+    }
+
+    private static boolean isInputFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        return name.endsWith(".html") || name.endsWith(".htm") || WarcReader.isWarcFile(file);
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the directory before the first path segment containing a glob character
+     *
+     * @param glob      The glob
+     * @param globStart The index of the first glob character
+     * @return The directory to walk
+     */
+    static Path getGlobBase(String glob, int globStart) {
+        int separator = glob.lastIndexOf('/', globStart);
+        if (separator < 0) {
+            return Paths.get("");
+        }
+
+        return Paths.get(separator == 0 ? "/" : glob.substring(0, separator));
+    }
+
+    private void closeStream() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+            current = Collections.emptyIterator();
+        }
+    }
+
+    @Override
+    public void close() {
+        closeStream();
+    }
+}
@@ -0,0 +1,421 @@
+package net.qasd.htmlanalyzer.cli;
+
+import net.qasd.htmlanalyzer.BatchAnalyzer;
+import net.qasd.htmlanalyzer.FileBatchAnalyzer;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.StreamingAnalyzer;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+import net.qasd.htmlanalyzer.util.WarcReader;
+import net.qasd.htmlanalyzer.web.ResultJsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Command line entry point analyzing local html files and WARC archives without fetching the pages
+ * <p>
+ * The results are written to the standard output (or the output file) as newline delimited json or csv; the progress
+ * and the throughput are reported on the standard error.
+ */
+public class OfflineApp {
+
+    public static final String USAGE = "Usage: java -cp htmlanalyzer-jar-with-dependencies.jar net.qasd.htmlanalyzer.cli.OfflineApp [options] <input>...\n"
+        + "  <input>                a directory, a glob (e.g. \"pages/**/*.html\"), a .warc or .warc.gz archive, @<file> listing one path per line or - for the paths on the standard input\n"
+        + "  --format ndjson|csv    the output format (ndjson)\n"
+        + "  --output <file>        the output file (the standard output)\n"
+        + "  --ordered              writes the results in the input order instead of the completion order\n"
+        + "  --threads <n>          the number of the analyzer threads (the number of the cores)\n"
+        + "  --memory <mb>          the memory budget of the files in flight in megabytes (half of the maximum heap)\n"
+        + "  --analyzers <list>     the comma separated analyzers to run (all)\n"
+        + "  --engine dom|streaming the parsed DOM or the streaming analyzer of the built-in analyzers (dom)\n"
+        + "  --base-url <url>       the url of the --root directory, the file urls are resolved against it (file: urls)\n"
+        + "  --root <directory>     the directory the file paths are relative to for --base-url (the working directory)\n";
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    /**
+     * The output formats
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    /**
+     * The analyzer engines
+     */
+    public enum Engine {
+        DOM,
+        STREAMING
+    }
+
+    public static void main(String[] args) {
+        // the analyzer logs every page at info level, only the warnings are useful for millions of pages
+        if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+        }
+
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Runs the command
+     *
+     * @param args   The command line arguments
+     * @param in     The standard input
+     * @param out    The standard output
+     * @param err    The standard error
+     * @return The exit code
+     */
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        Options options;
+        AnalyzerEngine engine;
+        StreamingAnalyzer streamingAnalyzer;
+        try {
+            options = Options.parse(args);
+            engine = AnalyzerEngine.newInstance(options.analyzers);
+            streamingAnalyzer = null;
+            if (options.engine == Engine.STREAMING) {
+                // all built-in analyzers if all analyzers are selected, the registered ones are not streamed
+                streamingAnalyzer = engine == AnalyzerEngine.getDefault() ? StreamingAnalyzer.getDefault() : StreamingAnalyzer.newInstance(engine.getNames());
+            }
+        } catch (IllegalArgumentException usageException) {
+            err.println(usageException.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        Function<Path, URL> urlResolver = newUrlResolver(options.baseUrl, options.root);
+        AtomicLong analyzed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long start = System.nanoTime();
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offline-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> report(err, "Analyzed", analyzed.get(), failed.get(), start),
+            PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        BufferedReader standardInput = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try (InputFiles files = new InputFiles(options.inputs, standardInput);
+             Writer writer = openOutput(options.output, out);
+             FileBatchAnalyzer fileBatchAnalyzer = streamingAnalyzer != null
+                 ? FileBatchAnalyzer.newInstance(options.threads, options.memoryBudgetBytes, options.ordered, streamingAnalyzer)
+                 : FileBatchAnalyzer.newInstance(options.threads, options.memoryBudgetBytes, options.ordered, engine)) {
+
+            BatchAnalyzer.ResultListener writerListener = newListener(options.format, writer);
+            BatchAnalyzer.ResultListener listener = batchResult -> {
+                writerListener.onResult(batchResult);
+                analyzed.incrementAndGet();
+                if (!batchResult.getResult().isSucceed()) {
+                    failed.incrementAndGet();
+                }
+            };
+
+            // the html files between the archives are analyzed as one batch
+            HtmlFiles htmlFiles = new HtmlFiles(files);
+            while (htmlFiles.hasMore()) {
+                if (htmlFiles.hasNext()) {
+                    fileBatchAnalyzer.execute(htmlFiles, urlResolver, listener);
+                } else {
+                    Path archive = htmlFiles.nextArchive();
+                    try (WarcReader records = WarcReader.open(archive)) {
+                        fileBatchAnalyzer.execute(records, listener);
+                        err.println("Read " + records.getRecords() + " records of the archive \"" + archive + "\" ("
+                            + records.getSkippedRecords() + " records are not html responses)");
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException | IllegalArgumentException outputException) {
+            err.println("The files cannot be analyzed: " + outputException.getMessage());
+            return EXIT_FAILED;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            err.println("The analyzing is interrupted");
+            return EXIT_FAILED;
+        } finally {
+            progress.shutdownNow();
+        }
+
+        report(err, "Completed", analyzed.get(), failed.get(), start);
+
+        return EXIT_OK;
+    }
+
+    /**
+     * Creates the listener writing the results in the format
+     *
+     * @param format The output format
+     * @param writer The output writer
+     * @return The result listener
+     * @throws IOException If writing the csv header fails
+     */
+    private static BatchAnalyzer.ResultListener newListener(Format format, Writer writer) throws IOException {
+        if (format == Format.CSV) {
+            ResultCsvWriter.writeHeader(writer);
+            return batchResult -> ResultCsvWriter.write(writer, batchResult.getUrl(), batchResult.getResult(), batchResult.getElapsedMillis());
+        }
+
+        JsonWriter json = JsonWriter.newInstance(writer);
+        return batchResult -> {
+            ResultJsonWriter.write(json, batchResult.getUrl(), batchResult.getResult(), batchResult.getElapsedMillis());
+            json.newLine();
+        };
+    }
+
+    /**
+     * Creates the url resolver of the files
+     *
+     * @param baseUrl The url of the root directory or null for the file urls
+     * @param root    The directory the file paths are relative to
+     * @return The url resolver
+     */
+    static Function<Path, URL> newUrlResolver(URL baseUrl, Path root) {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+
+        return file -> {
+            try {
+                if (baseUrl == null) {
+                    return file.toUri().toURL();
+                }
+
+                Path absoluteFile = file.toAbsolutePath().normalize();
+                Path relative = absoluteFile.startsWith(absoluteRoot) ? absoluteRoot.relativize(absoluteFile) : absoluteFile.getFileName();
+                StringBuilder path = new StringBuilder();
+                for (Path segment : relative) {
+                    if (path.length() > 0) {
+                        path.append('/');
+                    }
+                    path.append(segment.toString());
+                }
+
+                return new URL(baseUrl, path.toString());
+            } catch (MalformedURLException urlException) {
+                throw new IllegalArgumentException("The url of the file \"" + file + "\" is not valid", urlException);
+            }
+        };
+    }
+
+    /**
+     * Opens the buffered output writer
+     *
+     * @param output The output file or null for the stream
+     * @param out    The stream written when there is no output file, it is not closed
+     * @return The output writer
+     * @throws IOException If the file cannot be opened
+     */
+    static Writer openOutput(Path output, OutputStream out) throws IOException {
+        OutputStream outputStream = output != null ? Files.newOutputStream(output) : new NonClosingOutputStream(out);
+
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static void report(PrintStream err, String prefix, long analyzed, long failed, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        err.println(String.format(Locale.ROOT, "%s %d pages (%d failed) in %.1f s, %.1f pages/s",
+            prefix, analyzed, failed, seconds, seconds > 0 ? analyzed / seconds : 0));
+    }
+
+    /**
+     * Iterates the html files of the inputs until the next archive
+     */
+    private static class HtmlFiles implements Iterator<Path> {
+        private final Iterator<Path> paths;
+        private Path next;
+
+        HtmlFiles(Iterator<Path> paths) {
+            this.paths = paths;
+        }
+
+        private Path peek() {
+            if (next == null && paths.hasNext()) {
+                next = paths.next();
+            }
+
+            return next;
+        }
+
+        boolean hasMore() {
+            return peek() != null;
+        }
+
+        Path nextArchive() {
+            Path archive = peek();
+            next = null;
+
+            return archive;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null && !WarcReader.isWarcFile(next);
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Path file = next;
+            next = null;
+
+            return file;
+        }
+    }
+
+    /**
+     * The standard output is flushed but not closed with the writer
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * The command line options
+     */
+    static class Options {
+        Format format = Format.NDJSON;
+        Path output;
+        boolean ordered;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 2;
+        String analyzers;
+        Engine engine = Engine.DOM;
+        URL baseUrl;
+        Path root = Paths.get("");
+        List<String> inputs = new ArrayList<>();
+
+        /**
+         * Parses the command line arguments
+         *
+         * @param args The command line arguments
+         * @return The options
+         * @throws IllegalArgumentException If an argument is not valid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--format":
+                        try {
+                            options.format = Format.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException formatException) {
+                            throw new IllegalArgumentException("The format must be ndjson or csv");
+                        }
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--ordered":
+                        options.ordered = true;
+                        break;
+                    case "--threads":
+                        options.threads = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--memory":
+                        options.memoryBudgetBytes = positive(value(args, ++i, arg), arg) * 1024L * 1024L;
+                        break;
+                    case "--analyzers":
+                        options.analyzers = value(args, ++i, arg);
+                        break;
+                    case "--engine":
+                        try {
+                            options.engine = Engine.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException engineException) {
+                            throw new IllegalArgumentException("The engine must be dom or streaming");
+                        }
+                        break;
+                    case "--base-url":
+                        String baseUrl = value(args, ++i, arg);
+                        try {
+                            options.baseUrl = new URL(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+                        } catch (MalformedURLException urlException) {
+                            throw new IllegalArgumentException("The base url \"" + baseUrl + "\" is not valid");
+                        }
+                        break;
+                    case "--root":
+                        options.root = Paths.get(value(args, ++i, arg));
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("The option \"" + arg + "\" is not known");
+                        }
+                        options.inputs.add(arg);
+                }
+            }
+
+            if (options.inputs.isEmpty()) {
+                throw new IllegalArgumentException("Please give the html files to analyze");
+            }
+
+            return options;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("The option \"" + option + "\" requires a value");
+            }
+
+            return args[index];
+        }
+
+        private static int positive(String value, String option) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException numberException) {
+                // reported below
+            }
+
+            throw new IllegalArgumentException("The option \"" + option + "\" requires a positive number");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package net.qasd.htmlanalyzer.cli;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.BuiltinAnalyzers;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the html analyzer results as comma separated values
+ * <p>
+ * The values are quoted if they contain a comma, a quote or a line break (RFC 4180). The cells of the analyzers which
+ * are not run for the result and of the failed results are empty; the external hosts column has the number of the
+ * distinct external hosts.
+ */
+public class ResultCsvWriter {
+
+    public static final String HEADER = "url,status,errorCode,documentType,renderingMode,title,h1,h2,h3,h4,h5,h6,"
+        + "internalLinks,externalLinks,sameSiteLinks,externalHosts,hasLoginForm,elapsedMillis";
+
+    private ResultCsvWriter() {
+    }
+
+    /**
+     * Writes the header line
+     *
+     * @param writer The writer
+     * @throws IOException If writing fails
+     */
+    public static void writeHeader(Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    /**
+     * Writes the html analyzer result as a line
+     *
+     * @param writer        The writer
+     * @param url           The analyzed url
+     * @param result        Html analyzer result
+     * @param elapsedMillis The analyzing time in milliseconds or a negative value if it is not measured
+     * @throws IOException If writing fails
+     */
+    public static void write(Writer writer, String url, HtmlAnalyzerResult result, long elapsedMillis) throws IOException {
+        boolean succeed = result.isSucceed();
+
+        writeValue(writer, url);
+        writer.write(',');
+        writer.write(succeed ? "true" : "false");
+        writer.write(',');
+        writeValue(writer, succeed ? null : HtmlAnalyzer.Messages.getCode(result.getMessage()));
+
+        boolean documentType = succeed && result.isAnalyzed(BuiltinAnalyzers.DOCTYPE);
+        writer.write(',');
+        writeValue(writer, documentType ? result.getDocumentType() : null);
+        writer.write(',');
+        writeValue(writer, documentType && result.getRenderingMode() != null ? result.getRenderingMode().name() : null);
+        writer.write(',');
+        writeValue(writer, succeed && result.isAnalyzed(BuiltinAnalyzers.TITLE) ? result.getTitle() : null);
+
+        boolean headings = succeed && result.isAnalyzed(BuiltinAnalyzers.HEADINGS) && result.hasHeadingCounts();
+        for (int level = 1; level <= HtmlAnalyzerResult.MAX_HEADING_LEVEL; level++) {
+            writeCount(writer, headings, result.getHeadingCount(level));
+        }
+
+        boolean links = succeed && result.isAnalyzed(BuiltinAnalyzers.LINKS) && result.hasLinkCounts();
+        writeCount(writer, links, result.getInternalLinkCount());
+        writeCount(writer, links, result.getExternalLinkCount());
+        writeCount(writer, links, result.getSameSiteLinkCount());
+        writeCount(writer, links, result.getExternalHostCount());
+
+        writer.write(',');
+        if (succeed && result.isAnalyzed(BuiltinAnalyzers.LOGIN)) {
+            writer.write(result.getHasLoginForm() ? "true" : "false");
+        }
+        writer.write(',');
+        if (elapsedMillis >= 0) {
+            writer.write(Long.toString(elapsedMillis));
+        }
+        writer.write('\n');
+    }
+
+    private static void writeCount(Writer writer, boolean analyzed, int count) throws IOException {
+        writer.write(',');
+        if (analyzed) {
+            writer.write(Integer.toString(count));
+        }
+    }
+
+    /**
+     * Writes the value, quoted if it is needed
+     *
+     * @param writer The writer
+     * @param value  The value or null for an empty cell
+     * @throws IOException If writing fails
+     */
+    static void writeValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
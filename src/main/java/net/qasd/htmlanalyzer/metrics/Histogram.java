@@ -0,0 +1,109 @@
+package net.qasd.htmlanalyzer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low overhead latency histogram with fixed buckets
+ * <p>
+ * Recording a value finds its bucket with a short linear scan and increments two striped counters, so there is no
+ * lock and no allocation on the hot path. The bucket bounds are in nanoseconds and they are exported in seconds.
+ */
+public class Histogram {
+
+    /**
+     * The default bucket upper bounds in nanoseconds, from 0.5 ms to 10 s
+     */
+    static final long[] DEFAULT_BOUNDS = {
+        500000L, 1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L,
+        100000000L, 250000000L, 500000000L, 1000000000L, 2500000000L, 5000000000L, 10000000000L
+    };
+
+    private final long[] bounds;
+
+    // the last counter is for the values greater than the last bound
+    private final LongAdder[] counts;
+
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    Histogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int index = 0;
+        while (index < bounds.length && nanos > bounds[index]) {
+            index++;
+        }
+
+        counts[index].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since the given start
+     *
+     * @param startNanos The start time of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the bucket upper bounds
+     *
+     * @return The bucket upper bounds in nanoseconds
+     */
+    long[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Gets the non-cumulative bucket counts, the last one is the count of the values greater than the last bound
+     *
+     * @return The bucket counts
+     */
+    long[] getCounts() {
+        long[] values = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            values[i] = counts[i].sum();
+        }
+
+        return values;
+    }
+
+    /**
+     * Gets the sum of the recorded durations
+     *
+     * @return The sum in nanoseconds
+     */
+    long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the number of the recorded durations
+     *
+     * @return The number of the recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : counts) {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+package net.qasd.htmlanalyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the stage latency histograms, the failure counters and the fetched byte counters
+ * <p>
+ * The histograms and the counters should be looked up once and kept in a constant, the recording itself does not
+ * touch the registry. The values are exported in the Prometheus text format.
+ */
+public class Metrics {
+
+    public static final String STAGE_DURATION = "htmlanalyzer_stage_duration_seconds";
+    public static final String FAILURES = "htmlanalyzer_failures_total";
+    public static final String FETCH_BYTES = "htmlanalyzer_fetch_bytes_total";
+    public static final String REDIRECT_HOPS = "htmlanalyzer_redirect_hops_total";
+
+    /**
+     * Stage names
+     */
+    public static final String FETCH_QUEUE = "fetch_queue";
+    public static final String FETCH_DNS = "fetch_dns";
+    public static final String FETCH_CONNECT = "fetch_connect";
+    public static final String FETCH_FIRST_BYTE = "fetch_first_byte";
+    public static final String FETCH_BODY = "fetch_body";
+    public static final String PARSE = "parse";
+    public static final String RENDER = "render";
+    public static final String TOTAL = "total";
+
+    /**
+     * Fetch byte counter types, the bytes as they are transferred and after the content encoding is removed
+     */
+    public static final String TRANSFERRED = "transferred";
+    public static final String DECODED = "decoded";
+
+    /**
+     * Redirect hop counter types, the hops requested from the servers and the hops taken from the redirect cache
+     */
+    public static final String FOLLOWED = "followed";
+    public static final String SAVED = "saved";
+
+    private static final Metrics defaultMetrics = new Metrics();
+
+    private final ConcurrentMap<String, Histogram> stages = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> fetchBytes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> redirectHops = new ConcurrentHashMap<>();
+
+    Metrics() {
+    }
+
+    /**
+     * Gets the metrics shared by the application
+     *
+     * @return The default metrics
+     */
+    public static Metrics getDefault() {
+        return defaultMetrics;
+    }
+
+    /**
+     * Gets the latency histogram of the stage, it is created on the first call
+     *
+     * @param stage The stage name
+     * @return The histogram of the stage
+     */
+    public Histogram stage(String stage) {
+        return stages.computeIfAbsent(stage, name -> new Histogram());
+    }
+
+    /**
+     * Gets the failure counter, it is created on the first call
+     *
+     * @param code The failure code
+     * @return The failure counter
+     */
+    public LongAdder failure(String code) {
+        return failures.computeIfAbsent(code, name -> new LongAdder());
+    }
+
+    /**
+     * Gets the fetched byte counter, it is created on the first call
+     *
+     * @param type The counter type, {@link #TRANSFERRED} or {@link #DECODED}
+     * @return The byte counter
+     */
+    public LongAdder fetchBytes(String type) {
+        return fetchBytes.computeIfAbsent(type, name -> new LongAdder());
+    }
+
+    /**
+     * Gets the redirect hop counter, it is created on the first call
+     *
+     * @param type The counter type, {@link #FOLLOWED} or {@link #SAVED}
+     * @return The hop counter
+     */
+    public LongAdder redirectHops(String type) {
+        return redirectHops.computeIfAbsent(type, name -> new LongAdder());
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format
+     *
+     * @param writer The writer
+     * @throws IOException If writing fails
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP " + STAGE_DURATION + " The duration of the analyzing stages.\n");
+        writer.write("# TYPE " + STAGE_DURATION + " histogram\n");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(stages).entrySet()) {
+            writeHistogram(writer, entry.getKey(), entry.getValue());
+        }
+
+        writer.write("# HELP " + FAILURES + " The number of the failed analyzing by the failure code.\n");
+        writer.write("# TYPE " + FAILURES + " counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(failures).entrySet()) {
+            writer.write(FAILURES + "{code=\"" + entry.getKey() + "\"} " + entry.getValue().sum() + "\n");
+        }
+
+        writer.write("# HELP " + FETCH_BYTES + " The number of the fetched response body bytes as transferred and as decoded.\n");
+        writer.write("# TYPE " + FETCH_BYTES + " counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(fetchBytes).entrySet()) {
+            writer.write(FETCH_BYTES + "{type=\"" + entry.getKey() + "\"} " + entry.getValue().sum() + "\n");
+        }
+
+        writer.write("# HELP " + REDIRECT_HOPS + " The number of the followed redirects and the redirects saved by the redirect cache.\n");
+        writer.write("# TYPE " + REDIRECT_HOPS + " counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(redirectHops).entrySet()) {
+            writer.write(REDIRECT_HOPS + "{type=\"" + entry.getKey() + "\"} " + entry.getValue().sum() + "\n");
+        }
+    }
+
+    /**
+     * Writes the cumulative buckets, the sum and the count of the histogram
+     *
+     * @param writer    The writer
+     * @param stage     The stage name
+     * @param histogram The histogram
+     * @throws IOException If writing fails
+     */
+    private static void writeHistogram(Writer writer, String stage, Histogram histogram) throws IOException {
+        long[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCounts();
+
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < bounds.length ? toSeconds(bounds[i]) : "+Inf";
+            writer.write(STAGE_DURATION + "_bucket{stage=\"" + stage + "\",le=\"" + bound + "\"} " + cumulative + "\n");
+        }
+        writer.write(STAGE_DURATION + "_sum{stage=\"" + stage + "\"} " + toSeconds(histogram.getSum()) + "\n");
+        writer.write(STAGE_DURATION + "_count{stage=\"" + stage + "\"} " + cumulative + "\n");
+    }
+
+    /**
+     * Formats the nanoseconds as seconds
+     *
+     * @param nanos The nanoseconds
+     * @return The seconds
+     */
+    static String toSeconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
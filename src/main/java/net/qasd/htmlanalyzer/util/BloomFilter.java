@@ -0,0 +1,139 @@
+package net.qasd.htmlanalyzer.util;
+
+/**
+ * Compact probabilistic set of strings
+ * <p>
+ * A value is hashed to k bits of a bit array (double hashing of two 64 bit hashes); a value is reported as present if
+ * all of its bits are set. So the set can report a value which is not added (with the configured false positive
+ * probability) but never misses an added value. The bits are sized for the expected number of the values, about 14
+ * bits per value for 0.1% false positives. An instance is not thread safe.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private long count = 0;
+
+    private BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("The expected insertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("The false positive probability must be between 0 and 1");
+        }
+
+        // m = -n ln(p) / ln(2)^2, k = m / n ln(2)
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Initiates a new instance of BloomFilter
+     *
+     * @param expectedInsertions       The expected number of the values
+     * @param falsePositiveProbability The probability of reporting a value which is not added
+     * @return A new instance of BloomFilter
+     */
+    public static BloomFilter newInstance(long expectedInsertions, double falsePositiveProbability) {
+        return new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    /**
+     * Adds the value
+     *
+     * @param value The value
+     * @return true if the value is added, false if it is (probably) added before
+     */
+    public boolean add(CharSequence value) {
+        long hash1 = hash(value, 0xcbf29ce484222325L);
+        long hash2 = hash(value, 0x84222325cbf29ce4L) | 1;
+
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[index] & mask) == 0) {
+                bits[index] |= mask;
+                added = true;
+            }
+        }
+        if (added) {
+            count++;
+        }
+
+        return added;
+    }
+
+    /**
+     * Checks whether the value might be added
+     *
+     * @param value The value
+     * @return false if the value is certainly not added
+     */
+    public boolean mightContain(CharSequence value) {
+        long hash1 = hash(value, 0xcbf29ce484222325L);
+        long hash2 = hash(value, 0x84222325cbf29ce4L) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the number of the added values
+     *
+     * @return The number of the values reported as added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the size of the bit array
+     *
+     * @return The number of the bits
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Gets the number of the bits set for a value
+     *
+     * @return The number of the hash functions
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Hashes the characters with FNV-1a and mixes the result with the SplitMix64 finalizer
+     *
+     * @param value The value
+     * @param seed  The initial hash
+     * @return The 64 bit hash
+     */
+    private static long hash(CharSequence value, long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+
+        return hash ^ (hash >>> 31);
+    }
+}
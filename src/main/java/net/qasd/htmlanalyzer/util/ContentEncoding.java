@@ -0,0 +1,162 @@
+package net.qasd.htmlanalyzer.util;
+
+import net.qasd.htmlanalyzer.metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates and removes the content encoding of the http responses
+ * <p>
+ * The gzip and the deflate encodings are accepted; the body is inflated while the parser reads it, so neither the
+ * compressed nor the inflated body is buffered as a whole. The "deflate" body is expected in the zlib format, the raw
+ * deflate data sent by some servers is detected from the missing zlib header. The transferred and the decoded bytes of
+ * every body are added to the fetch byte counters.
+ */
+final class ContentEncoding {
+
+    /**
+     * The value of the Accept-Encoding request header
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final LongAdder transferredBytes = Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED);
+    private static final LongAdder decodedBytes = Metrics.getDefault().fetchBytes(Metrics.DECODED);
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Wraps the response body with the decoders of the content encoding and counts its bytes
+     *
+     * @param inputStream     The response body as it is transferred
+     * @param contentEncoding The Content-Encoding header value or null
+     * @return The decoded response body
+     * @throws IOException If the encoding is not supported or the gzip header cannot be read
+     */
+    static InputStream decode(InputStream inputStream, String contentEncoding) throws IOException {
+        InputStream transferred = new CountingInputStream(inputStream, transferredBytes);
+
+        return new CountingInputStream(decode(transferred, contentEncoding, BUFFER_SIZE), decodedBytes);
+    }
+
+    /**
+     * Wraps the body with the decoders of the content encoding without counting its bytes
+     *
+     * @param inputStream     The encoded body
+     * @param contentEncoding The Content-Encoding header value or null
+     * @param bufferSize      The size of the inflater buffers
+     * @return The decoded body or the given stream if it is not encoded
+     * @throws IOException If the encoding is not supported or the gzip header cannot be read
+     */
+    static InputStream decode(InputStream inputStream, String contentEncoding, int bufferSize) throws IOException {
+        if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+            return inputStream;
+        }
+
+        // the encodings are listed in the order they are applied
+        String[] encodings = contentEncoding.toLowerCase(Locale.ROOT).split(",");
+        InputStream decoded = inputStream;
+        for (int i = encodings.length - 1; i >= 0; i--) {
+            String encoding = encodings[i].trim();
+            switch (encoding) {
+                case "":
+                case "identity":
+                    break;
+                case "gzip":
+                case "x-gzip":
+                    decoded = new GZIPInputStream(decoded, bufferSize);
+                    break;
+                case "deflate":
+                    decoded = inflate(decoded, bufferSize);
+                    break;
+                default:
+                    throw new IOException("The content encoding \"" + encoding + "\" is not supported");
+            }
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Inflates the zlib or the raw deflate data
+     *
+     * @param inputStream The deflated body
+     * @param bufferSize  The size of the inflater buffer
+     * @return The inflated body
+     * @throws IOException If the header cannot be read
+     */
+    private static InputStream inflate(InputStream inputStream, int bufferSize) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, bufferSize);
+
+        bufferedInputStream.mark(2);
+        int cmf = bufferedInputStream.read();
+        int flg = bufferedInputStream.read();
+        bufferedInputStream.reset();
+
+        // the zlib header: the deflate method and a checksum of the two bytes
+        boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(bufferedInputStream, inflater, bufferSize) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // the given inflater is not released by the stream
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Input stream adding the read bytes to a counter
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+
+        CountingInputStream(InputStream inputStream, LongAdder counter) {
+            super(inputStream);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                counter.increment();
+            }
+
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                counter.add(count);
+            }
+
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            counter.add(skipped);
+
+            return skipped;
+        }
+    }
+}
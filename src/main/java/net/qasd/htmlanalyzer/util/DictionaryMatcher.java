@@ -0,0 +1,155 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Immutable multi pattern matcher (Aho-Corasick automaton) for the dictionary look ups
+ * <p>
+ * The text is normalized while it is scanned (only the letters and spaces are kept and the letters are lower cased)
+ * so a look up is a single pass over the text without any allocation. An instance is thread safe.
+ */
+public class DictionaryMatcher {
+
+    // the normalized text can only contain the letters a-z and space
+    private static final int ALPHABET_SIZE = 27;
+    private static final int SPACE_INDEX = 26;
+
+    // transitions[state * ALPHABET_SIZE + symbol] = next state
+    private final int[] transitions;
+
+    // true if any dictionary item ends at the state
+    private final boolean[] accepting;
+
+    private final List<String> items;
+
+    private DictionaryMatcher(List<String> items) {
+        this.items = Collections.unmodifiableList(items);
+
+        // build the trie, the root is the state 0
+        int maxStates = 1;
+        for (String item : items) {
+            maxStates += item.length();
+        }
+        int[] trie = new int[maxStates * ALPHABET_SIZE];
+        boolean[] ends = new boolean[maxStates];
+        int states = 1;
+
+        for (String item : items) {
+            String pattern = item.toLowerCase();
+            int state = 0;
+            boolean matchable = true;
+            for (int i = 0; i < pattern.length() && matchable; i++) {
+                int symbol = symbolOf(pattern.charAt(i));
+                if (symbol < 0) {
+                    // the normalized text never contains the character so the item never matches
+                    matchable = false;
+                } else {
+                    int next = trie[state * ALPHABET_SIZE + symbol];
+                    if (next == 0) {
+                        next = states++;
+                        trie[state * ALPHABET_SIZE + symbol] = next;
+                    }
+                    state = next;
+                }
+            }
+            if (matchable) {
+                ends[state] = true;
+            }
+        }
+
+        // compute the failure links breadth first and turn the trie into a complete automaton
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+            int next = trie[symbol];
+            if (next != 0) {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            ends[state] |= ends[failure[state]];
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                int next = trie[state * ALPHABET_SIZE + symbol];
+                if (next != 0) {
+                    failure[next] = trie[failure[state] * ALPHABET_SIZE + symbol];
+                    queue.add(next);
+                } else {
+                    trie[state * ALPHABET_SIZE + symbol] = trie[failure[state] * ALPHABET_SIZE + symbol];
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, states * ALPHABET_SIZE);
+        this.accepting = Arrays.copyOf(ends, states);
+    }
+
+    /**
+     * Compiles the dictionary items into a matcher
+     *
+     * @param items Dictionary items
+     * @return Dictionary matcher
+     */
+    public static DictionaryMatcher compile(List<String> items) {
+        return new DictionaryMatcher(items);
+    }
+
+    /**
+     * Checks whether the normalized text contains any of the dictionary items
+     *
+     * @param text Text to be looked up
+     * @return true If any dictionary item is found in the text
+     */
+    public boolean matches(CharSequence text) {
+        // an empty item is contained by any text
+        if (accepting[0]) {
+            return true;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int symbol = symbolOf(text.charAt(i));
+            // skip the characters removed by the normalization
+            if (symbol >= 0) {
+                state = transitions[state * ALPHABET_SIZE + symbol];
+                if (accepting[state]) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the dictionary items
+     *
+     * @return Unmodifiable list of the dictionary items
+     */
+    public List<String> getItems() {
+        return items;
+    }
+
+    /**
+     * Maps the character to the alphabet index
+     *
+     * @param c Character
+     * @return Alphabet index or -1 if the character is not a part of the normalized text
+     */
+    private static int symbolOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        } else if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c == ' ') {
+            return SPACE_INDEX;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,141 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Loads the dictionaries once and shares the compiled dictionary matchers
+ * <p>
+ * The dictionaries are read from the resource folder by default. If the system property
+ * {@value #DICTIONARY_DIR_PROPERTY} is set and the dictionary file exists in that directory, the file is used instead
+ * and it is reloaded when its modification time changes. So the dictionaries can be tuned without a restart.
+ */
+public class DictionaryStore {
+
+    public static final String DICTIONARY_DIR_PROPERTY = "htmlanalyzer.dictionary.dir";
+
+    // the file modification time is checked at most once in the interval
+    private static final long RELOAD_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static Logger logger = LoggerFactory.getLogger(DictionaryStore.class);
+
+    private static final DictionaryStore defaultStore = new DictionaryStore();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the store shared by the application
+     *
+     * @return The shared dictionary store
+     */
+    public static DictionaryStore getDefault() {
+        return defaultStore;
+    }
+
+    /**
+     * Gets the compiled dictionary
+     * <p>
+     * The dictionary is loaded on the first call. A failed load is retried on the next call.
+     *
+     * @param filename Dictionary file name (relative to the resource folder)
+     * @return Compiled dictionary matcher
+     * @throws IOException If the file io action is failed
+     */
+    public DictionaryMatcher getDictionary(String filename) throws IOException {
+        Entry entry = entries.get(filename);
+        if (entry == null || entry.isModified()) {
+            entry = load(filename, entry);
+        }
+
+        return entry.matcher;
+    }
+
+    /**
+     * Loads the dictionary if it is not loaded by another thread in the meantime
+     *
+     * @param filename Dictionary file name
+     * @param stale    The entry to be replaced or null
+     * @return Loaded entry
+     * @throws IOException If the file io action is failed
+     */
+    private synchronized Entry load(String filename, Entry stale) throws IOException {
+        Entry current = entries.get(filename);
+        if (current != null && current != stale) {
+            return current;
+        }
+
+        File file = getDictionaryFile(filename);
+        Entry entry;
+        if (file != null && file.isFile()) {
+            long lastModified = file.lastModified();
+            List<String> items = DictionaryUtil.getDictionaryFromFile(file);
+            entry = new Entry(DictionaryMatcher.compile(items), file, lastModified);
+            logger.info("The dictionary \"{}\" is loaded from the file \"{}\"", filename, file);
+        } else {
+            List<String> items = DictionaryUtil.getDictionaryFromResourceFile(filename);
+            entry = new Entry(DictionaryMatcher.compile(items), null, 0);
+            logger.info("The dictionary \"{}\" is loaded from the resources", filename);
+        }
+
+        entries.put(filename, entry);
+
+        return entry;
+    }
+
+    /**
+     * Gets the dictionary file in the dictionary directory
+     *
+     * @param filename Dictionary file name
+     * @return Dictionary file or null if the dictionary directory is not set
+     */
+    private static File getDictionaryFile(String filename) {
+        String directory = System.getProperty(DICTIONARY_DIR_PROPERTY);
+        if (directory == null || directory.trim().isEmpty()) {
+            return null;
+        }
+
+        return new File(directory, new File(filename).getName());
+    }
+
+    /**
+     * Loaded dictionary with its source file
+     */
+    private static class Entry {
+        private final DictionaryMatcher matcher;
+        private final File file;
+        private final long lastModified;
+        private volatile long lastChecked;
+
+        Entry(DictionaryMatcher matcher, File file, long lastModified) {
+            this.matcher = matcher;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.lastChecked = System.currentTimeMillis();
+        }
+
+        /**
+         * Checks whether the source file is modified since it is loaded
+         *
+         * @return true if the file is modified
+         */
+        boolean isModified() {
+            if (file == null) {
+                return false;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastChecked < RELOAD_CHECK_INTERVAL_MILLIS) {
+                return false;
+            }
+            lastChecked = now;
+
+            return file.lastModified() != lastModified;
+        }
+    }
+}
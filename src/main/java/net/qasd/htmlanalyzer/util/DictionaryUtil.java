@@ -2,6 +2,8 @@ package net.qasd.htmlanalyzer.util;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,4 +30,17 @@ public class DictionaryUtil {
 
         throw new FileNotFoundException();
     }
+
+    /**
+     * Reads the dictionary file from the file system and makes a list of its content
+     *
+     * @param file Dictionary file
+     * @return Dictionary list
+     * @throws IOException If the file io action is failed
+     */
+    public static List<String> getDictionaryFromFile(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return IOUtils.readLines(inputStream, Charset.forName("UTF-8"));
+        }
+    }
 }
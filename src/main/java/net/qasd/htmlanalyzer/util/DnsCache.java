@@ -0,0 +1,420 @@
+package net.qasd.htmlanalyzer.util;
+
+import okhttp3.Dns;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of the host name lookups
+ * <p>
+ * The addresses of a host are kept for the positive time to live and a failed lookup is kept for the negative time to
+ * live, so a batch of many urls of the same hosts resolves every host once and an unknown host fails without asking
+ * the resolver again. The concurrent lookups of the same host wait for one resolution. The distinct hosts of a batch
+ * can be prefetched in parallel on the resolver threads before their fetches start; a fetch of a host being prefetched
+ * waits for the running resolution. The cache is an OkHttp {@link Dns} resolving the hosts of {@link PooledFetcher};
+ * the blocking url connection resolves its hosts itself. An instance should be shared and closed when it is not needed
+ * anymore.
+ */
+public class DnsCache implements Dns, Closeable {
+
+    public static final String HITS = "htmlanalyzer_dns_cache_hits_total";
+    public static final String LOOKUPS = "htmlanalyzer_dns_lookups_total";
+    public static final String COALESCED = "htmlanalyzer_dns_coalesced_total";
+    public static final String SIZE = "htmlanalyzer_dns_cache_size";
+
+    /**
+     * Resolves the host names with the system resolver of the JVM
+     */
+    public static final Resolver SYSTEM = host -> Arrays.asList(InetAddress.getAllByName(host));
+
+    private final Resolver resolver;
+
+    private final long positiveTimeToLiveMillis;
+
+    private final long negativeTimeToLiveMillis;
+
+    // guarded by itself
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final SingleFlight<String, Entry> inFlight = SingleFlight.newInstance();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final ExecutorService executor;
+
+    private DnsCache(Resolver resolver, Settings settings) {
+        this.resolver = resolver;
+        this.positiveTimeToLiveMillis = settings.getPositiveTimeToLiveMillis();
+        this.negativeTimeToLiveMillis = settings.getNegativeTimeToLiveMillis();
+
+        int maxEntries = settings.getMaxEntries();
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(settings.getPrefetchConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "dns-cache-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Initiates a new instance of DnsCache with the system resolver and the default settings
+     *
+     * @return A new instance of DnsCache
+     */
+    public static DnsCache newInstance() {
+        return new DnsCache(SYSTEM, new Settings());
+    }
+
+    /**
+     * Initiates a new instance of DnsCache with the system resolver
+     *
+     * @param settings Cache settings
+     * @return A new instance of DnsCache
+     */
+    public static DnsCache newInstance(Settings settings) {
+        return new DnsCache(SYSTEM, settings);
+    }
+
+    /**
+     * Initiates a new instance of DnsCache
+     *
+     * @param resolver The resolver of the host names
+     * @param settings Cache settings
+     * @return A new instance of DnsCache
+     */
+    public static DnsCache newInstance(Resolver resolver, Settings settings) {
+        return new DnsCache(resolver, settings);
+    }
+
+    /**
+     * Gets the addresses of the host from the cache or from the resolver
+     *
+     * @param hostname The host name
+     * @return The addresses of the host
+     * @throws UnknownHostException If the host cannot be resolved or its failed lookup is cached
+     */
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        String host = hostname.toLowerCase(Locale.ROOT);
+
+        Entry entry = getFresh(host);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            try {
+                entry = inFlight.execute(host, () -> resolve(host));
+            } catch (CancellationException cancellationException) {
+                UnknownHostException interruptedException = new UnknownHostException("The lookup of " + hostname + " is interrupted");
+                interruptedException.initCause(cancellationException);
+                throw interruptedException;
+            }
+        }
+
+        if (entry.addresses == null) {
+            throw new UnknownHostException(hostname);
+        }
+
+        return entry.addresses;
+    }
+
+    /**
+     * Resolves the distinct hosts which are not cached in parallel on the resolver threads
+     * <p>
+     * The failed lookups are cached as well, the returned future is never completed exceptionally.
+     *
+     * @param hosts The host names
+     * @return The future completed when all hosts are resolved
+     */
+    public CompletableFuture<Void> prefetch(Collection<String> hosts) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String hostname : hosts) {
+            String host = hostname.toLowerCase(Locale.ROOT);
+            if (getFresh(host) == null) {
+                distinct.add(host);
+            }
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(distinct.size());
+        for (String host : distinct) {
+            futures.add(CompletableFuture.runAsync(() -> inFlight.execute(host, () -> resolve(host)), executor)
+                .exceptionally(failure -> null));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Resolves the host and caches the addresses or the failure
+     *
+     * @param host The lower cased host name
+     * @return The cached entry
+     */
+    private Entry resolve(String host) {
+        // a flight of the host may have completed while this one was started
+        Entry entry = getFresh(host);
+        if (entry != null) {
+            return entry;
+        }
+
+        lookups.increment();
+        List<InetAddress> addresses;
+        try {
+            addresses = resolver.resolve(host);
+        } catch (UnknownHostException unknownHostException) {
+            addresses = null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (addresses == null || addresses.isEmpty()) {
+            entry = new Entry(null, now + negativeTimeToLiveMillis);
+        } else {
+            entry = new Entry(Collections.unmodifiableList(new ArrayList<>(addresses)), now + positiveTimeToLiveMillis);
+        }
+
+        synchronized (entries) {
+            entries.put(host, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets the cached entry of the host if it is not expired
+     *
+     * @param host The lower cased host name
+     * @return The entry or null
+     */
+    private Entry getFresh(String host) {
+        synchronized (entries) {
+            Entry entry = entries.get(host);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expiresAt) {
+                entries.remove(host);
+                return null;
+            }
+
+            return entry;
+        }
+    }
+
+    /**
+     * Gets the number of the lookups answered by the cache
+     *
+     * @return Number of the cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of the lookups sent to the resolver
+     *
+     * @return Number of the resolutions
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Gets the number of the lookups waited for the running resolution of the same host
+     *
+     * @return Number of the coalesced lookups
+     */
+    public long getCoalescedCount() {
+        return inFlight.getCoalescedCount();
+    }
+
+    /**
+     * Gets the number of the cached hosts including the expired and the failed ones
+     *
+     * @return Number of the cached hosts
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Writes the counters of the cache in the Prometheus text format
+     *
+     * @param writer The writer
+     * @throws IOException If writing fails
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP " + HITS + " The number of the host lookups answered by the dns cache.\n");
+        writer.write("# TYPE " + HITS + " counter\n");
+        writer.write(HITS + " " + getHitCount() + "\n");
+
+        writer.write("# HELP " + LOOKUPS + " The number of the host lookups sent to the resolver.\n");
+        writer.write("# TYPE " + LOOKUPS + " counter\n");
+        writer.write(LOOKUPS + " " + getLookupCount() + "\n");
+
+        writer.write("# HELP " + COALESCED + " The number of the host lookups which waited for the running resolution of the same host.\n");
+        writer.write("# TYPE " + COALESCED + " counter\n");
+        writer.write(COALESCED + " " + getCoalescedCount() + "\n");
+
+        writer.write("# HELP " + SIZE + " The number of the cached hosts.\n");
+        writer.write("# TYPE " + SIZE + " gauge\n");
+        writer.write(SIZE + " " + size() + "\n");
+    }
+
+    /**
+     * Stops the resolver threads, the running prefetches are interrupted
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Resolves the host names, e.g. a stub resolver in the tests
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * Resolves the host name
+         *
+         * @param host The lower cased host name
+         * @return The addresses of the host
+         * @throws UnknownHostException If the host cannot be resolved
+         */
+        List<InetAddress> resolve(String host) throws UnknownHostException;
+    }
+
+    /**
+     * The cached addresses of a host
+     */
+    private static class Entry {
+        // null for a failed lookup
+        private final List<InetAddress> addresses;
+        private final long expiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Settings of the dns cache
+     */
+    public static class Settings {
+        private long positiveTimeToLiveMillis = 60 * 1000;
+        private long negativeTimeToLiveMillis = 10 * 1000;
+        private int maxEntries = 10000;
+        private int prefetchConcurrency = 8;
+
+        /**
+         * Gets the time the addresses of a host are used
+         *
+         * @return Positive time to live in milliseconds
+         */
+        public long getPositiveTimeToLiveMillis() {
+            return positiveTimeToLiveMillis;
+        }
+
+        /**
+         * Sets the time the addresses of a host are used, 0 disables the caching of the addresses
+         *
+         * @param positiveTimeToLiveMillis Positive time to live in milliseconds
+         * @return The settings
+         */
+        public Settings setPositiveTimeToLiveMillis(long positiveTimeToLiveMillis) {
+            this.positiveTimeToLiveMillis = positiveTimeToLiveMillis;
+            return this;
+        }
+
+        /**
+         * Gets the time a failed lookup is remembered
+         *
+         * @return Negative time to live in milliseconds
+         */
+        public long getNegativeTimeToLiveMillis() {
+            return negativeTimeToLiveMillis;
+        }
+
+        /**
+         * Sets the time a failed lookup is remembered, 0 disables the caching of the failures
+         *
+         * @param negativeTimeToLiveMillis Negative time to live in milliseconds
+         * @return The settings
+         */
+        public Settings setNegativeTimeToLiveMillis(long negativeTimeToLiveMillis) {
+            this.negativeTimeToLiveMillis = negativeTimeToLiveMillis;
+            return this;
+        }
+
+        /**
+         * Gets the maximum number of the cached hosts
+         *
+         * @return Maximum number of the cached hosts
+         */
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        /**
+         * Sets the maximum number of the cached hosts, the least recently used host is evicted above it
+         *
+         * @param maxEntries Maximum number of the cached hosts
+         * @return The settings
+         */
+        public Settings setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Gets the number of the resolver threads of the prefetching
+         *
+         * @return Number of the resolver threads
+         */
+        public int getPrefetchConcurrency() {
+            return prefetchConcurrency;
+        }
+
+        /**
+         * Sets the number of the resolver threads of the prefetching
+         *
+         * @param prefetchConcurrency Number of the resolver threads
+         * @return The settings
+         */
+        public Settings setPrefetchConcurrency(int prefetchConcurrency) {
+            this.prefetchConcurrency = prefetchConcurrency;
+            return this;
+        }
+    }
+}
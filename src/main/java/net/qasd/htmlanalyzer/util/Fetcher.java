@@ -0,0 +1,153 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches and parses the html document of an url
+ * <p>
+ * The failures are reported with the exceptions of {@link UrlReader}; the asynchronous fetch completes the future
+ * exceptionally with the same exceptions.
+ */
+public interface Fetcher {
+
+    /**
+     * Fetches the html document of the given url and blocks until it is parsed
+     *
+     * @param url The url
+     * @return Parsed html document
+     * @throws IOException                        If any io action fails
+     * @throws UrlReader.UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws UrlReader.NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlReader.UrlNotReadableException  If the maximum follow limit exceeds or the http response status is
+     *                                            different from OK and NOT_FOUND
+     */
+    Document fetch(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException;
+
+    /**
+     * Fetches the html document of the given url asynchronously
+     * <p>
+     * The default implementation is for the blocking fetchers; it fetches the document in the calling thread and
+     * returns a completed future.
+     *
+     * @param url The url
+     * @return The future of the parsed html document
+     */
+    default CompletableFuture<Document> fetchAsync(URL url) {
+        CompletableFuture<Document> future = new CompletableFuture<>();
+        try {
+            future.complete(fetch(url));
+        } catch (Exception fetchException) {
+            future.completeExceptionally(fetchException);
+        }
+
+        return future;
+    }
+
+    /**
+     * Fetches the html document of the given url until the end of its head and blocks until it is parsed
+     * <p>
+     * The response is read until the head end tag or the body start tag, the rest is not downloaded; the document has
+     * the head and an empty body. The default implementation fetches the whole document.
+     *
+     * @param url The url
+     * @return Parsed html document with the head only
+     * @throws IOException                        If any io action fails
+     * @throws UrlReader.UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws UrlReader.NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlReader.UrlNotReadableException  If the maximum follow limit exceeds or the http response status is
+     *                                            different from OK and NOT_FOUND
+     */
+    default Document fetchHead(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return fetch(url);
+    }
+
+    /**
+     * Fetches the html document of the given url until the end of its head asynchronously
+     * <p>
+     * The default implementation fetches the whole document asynchronously if the fetcher is asynchronous, otherwise
+     * it fetches the head in the calling thread and returns a completed future.
+     *
+     * @param url The url
+     * @return The future of the parsed html document with the head only
+     */
+    default CompletableFuture<Document> fetchHeadAsync(URL url) {
+        if (isAsynchronous()) {
+            return fetchAsync(url);
+        }
+
+        CompletableFuture<Document> future = new CompletableFuture<>();
+        try {
+            future.complete(fetchHead(url));
+        } catch (Exception fetchException) {
+            future.completeExceptionally(fetchException);
+        }
+
+        return future;
+    }
+
+    /**
+     * Fetches the html document of the given url if it is modified and blocks until it is parsed
+     * <p>
+     * The validators of a previous response are sent as conditional request headers, so the server can answer with
+     * NOT_MODIFIED without sending the content again. The default implementation fetches the document unconditionally
+     * and returns it without validators.
+     *
+     * @param url        The url
+     * @param validators The validators of the previous response or null for an unconditional request
+     * @return The document and the validators of the response
+     * @throws IOException                        If any io action fails
+     * @throws UrlReader.UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws UrlReader.NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlReader.UrlNotReadableException  If the maximum follow limit exceeds or the http response status is
+     *                                            different from OK, NOT_MODIFIED and NOT_FOUND
+     */
+    default UrlReader.ConditionalDocument fetchIfModified(URL url, UrlReader.Validators validators) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return new UrlReader.ConditionalDocument(fetch(url), new UrlReader.Validators(null, null));
+    }
+
+    /**
+     * Fetches the html document of the given url if it is modified asynchronously
+     * <p>
+     * The default implementation fetches the document unconditionally with {@link #fetchAsync(URL)} if the fetcher is
+     * asynchronous, otherwise it fetches it in the calling thread and returns a completed future.
+     *
+     * @param url        The url
+     * @param validators The validators of the previous response or null for an unconditional request
+     * @return The future of the document and the validators of the response
+     */
+    default CompletableFuture<UrlReader.ConditionalDocument> fetchIfModifiedAsync(URL url, UrlReader.Validators validators) {
+        CompletableFuture<UrlReader.ConditionalDocument> future = new CompletableFuture<>();
+        if (isAsynchronous()) {
+            fetchAsync(url).whenComplete((document, fetchException) -> {
+                if (fetchException != null) {
+                    future.completeExceptionally(fetchException);
+                } else {
+                    future.complete(new UrlReader.ConditionalDocument(document, new UrlReader.Validators(null, null)));
+                }
+            });
+
+            return future;
+        }
+
+        try {
+            future.complete(fetchIfModified(url, validators));
+        } catch (Exception fetchException) {
+            future.completeExceptionally(fetchException);
+        }
+
+        return future;
+    }
+
+    /**
+     * Returns whether the asynchronous fetch releases the calling thread
+     *
+     * @return true if the fetch does not block the calling thread
+     */
+    default boolean isAsynchronous() {
+        return false;
+    }
+}
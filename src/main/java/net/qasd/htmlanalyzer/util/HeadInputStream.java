@@ -0,0 +1,127 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Input stream ending at the end of the html head
+ * <p>
+ * The bytes are scanned for the head end tag and the body start tag (case insensitive); the stream ends right after
+ * the name of the first one, so the parser builds the head and an empty body while the rest of the response is never
+ * read. The tags are matched on the bytes, so it works for the ASCII compatible charsets; a document in another
+ * charset is read to its end.
+ */
+class HeadInputStream extends FilterInputStream {
+
+    private static final byte[][] END_TAGS = {
+        "</head".getBytes(StandardCharsets.US_ASCII),
+        "<body".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    // the number of the matched bytes of every end tag
+    private final int[] matched = new int[END_TAGS.length];
+
+    private boolean headEnded = false;
+
+    HeadInputStream(InputStream inputStream) {
+        super(inputStream);
+    }
+
+    /**
+     * Returns whether the end of the head is found, so the rest of the response is not read
+     *
+     * @return true if the stream is ended at the end of the head
+     */
+    boolean isHeadEnded() {
+        return headEnded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (headEnded) {
+            return -1;
+        }
+
+        int value = super.read();
+        if (value >= 0) {
+            scan((byte) value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (headEnded) {
+            return -1;
+        }
+
+        int count = super.read(buffer, offset, length);
+        for (int i = 0; i < count; i++) {
+            if (scan(buffer[offset + i])) {
+                // the bytes after the end of the tag name are dropped
+                return i + 1;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        // the skipped bytes are scanned too
+        byte[] buffer = new byte[(int) Math.min(count, 4096)];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(count - skipped, buffer.length));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return headEnded ? 0 : super.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Matches the byte against the end tags
+     *
+     * @param value The byte
+     * @return true if the byte completes the name of an end tag
+     */
+    private boolean scan(byte value) {
+        // the tag names are lower case ASCII letters
+        byte lowerCase = value >= 'A' && value <= 'Z' ? (byte) (value + ('a' - 'A')) : value;
+
+        for (int i = 0; i < END_TAGS.length; i++) {
+            byte[] endTag = END_TAGS[i];
+            if (matched[i] == endTag.length) {
+                // the tag name is complete if it is followed by a space, '/' or '>' (e.g. not "</header")
+                if (lowerCase == '>' || lowerCase == '/' || lowerCase == ' ' || lowerCase == '\t' || lowerCase == '\n' || lowerCase == '\r' || lowerCase == '\f') {
+                    headEnded = true;
+                    return true;
+                }
+                matched[i] = lowerCase == '<' ? 1 : 0;
+            } else if (endTag[matched[i]] == lowerCase) {
+                matched[i]++;
+            } else {
+                // '<' only starts the tags, so a mismatch restarts the matching
+                matched[i] = lowerCase == '<' ? 1 : 0;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,264 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming json writer
+ * <p>
+ * The tokens are written to the underlying writer as they are received, no intermediate tree or map is built. The
+ * writer only tracks whether a separator is needed; it is up to the caller to write a well formed document. An
+ * instance is not thread safe.
+ */
+public class JsonWriter implements Flushable, Closeable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // max nesting depth of the written documents
+    private static final int MAX_DEPTH = 32;
+
+    private final Writer writer;
+
+    // whether the current object/array already has an element
+    private final boolean[] hasElement = new boolean[MAX_DEPTH];
+
+    private int depth = 0;
+
+    // the next value follows a name
+    private boolean afterName = false;
+
+    private JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Initiates a new instance of JsonWriter
+     *
+     * @param writer The underlying writer
+     * @return A new instance of JsonWriter
+     */
+    public static JsonWriter newInstance(Writer writer) {
+        return new JsonWriter(writer);
+    }
+
+    /**
+     * Begins a new object
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Ends the current object
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Begins a new array
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Ends the current array
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next object member
+     *
+     * @param name The member name
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writer.write(':');
+        afterName = true;
+
+        return this;
+    }
+
+    /**
+     * Writes a string value, null is written as json null
+     *
+     * @param value The value
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeString(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     *
+     * @param value The value
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     *
+     * @param value The value
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writer.write(value ? "true" : "false");
+
+        return this;
+    }
+
+    /**
+     * Writes a json null value
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        writer.write("null");
+
+        return this;
+    }
+
+    /**
+     * Writes a line feed between two top level values (e.g. for newline delimited json)
+     *
+     * @return The json writer
+     * @throws IOException If writing fails
+     */
+    public JsonWriter newLine() throws IOException {
+        writer.write('\n');
+        hasElement[0] = false;
+
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("The json document is nested too deep");
+        }
+        writer.write(bracket);
+        hasElement[++depth] = false;
+
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("There is no open object or array");
+        }
+        writer.write(bracket);
+        depth--;
+
+        return this;
+    }
+
+    /**
+     * Writes the comma before the element if it is not the first one in the current object/array
+     *
+     * @throws IOException If writing fails
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElement[depth] && depth > 0) {
+            writer.write(',');
+        }
+        hasElement[depth] = true;
+    }
+
+    /**
+     * Writes the quoted and escaped string
+     *
+     * @param value The string
+     * @throws IOException If writing fails
+     */
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                replacement = "\\u" + HEX[c >> 12] + HEX[(c >> 8) & 0xf] + HEX[(c >> 4) & 0xf] + HEX[c & 0xf];
+            } else {
+                continue;
+            }
+
+            // write the unescaped part at once
+            if (start < i) {
+                writer.write(value, start, i - start);
+            }
+            writer.write(replacement);
+            start = i + 1;
+        }
+        if (start < length) {
+            writer.write(value, start, length - start);
+        }
+
+        writer.write('"');
+    }
+}
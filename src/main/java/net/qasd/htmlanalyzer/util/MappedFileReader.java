@@ -0,0 +1,124 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and parses the local html files
+ * <p>
+ * The files of at least {@value #MAP_THRESHOLD} bytes are memory mapped and parsed from the mapped pages, so the
+ * content is not copied into the heap before the parsing. The smaller files are read with one read call since mapping
+ * costs more than copying them. The charset is detected from the byte order mark or the meta charset of the document
+ * (UTF-8 by default).
+ */
+public class MappedFileReader {
+
+    public static final int MAP_THRESHOLD = 64 * 1024;
+
+    private MappedFileReader() {
+    }
+
+    /**
+     * Parses the html file
+     *
+     * @param file    The html file
+     * @param baseUri The base uri of the document
+     * @return Parsed html document
+     * @throws IOException If the file cannot be read
+     */
+    public static Document parse(Path file, String baseUri) throws IOException {
+        return UrlReader.parse(new ByteBufferInputStream(read(file)), null, baseUri);
+    }
+
+    /**
+     * Opens the reader of the characters of the html file for the streaming analyzing
+     * <p>
+     * The file is read (or mapped) as it is for the parsing; the reader does not need to be closed.
+     *
+     * @param file The html file
+     * @return The reader of the document
+     * @throws IOException If the file cannot be read
+     */
+    public static Reader open(Path file) throws IOException {
+        return UrlReader.newReader(new ByteBufferInputStream(read(file)), null);
+    }
+
+    /**
+     * Maps or reads the html file
+     *
+     * @param file The html file
+     * @return The buffer of the file content, the mapping stays valid after the channel is closed
+     * @throws IOException If the file cannot be read
+     */
+    private static ByteBuffer read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file \"" + file + "\" is larger than 2 GB");
+            }
+
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the end of the file
+            }
+            buffer.flip();
+
+            return buffer;
+        }
+    }
+
+    /**
+     * Input stream reading the remaining bytes of a buffer
+     */
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.qasd.htmlanalyzer.util;
+
+/**
+ * Bounds the memory of the work in flight
+ * <p>
+ * The producers acquire the estimated bytes of a work item before it is started and release them when it is
+ * finished; they wait while the budget is used up. An item larger than the whole budget is granted the whole budget,
+ * so it runs alone instead of blocking forever.
+ */
+public class MemoryBudget {
+
+    private final long maxBytes;
+
+    private long usedBytes = 0;
+
+    private MemoryBudget(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Initiates a new instance of MemoryBudget
+     *
+     * @param maxBytes The maximum number of the bytes in flight
+     * @return A new instance of MemoryBudget
+     */
+    public static MemoryBudget newInstance(long maxBytes) {
+        return new MemoryBudget(maxBytes);
+    }
+
+    /**
+     * Acquires the bytes and waits until they are available
+     *
+     * @param bytes The estimated bytes of the work item
+     * @return The granted bytes, they must be released with {@link #release(long)}
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public synchronized long acquire(long bytes) throws InterruptedException {
+        long granted = Math.max(0, Math.min(bytes, maxBytes));
+        while (usedBytes + granted > maxBytes) {
+            wait();
+        }
+        usedBytes += granted;
+
+        return granted;
+    }
+
+    /**
+     * Releases the granted bytes
+     *
+     * @param granted The bytes returned by {@link #acquire(long)}
+     */
+    public synchronized void release(long granted) {
+        usedBytes -= granted;
+        notifyAll();
+    }
+
+    /**
+     * Gets the maximum number of the bytes in flight
+     *
+     * @return The budget in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Gets the number of the bytes in flight
+     *
+     * @return The used bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
@@ -0,0 +1,606 @@
+package net.qasd.htmlanalyzer.util;
+
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import org.jsoup.nodes.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Fetcher scheduling the fetches of another fetcher per host
+ * <p>
+ * Every host has its own queue; at most the configured number of the fetches of a host run at the same time and a
+ * fetch of a host starts at least the minimum delay after the previous one. The hosts take turns (round-robin), so a
+ * batch of a single host does not delay the other hosts while it waits for its turns, and the total number of the
+ * running fetches is limited too. A blocking fetcher runs on the scheduler threads, an asynchronous fetcher is called
+ * by the scheduler directly. The delay is kept between the actual starts: a blocking fetch records its start on the
+ * scheduler thread right before it calls the fetcher, and waits there if the previous fetch of the host started late.
+ * A fetch cancelled by its caller while it is queued is removed from the queue; a running fetch is cancelled too, the
+ * future of an asynchronous fetcher is cancelled and the scheduler thread of a blocking fetcher is interrupted. The
+ * queue depth and the waiting time of every host are exported with {@link #writePrometheus(Writer)}, the waiting
+ * times of all hosts are recorded as the fetch_queue stage as well.
+ */
+public class PoliteFetcher implements Fetcher, Closeable {
+
+    public static final String QUEUE_DEPTH = "htmlanalyzer_host_queue_depth";
+    public static final String ACTIVE_FETCHES = "htmlanalyzer_host_active_fetches";
+    public static final String WAIT = "htmlanalyzer_host_wait_seconds";
+
+    // the idle hosts above this number are forgotten with their metrics
+    static final int MAX_IDLE_HOSTS = 1024;
+
+    private static final Histogram queueHistogram = Metrics.getDefault().stage(Metrics.FETCH_QUEUE);
+
+    private final Fetcher fetcher;
+
+    private final int maxFetches;
+
+    private final int maxFetchesPerHost;
+
+    private final long minDelayNanos;
+
+    // the hosts in the least recently used order
+    private final Map<String, HostQueue> hosts = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the hosts having queued fetches in their turn order
+    private final ArrayDeque<HostQueue> turns = new ArrayDeque<>();
+
+    private int activeFetches = 0;
+
+    // the time of the scheduled dispatch or Long.MAX_VALUE
+    private long wakeUpNanos = Long.MAX_VALUE;
+
+    private final ExecutorService executor;
+
+    private final ScheduledExecutorService timer;
+
+    private PoliteFetcher(Fetcher fetcher, Settings settings) {
+        this.fetcher = fetcher;
+        this.maxFetches = settings.getMaxFetches();
+        this.maxFetchesPerHost = settings.getMaxFetchesPerHost();
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMinDelayMillis());
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = fetcher.isAsynchronous() ? null : Executors.newFixedThreadPool(maxFetches, runnable -> {
+            Thread thread = new Thread(runnable, "polite-fetcher-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polite-fetcher-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Initiates a new instance of PoliteFetcher with the default settings
+     *
+     * @param fetcher The fetcher of the pages
+     * @return A new instance of PoliteFetcher
+     */
+    public static PoliteFetcher newInstance(Fetcher fetcher) {
+        return new PoliteFetcher(fetcher, new Settings());
+    }
+
+    /**
+     * Initiates a new instance of PoliteFetcher
+     *
+     * @param fetcher  The fetcher of the pages
+     * @param settings Scheduling settings
+     * @return A new instance of PoliteFetcher
+     */
+    public static PoliteFetcher newInstance(Fetcher fetcher, Settings settings) {
+        return new PoliteFetcher(fetcher, settings);
+    }
+
+    @Override
+    public Document fetch(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return PooledFetcher.await(fetchAsync(url));
+    }
+
+    @Override
+    public CompletableFuture<Document> fetchAsync(URL url) {
+        return enqueue(url, delegate -> delegate.fetch(url), delegate -> delegate.fetchAsync(url));
+    }
+
+    @Override
+    public Document fetchHead(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return PooledFetcher.await(fetchHeadAsync(url));
+    }
+
+    @Override
+    public CompletableFuture<Document> fetchHeadAsync(URL url) {
+        return enqueue(url, delegate -> delegate.fetchHead(url), delegate -> delegate.fetchHeadAsync(url));
+    }
+
+    @Override
+    public UrlReader.ConditionalDocument fetchIfModified(URL url, UrlReader.Validators validators) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return PooledFetcher.await(fetchIfModifiedAsync(url, validators));
+    }
+
+    @Override
+    public CompletableFuture<UrlReader.ConditionalDocument> fetchIfModifiedAsync(URL url, UrlReader.Validators validators) {
+        return enqueue(url, delegate -> delegate.fetchIfModified(url, validators), delegate -> delegate.fetchIfModifiedAsync(url, validators));
+    }
+
+    /**
+     * Queues the fetch in the queue of its host and starts the fetches which can be started
+     *
+     * @param url           The url
+     * @param blockingFetch The fetch with a blocking fetcher
+     * @param asyncFetch    The fetch with an asynchronous fetcher
+     * @param <T>           The type of the fetched value
+     * @return The future of the fetched value
+     */
+    private <T> CompletableFuture<T> enqueue(URL url, BlockingFetch<T> blockingFetch, Function<Fetcher, CompletableFuture<T>> asyncFetch) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+
+        synchronized (this) {
+            HostQueue hostQueue = hosts.get(host);
+            if (hostQueue == null) {
+                hostQueue = new HostQueue(host);
+                hosts.put(host, hostQueue);
+                evictIdleHosts();
+            }
+
+            QueuedFetch<T> queuedFetch = new QueuedFetch<>(blockingFetch, asyncFetch, future, System.nanoTime());
+            hostQueue.queue.add(queuedFetch);
+            if (!hostQueue.hasTurn) {
+                hostQueue.hasTurn = true;
+                turns.add(hostQueue);
+            }
+
+            HostQueue queuedHost = hostQueue;
+            future.whenComplete((document, fetchException) -> {
+                if (future.isCancelled()) {
+                    remove(queuedHost, queuedFetch);
+                }
+            });
+        }
+        dispatch();
+
+        return future;
+    }
+
+    /**
+     * Removes a cancelled fetch from the queue of its host, a started fetch is not in the queue anymore
+     *
+     * @param hostQueue   The host queue
+     * @param queuedFetch The cancelled fetch
+     */
+    private synchronized void remove(HostQueue hostQueue, QueuedFetch<?> queuedFetch) {
+        if (hostQueue.queue.remove(queuedFetch) && hostQueue.queue.isEmpty() && hostQueue.hasTurn) {
+            hostQueue.hasTurn = false;
+            turns.remove(hostQueue);
+        }
+    }
+
+    /**
+     * The fetches do not block the calling thread, a blocking fetcher runs on the scheduler threads
+     *
+     * @return true
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * Starts the queued fetches which the limits and the delays allow, the hosts take one fetch per turn
+     */
+    private void dispatch() {
+        List<Runnable> started = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long nextStart = Long.MAX_VALUE;
+
+            // one fetch per host in a round, the rounds are repeated while any fetch is started
+            boolean progress = true;
+            while (progress && activeFetches < maxFetches && !turns.isEmpty()) {
+                progress = false;
+                for (int i = turns.size(); i > 0 && activeFetches < maxFetches; i--) {
+                    HostQueue hostQueue = turns.poll();
+                    if (hostQueue.activeFetches < maxFetchesPerHost) {
+                        if (now - hostQueue.nextStartNanos >= 0) {
+                            started.add(start(hostQueue, hostQueue.queue.poll(), now));
+                            progress = true;
+                        } else {
+                            nextStart = Math.min(nextStart, hostQueue.nextStartNanos);
+                        }
+                    }
+
+                    if (hostQueue.queue.isEmpty()) {
+                        hostQueue.hasTurn = false;
+                    } else {
+                        turns.add(hostQueue);
+                    }
+                }
+            }
+
+            if (nextStart != Long.MAX_VALUE && (wakeUpNanos == Long.MAX_VALUE || nextStart - wakeUpNanos < 0)) {
+                wakeUpNanos = nextStart;
+                timer.schedule(this::wakeUp, Math.max(0, nextStart - now), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // a blocking fetcher is submitted and an asynchronous one is called outside of the lock
+        for (Runnable fetch : started) {
+            fetch.run();
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (this) {
+            wakeUpNanos = Long.MAX_VALUE;
+        }
+        dispatch();
+    }
+
+    /**
+     * Accounts the fetch as running and creates the task starting it
+     *
+     * @param hostQueue    The host queue
+     * @param queuedFetch  The queued fetch
+     * @param now          The current time in nanoseconds
+     * @return The task starting the fetch
+     */
+    private <T> Runnable start(HostQueue hostQueue, QueuedFetch<T> queuedFetch, long now) {
+        activeFetches++;
+        hostQueue.activeFetches++;
+        hostQueue.nextStartNanos = now + minDelayNanos;
+        if (executor == null) {
+            hostQueue.lastStartNanos = now;
+        }
+
+        long waitNanos = now - queuedFetch.queuedNanos;
+        hostQueue.waitCount++;
+        hostQueue.waitNanos += waitNanos;
+        queueHistogram.record(waitNanos);
+
+        return () -> {
+            CompletableFuture<T> fetched;
+            RunningFetch runningFetch = executor != null ? new RunningFetch() : null;
+            if (executor == null) {
+                try {
+                    // the caller is not waiting anymore
+                    if (queuedFetch.future.isDone()) {
+                        fetched = CompletableFuture.completedFuture(null);
+                    } else {
+                        fetched = queuedFetch.asyncFetch.apply(fetcher);
+                    }
+                } catch (RuntimeException fetchException) {
+                    fetched = new CompletableFuture<>();
+                    fetched.completeExceptionally(fetchException);
+                }
+            } else {
+                CompletableFuture<T> blockingFetch = new CompletableFuture<>();
+                executor.execute(() -> {
+                    try {
+                        // the caller is not waiting anymore
+                        if (queuedFetch.future.isDone() || !runningFetch.start()) {
+                            blockingFetch.complete(null);
+                            return;
+                        }
+                        awaitStart(hostQueue);
+                        blockingFetch.complete(queuedFetch.blockingFetch.fetch(fetcher));
+                    } catch (Exception fetchException) {
+                        blockingFetch.completeExceptionally(fetchException);
+                    } finally {
+                        runningFetch.finish();
+                    }
+                });
+                fetched = blockingFetch;
+            }
+
+            // the cancellation of the caller is passed to the running fetch
+            CompletableFuture<T> asyncFetched = fetched;
+            queuedFetch.future.whenComplete((value, fetchException) -> {
+                if (queuedFetch.future.isCancelled()) {
+                    if (runningFetch != null) {
+                        runningFetch.cancel();
+                    } else {
+                        asyncFetched.cancel(true);
+                    }
+                }
+            });
+
+            fetched.whenComplete((value, fetchException) -> {
+                synchronized (this) {
+                    activeFetches--;
+                    hostQueue.activeFetches--;
+                }
+                dispatch();
+
+                if (fetchException != null) {
+                    queuedFetch.future.completeExceptionally(fetchException);
+                } else {
+                    queuedFetch.future.complete(value);
+                }
+            });
+        };
+    }
+
+    /**
+     * Records the start of a blocking fetch on its scheduler thread, and waits until the minimum delay has passed since
+     * the previous start of the host if that fetch started later than it was dispatched
+     *
+     * @param hostQueue The host queue
+     * @throws InterruptedException If the scheduler thread is interrupted while waiting
+     */
+    private void awaitStart(HostQueue hostQueue) throws InterruptedException {
+        long now;
+        long startNanos;
+        synchronized (this) {
+            now = System.nanoTime();
+            startNanos = now;
+            if (startNanos - (hostQueue.lastStartNanos + minDelayNanos) < 0) {
+                startNanos = hostQueue.lastStartNanos + minDelayNanos;
+            }
+            hostQueue.lastStartNanos = startNanos;
+            if (hostQueue.nextStartNanos - (startNanos + minDelayNanos) < 0) {
+                hostQueue.nextStartNanos = startNanos + minDelayNanos;
+            }
+        }
+
+        if (startNanos - now > 0) {
+            TimeUnit.NANOSECONDS.sleep(startNanos - now);
+        }
+    }
+
+    /**
+     * Forgets the least recently used idle hosts while there are too many hosts
+     */
+    private void evictIdleHosts() {
+        Iterator<HostQueue> iterator = hosts.values().iterator();
+        while (hosts.size() > MAX_IDLE_HOSTS && iterator.hasNext()) {
+            HostQueue hostQueue = iterator.next();
+            if (hostQueue.queue.isEmpty() && hostQueue.activeFetches == 0 && System.nanoTime() - hostQueue.nextStartNanos >= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of the queued fetches of the host
+     *
+     * @param host The host name
+     * @return The number of the fetches waiting for their turn
+     */
+    public synchronized int getQueueDepth(String host) {
+        HostQueue hostQueue = hosts.get(host.toLowerCase(Locale.ROOT));
+        return hostQueue != null ? hostQueue.queue.size() : 0;
+    }
+
+    /**
+     * Gets the number of the running fetches
+     *
+     * @return The number of the running fetches of all hosts
+     */
+    public synchronized int getActiveFetches() {
+        return activeFetches;
+    }
+
+    /**
+     * Writes the queue depth, the running fetches and the waiting time of every host in the Prometheus text format
+     *
+     * @param writer The writer
+     * @throws IOException If writing fails
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        List<HostQueue> snapshot = new ArrayList<>();
+        List<long[]> values = new ArrayList<>();
+        synchronized (this) {
+            for (HostQueue hostQueue : hosts.values()) {
+                snapshot.add(hostQueue);
+                values.add(new long[]{hostQueue.queue.size(), hostQueue.activeFetches, hostQueue.waitNanos, hostQueue.waitCount});
+            }
+        }
+
+        writer.write("# HELP " + QUEUE_DEPTH + " The number of the fetches waiting for their turn per host.\n");
+        writer.write("# TYPE " + QUEUE_DEPTH + " gauge\n");
+        for (int i = 0; i < snapshot.size(); i++) {
+            writer.write(QUEUE_DEPTH + "{host=\"" + snapshot.get(i).label + "\"} " + values.get(i)[0] + "\n");
+        }
+
+        writer.write("# HELP " + ACTIVE_FETCHES + " The number of the running fetches per host.\n");
+        writer.write("# TYPE " + ACTIVE_FETCHES + " gauge\n");
+        for (int i = 0; i < snapshot.size(); i++) {
+            writer.write(ACTIVE_FETCHES + "{host=\"" + snapshot.get(i).label + "\"} " + values.get(i)[1] + "\n");
+        }
+
+        writer.write("# HELP " + WAIT + " The time the fetches waited for their turn per host.\n");
+        writer.write("# TYPE " + WAIT + " summary\n");
+        for (int i = 0; i < snapshot.size(); i++) {
+            writer.write(WAIT + "_sum{host=\"" + snapshot.get(i).label + "\"} " + values.get(i)[2] / 1e9 + "\n");
+            writer.write(WAIT + "_count{host=\"" + snapshot.get(i).label + "\"} " + values.get(i)[3] + "\n");
+        }
+    }
+
+    /**
+     * Stops the scheduler threads, the queued fetches are not started
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The queue and the counters of a host, guarded by the fetcher
+     */
+    private static class HostQueue {
+        private final String label;
+        private final ArrayDeque<QueuedFetch<?>> queue = new ArrayDeque<>();
+        private int activeFetches = 0;
+        private long nextStartNanos = System.nanoTime();
+        // the start of the latest fetch, a blocking fetch records it when it actually starts
+        private long lastStartNanos = nextStartNanos - TimeUnit.DAYS.toNanos(1);
+        private boolean hasTurn = false;
+        private long waitNanos = 0;
+        private long waitCount = 0;
+
+        HostQueue(String host) {
+            this.label = host.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+
+    /**
+     * The scheduler thread running a blocking fetch, it is interrupted when the caller cancels the fetch
+     */
+    private static class RunningFetch {
+        private Thread thread;
+        private boolean cancelled = false;
+
+        /**
+         * Marks the fetch as started by the current thread
+         *
+         * @return false if the fetch is cancelled before it is started
+         */
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        /**
+         * Marks the fetch as cancelled and interrupts its thread if it is running
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Marks the fetch as finished, the interrupt of a cancellation does not reach the next fetch of the thread
+         */
+        synchronized void finish() {
+            if (thread != null) {
+                thread = null;
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * A fetch with a blocking fetcher
+     *
+     * @param <T> The type of the fetched value
+     */
+    private interface BlockingFetch<T> {
+        T fetch(Fetcher fetcher) throws Exception;
+    }
+
+    /**
+     * A fetch waiting for its turn
+     *
+     * @param <T> The type of the fetched value
+     */
+    private static class QueuedFetch<T> {
+        private final BlockingFetch<T> blockingFetch;
+        private final Function<Fetcher, CompletableFuture<T>> asyncFetch;
+        private final CompletableFuture<T> future;
+        private final long queuedNanos;
+
+        QueuedFetch(BlockingFetch<T> blockingFetch, Function<Fetcher, CompletableFuture<T>> asyncFetch, CompletableFuture<T> future, long queuedNanos) {
+            this.blockingFetch = blockingFetch;
+            this.asyncFetch = asyncFetch;
+            this.future = future;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * Scheduling settings of the polite fetcher
+     */
+    public static class Settings {
+        private int maxFetches = 64;
+        private int maxFetchesPerHost = 4;
+        private long minDelayMillis = 0;
+
+        /**
+         * Gets the maximum number of the running fetches
+         *
+         * @return Maximum number of the running fetches of all hosts
+         */
+        public int getMaxFetches() {
+            return maxFetches;
+        }
+
+        /**
+         * Sets the maximum number of the running fetches, it is the number of the threads of a blocking fetcher
+         *
+         * @param maxFetches Maximum number of the running fetches of all hosts
+         * @return The settings
+         */
+        public Settings setMaxFetches(int maxFetches) {
+            this.maxFetches = maxFetches;
+            return this;
+        }
+
+        /**
+         * Gets the maximum number of the running fetches per host
+         *
+         * @return Maximum number of the running fetches per host
+         */
+        public int getMaxFetchesPerHost() {
+            return maxFetchesPerHost;
+        }
+
+        /**
+         * Sets the maximum number of the running fetches per host
+         *
+         * @param maxFetchesPerHost Maximum number of the running fetches per host
+         * @return The settings
+         */
+        public Settings setMaxFetchesPerHost(int maxFetchesPerHost) {
+            this.maxFetchesPerHost = maxFetchesPerHost;
+            return this;
+        }
+
+        /**
+         * Gets the minimum delay between the starts of two fetches of a host
+         *
+         * @return Minimum delay in milliseconds
+         */
+        public long getMinDelayMillis() {
+            return minDelayMillis;
+        }
+
+        /**
+         * Sets the minimum delay between the starts of two fetches of a host
+         *
+         * @param minDelayMillis Minimum delay in milliseconds
+         * @return The settings
+         */
+        public Settings setMinDelayMillis(long minDelayMillis) {
+            this.minDelayMillis = minDelayMillis;
+            return this;
+        }
+    }
+}
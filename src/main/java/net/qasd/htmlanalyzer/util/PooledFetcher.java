@@ -0,0 +1,626 @@
+package net.qasd.htmlanalyzer.util;
+
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jsoup.nodes.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking fetcher with pooled keep-alive connections
+ * <p>
+ * The requests are executed by the OkHttp dispatcher, so the calling thread is never blocked by the asynchronous
+ * fetch. The connections are kept alive and reused per host, the number of concurrent requests per host is limited and
+ * HTTP/2 is negotiated for the https urls when the server supports it. The redirects are followed with the same rules
+ * as {@link UrlReader}: the 301, 302, 303, 307 and 308 redirects are followed up to the same limit, a redirect to an
+ * url visited before is a loop and the permanent redirects are cached. An instance should be shared and closed when
+ * it is not needed anymore.
+ */
+public class PooledFetcher implements Fetcher, Closeable {
+
+    private static final int MAX_FOLLOW = 10;
+
+    private static final LongAdder followedHops = Metrics.getDefault().redirectHops(Metrics.FOLLOWED);
+    private static final LongAdder savedHops = Metrics.getDefault().redirectHops(Metrics.SAVED);
+
+    private final OkHttpClient client;
+
+    // the permanent redirects of the fetcher
+    private final RedirectCache redirectCache;
+
+    private final long totalTimeoutMillis;
+
+    private PooledFetcher(Settings settings) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(settings.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(settings.getMaxIdleConnections(), settings.getKeepAliveMillis(), TimeUnit.MILLISECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(settings.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS)
+            .readTimeout(settings.getReadTimeoutMillis(), TimeUnit.MILLISECONDS)
+            // the redirects are followed by the fetcher
+            .followRedirects(false)
+            .followSslRedirects(false)
+            .eventListenerFactory(call -> new TimingEventListener());
+        if (settings.getDnsCache() != null) {
+            builder.dns(settings.getDnsCache());
+        }
+        this.client = builder.build();
+        this.redirectCache = settings.getRedirectCache() != null ? settings.getRedirectCache() : RedirectCache.newInstance();
+        this.totalTimeoutMillis = settings.getTotalTimeoutMillis();
+    }
+
+    /**
+     * Initiates a new instance of PooledFetcher with the default settings
+     *
+     * @return A new instance of PooledFetcher
+     */
+    public static PooledFetcher newInstance() {
+        return new PooledFetcher(new Settings());
+    }
+
+    /**
+     * Initiates a new instance of PooledFetcher
+     *
+     * @param settings Connection settings
+     * @return A new instance of PooledFetcher
+     */
+    public static PooledFetcher newInstance(Settings settings) {
+        return new PooledFetcher(settings);
+    }
+
+    @Override
+    public Document fetch(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return await(fetchAsync(url));
+    }
+
+    @Override
+    public CompletableFuture<Document> fetchAsync(URL url) {
+        return getDocument(enqueue(url, false, null));
+    }
+
+    @Override
+    public Document fetchHead(URL url) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return await(fetchHeadAsync(url));
+    }
+
+    /**
+     * Fetches the html document until the end of its head asynchronously, the response is closed without reading the
+     * rest of the body
+     *
+     * @param url The url
+     * @return The future of the parsed html document with the head only
+     */
+    @Override
+    public CompletableFuture<Document> fetchHeadAsync(URL url) {
+        return getDocument(enqueue(url, true, null));
+    }
+
+    @Override
+    public UrlReader.ConditionalDocument fetchIfModified(URL url, UrlReader.Validators validators) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        return await(fetchIfModifiedAsync(url, validators));
+    }
+
+    /**
+     * Fetches the html document of the given url if it is modified asynchronously, the validators are sent as
+     * If-None-Match and If-Modified-Since headers
+     *
+     * @param url        The url
+     * @param validators The validators of the previous response or null for an unconditional request
+     * @return The future of the document and the validators of the response
+     */
+    @Override
+    public CompletableFuture<UrlReader.ConditionalDocument> fetchIfModifiedAsync(URL url, UrlReader.Validators validators) {
+        return enqueue(url, false, validators);
+    }
+
+    /**
+     * Starts the fetch of the url
+     *
+     * @param url        The url
+     * @param headOnly   Whether only the head of the document is read
+     * @param validators The validators sent as conditional request headers, null for an unconditional request
+     * @return The future of the document and the validators of the response
+     */
+    private CompletableFuture<UrlReader.ConditionalDocument> enqueue(URL url, boolean headOnly, UrlReader.Validators validators) {
+        CompletableFuture<UrlReader.ConditionalDocument> future = new CompletableFuture<>();
+        enqueue(url, 0, new HashSet<>(), System.currentTimeMillis() + totalTimeoutMillis, headOnly, validators, future);
+
+        return future;
+    }
+
+    /**
+     * Gets the future of the document of a fetch, the failure of the fetch is passed as it is and the cancellation of
+     * the document future cancels the fetch
+     *
+     * @param fetched The future of the document and the validators
+     * @return The future of the document
+     */
+    private static CompletableFuture<Document> getDocument(CompletableFuture<UrlReader.ConditionalDocument> fetched) {
+        CompletableFuture<Document> future = new CompletableFuture<>();
+        fetched.whenComplete((conditionalDocument, fetchException) -> {
+            if (fetchException != null) {
+                future.completeExceptionally(fetchException);
+            } else {
+                future.complete(conditionalDocument.getDocument());
+            }
+        });
+        future.whenComplete((document, fetchException) -> {
+            if (future.isCancelled()) {
+                fetched.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Waits for the asynchronous fetch and throws its failure, the blocking fetch of the asynchronous fetchers
+     *
+     * @param fetched The future of the fetch
+     * @param <T>     The type of the fetched value
+     * @return The fetched value
+     * @throws IOException                        If any io action fails or the waiting is interrupted
+     * @throws UrlReader.UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws UrlReader.NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlReader.UrlNotReadableException  If the maximum follow limit exceeds or the http response status is
+     *                                            different from OK and NOT_FOUND
+     */
+    static <T> T await(CompletableFuture<T> fetched) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        try {
+            return fetched.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The fetch is interrupted");
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UrlReader.UrlNotFoundException) {
+                throw (UrlReader.UrlNotFoundException) cause;
+            } else if (cause instanceof UrlReader.NotHtmlDocumentException) {
+                throw (UrlReader.NotHtmlDocumentException) cause;
+            } else if (cause instanceof UrlReader.UrlNotReadableException) {
+                throw (UrlReader.UrlNotReadableException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * Enqueues the request of the url, the response completes the future or enqueues the redirect
+     * <p>
+     * A known permanent redirect is taken from the redirect cache without a request, and the new 301 and 308 redirects
+     * are cached. A redirect to an url visited before is a loop. Cancelling the future cancels the running request, so
+     * the connection and the dispatcher thread are released; a cancelled fetch does not follow its redirects.
+     *
+     * @param url        The url
+     * @param index      The follow redirect index
+     * @param visited    The normalized urls visited by the fetch
+     * @param deadline   The time (in milliseconds) when the whole fetch times out
+     * @param headOnly   Whether only the head of the document is read
+     * @param validators The validators sent as conditional request headers, null for an unconditional request
+     * @param future     The future of the document and the validators of the response
+     */
+    private void enqueue(URL url, int index, Set<String> visited, long deadline, boolean headOnly, UrlReader.Validators validators, CompletableFuture<UrlReader.ConditionalDocument> future) {
+        if (future.isDone()) {
+            return;
+        }
+
+        // only allow MAX_FOLLOW redirects
+        if (index > MAX_FOLLOW || !visited.add(RedirectCache.normalize(url))) {
+            future.completeExceptionally(new UrlReader.UrlNotReadableException());
+            return;
+        }
+
+        URL cachedUrl = redirectCache.get(url);
+        if (cachedUrl != null) {
+            savedHops.increment();
+            enqueue(cachedUrl, index + 1, visited, deadline, headOnly, validators, future);
+            return;
+        }
+
+        long remainingMillis = deadline - System.currentTimeMillis();
+        if (remainingMillis <= 0) {
+            future.completeExceptionally(new InterruptedIOException("The fetch is timed out"));
+            return;
+        }
+
+        Request.Builder requestBuilder = new Request.Builder()
+            .url(url)
+            .header("User-Agent", "Mozilla")
+            // the body is inflated by the fetcher in order to count the transferred bytes
+            .header("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING)
+            .get();
+        if (validators != null) {
+            if (validators.getEntityTag() != null) {
+                requestBuilder.header("If-None-Match", validators.getEntityTag());
+            }
+            if (validators.getLastModified() != null) {
+                requestBuilder.header("If-Modified-Since", validators.getLastModified());
+            }
+        }
+        Request request = requestBuilder.build();
+
+        Call call = client.newCall(request);
+        call.timeout().timeout(remainingMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((conditionalDocument, fetchException) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException ioException) {
+                future.completeExceptionally(ioException);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    int responseCode = response.code();
+
+                    // check redirect
+                    if (UrlReader.isRedirect(responseCode)) {
+                        String location = response.header("Location");
+                        if (location == null) {
+                            future.completeExceptionally(new UrlReader.UrlNotReadableException());
+                        } else {
+                            URL followUrl = new URL(url, location);
+                            if (responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == UrlReader.HTTP_PERMANENT_REDIRECT) {
+                                redirectCache.put(url, followUrl);
+                            }
+                            followedHops.increment();
+                            enqueue(followUrl, index + 1, visited, deadline, headOnly, validators, future);
+                        }
+                    } else if (validators != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        // the conditional request is answered without content
+                        UrlReader.Validators responseValidators = getValidators(response);
+                        future.complete(new UrlReader.ConditionalDocument(null, responseValidators.isEmpty() ? validators : responseValidators));
+                    } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                        Document document = parse(response, body, headOnly);
+                        future.complete(new UrlReader.ConditionalDocument(document, getValidators(response)));
+                    } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                        future.completeExceptionally(new UrlReader.UrlNotFoundException());
+                    } else {
+                        future.completeExceptionally(new UrlReader.UrlNotReadableException());
+                    }
+                } catch (Exception responseException) {
+                    future.completeExceptionally(responseException);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the cache validators of the response
+     *
+     * @param response The response
+     * @return The ETag and Last-Modified header values
+     */
+    private static UrlReader.Validators getValidators(Response response) {
+        return new UrlReader.Validators(response.header("ETag"), response.header("Last-Modified"));
+    }
+
+    /**
+     * Parses the html document while the response body is streamed and inflated
+     *
+     * @param response The response
+     * @param body     The response body
+     * @param headOnly Whether the body is parsed until the end of the head only
+     * @return Parsed html document
+     * @throws IOException                        If reading the body fails
+     * @throws UrlReader.NotHtmlDocumentException If the content type is different from text/html
+     */
+    private static Document parse(Response response, ResponseBody body, boolean headOnly) throws IOException, UrlReader.NotHtmlDocumentException {
+        // check the content type
+        String contentType = response.header("Content-Type");
+        if (contentType == null || !contentType.toLowerCase().contains("text/html")) {
+            throw new UrlReader.NotHtmlDocumentException();
+        }
+
+        MediaType mediaType = body.contentType();
+        Charset charset = mediaType != null ? mediaType.charset() : null;
+
+        // closing the body before it is read to its end closes the connection instead of reusing it
+        try (InputStream decoded = ContentEncoding.decode(body.byteStream(), response.header("Content-Encoding"));
+             InputStream inputStream = headOnly ? new HeadInputStream(decoded) : decoded) {
+            return UrlReader.parse(inputStream, charset != null ? charset.name() : null, response.request().url().toString());
+        }
+    }
+
+    /**
+     * Gets the number of the running requests
+     *
+     * @return The number of the requests executed by the dispatcher
+     */
+    int getRunningCount() {
+        return client.dispatcher().runningCallsCount();
+    }
+
+    /**
+     * Cancels the running requests and closes the pooled connections
+     */
+    @Override
+    public void close() {
+        client.dispatcher().cancelAll();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * Records the dns, connect and first byte times of a call, a reused connection has no dns and connect time
+     */
+    private static class TimingEventListener extends EventListener {
+        private static final Histogram dnsHistogram = Metrics.getDefault().stage(Metrics.FETCH_DNS);
+        private static final Histogram connectHistogram = Metrics.getDefault().stage(Metrics.FETCH_CONNECT);
+        private static final Histogram firstByteHistogram = Metrics.getDefault().stage(Metrics.FETCH_FIRST_BYTE);
+
+        private long dnsStart;
+        private long connectStart;
+        private long requestStart;
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsHistogram.recordSince(dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectHistogram.recordSince(connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            firstByteHistogram.recordSince(requestStart);
+        }
+    }
+
+    /**
+     * Connection settings of the pooled fetcher
+     */
+    public static class Settings {
+        private int maxRequests = 256;
+        private int maxRequestsPerHost = 8;
+        private int maxIdleConnections = 32;
+        private long keepAliveMillis = 5 * 60 * 1000;
+        private long connectTimeoutMillis = 5 * 1000;
+        private long readTimeoutMillis = 10 * 1000;
+        private long totalTimeoutMillis = 30 * 1000;
+        private DnsCache dnsCache = null;
+        private RedirectCache redirectCache = null;
+
+        /**
+         * Gets the maximum number of the concurrent requests
+         *
+         * @return Maximum number of the concurrent requests
+         */
+        public int getMaxRequests() {
+            return maxRequests;
+        }
+
+        /**
+         * Sets the maximum number of the concurrent requests, the other requests wait in the queue
+         *
+         * @param maxRequests Maximum number of the concurrent requests
+         * @return The settings
+         */
+        public Settings setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Gets the maximum number of the concurrent requests per host
+         *
+         * @return Maximum number of the concurrent requests per host
+         */
+        public int getMaxRequestsPerHost() {
+            return maxRequestsPerHost;
+        }
+
+        /**
+         * Sets the maximum number of the concurrent requests (so the connections) per host
+         *
+         * @param maxRequestsPerHost Maximum number of the concurrent requests per host
+         * @return The settings
+         */
+        public Settings setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Gets the maximum number of the idle connections kept in the pool
+         *
+         * @return Maximum number of the idle connections
+         */
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        /**
+         * Sets the maximum number of the idle connections kept in the pool
+         *
+         * @param maxIdleConnections Maximum number of the idle connections
+         * @return The settings
+         */
+        public Settings setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Gets the time an idle connection is kept alive
+         *
+         * @return Keep alive time in milliseconds
+         */
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        /**
+         * Sets the time an idle connection is kept alive
+         *
+         * @param keepAliveMillis Keep alive time in milliseconds
+         * @return The settings
+         */
+        public Settings setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+
+        /**
+         * Gets the connect timeout
+         *
+         * @return Connect timeout in milliseconds
+         */
+        public long getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        /**
+         * Sets the connect timeout
+         *
+         * @param connectTimeoutMillis Connect timeout in milliseconds
+         * @return The settings
+         */
+        public Settings setConnectTimeoutMillis(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Gets the read timeout
+         *
+         * @return Read timeout in milliseconds
+         */
+        public long getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        /**
+         * Sets the maximum time between two reads of the response
+         *
+         * @param readTimeoutMillis Read timeout in milliseconds
+         * @return The settings
+         */
+        public Settings setReadTimeoutMillis(long readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Gets the total timeout
+         *
+         * @return Total timeout in milliseconds
+         */
+        public long getTotalTimeoutMillis() {
+            return totalTimeoutMillis;
+        }
+
+        /**
+         * Sets the maximum time of the whole fetch including the redirects and the parsing of the streamed body
+         *
+         * @param totalTimeoutMillis Total timeout in milliseconds
+         * @return The settings
+         */
+        public Settings setTotalTimeoutMillis(long totalTimeoutMillis) {
+            this.totalTimeoutMillis = totalTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Gets the dns cache
+         *
+         * @return The dns cache or null if the system resolver is used
+         */
+        public DnsCache getDnsCache() {
+            return dnsCache;
+        }
+
+        /**
+         * Sets the dns cache resolving the hosts of the requests
+         *
+         * @param dnsCache The dns cache or null to use the system resolver
+         * @return The settings
+         */
+        public Settings setDnsCache(DnsCache dnsCache) {
+            this.dnsCache = dnsCache;
+            return this;
+        }
+
+        /**
+         * Gets the redirect cache
+         *
+         * @return The redirect cache or null if the fetcher has its own
+         */
+        public RedirectCache getRedirectCache() {
+            return redirectCache;
+        }
+
+        /**
+         * Sets the cache of the permanent redirects, it can be shared with the other fetchers
+         *
+         * @param redirectCache The redirect cache or null to create one for the fetcher
+         * @return The settings
+         */
+        public Settings setRedirectCache(RedirectCache redirectCache) {
+            this.redirectCache = redirectCache;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the registrable domain (eTLD+1) of the host names with the public suffix list rules
+ * <p>
+ * The rules are stored in a compact label trie, the labels are matched from right to left directly on the host
+ * characters, so a lookup does not allocate. The normal, the wildcard ("*.ck") and the exception ("!www.ck") rules are
+ * supported; a host without a matching rule has its last label as the public suffix.
+ *
+ * @link https://publicsuffix.org/list/
+ */
+public class PublicSuffixList {
+
+    public static final String DEFAULT_RESOURCE = "/public_suffix_list.dat";
+
+    private static final int ROOT = 0;
+
+    private static final byte RULE = 1;
+    private static final byte WILDCARD = 2;
+    private static final byte EXCEPTION = 4;
+
+    // node flags by node index
+    private byte[] flags = new byte[256];
+
+    private int nodeCount = 1;
+
+    // open addressing table of the trie edges: (parent node, label) -> child node
+    private int[] edgeParents;
+    private String[] edgeLabels;
+    private int[] edgeChildren;
+
+    private int edgeCount = 0;
+
+    private PublicSuffixList(List<String> rules) {
+        allocateEdges(256);
+        for (String rule : rules) {
+            addRule(rule);
+        }
+    }
+
+    /**
+     * Initiates a new instance of PublicSuffixList
+     *
+     * @param rules The rules, the lines starting with "//" and the empty lines are skipped
+     * @return A new instance of PublicSuffixList
+     */
+    public static PublicSuffixList newInstance(List<String> rules) {
+        return new PublicSuffixList(rules);
+    }
+
+    /**
+     * Loads the rules in the public suffix list format
+     *
+     * @param inputStream UTF-8 rules, one rule per line
+     * @return A new instance of PublicSuffixList
+     * @throws IOException If reading fails
+     */
+    public static PublicSuffixList load(InputStream inputStream) throws IOException {
+        List<String> rules = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rules.add(line);
+            }
+        }
+
+        return new PublicSuffixList(rules);
+    }
+
+    /**
+     * Gets the list loaded from the {@value #DEFAULT_RESOURCE} resource
+     *
+     * @return The shared public suffix list
+     */
+    public static PublicSuffixList getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the registrable domain of the host
+     *
+     * @param host The host name
+     * @return The registrable domain in lower case or null if the host is a public suffix or an ip address
+     */
+    public String getRegistrableDomain(String host) {
+        int start = registrableDomainStart(host, 0, host.length());
+
+        return start < 0 ? null : host.substring(start).toLowerCase();
+    }
+
+    /**
+     * Finds the start of the registrable domain of the host in the given range
+     *
+     * @param chars The characters containing the host
+     * @param start The start index of the host (inclusive)
+     * @param end   The end index of the host (exclusive)
+     * @return The start index of the registrable domain or -1 if the host is a public suffix or an ip address
+     */
+    public int registrableDomainStart(CharSequence chars, int start, int end) {
+        if (start >= end || isIpAddress(chars, start, end)) {
+            return -1;
+        }
+
+        // the default rule "*": the last label is the public suffix
+        int suffixStart = labelStart(chars, start, end);
+
+        int node = ROOT;
+        int labelEnd = end;
+        while (labelEnd > start) {
+            int labelStart = labelStart(chars, start, labelEnd);
+            int child = findChild(node, chars, labelStart, labelEnd);
+
+            if (child >= 0 && (flags[child] & EXCEPTION) != 0) {
+                // the exception rule: the public suffix is the parent of the matched labels
+                suffixStart = labelEnd + 1;
+                break;
+            }
+            if ((flags[node] & WILDCARD) != 0) {
+                suffixStart = labelStart;
+            }
+            if (child < 0) {
+                break;
+            }
+            if ((flags[child] & RULE) != 0) {
+                suffixStart = labelStart;
+            }
+
+            node = child;
+            labelEnd = labelStart - 1;
+        }
+
+        if (suffixStart <= start) {
+            return -1;
+        }
+
+        // one more label than the public suffix
+        return labelStart(chars, start, suffixStart - 1);
+    }
+
+    /**
+     * Finds the start of the label ending at the given index
+     *
+     * @param chars The characters
+     * @param start The start index of the host
+     * @param end   The end index of the label (exclusive)
+     * @return The start index of the label
+     */
+    private static int labelStart(CharSequence chars, int start, int end) {
+        int index = end - 1;
+        while (index >= start && chars.charAt(index) != '.') {
+            index--;
+        }
+
+        return index + 1;
+    }
+
+    /**
+     * Checks whether the host is an ipv4 address or an ipv6 literal
+     *
+     * @param chars The characters
+     * @param start The start index of the host
+     * @param end   The end index of the host
+     * @return true if the host is an ip address
+     */
+    private static boolean isIpAddress(CharSequence chars, int start, int end) {
+        if (chars.charAt(start) == '[') {
+            return true;
+        }
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the rule to the trie
+     *
+     * @param line The rule line
+     */
+    private void addRule(String line) {
+        String rule = line.trim();
+        if (rule.isEmpty() || rule.startsWith("//")) {
+            return;
+        }
+        // the rule ends at the first whitespace
+        for (int i = 0; i < rule.length(); i++) {
+            if (Character.isWhitespace(rule.charAt(i))) {
+                rule = rule.substring(0, i);
+                break;
+            }
+        }
+
+        boolean exception = rule.startsWith("!");
+        if (exception) {
+            rule = rule.substring(1);
+        }
+
+        int node = ROOT;
+        int labelEnd = rule.length();
+        while (labelEnd > 0) {
+            int labelStart = labelStart(rule, 0, labelEnd);
+            String label = rule.substring(labelStart, labelEnd).toLowerCase();
+            if ("*".equals(label)) {
+                // the wildcard is always the leftmost label
+                flags[node] |= WILDCARD;
+                return;
+            }
+
+            int child = findChild(node, label, 0, label.length());
+            if (child < 0) {
+                child = addChild(node, label);
+            }
+
+            node = child;
+            labelEnd = labelStart - 1;
+        }
+
+        flags[node] |= exception ? EXCEPTION : RULE;
+    }
+
+    /**
+     * Finds the child node of the label
+     *
+     * @param parent     The parent node
+     * @param chars      The characters containing the label
+     * @param labelStart The start index of the label
+     * @param labelEnd   The end index of the label
+     * @return The child node or -1 if the label is not in the trie
+     */
+    private int findChild(int parent, CharSequence chars, int labelStart, int labelEnd) {
+        int mask = edgeLabels.length - 1;
+        for (int index = hash(parent, chars, labelStart, labelEnd) & mask; edgeLabels[index] != null; index = (index + 1) & mask) {
+            if (edgeParents[index] == parent && labelEquals(edgeLabels[index], chars, labelStart, labelEnd)) {
+                return edgeChildren[index];
+            }
+        }
+
+        return -1;
+    }
+
+    private int addChild(int parent, String label) {
+        if ((edgeCount + 1) * 2 > edgeLabels.length) {
+            rehash();
+        }
+        if (nodeCount == flags.length) {
+            byte[] grown = new byte[flags.length * 2];
+            System.arraycopy(flags, 0, grown, 0, flags.length);
+            flags = grown;
+        }
+
+        int child = nodeCount++;
+        putEdge(parent, label, child);
+        edgeCount++;
+
+        return child;
+    }
+
+    private void putEdge(int parent, String label, int child) {
+        int mask = edgeLabels.length - 1;
+        int index = hash(parent, label, 0, label.length()) & mask;
+        while (edgeLabels[index] != null) {
+            index = (index + 1) & mask;
+        }
+
+        edgeParents[index] = parent;
+        edgeLabels[index] = label;
+        edgeChildren[index] = child;
+    }
+
+    private void rehash() {
+        int[] parents = edgeParents;
+        String[] labels = edgeLabels;
+        int[] children = edgeChildren;
+
+        allocateEdges(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                putEdge(parents[i], labels[i], children[i]);
+            }
+        }
+    }
+
+    private void allocateEdges(int capacity) {
+        edgeParents = new int[capacity];
+        edgeLabels = new String[capacity];
+        edgeChildren = new int[capacity];
+    }
+
+    private static int hash(int parent, CharSequence chars, int start, int end) {
+        int hash = parent * 0x9E3779B9;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLowerCase(chars.charAt(i));
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean labelEquals(String label, CharSequence chars, int start, int end) {
+        if (label.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < label.length(); i++) {
+            if (label.charAt(i) != toLowerCase(chars.charAt(start + i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static char toLowerCase(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+
+        return c < 0x80 ? c : Character.toLowerCase(c);
+    }
+
+    /**
+     * Loads the default list on the first use
+     */
+    private static class DefaultHolder {
+        private static final PublicSuffixList INSTANCE = loadDefault();
+
+        private static PublicSuffixList loadDefault() {
+            InputStream inputStream = PublicSuffixList.class.getResourceAsStream(DEFAULT_RESOURCE);
+            if (inputStream == null) {
+                throw new IllegalStateException("The public suffix list " + DEFAULT_RESOURCE + " is not found");
+            }
+
+            try {
+                return load(inputStream);
+            } catch (IOException loadException) {
+                throw new UncheckedIOException(loadException);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded cache of the permanent redirects
+ * <p>
+ * The targets of the 301 and 308 responses are kept by the normalized source url, so a known redirect chain is
+ * followed without connecting to its hops again. The least recently used redirect is evicted when the cache is full
+ * and a redirect is forgotten after its time to live, so a moved site is eventually requested again.
+ */
+public class RedirectCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final long timeToLiveMillis;
+
+    // guarded by itself
+    private final LinkedHashMap<String, Redirect> redirects;
+
+    private RedirectCache(int maxEntries, long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.redirects = new LinkedHashMap<String, Redirect>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Redirect> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Initiates a new instance of RedirectCache with the default size and time to live
+     *
+     * @return A new instance of RedirectCache
+     */
+    public static RedirectCache newInstance() {
+        return new RedirectCache(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MILLIS);
+    }
+
+    /**
+     * Initiates a new instance of RedirectCache
+     *
+     * @param maxEntries       The maximum number of the cached redirects
+     * @param timeToLiveMillis The time (in milliseconds) a redirect is used
+     * @return A new instance of RedirectCache
+     */
+    public static RedirectCache newInstance(int maxEntries, long timeToLiveMillis) {
+        return new RedirectCache(maxEntries, timeToLiveMillis);
+    }
+
+    /**
+     * Gets the cached target of the url
+     *
+     * @param url The source url
+     * @return The target url or null if the redirect is not known
+     */
+    public URL get(URL url) {
+        String key = normalize(url);
+        synchronized (redirects) {
+            Redirect redirect = redirects.get(key);
+            if (redirect == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= redirect.expiresAt) {
+                redirects.remove(key);
+                return null;
+            }
+
+            return redirect.target;
+        }
+    }
+
+    /**
+     * Caches the permanent redirect, a redirect to the same url is not cached
+     *
+     * @param url    The source url
+     * @param target The target url
+     */
+    public void put(URL url, URL target) {
+        String key = normalize(url);
+        if (key.equals(normalize(target))) {
+            return;
+        }
+
+        synchronized (redirects) {
+            redirects.put(key, new Redirect(target, System.currentTimeMillis() + timeToLiveMillis));
+        }
+    }
+
+    /**
+     * Gets the number of the cached redirects
+     *
+     * @return Number of the cached redirects
+     */
+    public int size() {
+        synchronized (redirects) {
+            return redirects.size();
+        }
+    }
+
+    /**
+     * Normalizes the url, the scheme and the host are lower cased and the default port and the fragment are removed
+     *
+     * @param url The url
+     * @return Normalized url
+     */
+    static String normalize(URL url) {
+        StringBuilder key = new StringBuilder(url.getProtocol().toLowerCase(Locale.ROOT))
+            .append("://")
+            .append(url.getHost().toLowerCase(Locale.ROOT));
+
+        int port = url.getPort();
+        if (port != -1 && port != url.getDefaultPort()) {
+            key.append(':').append(port);
+        }
+
+        String path = url.getPath();
+        key.append(path.isEmpty() ? "/" : path);
+
+        if (url.getQuery() != null) {
+            key.append('?').append(url.getQuery());
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * A cached redirect
+     */
+    private static class Redirect {
+        private final URL target;
+        private final long expiresAt;
+
+        Redirect(URL target, long expiresAt) {
+            this.target = target;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
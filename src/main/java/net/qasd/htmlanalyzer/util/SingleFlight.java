@@ -0,0 +1,287 @@
+package net.qasd.htmlanalyzer.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent executions of the same key into one execution
+ * <p>
+ * The first caller of a key executes the work, the callers of the same key arriving while it is running wait for it
+ * and get the same value or the same failure. The key is forgotten as soon as the work is completed, so nothing is
+ * cached; the next caller executes the work again. Every caller gets its own future: cancelling it releases only that
+ * caller, and the work itself is cancelled when all of its callers are cancelled.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private SingleFlight() {
+    }
+
+    /**
+     * Initiates a new instance of SingleFlight
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return A new instance of SingleFlight
+     */
+    public static <K, V> SingleFlight<K, V> newInstance() {
+        return new SingleFlight<>();
+    }
+
+    /**
+     * Executes the work in the calling thread or waits for the running execution of the key
+     * <p>
+     * The exceptions of the work are thrown to all callers. If the waiting thread is interrupted then it stops
+     * waiting, keeps the interrupt status and a CancellationException is thrown.
+     *
+     * @param key  The key
+     * @param work The work
+     * @return The value of the work
+     */
+    public V execute(K key, Supplier<V> work) {
+        while (true) {
+            Flight created = new Flight(key);
+            Flight flight = flights.putIfAbsent(key, created);
+
+            if (flight == null) {
+                executions.increment();
+                created.lead();
+
+                V value;
+                try {
+                    value = work.get();
+                } catch (RuntimeException | Error workException) {
+                    created.complete(null, workException);
+                    throw workException;
+                }
+                created.complete(value, null);
+
+                return value;
+            }
+
+            CompletableFuture<V> waiter = flight.join();
+            if (waiter != null) {
+                coalesced.increment();
+                return await(waiter);
+            }
+
+            // the flight is cancelled by its callers
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Starts the work or joins the running execution of the key
+     *
+     * @param key  The key
+     * @param work Starts the work and returns its future
+     * @return The future of the caller, cancelling it does not affect the other callers
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> work) {
+        while (true) {
+            Flight created = new Flight(key);
+            Flight flight = flights.putIfAbsent(key, created);
+
+            if (flight == null) {
+                executions.increment();
+                CompletableFuture<V> waiter = created.join();
+
+                CompletableFuture<V> running;
+                try {
+                    running = work.get();
+                } catch (RuntimeException workException) {
+                    running = new CompletableFuture<>();
+                    running.completeExceptionally(workException);
+                }
+                created.start(running);
+
+                return waiter;
+            }
+
+            CompletableFuture<V> waiter = flight.join();
+            if (waiter != null) {
+                coalesced.increment();
+                return waiter;
+            }
+
+            // the flight is cancelled by its callers
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Waits for the future of a caller
+     *
+     * @param waiter The future of the caller
+     * @return The value of the work
+     */
+    private V await(CompletableFuture<V> waiter) {
+        try {
+            return waiter.get();
+        } catch (InterruptedException interruptedException) {
+            waiter.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The waiting is interrupted");
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * Gets the number of the running executions
+     *
+     * @return The number of the keys having an execution
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * Gets the number of the executions
+     *
+     * @return The number of the executed works
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * Gets the number of the callers joined a running execution
+     *
+     * @return The number of the coalesced callers
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * The running execution of a key and its callers
+     */
+    class Flight {
+        private final K key;
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+
+        // guarded by the flight
+        private int callers = 0;
+        private boolean cancelled = false;
+        private CompletableFuture<V> work;
+
+        Flight(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds the caller executing the work in its thread, it cannot be cancelled
+         */
+        synchronized void lead() {
+            callers++;
+        }
+
+        /**
+         * Adds a caller
+         *
+         * @return The future of the caller or null if the flight is cancelled
+         */
+        synchronized CompletableFuture<V> join() {
+            if (cancelled) {
+                return null;
+            }
+            callers++;
+
+            CompletableFuture<V> waiter = new CompletableFuture<>();
+            shared.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    waiter.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+                } else {
+                    waiter.complete(value);
+                }
+            });
+            waiter.whenComplete((value, failure) -> {
+                if (waiter.isCancelled()) {
+                    leave();
+                }
+            });
+
+            return waiter;
+        }
+
+        /**
+         * Removes a cancelled caller, the work is cancelled with the last caller
+         */
+        private void leave() {
+            CompletableFuture<V> cancelledWork;
+            synchronized (this) {
+                callers--;
+                if (callers > 0 || shared.isDone()) {
+                    return;
+                }
+                cancelled = true;
+                cancelledWork = work;
+            }
+
+            flights.remove(key, this);
+            if (cancelledWork != null) {
+                cancelledWork.cancel(true);
+            }
+            shared.cancel(false);
+        }
+
+        /**
+         * Completes the callers when the started work is completed
+         * <p>
+         * The work is cancelled at once if all of the callers are cancelled before it is started.
+         *
+         * @param running The future of the work
+         */
+        void start(CompletableFuture<V> running) {
+            boolean started;
+            synchronized (this) {
+                started = !cancelled;
+                if (started) {
+                    work = running;
+                }
+            }
+            if (!started) {
+                running.cancel(true);
+                return;
+            }
+            running.whenComplete(this::complete);
+        }
+
+        /**
+         * Forgets the key and completes the callers
+         *
+         * @param value   The value of the work
+         * @param failure The failure of the work or null
+         */
+        void complete(V value, Throwable failure) {
+            flights.remove(key, this);
+
+            if (failure != null) {
+                shared.completeExceptionally(failure);
+            } else {
+                shared.complete(value);
+            }
+        }
+    }
+}
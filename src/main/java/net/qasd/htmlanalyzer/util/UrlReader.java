@@ -1,16 +1,48 @@
 package net.qasd.htmlanalyzer.util;
 
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
 import org.apache.commons.io.IOUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLStreamHandler;
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
-public class UrlReader {
+public class UrlReader implements Fetcher {
 
     private static final int MAX_FOLLOW = 10;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 10 * 1000;
+    private static final String CHARSET_PARAMETER = "charset=";
+    private static final int CHARSET_PRESCAN_BYTES = 5 * 1024;
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    static final int HTTP_TEMPORARY_REDIRECT = 307;
+    static final int HTTP_PERMANENT_REDIRECT = 308;
+
+    private static final Histogram connectHistogram = Metrics.getDefault().stage(Metrics.FETCH_CONNECT);
+    private static final Histogram firstByteHistogram = Metrics.getDefault().stage(Metrics.FETCH_FIRST_BYTE);
+    private static final Histogram bodyHistogram = Metrics.getDefault().stage(Metrics.FETCH_BODY);
+    private static final Histogram parseHistogram = Metrics.getDefault().stage(Metrics.PARSE);
+    private static final LongAdder followedHops = Metrics.getDefault().redirectHops(Metrics.FOLLOWED);
+    private static final LongAdder savedHops = Metrics.getDefault().redirectHops(Metrics.SAVED);
+
+    // the permanent redirects of the reader
+    private final RedirectCache redirectCache;
 
     // used for unit testing
     private URLStreamHandler urlStreamHandler = null;
@@ -21,7 +53,21 @@ public class UrlReader {
      * @return A new instance of UrlReader
      */
     public static UrlReader newInstance() {
-        return new UrlReader();
+        return new UrlReader(RedirectCache.newInstance());
+    }
+
+    /**
+     * Initiates a new instance of UrlReader
+     *
+     * @param redirectCache The cache of the permanent redirects
+     * @return A new instance of UrlReader
+     */
+    public static UrlReader newInstance(RedirectCache redirectCache) {
+        return new UrlReader(redirectCache);
+    }
+
+    private UrlReader(RedirectCache redirectCache) {
+        this.redirectCache = redirectCache;
     }
 
     /**
@@ -34,7 +80,8 @@ public class UrlReader {
      * @throws IOException              If any io action fails
      * @throws UrlNotFoundException     If the http response code is NOT_FOUND
      * @throws NotHtmlDocumentException If the content type is different from text/html
-     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different from OK and NOT_FOUND
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK and NOT_FOUND
      */
     public String getContent(URL url) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
         return getContent(url, 0);
@@ -51,59 +98,394 @@ public class UrlReader {
      * @throws IOException              If any io action fails
      * @throws UrlNotFoundException     If the http response code is NOT_FOUND
      * @throws NotHtmlDocumentException If the content type is different from text/html
-     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different from OK and NOT_FOUND
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK and NOT_FOUND
      */
     public String getContent(URL url, int index) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
-        // only allow MAX_FOLLOW redirects
-        if (index > MAX_FOLLOW) {
-            throw new UrlNotReadableException();
+        Response response = connect(url, index);
+
+        // read the content, the charset of the content type or UTF-8 if it is not set
+        String charset = response.getCharset();
+        try (InputStream inputStream = response.openBody()) {
+            return IOUtils.toString(inputStream, charset != null ? Charset.forName(charset) : DEFAULT_CHARSET);
+        }
+    }
+
+    /**
+     * Gets the parsed html document of the given url
+     * <p>
+     * The response body is streamed into the html parser, so the parsing starts with the first received bytes and the
+     * content is never held as a whole string. The gzip or deflate compressed body is inflated while it is parsed.
+     * The charset is taken from the content type header; if it is not set then the parser detects it from the byte
+     * order mark or the meta charset of the document (UTF-8 by default).
+     *
+     * @param url The url
+     * @return Parsed html document with the final url (after the redirects) as base uri
+     * @throws IOException              If any io action fails
+     * @throws UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK and NOT_FOUND
+     */
+    public Document getDocument(URL url) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        Response response = connect(url, 0);
+
+        try (InputStream inputStream = response.openBody()) {
+            return parse(inputStream, response.getCharset(), response.getUrl().toString());
+        }
+    }
+
+    /**
+     * Gets the parsed head of the html document of the given url
+     * <p>
+     * The response body is parsed until the head end tag or the body start tag; then the connection is closed
+     * without reading the rest of the body, so a large page costs only the bytes of its head.
+     *
+     * @param url The url
+     * @return Parsed html document with the head and an empty body
+     * @throws IOException              If any io action fails
+     * @throws UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK and NOT_FOUND
+     */
+    public Document getHead(URL url) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        Response response = connect(url, 0);
+
+        HeadInputStream headInputStream = null;
+        try (InputStream inputStream = response.openBody()) {
+            headInputStream = new HeadInputStream(inputStream);
+            return parse(headInputStream, response.getCharset(), response.getUrl().toString());
+        } finally {
+            // the rest of the body is not drained for reusing the connection
+            if (headInputStream == null || headInputStream.isHeadEnded()) {
+                response.getConnection().disconnect();
+            }
+        }
+    }
+
+    /**
+     * Gets the parsed html document of the given url if it is modified
+     * <p>
+     * The validators of a previous response are sent as If-None-Match and If-Modified-Since headers, so the server
+     * can answer with NOT_MODIFIED without sending the content again. The document is not parsed in this case.
+     *
+     * @param url        The url
+     * @param validators The validators of the previous response or null for an unconditional request
+     * @return The document and the validators of the response
+     * @throws IOException              If any io action fails
+     * @throws UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK, NOT_MODIFIED and NOT_FOUND
+     */
+    public ConditionalDocument getDocument(URL url, Validators validators) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        Response response = connect(url, 0, validators);
+        HttpURLConnection connection = response.getConnection();
+        Validators responseValidators = new Validators(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+
+        if (response.isNotModified()) {
+            // the response has no content, the stream is closed to release the connection
+            IOUtils.closeQuietly(connection.getInputStream());
+            return new ConditionalDocument(null, responseValidators.isEmpty() ? validators : responseValidators);
+        }
+
+        try (InputStream inputStream = response.openBody()) {
+            Document document = parse(inputStream, response.getCharset(), response.getUrl().toString());
+            return new ConditionalDocument(document, responseValidators);
         }
+    }
+
+    /**
+     * Parses the html document while it is read from the stream
+     * <p>
+     * The time spent in reading the stream is recorded as the body download time and the rest as the parse time.
+     *
+     * @param inputStream The response body stream
+     * @param charset     The charset or null to detect it
+     * @param baseUri     The base uri of the document
+     * @return Parsed html document
+     * @throws IOException If reading the stream fails
+     */
+    static Document parse(InputStream inputStream, String charset, String baseUri) throws IOException {
+        TimedInputStream timedInputStream = new TimedInputStream(inputStream);
+        long start = System.nanoTime();
 
+        try {
+            return Jsoup.parse(timedInputStream, charset, baseUri);
+        } catch (UncheckedIOException readException) {
+            // the parser reads the stream lazily and wraps the read failures
+            throw readException.getCause();
+        } finally {
+            long readNanos = timedInputStream.getReadNanos();
+            bodyHistogram.record(readNanos);
+            parseHistogram.record(System.nanoTime() - start - readNanos);
+        }
+    }
+
+    /**
+     * Opens the reader of the characters of the html document without parsing it
+     * <p>
+     * The charset is detected as the parser detects it: the byte order mark wins over the given charset, otherwise the
+     * meta charset (or the meta content type) within the first {@value #CHARSET_PRESCAN_BYTES} bytes is used if no
+     * charset is given (UTF-8 by default). The byte order mark is not read.
+     *
+     * @param inputStream The response body stream
+     * @param charset     The charset or null to detect it
+     * @return The reader of the document
+     * @throws IOException If reading the stream fails
+     */
+    static Reader newReader(InputStream inputStream, String charset) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream, CHARSET_PRESCAN_BYTES);
+        bufferedStream.mark(CHARSET_PRESCAN_BYTES);
+        byte[] head = new byte[CHARSET_PRESCAN_BYTES];
+        int length = IOUtils.read(bufferedStream, head);
+        bufferedStream.reset();
+
+        String documentCharset = charset;
+        int bomLength = 0;
+        if (length >= 4 && head[0] == 0 && head[1] == 0 && (head[2] & 0xFF) == 0xFE && (head[3] & 0xFF) == 0xFF) {
+            documentCharset = "UTF-32BE";
+            bomLength = 4;
+        } else if (length >= 4 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE && head[2] == 0 && head[3] == 0) {
+            documentCharset = "UTF-32LE";
+            bomLength = 4;
+        } else if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            documentCharset = "UTF-8";
+            bomLength = 3;
+        } else if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            documentCharset = "UTF-16BE";
+            bomLength = 2;
+        } else if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            documentCharset = "UTF-16LE";
+            bomLength = 2;
+        } else if (documentCharset == null) {
+            documentCharset = getMetaCharset(new String(head, 0, Math.max(length, 0), DEFAULT_CHARSET));
+        }
+        IOUtils.skipFully(bufferedStream, bomLength);
+
+        return new InputStreamReader(bufferedStream, documentCharset != null ? Charset.forName(documentCharset) : DEFAULT_CHARSET);
+    }
+
+    /**
+     * Gets the charset of the first meta charset or meta content type of the document head
+     *
+     * @param head The beginning of the document decoded as UTF-8
+     * @return The charset name or null if the charset is not set or not supported
+     */
+    private static String getMetaCharset(String head) {
+        for (Element meta : Jsoup.parse(head).select("meta[http-equiv=content-type], meta[charset]")) {
+            String charset = null;
+            if (meta.hasAttr("http-equiv")) {
+                charset = getCharsetFromContentType(meta.attr("content"));
+            }
+            if (charset == null && meta.hasAttr("charset")) {
+                charset = getCharsetFromContentType(CHARSET_PARAMETER + meta.attr("charset"));
+            }
+            if (charset != null) {
+                return charset;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Document fetch(URL url) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        return getDocument(url);
+    }
+
+    @Override
+    public Document fetchHead(URL url) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        return getHead(url);
+    }
+
+    @Override
+    public ConditionalDocument fetchIfModified(URL url, Validators validators) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        return getDocument(url, validators);
+    }
+
+    /**
+     * Connects to the given url and follows the redirects until an html document is found
+     *
+     * @param url   The url
+     * @param index The follow redirect index
+     * @return The response of the html document
+     * @throws IOException              If any io action fails
+     * @throws UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds or the http response status is different
+     *                                  from OK and NOT_FOUND
+     */
+    private Response connect(URL url, int index) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        return connect(url, index, null);
+    }
+
+    /**
+     * Connects to the given url and follows the redirects until an html document is found or it is not modified
+     * <p>
+     * The redirects are followed in a loop; the known permanent redirects are taken from the redirect cache without
+     * connecting, and the new 301 and 308 redirects are cached. A redirect to an url visited before is a loop.
+     *
+     * @param url        The url
+     * @param index      The follow redirect index
+     * @param validators The validators sent as conditional request headers, null for an unconditional request
+     * @return The response of the html document
+     * @throws IOException              If any io action fails
+     * @throws UrlNotFoundException     If the http response code is NOT_FOUND
+     * @throws NotHtmlDocumentException If the content type is different from text/html
+     * @throws UrlNotReadableException  If the maximum follow limit exceeds, the redirects loop or the http response
+     *                                  status is different from OK, NOT_MODIFIED and NOT_FOUND
+     */
+    private Response connect(URL url, int index, Validators validators) throws IOException, UrlNotFoundException, NotHtmlDocumentException, UrlNotReadableException {
+        Set<String> visited = new HashSet<>();
+        URL currentUrl = url;
+
+        for (int hop = index; ; hop++) {
+            // only allow MAX_FOLLOW redirects
+            if (hop > MAX_FOLLOW || !visited.add(RedirectCache.normalize(currentUrl))) {
+                throw new UrlNotReadableException();
+            }
+
+            URL cachedUrl = redirectCache.get(currentUrl);
+            if (cachedUrl != null) {
+                savedHops.increment();
+                currentUrl = cachedUrl;
+                continue;
+            }
+
+            HttpURLConnection httpConnection = openConnection(currentUrl, validators);
+            int responseCode = httpConnection.getResponseCode();
+
+            // check redirect
+            if (isRedirect(responseCode)) {
+                String location = httpConnection.getHeaderField("Location");
+                if (location == null) {
+                    throw new UrlNotReadableException();
+                }
+
+                // build the follow url, a relative location is resolved against the current url and the follow url
+                // is opened by the handler of the reader (the default handler of its protocol if it is not set)
+                URL followUrl;
+                if (urlStreamHandler == null) {
+                    followUrl = new URL(new URL(currentUrl, location).toString());
+                } else {
+                    followUrl = new URL(currentUrl, location, urlStreamHandler);
+                }
+
+                if (responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == HTTP_PERMANENT_REDIRECT) {
+                    redirectCache.put(currentUrl, followUrl);
+                }
+                followedHops.increment();
+                currentUrl = followUrl;
+                continue;
+            }
+
+            // the conditional request is answered without content
+            if (validators != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Response(currentUrl, httpConnection, null, true);
+            }
+
+            // check whether the http status is OK
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // check the content type
+                String contentType = httpConnection.getHeaderField("Content-Type");
+                if (contentType != null && contentType.toLowerCase().contains("text/html")) {
+                    return new Response(currentUrl, httpConnection, getCharsetFromContentType(contentType), false);
+                } else {
+                    throw new NotHtmlDocumentException();
+                }
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new UrlNotFoundException();
+            } else {
+                throw new UrlNotReadableException();
+            }
+        }
+    }
+
+    /**
+     * Opens the connection of the url and waits for the response code
+     * <p>
+     * The host is resolved by the connection, so the lookup time is a part of the connect time.
+     *
+     * @param url        The url
+     * @param validators The validators sent as conditional request headers, null for an unconditional request
+     * @return The connected http connection
+     * @throws IOException If the host is unknown or the connection cannot be opened
+     */
+    private HttpURLConnection openConnection(URL url, Validators validators) throws IOException {
         HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
 
-        // set http connection settings
+        // set http connection settings, the redirects are followed by the reader
         httpConnection.setRequestMethod("GET");
-        httpConnection.setInstanceFollowRedirects(true);
-        httpConnection.setReadTimeout(10 * 1000);
+        httpConnection.setInstanceFollowRedirects(false);
+        httpConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        httpConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
         httpConnection.setRequestProperty("User-Agent", "Mozilla");
+        httpConnection.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+        if (validators != null) {
+            if (validators.getEntityTag() != null) {
+                httpConnection.setRequestProperty("If-None-Match", validators.getEntityTag());
+            }
+            if (validators.getLastModified() != null) {
+                httpConnection.setRequestProperty("If-Modified-Since", validators.getLastModified());
+            }
+        }
 
-        int responseCode = httpConnection.getResponseCode();
+        // connect explicitly in order to measure the connect (dns, tcp and tls) and the first byte time separately
+        long connectStart = System.nanoTime();
+        httpConnection.connect();
+        long connected = System.nanoTime();
+        connectHistogram.record(connected - connectStart);
 
-        // check redirect
-        if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
-            responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
-            responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
-            String location = httpConnection.getHeaderField("Location");
+        httpConnection.getResponseCode();
+        firstByteHistogram.recordSince(connected);
 
-            // increase the follow redirect index
-            index++;
+        return httpConnection;
+    }
 
-            // build the follow url
-            URL followUrl;
-            if (urlStreamHandler == null) {
-                followUrl = new URL(location);
-            } else {
-                followUrl = new URL(null, location, urlStreamHandler);
-            }
+    /**
+     * Returns whether the response code is a followed redirect
+     *
+     * @param responseCode The http response code
+     * @return true for 301, 302, 303, 307 and 308
+     */
+    static boolean isRedirect(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
+            responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
+            responseCode == HttpURLConnection.HTTP_SEE_OTHER ||
+            responseCode == HTTP_TEMPORARY_REDIRECT ||
+            responseCode == HTTP_PERMANENT_REDIRECT;
+    }
 
-            return getContent(followUrl, index);
+    /**
+     * Gets the charset parameter of the content type
+     *
+     * @param contentType Content type header value (e.g. text/html; charset=ISO-8859-1)
+     * @return The charset name or null if the charset is not set or not supported
+     */
+    static String getCharsetFromContentType(String contentType) {
+        int index = contentType.toLowerCase().indexOf(CHARSET_PARAMETER);
+        if (index < 0) {
+            return null;
         }
 
-        // check whether the http status is OK
-        if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            // check the content type
-            String contentType = httpConnection.getHeaderField("Content-Type");
-            if (contentType != null && contentType.toLowerCase().contains("text/html")) {
-                // read the content
-                return IOUtils.toString(httpConnection.getInputStream(), Charset.forName("UTF-8"));
-            } else {
-                throw new NotHtmlDocumentException();
+        int start = index + CHARSET_PARAMETER.length();
+        int end = contentType.indexOf(';', start);
+        String charset = (end < 0 ? contentType.substring(start) : contentType.substring(start, end))
+            .trim()
+            .replace("\"", "")
+            .replace("'", "");
+
+        try {
+            if (!charset.isEmpty() && Charset.isSupported(charset)) {
+                return charset;
             }
-        } else if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
-            throw new UrlNotFoundException();
-        } else {
-            throw new UrlNotReadableException();
+        } catch (IllegalCharsetNameException charsetException) {
+            // not supported charset, the parser detects it
         }
+
+        return null;
     }
 
     /**
@@ -117,6 +499,178 @@ public class UrlReader {
         this.urlStreamHandler = urlStreamHandler;
     }
 
+    /**
+     * The connection of an html document response
+     */
+    private static class Response {
+        private final URL url;
+        private final HttpURLConnection connection;
+        private final String charset;
+        private final boolean notModified;
+
+        Response(URL url, HttpURLConnection connection, String charset, boolean notModified) {
+            this.url = url;
+            this.connection = connection;
+            this.charset = charset;
+            this.notModified = notModified;
+        }
+
+        URL getUrl() {
+            return url;
+        }
+
+        HttpURLConnection getConnection() {
+            return connection;
+        }
+
+        String getCharset() {
+            return charset;
+        }
+
+        boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * Opens the response body with the content encoding removed
+         *
+         * @return The decoded response body
+         * @throws IOException If the body cannot be read or its encoding is not supported
+         */
+        InputStream openBody() throws IOException {
+            InputStream inputStream = connection.getInputStream();
+            try {
+                return ContentEncoding.decode(inputStream, connection.getHeaderField("Content-Encoding"));
+            } catch (IOException decodeException) {
+                inputStream.close();
+                throw decodeException;
+            }
+        }
+    }
+
+    /**
+     * Input stream measuring the time spent in reading
+     */
+    private static class TimedInputStream extends FilterInputStream {
+        private long readNanos = 0;
+
+        TimedInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, length);
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        long getReadNanos() {
+            return readNanos;
+        }
+    }
+
+    /**
+     * The cache validators of a response
+     */
+    public static class Validators {
+        private final String entityTag;
+        private final String lastModified;
+
+        /**
+         * @param entityTag    The ETag header value or null
+         * @param lastModified The Last-Modified header value or null
+         */
+        public Validators(String entityTag, String lastModified) {
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Gets the entity tag
+         *
+         * @return The ETag header value or null
+         */
+        public String getEntityTag() {
+            return entityTag;
+        }
+
+        /**
+         * Gets the last modified date
+         *
+         * @return The Last-Modified header value or null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns whether the response has no validator, so it cannot be revalidated
+         *
+         * @return true if neither ETag nor Last-Modified is set
+         */
+        public boolean isEmpty() {
+            return entityTag == null && lastModified == null;
+        }
+    }
+
+    /**
+     * The result of a conditional request
+     */
+    public static class ConditionalDocument {
+        private final Document document;
+        private final Validators validators;
+
+        /**
+         * @param document   Parsed html document or null if it is not modified
+         * @param validators The validators of the response
+         */
+        public ConditionalDocument(Document document, Validators validators) {
+            this.document = document;
+            this.validators = validators;
+        }
+
+        /**
+         * Gets the parsed html document
+         *
+         * @return Parsed html document or null if it is not modified
+         */
+        public Document getDocument() {
+            return document;
+        }
+
+        /**
+         * Gets the validators of the response
+         *
+         * @return The validators
+         */
+        public Validators getValidators() {
+            return validators;
+        }
+
+        /**
+         * Returns whether the server answered with NOT_MODIFIED
+         *
+         * @return true if the document is not modified
+         */
+        public boolean isNotModified() {
+            return document == null;
+        }
+    }
+
     /**
      * Exceptions
      */
@@ -0,0 +1,508 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the html responses of a WARC archive
+ * <p>
+ * The archive is read sequentially, the gzip members of a ".warc.gz" file (usually one member per record) are
+ * inflated while the records are read. Only the "response" records of an http response with an html content type are
+ * returned; the other records and the redirects are skipped without being buffered. The http body of a returned
+ * record is held in memory with the chunked transfer encoding removed; the content encoding (gzip, deflate) is
+ * removed while the record is parsed, so it runs in the analyzing thread.
+ *
+ * @link https://iipc.github.io/warc-specifications/specifications/warc-format/warc-1.1/
+ */
+public class WarcReader implements Iterator<WarcReader.WarcRecord>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the longest header line which is read
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final InputStream inputStream;
+
+    private WarcRecord next;
+
+    private long records = 0;
+
+    private long skippedRecords = 0;
+
+    private WarcReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Initiates a new instance of WarcReader reading the stream
+     *
+     * @param inputStream The uncompressed or the gzip compressed archive
+     * @return A new instance of WarcReader
+     * @throws IOException If the stream cannot be read
+     */
+    public static WarcReader newInstance(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+
+        // the gzip magic number
+        bufferedInputStream.mark(2);
+        boolean compressed = bufferedInputStream.read() == 0x1f && bufferedInputStream.read() == 0x8b;
+        bufferedInputStream.reset();
+
+        if (compressed) {
+            // the concatenated gzip members are read as one stream
+            return new WarcReader(new BufferedInputStream(new GZIPInputStream(bufferedInputStream, BUFFER_SIZE), BUFFER_SIZE));
+        }
+
+        return new WarcReader(bufferedInputStream);
+    }
+
+    /**
+     * Initiates a new instance of WarcReader reading the file
+     *
+     * @param file The ".warc" or ".warc.gz" file
+     * @return A new instance of WarcReader
+     * @throws IOException If the file cannot be opened
+     */
+    public static WarcReader open(Path file) throws IOException {
+        InputStream inputStream = Files.newInputStream(file);
+        try {
+            return newInstance(inputStream);
+        } catch (IOException openException) {
+            inputStream.close();
+            throw openException;
+        }
+    }
+
+    /**
+     * Checks whether the file is a WARC archive by its name
+     *
+     * @param file The file
+     * @return true if the file name ends with ".warc" or ".warc.gz"
+     */
+    public static boolean isWarcFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        return name.endsWith(".warc") || name.endsWith(".warc.gz");
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                if (!readRecord()) {
+                    return false;
+                }
+            }
+        } catch (IOException readException) {
+            throw new UncheckedIOException(readException);
+        }
+
+        return true;
+    }
+
+    @Override
+    public WarcRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        WarcRecord record = next;
+        next = null;
+
+        return record;
+    }
+
+    /**
+     * Reads the next record, the html response records are set as the next record
+     *
+     * @return false at the end of the archive
+     * @throws IOException If the archive cannot be read or it is not valid
+     */
+    private boolean readRecord() throws IOException {
+        String version = readLine(inputStream);
+        // the blank lines between the records
+        while (version != null && version.isEmpty()) {
+            version = readLine(inputStream);
+        }
+        if (version == null) {
+            return false;
+        }
+        if (!version.startsWith("WARC/")) {
+            throw new IOException("The record " + (records + 1) + " does not start with a WARC version: \"" + version + "\"");
+        }
+
+        String type = null;
+        String targetUri = null;
+        String contentType = null;
+        long contentLength = -1;
+        for (String line = readLine(inputStream); line != null && !line.isEmpty(); line = readLine(inputStream)) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if ("WARC-Type".equalsIgnoreCase(name)) {
+                type = value;
+            } else if ("WARC-Target-URI".equalsIgnoreCase(name)) {
+                // WARC 1.1 drafts wrap the uri with angle brackets
+                targetUri = value.startsWith("<") && value.endsWith(">") ? value.substring(1, value.length() - 1) : value;
+            } else if ("Content-Type".equalsIgnoreCase(name)) {
+                contentType = value;
+            } else if ("Content-Length".equalsIgnoreCase(name)) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException lengthException) {
+                    throw new IOException("The content length \"" + value + "\" of the record " + (records + 1) + " is not valid");
+                }
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("The record " + (records + 1) + " has no content length");
+        }
+        records++;
+
+        BoundedInputStream block = new BoundedInputStream(inputStream, contentLength);
+        if ("response".equalsIgnoreCase(type) && targetUri != null
+            && contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/http")) {
+            next = readResponse(targetUri, block);
+        }
+        if (next == null) {
+            skippedRecords++;
+        }
+        block.skipRemaining();
+
+        return true;
+    }
+
+    /**
+     * Reads the http response of the record block
+     *
+     * @param targetUri The target uri of the record
+     * @param block     The record block
+     * @return The html response record or null if the response is not an html document or it is a redirect
+     * @throws IOException If the block cannot be read
+     */
+    private static WarcRecord readResponse(String targetUri, InputStream block) throws IOException {
+        String statusLine = readLine(block);
+        if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+            return null;
+        }
+
+        int statusCode;
+        try {
+            String[] parts = statusLine.split(" ", 3);
+            statusCode = Integer.parseInt(parts[1].trim());
+        } catch (RuntimeException statusException) {
+            return null;
+        }
+        if (statusCode >= 300 && statusCode < 400) {
+            // the redirect target is archived as a separate record
+            return null;
+        }
+
+        String contentType = null;
+        String transferEncoding = null;
+        String contentEncoding = null;
+        for (String line = readLine(block); line != null && !line.isEmpty(); line = readLine(block)) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if ("Content-Type".equalsIgnoreCase(name)) {
+                contentType = value;
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                transferEncoding = value.toLowerCase(Locale.ROOT);
+            } else if ("Content-Encoding".equalsIgnoreCase(name)) {
+                contentEncoding = value.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        if (contentType == null || !isHtmlContentType(contentType)) {
+            return null;
+        }
+
+        byte[] body = transferEncoding != null && transferEncoding.contains("chunked") ? readChunked(block) : readFully(block);
+
+        return new WarcRecord(targetUri, statusCode, UrlReader.getCharsetFromContentType(contentType), contentEncoding, body);
+    }
+
+    private static boolean isHtmlContentType(String contentType) {
+        String mediaType = contentType.toLowerCase(Locale.ROOT);
+
+        return mediaType.startsWith("text/html") || mediaType.startsWith("application/xhtml+xml");
+    }
+
+    /**
+     * Reads the chunked transfer encoded body
+     *
+     * @param block The record block positioned at the first chunk
+     * @return The body without the chunk sizes
+     * @throws IOException If the block cannot be read
+     */
+    private static byte[] readChunked(InputStream block) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        for (String sizeLine = readLine(block); sizeLine != null; sizeLine = readLine(block)) {
+            int extension = sizeLine.indexOf(';');
+            String size = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim();
+            if (size.isEmpty()) {
+                continue;
+            }
+
+            long chunkSize;
+            try {
+                chunkSize = Long.parseLong(size, 16);
+            } catch (NumberFormatException sizeException) {
+                // a broken chunked body is analyzed as far as it is read
+                break;
+            }
+            if (chunkSize == 0) {
+                break;
+            }
+
+            while (chunkSize > 0) {
+                int read = block.read(buffer, 0, (int) Math.min(buffer.length, chunkSize));
+                if (read < 0) {
+                    return body.toByteArray();
+                }
+                body.write(buffer, 0, read);
+                chunkSize -= read;
+            }
+        }
+
+        return body.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream block) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = block.read(buffer); read >= 0; read = block.read(buffer)) {
+            body.write(buffer, 0, read);
+        }
+
+        return body.toByteArray();
+    }
+
+    /**
+     * Reads a header line ending with CRLF or LF
+     *
+     * @param inputStream The stream
+     * @return The line without the line ending (ISO-8859-1) or null at the end of the stream
+     * @throws IOException If the stream cannot be read or the line is too long
+     */
+    static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b = inputStream.read();
+        if (b < 0) {
+            return null;
+        }
+
+        while (b >= 0 && b != '\n') {
+            if (line.length() == MAX_LINE_LENGTH) {
+                throw new IOException("The header line is longer than " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append((char) b);
+            b = inputStream.read();
+        }
+
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+
+        return line.toString();
+    }
+
+    /**
+     * Gets the number of the records read
+     *
+     * @return The number of the records
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Gets the number of the records which are not html responses
+     *
+     * @return The number of the skipped records
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * An html response record
+     */
+    public static class WarcRecord {
+        private final String targetUri;
+        private final int statusCode;
+        private final String charset;
+        private final String contentEncoding;
+        private final byte[] body;
+
+        WarcRecord(String targetUri, int statusCode, String charset, String contentEncoding, byte[] body) {
+            this.targetUri = targetUri;
+            this.statusCode = statusCode;
+            this.charset = charset;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+
+        /**
+         * Gets the target uri
+         *
+         * @return The uri of the archived response
+         */
+        public String getTargetUri() {
+            return targetUri;
+        }
+
+        /**
+         * Gets the http status code
+         *
+         * @return The status code of the archived response
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Gets the size of the body
+         *
+         * @return The number of the body bytes as they are archived
+         */
+        public int getSize() {
+            return body.length;
+        }
+
+        /**
+         * Parses the html document of the response
+         *
+         * @return Parsed html document with the target uri as base uri
+         * @throws IOException                        If the body cannot be decoded
+         * @throws UrlReader.UrlNotFoundException     If the http status is NOT_FOUND
+         * @throws UrlReader.UrlNotReadableException  If the http status is not successful
+         */
+        public Document parse() throws IOException, UrlReader.UrlNotFoundException, UrlReader.UrlNotReadableException {
+            return UrlReader.parse(openBody(), charset, targetUri);
+        }
+
+        /**
+         * Opens the reader of the characters of the response for the streaming analyzing
+         *
+         * @return The reader of the html document, it does not need to be closed
+         * @throws IOException                        If the body cannot be decoded
+         * @throws UrlReader.UrlNotFoundException     If the http status is NOT_FOUND
+         * @throws UrlReader.UrlNotReadableException  If the http status is not successful
+         */
+        public Reader open() throws IOException, UrlReader.UrlNotFoundException, UrlReader.UrlNotReadableException {
+            return UrlReader.newReader(openBody(), charset);
+        }
+
+        /**
+         * Opens the decoded body of the successful response
+         *
+         * @return The body stream without the content encoding
+         * @throws IOException                        If the encoding is not supported or the gzip header cannot be read
+         * @throws UrlReader.UrlNotFoundException     If the http status is NOT_FOUND
+         * @throws UrlReader.UrlNotReadableException  If the http status is not successful
+         */
+        private InputStream openBody() throws IOException, UrlReader.UrlNotFoundException, UrlReader.UrlNotReadableException {
+            if (statusCode == 404) {
+                throw new UrlReader.UrlNotFoundException();
+            } else if (statusCode < 200 || statusCode >= 300) {
+                throw new UrlReader.UrlNotReadableException();
+            }
+
+            return ContentEncoding.decode(new ByteArrayInputStream(body), contentEncoding, BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Input stream reading at most the given number of bytes of the underlying stream
+     */
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream inputStream;
+        private long remaining;
+
+        BoundedInputStream(InputStream inputStream, long length) {
+            this.inputStream = inputStream;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = inputStream.read();
+            if (b < 0) {
+                throw new EOFException("The record is truncated");
+            }
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int read = inputStream.read(bytes, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("The record is truncated");
+            }
+            remaining -= read;
+
+            return read;
+        }
+
+        void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                long skipped = inputStream.skip(remaining);
+                if (skipped <= 0) {
+                    if (inputStream.read() < 0) {
+                        throw new EOFException("The record is truncated");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        @Override
+        public void close() {
+            // the archive stream stays open for the next record
+        }
+    }
+}
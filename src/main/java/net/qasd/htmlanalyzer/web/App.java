@@ -1,17 +1,142 @@
 package net.qasd.htmlanalyzer.web;
 
+import net.qasd.htmlanalyzer.BatchAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerCache;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.DnsCache;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.PoliteFetcher;
+import net.qasd.htmlanalyzer.util.PooledFetcher;
+import net.qasd.htmlanalyzer.util.RedirectCache;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import net.qasd.htmlanalyzer.web.controller.ApiController;
+import net.qasd.htmlanalyzer.web.controller.BatchController;
 import net.qasd.htmlanalyzer.web.controller.IndexController;
+import net.qasd.htmlanalyzer.web.controller.MetricsController;
 import spark.template.velocity.VelocityTemplateEngine;
 
+import java.util.concurrent.ForkJoinPool;
+
 import static spark.Spark.*;
 
 public class App {
 
+    /**
+     * The system property selecting the fetcher, "pooled" selects the pooled asynchronous fetcher and "url" selects the
+     * blocking url connection, the pooled fetcher is the default unless the dns cache is disabled
+     */
+    public static final String FETCHER_PROPERTY = "htmlanalyzer.fetcher";
+
+    /**
+     * The system property of the maximum number of the fetches of a host at the same time, the fetches are scheduled
+     * per host only if it is set to a positive number
+     */
+    public static final String HOST_CONCURRENCY_PROPERTY = "htmlanalyzer.host.concurrency";
+
+    /**
+     * The system property of the minimum delay (in milliseconds) between the starts of two fetches of a host
+     */
+    public static final String HOST_DELAY_PROPERTY = "htmlanalyzer.host.delay";
+
+    /**
+     * The system property of the time to live (in seconds) of the host addresses resolved for the pooled fetcher, 0
+     * disables the dns cache and makes the blocking url connection the default fetcher
+     */
+    public static final String DNS_TTL_PROPERTY = "htmlanalyzer.dns.ttl";
+
+    /**
+     * The system property of the time to live (in seconds) of the failed host lookups
+     */
+    public static final String DNS_NEGATIVE_TTL_PROPERTY = "htmlanalyzer.dns.negativeTtl";
+
+    /**
+     * The system property of the time to live (in seconds) of the cached results
+     */
+    public static final String CACHE_TTL_PROPERTY = "htmlanalyzer.cache.ttl";
+
+    /**
+     * The system property of the maximum number of the cached results, 0 disables the cache
+     */
+    public static final String CACHE_SIZE_PROPERTY = "htmlanalyzer.cache.size";
+
+    /**
+     * The system property of the maximum number of the urls analyzed at the same time by the batch requests
+     */
+    public static final String BATCH_CONCURRENCY_PROPERTY = "htmlanalyzer.batch.concurrency";
+
+    /**
+     * The system property enabling the virtual threads (Java 21+) for the batch requests
+     */
+    public static final String BATCH_VIRTUAL_THREADS_PROPERTY = "htmlanalyzer.batch.virtualThreads";
+
+    /**
+     * The system property enabling the asynchronous handling of the html analyzer requests
+     */
+    public static final String ASYNC_PROPERTY = "htmlanalyzer.async";
+
+    /**
+     * The system property enabling the parallel traversals of the independent analyzers on the large pages
+     */
+    public static final String ANALYZER_PARALLEL_PROPERTY = "htmlanalyzer.analyzer.parallel";
+
+    /**
+     * The system property of the minimum number of nodes of a page analyzed in parallel
+     */
+    public static final String ANALYZER_PARALLEL_THRESHOLD_PROPERTY = "htmlanalyzer.analyzer.parallelThreshold";
+
     public App() {
         staticFiles.location("/public");
 
-        get("/", (req, res) -> IndexController.serveHomePage(req, res), new VelocityTemplateEngine());
-        post("/", (req, res) -> IndexController.executeHtmlAnalyzer(req, res), new VelocityTemplateEngine());
+        // the hosts of the blocking url connection are resolved by the connection, so the pooled fetcher is the
+        // default while the dns cache is enabled
+        long dnsTimeToLiveMillis = Long.getLong(DNS_TTL_PROPERTY, 60L) * 1000;
+        String fetcherName = System.getProperty(FETCHER_PROPERTY, dnsTimeToLiveMillis > 0 ? "pooled" : "url");
+        boolean pooled = "pooled".equalsIgnoreCase(fetcherName);
+        DnsCache dnsCache = null;
+        if (pooled && dnsTimeToLiveMillis > 0) {
+            dnsCache = DnsCache.newInstance(new DnsCache.Settings()
+                .setPositiveTimeToLiveMillis(dnsTimeToLiveMillis)
+                .setNegativeTimeToLiveMillis(Long.getLong(DNS_NEGATIVE_TTL_PROPERTY, 10L) * 1000));
+        }
+        MetricsController.setDnsCache(dnsCache);
+
+        RedirectCache redirectCache = RedirectCache.newInstance();
+        Fetcher fetcher = pooled
+            ? PooledFetcher.newInstance(new PooledFetcher.Settings().setDnsCache(dnsCache).setRedirectCache(redirectCache))
+            : UrlReader.newInstance(redirectCache);
+        int hostConcurrency = Integer.getInteger(HOST_CONCURRENCY_PROPERTY, 0);
+        if (hostConcurrency > 0) {
+            fetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings()
+                .setMaxFetchesPerHost(hostConcurrency)
+                .setMinDelayMillis(Long.getLong(HOST_DELAY_PROPERTY, 0L)));
+        }
+        IndexController.setFetcher(fetcher);
+
+        // the parallel traversals only add the task overhead on a single core
+        if (Boolean.getBoolean(ANALYZER_PARALLEL_PROPERTY) && Runtime.getRuntime().availableProcessors() > 1) {
+            AnalyzerEngine.setParallelExecution(ForkJoinPool.commonPool(), Integer.getInteger(ANALYZER_PARALLEL_THRESHOLD_PROPERTY, 20000));
+        }
+
+        int cacheSize = Integer.getInteger(CACHE_SIZE_PROPERTY, 1000);
+        if (cacheSize > 0) {
+            long timeToLiveMillis = Long.getLong(CACHE_TTL_PROPERTY, 60L) * 1000;
+            IndexController.setCache(HtmlAnalyzerCache.newInstance(timeToLiveMillis, cacheSize, fetcher));
+        }
+
+        int batchConcurrency = Integer.getInteger(BATCH_CONCURRENCY_PROPERTY, 16);
+        boolean batchVirtualThreads = Boolean.getBoolean(BATCH_VIRTUAL_THREADS_PROPERTY);
+        BatchController.setBatchAnalyzer(BatchAnalyzer.newInstance(batchConcurrency, batchVirtualThreads, IndexController::analyze, dnsCache));
+
+        get("/", (req, res) -> IndexController.serveHomePage(req, res), TimedTemplateEngine.newInstance(new VelocityTemplateEngine()));
+        if (Boolean.getBoolean(ASYNC_PROPERTY)) {
+            post("/", (req, res) -> IndexController.executeHtmlAnalyzerAsync(req, res));
+        } else {
+            post("/", (req, res) -> IndexController.executeHtmlAnalyzer(req, res), TimedTemplateEngine.newInstance(new VelocityTemplateEngine()));
+        }
+        get("/api/analyze", (req, res) -> ApiController.executeHtmlAnalyzer(req, res));
+        post("/batch", (req, res) -> BatchController.executeBatch(req, res));
+        get("/cache/stats", (req, res) -> IndexController.serveCacheStatistics(req, res));
+        get("/metrics", (req, res) -> MetricsController.serveMetrics(req, res));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,147 @@
+package net.qasd.htmlanalyzer.web;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.SiteReport;
+import net.qasd.htmlanalyzer.analyzer.BuiltinAnalyzers;
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes the html analyzer result as a json object
+ * <p>
+ * The fields are written directly to the json writer; the heading levels are written in level order. Only the values
+ * of the analyzers run for the result are written.
+ */
+public class ResultJsonWriter {
+
+    private ResultJsonWriter() {
+    }
+
+    /**
+     * Writes the html analyzer result
+     *
+     * @param json          The json writer
+     * @param url           The analyzed url
+     * @param result        Html analyzer result
+     * @param elapsedMillis The analyzing time in milliseconds or a negative value if it is not measured
+     * @throws IOException If writing fails
+     */
+    public static void write(JsonWriter json, String url, HtmlAnalyzerResult result, long elapsedMillis) throws IOException {
+        json.beginObject();
+        json.name("url").value(url);
+        json.name("status").value(result.isSucceed());
+
+        if (!result.isSucceed()) {
+            json.name("errorCode").value(HtmlAnalyzer.Messages.getCode(result.getMessage()));
+            json.name("message").value(result.getMessage());
+        } else {
+            if (result.isAnalyzed(BuiltinAnalyzers.DOCTYPE)) {
+                json.name("documentType").value(result.getDocumentType());
+                json.name("renderingMode").value(result.getRenderingMode() != null ? result.getRenderingMode().name() : null);
+            }
+            if (result.isAnalyzed(BuiltinAnalyzers.TITLE)) {
+                json.name("title").value(result.getTitle());
+            }
+
+            if (result.isAnalyzed(BuiltinAnalyzers.HEADINGS)) {
+                json.name("headingLevelCounter").beginObject();
+                for (int level = 1; level <= HtmlAnalyzerResult.MAX_HEADING_LEVEL; level++) {
+                    int count = result.getHeadingCount(level);
+                    if (count > 0) {
+                        json.name("h" + level).value(count);
+                    }
+                }
+                json.endObject();
+            }
+
+            if (result.isAnalyzed(BuiltinAnalyzers.LINKS)) {
+                json.name("hyperMediaLinkSums");
+                if (result.hasLinkCounts()) {
+                    json.beginObject()
+                        .name("internal").value(result.getInternalLinkCount())
+                        .name("external").value(result.getExternalLinkCount())
+                        .name("sameSite").value(result.getSameSiteLinkCount());
+                    json.name("externalHosts").beginObject();
+                    for (int i = 0; i < result.getExternalHostCount(); i++) {
+                        json.name(result.getExternalHost(i)).value(result.getExternalHostLinkCount(i));
+                    }
+                    json.endObject().endObject();
+                } else {
+                    json.nullValue();
+                }
+            }
+
+            if (result.isAnalyzed(BuiltinAnalyzers.LOGIN)) {
+                json.name("hasLoginForm").value(result.getHasLoginForm());
+            }
+        }
+
+        if (elapsedMillis >= 0) {
+            json.name("elapsedMillis").value(elapsedMillis);
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes the site report of a crawl
+     *
+     * @param json   The json writer
+     * @param report The site report
+     * @throws IOException If writing fails
+     */
+    public static void write(JsonWriter json, SiteReport report) throws IOException {
+        json.beginObject();
+        json.name("seed").value(report.getSeed());
+        json.name("pages").value(report.getPages());
+        json.name("failedPages").value(report.getFailedPages());
+
+        json.name("pagesByDepth").beginArray();
+        for (long pages : report.getPagesByDepth()) {
+            json.value(pages);
+        }
+        json.endArray();
+
+        json.name("documentTypes").beginObject();
+        for (Map.Entry<String, Long> documentType : report.getDocumentTypes().entrySet()) {
+            json.name(documentType.getKey()).value(documentType.getValue());
+        }
+        json.endObject();
+
+        json.name("renderingModes").beginObject();
+        for (Map.Entry<DocumentTypeFetcher.RenderingMode, Long> renderingMode : report.getRenderingModes().entrySet()) {
+            json.name(renderingMode.getKey().name()).value(renderingMode.getValue());
+        }
+        json.endObject();
+
+        json.name("headingLevelCounter").beginObject();
+        for (int level = 1; level <= HtmlAnalyzerResult.MAX_HEADING_LEVEL; level++) {
+            json.name("h" + level).beginObject()
+                .name("headings").value(report.getHeadingCount(level))
+                .name("pages").value(report.getPagesWithHeading(level))
+                .endObject();
+        }
+        json.endObject();
+
+        json.name("hyperMediaLinkSums").beginObject()
+            .name("internal").value(report.getInternalLinks())
+            .name("external").value(report.getExternalLinks())
+            .endObject();
+        json.name("pagesWithLoginForm").value(report.getPagesWithLoginForm());
+
+        json.name("errorCodes").beginObject();
+        for (Map.Entry<String, Long> failure : report.getFailures().entrySet()) {
+            json.name(failure.getKey()).value(failure.getValue());
+        }
+        json.endObject();
+
+        json.name("duplicateLinks").value(report.getDuplicateLinks());
+        json.name("droppedLinks").value(report.getDroppedLinks());
+        json.name("skippedLinks").value(report.getSkippedLinks());
+        json.name("elapsedMillis").value(report.getElapsedMillis());
+        json.endObject();
+    }
+}
@@ -0,0 +1,40 @@
+package net.qasd.htmlanalyzer.web;
+
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import spark.ModelAndView;
+import spark.TemplateEngine;
+
+/**
+ * Template engine recording the rendering time of the delegated engine
+ */
+public class TimedTemplateEngine extends TemplateEngine {
+
+    private static final Histogram renderHistogram = Metrics.getDefault().stage(Metrics.RENDER);
+
+    private final TemplateEngine templateEngine;
+
+    private TimedTemplateEngine(TemplateEngine templateEngine) {
+        this.templateEngine = templateEngine;
+    }
+
+    /**
+     * Initiates a new instance of TimedTemplateEngine
+     *
+     * @param templateEngine The template engine rendering the views
+     * @return A new instance of TimedTemplateEngine
+     */
+    public static TimedTemplateEngine newInstance(TemplateEngine templateEngine) {
+        return new TimedTemplateEngine(templateEngine);
+    }
+
+    @Override
+    public String render(ModelAndView modelAndView) {
+        long start = System.nanoTime();
+        try {
+            return templateEngine.render(modelAndView);
+        } finally {
+            renderHistogram.recordSince(start);
+        }
+    }
+}
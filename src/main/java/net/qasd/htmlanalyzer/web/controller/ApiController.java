@@ -0,0 +1,135 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerRegistry;
+import net.qasd.htmlanalyzer.metrics.Histogram;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+import net.qasd.htmlanalyzer.web.ResultJsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+public class ApiController {
+
+    private static Logger logger = LoggerFactory.getLogger(ApiController.class);
+
+    public static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private static final Histogram renderHistogram = Metrics.getDefault().stage("render_json");
+
+    public ApiController() {
+    }
+
+    /**
+     * Serves the html analyzer result as json
+     * <p>
+     * The optional "analyzers" parameter selects the analyzers (e.g. "links,title"), only their values are written.
+     * The result is serialized directly to the response stream, compressed with gzip if the client accepts it.
+     *
+     * @param req Request
+     * @param res Response
+     * @return Empty body since the result is written to the response stream
+     * @throws IOException If writing the response fails
+     */
+    public static String executeHtmlAnalyzer(Request req, Response res) throws IOException {
+        logger.info("Received a json html analyzer request from {}", req.ip() == null ? "n/a" : req.ip());
+
+        String url = req.queryParams("url");
+        if (url == null || url.trim().isEmpty()) {
+            logger.warn("The url parameter is not set");
+            writeError(req, res, "URL_PARAMETER_NOT_FOUND", IndexController.Messages.URL_PARAMETER_NOT_FOUND);
+            return "";
+        }
+
+        URL parsedUrl;
+        try {
+            parsedUrl = new URL(url);
+        } catch (MalformedURLException urlException) {
+            logger.info("The url \"{}\" is not valid", url, urlException);
+            writeError(req, res, "URL_NOT_VALID", IndexController.Messages.URL_NOT_VALID);
+            return "";
+        }
+
+        AnalyzerEngine engine;
+        try {
+            engine = AnalyzerEngine.newInstance(req.queryParams("analyzers"));
+        } catch (AnalyzerRegistry.UnknownAnalyzerException analyzerException) {
+            logger.info("The analyzers \"{}\" are not valid", req.queryParams("analyzers"), analyzerException);
+            writeError(req, res, "ANALYZER_NOT_FOUND", IndexController.Messages.ANALYZER_NOT_FOUND);
+            return "";
+        }
+
+        logger.info("The url parameter is \"{}\"", url);
+        long start = System.nanoTime();
+        HtmlAnalyzerResult result = IndexController.analyze(parsedUrl, engine);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        res.status(200);
+        res.type(JSON_CONTENT_TYPE);
+        long renderStart = System.nanoTime();
+        try (JsonWriter json = JsonWriter.newInstance(openWriter(req, res, false))) {
+            ResultJsonWriter.write(json, url, result, elapsedMillis);
+        }
+        renderHistogram.recordSince(renderStart);
+
+        return "";
+    }
+
+    /**
+     * Writes the request error as json
+     *
+     * @param req       Request
+     * @param res       Response
+     * @param errorCode The error code
+     * @param message   The error message
+     * @throws IOException If writing the response fails
+     */
+    private static void writeError(Request req, Response res, String errorCode, String message) throws IOException {
+        res.status(400);
+        res.type(JSON_CONTENT_TYPE);
+        try (JsonWriter json = JsonWriter.newInstance(openWriter(req, res, false))) {
+            json.beginObject()
+                .name("status").value(false)
+                .name("errorCode").value(errorCode)
+                .name("message").value(message)
+                .endObject();
+        }
+    }
+
+    /**
+     * Opens a buffered UTF-8 writer on the response stream, compressed with gzip if the client accepts it
+     * <p>
+     * Closing the writer finishes the compression and commits the response, so the framework does not write the
+     * returned body anymore.
+     *
+     * @param req       Request
+     * @param res       Response
+     * @param syncFlush Whether a flush writes all pending compressed data (for the streamed responses)
+     * @return The response writer
+     * @throws IOException If the response stream cannot be opened
+     */
+    static BufferedWriter openWriter(Request req, Response res, boolean syncFlush) throws IOException {
+        OutputStream outputStream = res.raw().getOutputStream();
+
+        String acceptEncoding = req.headers("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            res.header("Content-Encoding", "gzip");
+            res.header("Vary", "Accept-Encoding");
+            outputStream = new GZIPOutputStream(outputStream, syncFlush);
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+}
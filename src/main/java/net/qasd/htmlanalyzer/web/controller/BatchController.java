@@ -0,0 +1,110 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.BatchAnalyzer;
+import net.qasd.htmlanalyzer.util.JsonWriter;
+import net.qasd.htmlanalyzer.web.ResultJsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchController {
+
+    private static Logger logger = LoggerFactory.getLogger(BatchController.class);
+
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private static volatile BatchAnalyzer batchAnalyzer = BatchAnalyzer.newInstance(16, false, IndexController::analyze);
+
+    public BatchController() {
+    }
+
+    /**
+     * Sets the batch analyzer used by the batch requests
+     *
+     * @param batchAnalyzer The batch analyzer
+     */
+    public static void setBatchAnalyzer(BatchAnalyzer batchAnalyzer) {
+        BatchController.batchAnalyzer = batchAnalyzer;
+    }
+
+    /**
+     * Serves the batch html analyzer process
+     * <p>
+     * The request body contains one url per line. The results are streamed as newline delimited json, one line per
+     * url in the completion order, so the client receives every result as soon as it is finished. The stream is
+     * compressed with gzip if the client accepts it.
+     *
+     * @param req Request
+     * @param res Response
+     * @return Empty body since the results are written to the response stream, or the error message
+     * @throws IOException          If writing the response fails
+     * @throws InterruptedException If the request thread is interrupted
+     */
+    public static String executeBatch(Request req, Response res) throws IOException, InterruptedException {
+        logger.info("Received a batch html analyzer request from {}", req.ip() == null ? "n/a" : req.ip());
+
+        List<String> urls = parseUrls(req.body());
+        if (urls.isEmpty()) {
+            logger.warn("The batch does not contain any url");
+            res.status(400);
+            return Messages.URLS_NOT_FOUND;
+        } else if (urls.size() > MAX_BATCH_SIZE) {
+            logger.warn("The batch contains {} urls", urls.size());
+            res.status(400);
+            return Messages.TOO_MANY_URLS;
+        }
+
+        logger.info("Analyzing a batch of {} urls", urls.size());
+        res.status(200);
+        res.type(NDJSON_CONTENT_TYPE);
+
+        // every line is flushed through the compression as soon as it is written
+        try (JsonWriter json = JsonWriter.newInstance(ApiController.openWriter(req, res, true))) {
+            batchAnalyzer.execute(urls, batchResult -> {
+                ResultJsonWriter.write(json, batchResult.getUrl(), batchResult.getResult(), batchResult.getElapsedMillis());
+                json.newLine();
+                json.flush();
+            });
+        }
+        logger.info("The batch of {} urls is completed", urls.size());
+
+        return "";
+    }
+
+    /**
+     * Parses the urls of the request body, the blank lines are skipped
+     *
+     * @param body The request body
+     * @return The urls
+     */
+    static List<String> parseUrls(String body) {
+        List<String> urls = new ArrayList<>();
+        if (body == null) {
+            return urls;
+        }
+
+        for (String line : body.split("\r?\n")) {
+            String url = line.trim();
+            if (!url.isEmpty()) {
+                urls.add(url);
+            }
+        }
+
+        return urls;
+    }
+
+    /**
+     * Messages
+     */
+    public static class Messages {
+        public static final String URLS_NOT_FOUND = "Please send the urls in the request body, one url per line";
+        public static final String TOO_MANY_URLS = "The batch can contain at most " + MAX_BATCH_SIZE + " urls";
+    }
+}
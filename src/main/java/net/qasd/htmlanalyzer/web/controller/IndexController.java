@@ -1,25 +1,108 @@
 package net.qasd.htmlanalyzer.web.controller;
 
 import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerCache;
 import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.SingleFlight;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import net.qasd.htmlanalyzer.web.TimedTemplateEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
+import spark.TemplateEngine;
+import spark.template.velocity.VelocityTemplateEngine;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IndexController {
 
     private static Logger logger = LoggerFactory.getLogger(IndexController.class);
 
+    private static volatile Fetcher fetcher = UrlReader.newInstance();
+
+    private static volatile HtmlAnalyzerCache cache = null;
+
+    // the concurrent analyzing of the same url and analyzers is done once
+    private static final SingleFlight<String, HtmlAnalyzerResult> inFlight = SingleFlight.newInstance();
+
+    private static final long ASYNC_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final int ANALYZER_THREADS = 64;
+
+    // runs the blocking analyzing of the asynchronous requests instead of the server threads, at most ANALYZER_THREADS
+    // of them run at the same time and the others wait in the unbounded queue of the pool
+    private static final ExecutorService analyzerExecutor = Executors.newFixedThreadPool(ANALYZER_THREADS, new ThreadFactory() {
+        private final AtomicInteger threadIndex = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "html-analyzer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final TemplateEngine templateEngine = TimedTemplateEngine.newInstance(new VelocityTemplateEngine());
+
     public IndexController() {
     }
 
+    /**
+     * Sets the fetcher used by the html analyzer requests
+     *
+     * @param fetcher The fetcher of the html documents
+     */
+    public static void setFetcher(Fetcher fetcher) {
+        IndexController.fetcher = fetcher;
+    }
+
+    /**
+     * Gets the fetcher used by the html analyzer requests
+     *
+     * @return The fetcher of the html documents
+     */
+    public static Fetcher getFetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Sets the cache of the html analyzer results, the results are not cached if it is null
+     *
+     * @param cache The html analyzer result cache
+     */
+    public static void setCache(HtmlAnalyzerCache cache) {
+        IndexController.cache = cache;
+    }
+
+    /**
+     * Gets the result cache
+     *
+     * @return The result cache or null if the results are not cached
+     */
+    public static HtmlAnalyzerCache getCache() {
+        return cache;
+    }
+
     /**
      * Serves the url input form
      *
@@ -43,28 +126,20 @@ public class IndexController {
     public static ModelAndView executeHtmlAnalyzer(Request req, Response res) {
         logger.info("Received a html analyzer request from {}", req.ip() == null ? "n/a" : req.ip());
 
-        Map<String, Object> model = new HashMap<>();
-        HtmlAnalyzerResult result;
+        Map<String, Object> model;
 
         // get the url from request parameters
         String url = req.queryParams("url");
         if (url == null || url.trim().isEmpty()) {
             logger.warn("The url parameter is not set");
-            model.put("errorMessage", Messages.URL_PARAMETER_NOT_FOUND);
+            model = errorModel(Messages.URL_PARAMETER_NOT_FOUND);
         } else {
             try {
                 logger.info("The url parameter is \"{}\"", url);
 
-                result = HtmlAnalyzer.execute(new URL(url));
-                if (result.isSucceed()) {
-                    logger.info("Analyzing of the page with the url \"{}\" is succeed", url);
-                    model.put("analyzeResult", result);
-                } else {
-                    logger.info("Analyzing of the page with the url \"{}\" is failed", url);
-                    model.put("errorMessage", result.getMessage());
-                }
+                model = resultModel(url, analyze(new URL(url)));
             } catch (MalformedURLException urlException) {
-                model.put("errorMessage", Messages.URL_NOT_VALID);
+                model = errorModel(Messages.URL_NOT_VALID);
                 logger.info("The url \"{}\" is not valid", url, urlException);
             }
         }
@@ -72,11 +147,270 @@ public class IndexController {
         return new ModelAndView(model, "templates/result.vm");
     }
 
+    /**
+     * Serves the html analyzer process asynchronously, called by ajax
+     * <p>
+     * The servlet request is suspended while the page is fetched and analyzed, so the server thread is released
+     * immediately. The response is committed before the route returns and the rendered result is written when the
+     * analyzing is completed (or timed out).
+     *
+     * @param req Request
+     * @param res Response
+     * @return The rendered error message if the url is not valid, otherwise empty body
+     * @throws IOException If the response cannot be committed
+     */
+    public static String executeHtmlAnalyzerAsync(Request req, Response res) throws IOException {
+        logger.info("Received an asynchronous html analyzer request from {}", req.ip() == null ? "n/a" : req.ip());
+
+        // get the url from request parameters
+        String url = req.queryParams("url");
+        URL parsedUrl;
+        if (url == null || url.trim().isEmpty()) {
+            logger.warn("The url parameter is not set");
+            return render(errorModel(Messages.URL_PARAMETER_NOT_FOUND));
+        }
+        try {
+            parsedUrl = new URL(url);
+        } catch (MalformedURLException urlException) {
+            logger.info("The url \"{}\" is not valid", url, urlException);
+            return render(errorModel(Messages.URL_NOT_VALID));
+        }
+
+        logger.info("The url parameter is \"{}\"", url);
+        HttpServletResponse servletResponse = res.raw();
+        servletResponse.setContentType("text/html; charset=utf-8");
+
+        AsyncContext asyncContext = req.raw().startAsync();
+        asyncContext.setTimeout(ASYNC_TIMEOUT_MILLIS);
+        AtomicBoolean completed = new AtomicBoolean(false);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                logger.warn("Analyzing of the page with the url \"{}\" is timed out", url);
+                completeAsync(asyncContext, completed, errorModel(Messages.ANALYZE_TIMED_OUT));
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        // the committed response is not written by the framework anymore
+        servletResponse.flushBuffer();
+
+        analyzeAsync(parsedUrl).whenComplete((result, analyzeException) -> {
+            if (analyzeException != null) {
+                logger.warn("Analyzing of the page with the url \"{}\" is failed", url, analyzeException);
+                completeAsync(asyncContext, completed, errorModel(HtmlAnalyzer.Messages.HTML_NOT_VALID));
+            } else {
+                completeAsync(asyncContext, completed, resultModel(url, result));
+            }
+        });
+
+        return "";
+    }
+
+    /**
+     * Writes the rendered model to the suspended response and completes it, only the first call writes
+     *
+     * @param asyncContext The async context of the suspended request
+     * @param completed    The flag of the completed response
+     * @param model        The view model variables
+     */
+    private static void completeAsync(AsyncContext asyncContext, AtomicBoolean completed, Map<String, Object> model) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Writer writer = asyncContext.getResponse().getWriter();
+            writer.write(render(model));
+            writer.flush();
+        } catch (IOException | RuntimeException writeException) {
+            logger.warn("The asynchronous response cannot be written", writeException);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * Builds the view model variables of the analyzer result
+     *
+     * @param url    The url
+     * @param result Html analyzer result
+     * @return View model variables containing the result or error message
+     */
+    private static Map<String, Object> resultModel(String url, HtmlAnalyzerResult result) {
+        Map<String, Object> model = new HashMap<>();
+        if (result.isSucceed()) {
+            logger.info("Analyzing of the page with the url \"{}\" is succeed", url);
+            model.put("analyzeResult", result);
+        } else {
+            logger.info("Analyzing of the page with the url \"{}\" is failed", url);
+            model.put("errorMessage", result.getMessage());
+        }
+
+        return model;
+    }
+
+    /**
+     * Builds the view model variables of an error
+     *
+     * @param errorMessage Error message
+     * @return View model variables containing the error message
+     */
+    private static Map<String, Object> errorModel(String errorMessage) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("errorMessage", errorMessage);
+
+        return model;
+    }
+
+    /**
+     * Renders the result template
+     *
+     * @param model View model variables
+     * @return Rendered html
+     */
+    private static String render(Map<String, Object> model) {
+        return templateEngine.render(new ModelAndView(model, "templates/result.vm"));
+    }
+
+    /**
+     * Analyzes the url asynchronously
+     * <p>
+     * An asynchronous fetcher is used directly, with the result cache if it is set, so no thread waits for the server.
+     * The analyzing with a blocking fetcher runs on the 64 analyzer threads; the requests beyond them wait in the queue
+     * of the analyzer threads. The requests of an url being analyzed wait for the running analyzing.
+     *
+     * @param url The url
+     * @return The future of the html analyzer result
+     */
+    public static CompletableFuture<HtmlAnalyzerResult> analyzeAsync(URL url) {
+        return inFlight.executeAsync(getFlightKey(url, AnalyzerEngine.getDefault()), () -> {
+            HtmlAnalyzerCache resultCache = cache;
+            if (resultCache != null) {
+                if (resultCache.getFetcher().isAsynchronous()) {
+                    return resultCache.executeAsync(url);
+                }
+            } else {
+                Fetcher currentFetcher = fetcher;
+                if (currentFetcher.isAsynchronous()) {
+                    return HtmlAnalyzer.executeAsync(url, currentFetcher);
+                }
+            }
+
+            return CompletableFuture.supplyAsync(() -> analyzeOnce(url), analyzerExecutor);
+        });
+    }
+
+    /**
+     * Analyzes the url with the result cache if it is set, otherwise with the fetcher
+     * <p>
+     * The requests of an url being analyzed wait for the running analyzing and share its result.
+     *
+     * @param url The url
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult analyze(URL url) {
+        return inFlight.execute(getFlightKey(url, AnalyzerEngine.getDefault()), () -> analyzeOnce(url));
+    }
+
+    /**
+     * Analyzes the url with the result cache if it is set, otherwise with the fetcher
+     *
+     * @param url The url
+     * @return Html analyzer result
+     */
+    private static HtmlAnalyzerResult analyzeOnce(URL url) {
+        HtmlAnalyzerCache resultCache = cache;
+        if (resultCache != null) {
+            return resultCache.execute(url);
+        }
+
+        return HtmlAnalyzer.execute(url, fetcher);
+    }
+
+    /**
+     * Analyzes the url with the selected analyzers
+     * <p>
+     * The result cache holds the results of all analyzers, so it is used only if all analyzers are selected.
+     *
+     * @param url    The url
+     * @param engine The analyzer engine running the selected analyzers
+     * @return Html analyzer result
+     */
+    public static HtmlAnalyzerResult analyze(URL url, AnalyzerEngine engine) {
+        if (engine == AnalyzerEngine.getDefault()) {
+            return analyze(url);
+        }
+
+        return inFlight.execute(getFlightKey(url, engine), () -> HtmlAnalyzer.execute(url, fetcher, engine));
+    }
+
+    /**
+     * Gets the key of the url and the analyzers for coalescing the concurrent requests
+     *
+     * @param url    The url
+     * @param engine The analyzer engine running the selected analyzers
+     * @return The normalized url and the selected analyzers
+     */
+    private static String getFlightKey(URL url, AnalyzerEngine engine) {
+        String key = HtmlAnalyzerCache.normalize(url);
+        if (engine == AnalyzerEngine.getDefault()) {
+            return key;
+        }
+
+        return key + " " + String.join(",", new TreeSet<>(engine.getNames()));
+    }
+
+    /**
+     * Gets the number of the requests which waited for the running analyzing of the same url
+     *
+     * @return The number of the coalesced requests
+     */
+    public static long getCoalescedCount() {
+        return inFlight.getCoalescedCount();
+    }
+
+    /**
+     * Serves the statistics of the result cache for monitoring
+     *
+     * @param req Request
+     * @param res Response
+     * @return The cache statistics as plain text, one "name value" pair per line
+     */
+    public static String serveCacheStatistics(Request req, Response res) {
+        res.type("text/plain");
+
+        HtmlAnalyzerCache resultCache = cache;
+        if (resultCache == null) {
+            return "";
+        }
+
+        return "cache_size " + resultCache.size() + "\n" +
+            "cache_hits " + resultCache.getHitCount() + "\n" +
+            "cache_misses " + resultCache.getMissCount() + "\n" +
+            "cache_revalidations " + resultCache.getRevalidationCount() + "\n" +
+            "cache_not_modified " + resultCache.getNotModifiedCount() + "\n" +
+            "cache_evictions " + resultCache.getEvictionCount() + "\n";
+    }
+
     /**
      * Messages
      */
     public static class Messages {
         public static final String URL_PARAMETER_NOT_FOUND = "Please enter the url";
         public static final String URL_NOT_VALID = "The entered url is not valid. Please try again";
+        public static final String ANALYZE_TIMED_OUT = "The analyzing of the page is timed out. Please try again";
+        public static final String ANALYZER_NOT_FOUND = "The selected analyzers are not known";
     }
 }
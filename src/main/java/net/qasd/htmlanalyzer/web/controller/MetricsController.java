@@ -0,0 +1,79 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerCache;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import net.qasd.htmlanalyzer.util.DnsCache;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.PoliteFetcher;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class MetricsController {
+
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static volatile DnsCache dnsCache = null;
+
+    public MetricsController() {
+    }
+
+    /**
+     * Sets the dns cache of the fetcher
+     *
+     * @param dnsCache The dns cache or null if the hosts are not cached
+     */
+    public static void setDnsCache(DnsCache dnsCache) {
+        MetricsController.dnsCache = dnsCache;
+    }
+
+    /**
+     * Serves the stage latency histograms, the failure counters, the cache counters, the coalesced requests, the host
+     * queues and the dns cache counters
+     *
+     * @param req Request
+     * @param res Response
+     * @return The metrics in the Prometheus text format
+     * @throws IOException If the metrics cannot be written
+     */
+    public static String serveMetrics(Request req, Response res) throws IOException {
+        res.type(PROMETHEUS_CONTENT_TYPE);
+
+        StringWriter writer = new StringWriter();
+        Metrics.getDefault().writePrometheus(writer);
+
+        HtmlAnalyzerCache cache = IndexController.getCache();
+        if (cache != null) {
+            writeCounter(writer, "htmlanalyzer_cache_hits_total", "The number of the cache hits.", cache.getHitCount());
+            writeCounter(writer, "htmlanalyzer_cache_misses_total", "The number of the cache misses.", cache.getMissCount());
+            writeCounter(writer, "htmlanalyzer_cache_revalidations_total", "The number of the revalidated cache entries.", cache.getRevalidationCount());
+            writeCounter(writer, "htmlanalyzer_cache_not_modified_total", "The number of the revalidations answered as not modified.", cache.getNotModifiedCount());
+            writeCounter(writer, "htmlanalyzer_cache_evictions_total", "The number of the evicted cache entries.", cache.getEvictionCount());
+            writer.write("# HELP htmlanalyzer_cache_size The number of the cached results.\n");
+            writer.write("# TYPE htmlanalyzer_cache_size gauge\n");
+            writer.write("htmlanalyzer_cache_size " + cache.size() + "\n");
+        }
+
+        writeCounter(writer, "htmlanalyzer_coalesced_requests_total", "The number of the requests which waited for the running analyzing of the same url.", IndexController.getCoalescedCount());
+
+        Fetcher fetcher = IndexController.getFetcher();
+        if (fetcher instanceof PoliteFetcher) {
+            ((PoliteFetcher) fetcher).writePrometheus(writer);
+        }
+
+        DnsCache currentDnsCache = dnsCache;
+        if (currentDnsCache != null) {
+            currentDnsCache.writePrometheus(writer);
+        }
+
+        return writer.toString();
+    }
+
+    private static void writeCounter(StringWriter writer, String name, String help, long value) {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " counter\n");
+        writer.write(name + " " + value + "\n");
+    }
+}
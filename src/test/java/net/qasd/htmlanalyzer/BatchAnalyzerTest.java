@@ -0,0 +1,113 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.util.DnsCache;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchAnalyzerTest {
+
+    private static HtmlAnalyzerResult sleepAndSucceed(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        result.succeed();
+        return result;
+    }
+
+    @Test
+    public void testExecuteCompletionOrder() throws IOException, InterruptedException {
+        try (BatchAnalyzer batchAnalyzer = BatchAnalyzer.newInstance(4, false,
+            url -> sleepAndSucceed(url.getHost().equals("slow") ? 300 : 10))) {
+
+            List<String> order = new ArrayList<>();
+            batchAnalyzer.execute(Arrays.asList("http://slow", "http://fast1", "http://fast2"), batchResult -> {
+                assertTrue(batchResult.getResult().isSucceed());
+                order.add(batchResult.getUrl());
+            });
+
+            assertEquals(3, order.size());
+            assertEquals("http://slow", order.get(2));
+        }
+    }
+
+    @Test
+    public void testExecuteNotValidUrl() throws IOException, InterruptedException {
+        try (BatchAnalyzer batchAnalyzer = BatchAnalyzer.newInstance(2, false, url -> sleepAndSucceed(0))) {
+            List<BatchAnalyzer.BatchResult> results = new ArrayList<>();
+            batchAnalyzer.execute(Collections.singletonList("notvalidurl"), results::add);
+
+            assertFalse(results.get(0).getResult().isSucceed());
+            assertEquals(HtmlAnalyzer.Messages.URL_NOT_VALID, results.get(0).getResult().getMessage());
+        }
+    }
+
+    @Test
+    public void testExecuteConcurrencyLimit() throws IOException, InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        // the virtual threads are used if the runtime supports them, the limit holds in both cases
+        try (BatchAnalyzer batchAnalyzer = BatchAnalyzer.newInstance(3, true, url -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            HtmlAnalyzerResult result = sleepAndSucceed(20);
+            running.decrementAndGet();
+            return result;
+        })) {
+            List<String> urls = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                urls.add("http://host" + i);
+            }
+
+            AtomicInteger count = new AtomicInteger();
+            batchAnalyzer.execute(urls, batchResult -> count.incrementAndGet());
+
+            assertEquals(20, count.get());
+            assertTrue(maxRunning.get() <= 3);
+        }
+    }
+
+    @Test
+    public void testExecutePrefetchHosts() throws IOException, InterruptedException {
+        AtomicInteger resolutions = new AtomicInteger();
+        try (DnsCache dnsCache = DnsCache.newInstance(host -> {
+            resolutions.incrementAndGet();
+            return Collections.singletonList(InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1}));
+        }, new DnsCache.Settings());
+             BatchAnalyzer batchAnalyzer = BatchAnalyzer.newInstance(2, false, url -> {
+                 try {
+                     dnsCache.lookup(url.getHost());
+                 } catch (UnknownHostException unknownHostException) {
+                     throw new IllegalStateException(unknownHostException);
+                 }
+                 return sleepAndSucceed(0);
+             }, dnsCache)) {
+
+            List<String> urls = Arrays.asList("http://host1/a", "http://host2/a", "http://host1/b", "notvalidurl", "http://HOST2/b");
+            AtomicInteger count = new AtomicInteger();
+            batchAnalyzer.execute(urls, batchResult -> count.incrementAndGet());
+
+            assertEquals(5, count.get());
+            assertEquals(2, resolutions.get());
+        }
+    }
+
+    @Test
+    public void testGetHosts() {
+        assertEquals(Arrays.asList("host1", "host2"), BatchAnalyzer.getHosts(Arrays.asList("http://host1/a", "notvalidurl", "https://host2")));
+    }
+}
@@ -0,0 +1,149 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.WarcReader;
+import net.qasd.htmlanalyzer.util.WarcReaderTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileBatchAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path writePage(String name, String title, int paragraphs) throws IOException {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>").append(title).append("</title></head><body>");
+        html.append("<h1>a</h1><a href=\"/local\">l</a><a href=\"https://other.com/\">o</a>");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<p>paragraph ").append(i).append("</p>");
+        }
+        html.append("</body></html>");
+
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, html.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static URL toUrl(Path file) {
+        try {
+            return new URL("https://www.example.com/" + file.getFileName());
+        } catch (MalformedURLException urlException) {
+            throw new IllegalStateException(urlException);
+        }
+    }
+
+    @Test
+    public void testExecuteInputOrder() throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        // the first page is large enough to be memory mapped and to finish last
+        files.add(writePage("large.html", "Large", 20000));
+        for (int i = 0; i < 20; i++) {
+            files.add(writePage("page" + i + ".html", "Page " + i, 1));
+        }
+
+        List<BatchAnalyzer.BatchResult> results = new ArrayList<>();
+        try (FileBatchAnalyzer fileBatchAnalyzer = FileBatchAnalyzer.newInstance(4, 64L * 1024 * 1024, true, AnalyzerEngine.getDefault())) {
+            long count = fileBatchAnalyzer.execute(files.iterator(), FileBatchAnalyzerTest::toUrl, results::add);
+
+            assertEquals(21, count);
+            assertEquals(0, fileBatchAnalyzer.getMemoryBudget().getUsedBytes());
+        }
+
+        assertEquals(21, results.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(toUrl(files.get(i)).toString(), results.get(i).getUrl());
+            assertTrue(results.get(i).getResult().isSucceed());
+        }
+
+        HtmlAnalyzerResult large = results.get(0).getResult();
+        assertEquals("Large", large.getTitle());
+        assertEquals(1, large.getInternalLinkCount());
+        assertEquals(1, large.getExternalLinkCount());
+        assertEquals(1, large.getHeadingCount(1));
+    }
+
+    @Test
+    public void testExecuteMissingFile() throws IOException, InterruptedException {
+        Path missing = folder.getRoot().toPath().resolve("missing.html");
+
+        List<BatchAnalyzer.BatchResult> results = new ArrayList<>();
+        try (FileBatchAnalyzer fileBatchAnalyzer = FileBatchAnalyzer.newInstance(2, 1024 * 1024, false, AnalyzerEngine.getDefault())) {
+            fileBatchAnalyzer.execute(Collections.singletonList(missing).iterator(), FileBatchAnalyzerTest::toUrl, results::add);
+        }
+
+        assertFalse(results.get(0).getResult().isSucceed());
+        assertEquals(HtmlAnalyzer.Messages.URL_NOT_FOUND, results.get(0).getResult().getMessage());
+    }
+
+    @Test
+    public void testExecuteSmallMemoryBudget() throws IOException, InterruptedException {
+        // every file is larger than the budget, so the files are analyzed one by one
+        List<Path> files = Arrays.asList(writePage("a.html", "A", 100), writePage("b.html", "B", 100), writePage("c.html", "C", 100));
+
+        List<BatchAnalyzer.BatchResult> results = new ArrayList<>();
+        try (FileBatchAnalyzer fileBatchAnalyzer = FileBatchAnalyzer.newInstance(3, 16, false, AnalyzerEngine.getDefault())) {
+            fileBatchAnalyzer.execute(files.iterator(), FileBatchAnalyzerTest::toUrl, results::add);
+        }
+
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void testExecuteListenerFails() throws IOException, InterruptedException {
+        List<Path> files = Arrays.asList(writePage("a.html", "A", 1), writePage("b.html", "B", 1));
+
+        try (FileBatchAnalyzer fileBatchAnalyzer = FileBatchAnalyzer.newInstance(1, 1024 * 1024, true, AnalyzerEngine.getDefault())) {
+            fileBatchAnalyzer.execute(files.iterator(), FileBatchAnalyzerTest::toUrl, batchResult -> {
+                throw new IOException("Broken pipe");
+            });
+            fail("The listener failure must be thrown");
+        } catch (IOException listenerException) {
+            assertEquals("Broken pipe", listenerException.getMessage());
+        }
+    }
+
+    @Test
+    public void testExecuteArchive() throws IOException, InterruptedException {
+        byte[] archive = WarcReaderTest.gzipMembers(
+            WarcReaderTest.response("https://www.example.com/", "HTTP/1.1 200 OK\r\nContent-Type: text/html",
+                "<title>Home</title><a href=\"https://cdn.example.com/a\">a</a><a href=\"https://other.com/\">b</a><a href=\"/c\">c</a>".getBytes(StandardCharsets.UTF_8)),
+            WarcReaderTest.response("https://www.example.com/missing", "HTTP/1.1 404 Not Found\r\nContent-Type: text/html",
+                "<title>Missing</title>".getBytes(StandardCharsets.UTF_8)),
+            WarcReaderTest.response("not a url", "HTTP/1.1 200 OK\r\nContent-Type: text/html", new byte[0]));
+
+        List<BatchAnalyzer.BatchResult> results = new ArrayList<>();
+        try (FileBatchAnalyzer fileBatchAnalyzer = FileBatchAnalyzer.newInstance(2, 1024 * 1024, true, AnalyzerEngine.getDefault());
+             WarcReader records = WarcReader.newInstance(new ByteArrayInputStream(archive))) {
+            assertEquals(3, fileBatchAnalyzer.execute(records, results::add));
+        }
+
+        HtmlAnalyzerResult home = results.get(0).getResult();
+        assertEquals("https://www.example.com/", results.get(0).getUrl());
+        assertEquals("Home", home.getTitle());
+        // the links are classified against the host of the target uri
+        assertEquals(2, home.getInternalLinkCount());
+        assertEquals(1, home.getSameSiteLinkCount());
+        assertEquals(1, home.getExternalLinkCount());
+
+        assertEquals(HtmlAnalyzer.Messages.URL_NOT_FOUND, results.get(1).getResult().getMessage());
+        assertEquals(HtmlAnalyzer.Messages.URL_NOT_VALID, results.get(2).getResult().getMessage());
+    }
+}
@@ -0,0 +1,284 @@
+package net.qasd.htmlanalyzer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.PoliteFetcher;
+import net.qasd.htmlanalyzer.util.PooledFetcher;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlAnalyzerCacheTest {
+
+    private static final String SAMPLE_HTML = "<!DOCTYPE html><html><head><title>Cached</title></head><body><h1>a</h1></body></html>";
+
+    private HttpServer server;
+    private String baseUrl;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+    private volatile String entityTag = "\"v1\"";
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                conditionalRequests.incrementAndGet();
+            }
+
+            exchange.getResponseHeaders().add("ETag", entityTag);
+            if (entityTag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 200);
+            }
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] bytes = SAMPLE_HTML.getBytes(Charset.forName("UTF-8"));
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Test
+    public void testExecuteHit() throws IOException {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(60 * 1000, 10);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        HtmlAnalyzerResult second = cache.execute(new URL(baseUrl.toUpperCase().replace("HTTP", "http") + "/page#top"));
+
+        assertTrue(first.isSucceed());
+        assertEquals("Cached", first.getTitle());
+        assertSame(first, second);
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testExecuteRevalidateNotModified() throws IOException, InterruptedException {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        Thread.sleep(5);
+        HtmlAnalyzerResult second = cache.execute(new URL(baseUrl + "/page"));
+
+        assertSame(first, second);
+        assertEquals(2, requests.get());
+        assertEquals(1, conditionalRequests.get());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(1, cache.getNotModifiedCount());
+    }
+
+    @Test
+    public void testExecuteRevalidateModified() throws IOException, InterruptedException {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        entityTag = "\"v2\"";
+        Thread.sleep(5);
+        HtmlAnalyzerResult second = cache.execute(new URL(baseUrl + "/page"));
+
+        assertNotSame(first, second);
+        assertTrue(second.isSucceed());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(0, cache.getNotModifiedCount());
+    }
+
+    @Test
+    public void testExecuteWithFetcher() throws IOException, InterruptedException {
+        AtomicInteger fetches = new AtomicInteger();
+        UrlReader urlReader = UrlReader.newInstance();
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                throw new AssertionError("The cache should send conditional requests");
+            }
+
+            @Override
+            public UrlReader.ConditionalDocument fetchIfModified(URL url, UrlReader.Validators validators) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+                fetches.incrementAndGet();
+                return urlReader.fetchIfModified(url, validators);
+            }
+        };
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10, fetcher);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        Thread.sleep(5);
+        HtmlAnalyzerResult second = cache.execute(new URL(baseUrl + "/page"));
+
+        assertSame(first, second);
+        assertEquals(2, fetches.get());
+        assertEquals(1, conditionalRequests.get());
+        assertEquals(1, cache.getNotModifiedCount());
+    }
+
+    @Test
+    public void testExecuteRevalidateWithPooledFetcher() throws IOException, InterruptedException {
+        try (PooledFetcher pooledFetcher = PooledFetcher.newInstance();
+             PoliteFetcher politeFetcher = PoliteFetcher.newInstance(pooledFetcher)) {
+            HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10, politeFetcher);
+
+            HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+            Thread.sleep(5);
+            HtmlAnalyzerResult second = cache.execute(new URL(baseUrl + "/page"));
+
+            assertTrue(first.isSucceed());
+            assertSame(first, second);
+            assertEquals(1, conditionalRequests.get());
+            assertEquals(1, cache.getNotModifiedCount());
+        }
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        try (PooledFetcher pooledFetcher = PooledFetcher.newInstance()) {
+            HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10, pooledFetcher);
+
+            HtmlAnalyzerResult first = cache.executeAsync(new URL(baseUrl + "/page")).get(5, TimeUnit.SECONDS);
+            Thread.sleep(5);
+            HtmlAnalyzerResult second = cache.executeAsync(new URL(baseUrl + "/page")).get(5, TimeUnit.SECONDS);
+            HtmlAnalyzerResult missing = cache.executeAsync(new URL(baseUrl + "/missing")).get(5, TimeUnit.SECONDS);
+
+            assertEquals("Cached", first.getTitle());
+            assertSame(first, second);
+            assertEquals(1, cache.getNotModifiedCount());
+            assertEquals(HtmlAnalyzer.Messages.URL_NOT_FOUND, missing.getMessage());
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncHit() throws Exception {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(60 * 1000, 10);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        CompletableFuture<HtmlAnalyzerResult> second = cache.executeAsync(new URL(baseUrl + "/page"));
+
+        // a fresh result is returned without a request
+        assertTrue(second.isDone());
+        assertSame(first, second.get());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testExecuteFailedRevalidationKeepsNewerEntry() throws IOException, InterruptedException {
+        UrlReader urlReader = UrlReader.newInstance();
+        AtomicReference<HtmlAnalyzerCache> cache = new AtomicReference<>();
+        AtomicInteger fetches = new AtomicInteger();
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                throw new AssertionError("The cache should send conditional requests");
+            }
+
+            @Override
+            public UrlReader.ConditionalDocument fetchIfModified(URL url, UrlReader.Validators validators) throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+                if (fetches.incrementAndGet() == 2) {
+                    // a concurrent request revalidates the page while this revalidation fails
+                    cache.get().execute(url);
+                    throw new IOException("Connection reset");
+                }
+                return urlReader.fetchIfModified(url, validators);
+            }
+        };
+        cache.set(HtmlAnalyzerCache.newInstance(1, 10, fetcher));
+
+        cache.get().execute(new URL(baseUrl + "/page"));
+        Thread.sleep(5);
+        HtmlAnalyzerResult failed = cache.get().execute(new URL(baseUrl + "/page"));
+
+        assertFalse(failed.isSucceed());
+        assertEquals(3, fetches.get());
+        assertEquals(1, cache.get().size());
+    }
+
+    @Test
+    public void testExecuteWithUnconditionalFetcher() throws IOException, InterruptedException {
+        UrlReader urlReader = UrlReader.newInstance();
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(1, 10, urlReader::fetch);
+
+        HtmlAnalyzerResult first = cache.execute(new URL(baseUrl + "/page"));
+        Thread.sleep(5);
+        HtmlAnalyzerResult second = cache.execute(new URL(baseUrl + "/page"));
+
+        // the stale page is fetched and analyzed again
+        assertNotSame(first, second);
+        assertTrue(second.isSucceed());
+        assertEquals(0, conditionalRequests.get());
+        assertEquals(0, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void testExecuteEviction() throws IOException {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(60 * 1000, 2);
+
+        cache.execute(new URL(baseUrl + "/a"));
+        cache.execute(new URL(baseUrl + "/b"));
+        cache.execute(new URL(baseUrl + "/a"));
+        cache.execute(new URL(baseUrl + "/c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // "/b" is the least recently used one
+        cache.execute(new URL(baseUrl + "/b"));
+        assertEquals(4, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testExecuteFailedNotCached() throws IOException {
+        HtmlAnalyzerCache cache = HtmlAnalyzerCache.newInstance(60 * 1000, 10);
+
+        HtmlAnalyzerResult result = cache.execute(new URL(baseUrl + "/missing"));
+        cache.execute(new URL(baseUrl + "/missing"));
+
+        assertFalse(result.isSucceed());
+        assertEquals(HtmlAnalyzer.Messages.URL_NOT_FOUND, result.getMessage());
+        assertEquals(0, cache.size());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testNormalize() throws IOException {
+        assertEquals("http://www.example.com/", HtmlAnalyzerCache.normalize(new URL("HTTP://WWW.Example.com")));
+        assertEquals("http://www.example.com/", HtmlAnalyzerCache.normalize(new URL("http://www.example.com:80/#top")));
+        assertEquals("https://www.example.com:8443/a?b=c", HtmlAnalyzerCache.normalize(new URL("https://www.example.com:8443/a?b=c")));
+    }
+}
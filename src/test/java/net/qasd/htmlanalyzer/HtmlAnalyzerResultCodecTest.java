@@ -0,0 +1,105 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.DocumentTypeFetcher;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlAnalyzerResultCodecTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        result.setDocumentType("HTML 5");
+        result.setRenderingMode(DocumentTypeFetcher.RenderingMode.NO_QUIRKS);
+        result.setTitle("Başlık");
+        result.setHeadingCounts(new int[]{1, 0, 300, 0, 0, 70000});
+        result.setLinkCounts(5, 2, 1, new String[]{"other.com", "cdn.net"}, new int[]{1, 1});
+        result.setHasLoginForm(true);
+        result.setAnalyzers(new LinkedHashSet<>(Arrays.asList("title", "headings", "links")));
+        result.succeed();
+
+        HtmlAnalyzerResult decoded = HtmlAnalyzerResultCodec.decode(HtmlAnalyzerResultCodec.encode(result));
+
+        assertTrue(decoded.isSucceed());
+        assertNull(decoded.getMessage());
+        assertEquals("HTML 5", decoded.getDocumentType());
+        assertEquals(DocumentTypeFetcher.RenderingMode.NO_QUIRKS, decoded.getRenderingMode());
+        assertEquals("Başlık", decoded.getTitle());
+        assertEquals(300, decoded.getHeadingCount(3));
+        assertEquals(70000, decoded.getHeadingCount(6));
+        assertEquals(5, decoded.getInternalLinkCount());
+        assertEquals(2, decoded.getExternalLinkCount());
+        assertEquals(1, decoded.getSameSiteLinkCount());
+        assertEquals("cdn.net", decoded.getExternalHost(1));
+        assertTrue(decoded.getHasLoginForm());
+        assertEquals("[title, headings, links]", decoded.getAnalyzers().toString());
+    }
+
+    @Test
+    public void testFailedResult() throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        result.failed("The url is not valid");
+
+        HtmlAnalyzerResult decoded = HtmlAnalyzerResultCodec.decode(HtmlAnalyzerResultCodec.encode(result));
+
+        assertFalse(decoded.isSucceed());
+        assertEquals("The url is not valid", decoded.getMessage());
+        assertNull(decoded.getRenderingMode());
+        assertFalse(decoded.hasHeadingCounts());
+        assertFalse(decoded.hasLinkCounts());
+        assertNull(decoded.getAnalyzers());
+    }
+
+    @Test
+    public void testRecordStream() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+            result.setTitle("Page " + i);
+            result.setAnalyzers(Collections.singleton("title"));
+            result.succeed();
+            HtmlAnalyzerResultCodec.write(result, outputStream);
+        }
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Page " + i, HtmlAnalyzerResultCodec.read(inputStream).getTitle());
+        }
+        assertNull(HtmlAnalyzerResultCodec.read(inputStream));
+    }
+
+    @Test
+    public void testVarint() throws IOException {
+        for (int value : new int[]{0, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1}) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            HtmlAnalyzerResultCodec.writeVarint(outputStream, value);
+            assertEquals(value, HtmlAnalyzerResultCodec.readVarint(new ByteArrayInputStream(outputStream.toByteArray())));
+        }
+    }
+
+    @Test(expected = HtmlAnalyzerResultCodec.MalformedResultException.class)
+    public void testUnsupportedVersion() throws IOException {
+        HtmlAnalyzerResultCodec.decode(new byte[]{2, 0, 0, 0, 0, 0});
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedRecord() throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        result.setTitle("Truncated");
+        byte[] bytes = HtmlAnalyzerResultCodec.encode(result);
+
+        HtmlAnalyzerResultCodec.decode(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+}
@@ -0,0 +1,70 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.TagAnalyzers;
+import net.qasd.htmlanalyzer.util.MutableInteger;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlAnalyzerResultTest {
+
+    @Test
+    public void testHeadingLevelCounterView() {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        assertFalse(result.hasHeadingCounts());
+        assertNull(result.getHeadingLevelCounter());
+
+        Map<String, MutableInteger> headingLevelCounter = new HashMap<>();
+        headingLevelCounter.put("h3", new MutableInteger(2));
+        headingLevelCounter.put("h1", new MutableInteger(1));
+        result.setHeadingLevelCounter(headingLevelCounter);
+
+        assertTrue(result.hasHeadingCounts());
+        assertEquals(1, result.getHeadingCount(1));
+        assertEquals(0, result.getHeadingCount(2));
+        assertEquals(2, result.getHeadingCount(3));
+        assertEquals("{h1=1, h3=2}", result.getHeadingLevelCounter().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeadingCountsLength() {
+        new HtmlAnalyzerResult().setHeadingCounts(new int[3]);
+    }
+
+    @Test
+    public void testHyperMediaLinkSumsView() {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        assertFalse(result.hasLinkCounts());
+        assertNull(result.getHyperMediaLinkSums());
+
+        result.setLinkCounts(3, 2, 1, new String[]{"a.com", "b.com"}, new int[]{1, 1});
+
+        TagAnalyzers.HyperMediaLinkSums hyperMediaLinkSums = result.getHyperMediaLinkSums();
+        assertEquals(3, hyperMediaLinkSums.getInternal().getValue());
+        assertEquals(2, hyperMediaLinkSums.getExternal().getValue());
+        assertEquals(1, hyperMediaLinkSums.getSameSite());
+        assertEquals("{a.com=1, b.com=1}", hyperMediaLinkSums.getExternalHosts().toString());
+
+        result.setHyperMediaLinkSums(hyperMediaLinkSums);
+        assertEquals(2, result.getExternalHostCount());
+        assertEquals("b.com", result.getExternalHost(1));
+        assertEquals(1, result.getExternalHostLinkCount(1));
+    }
+
+    @Test
+    public void testDocumentTypeIsInterned() {
+        HtmlAnalyzerResult first = new HtmlAnalyzerResult();
+        HtmlAnalyzerResult second = new HtmlAnalyzerResult();
+        first.setDocumentType(new String("HTML 5"));
+        second.setDocumentType(new String("HTML 5"));
+
+        assertSame(first.getDocumentType(), second.getDocumentType());
+    }
+}
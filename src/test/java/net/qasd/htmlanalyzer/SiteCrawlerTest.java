@@ -0,0 +1,142 @@
+package net.qasd.htmlanalyzer;
+
+import net.qasd.htmlanalyzer.analyzer.AnalyzerEngine;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SiteCrawlerTest {
+
+    private static final String SEED = "http://www.example.com/";
+
+    @Test
+    public void testCrawl() throws Exception {
+        Map<String, String> pages = new HashMap<>();
+        pages.put(SEED, page("<h1>Home</h1><a href=\"/a\">a</a><a href=\"/b\">b</a><a href=\"http://other.org/\">other</a>"));
+        pages.put(SEED + "a", page("<h2>A</h2><a href=\"/\">home</a><a href=\"/b\">b</a><a href=\"/c\">c</a>"));
+        pages.put(SEED + "b", page("<h2>B</h2><a href=\"/a#top\">a</a><a href=\"/missing\">missing</a>"));
+        pages.put(SEED + "c", page("<h2>C</h2>"));
+
+        List<String> urls = new ArrayList<>();
+        SiteReport report;
+        try (SiteCrawler siteCrawler = SiteCrawler.newInstance(newFetcher(pages), AnalyzerEngine.newInstance(null), 2)) {
+            report = siteCrawler.crawl(new URL(SEED), 3, 100, batchResult -> urls.add(batchResult.getUrl()));
+        }
+
+        assertEquals(5, urls.size());
+        assertTrue(urls.containsAll(Arrays.asList(SEED, SEED + "a", SEED + "b", SEED + "c", SEED + "missing")));
+        assertFalse(urls.contains("http://other.org/"));
+
+        assertEquals(5, report.getPages());
+        assertEquals(1, report.getFailedPages());
+        assertEquals(Long.valueOf(1), report.getFailures().get("URL_NOT_FOUND"));
+        assertEquals(Arrays.asList(1L, 2L, 2L), report.getPagesByDepth());
+        assertEquals(1, report.getHeadingCount(1));
+        assertEquals(3, report.getHeadingCount(2));
+        assertEquals(3, report.getPagesWithHeading(2));
+        assertEquals(Long.valueOf(4), report.getDocumentTypes().get("HTML5"));
+        assertEquals(3, report.getDuplicateLinks());
+        assertEquals(0, report.getSkippedLinks());
+    }
+
+    @Test
+    public void testCrawlDepth() throws Exception {
+        Map<String, String> pages = new HashMap<>();
+        pages.put(SEED, page("<a href=\"/a\">a</a>"));
+        pages.put(SEED + "a", page("<a href=\"/b\">b</a>"));
+        pages.put(SEED + "b", page(""));
+
+        SiteReport report;
+        try (SiteCrawler siteCrawler = SiteCrawler.newInstance(newFetcher(pages), AnalyzerEngine.newInstance(null), 1)) {
+            report = siteCrawler.crawl(new URL(SEED), 1, 100, batchResult -> {
+            });
+        }
+
+        assertEquals(2, report.getPages());
+        assertEquals(Arrays.asList(1L, 1L), report.getPagesByDepth());
+    }
+
+    @Test
+    public void testCrawlPageBudget() throws Exception {
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            links.append("<a href=\"/page").append(i).append("\">").append(i).append("</a>");
+        }
+        Map<String, String> pages = new HashMap<>();
+        pages.put(SEED, page(links.toString()));
+
+        SiteReport report;
+        try (SiteCrawler siteCrawler = SiteCrawler.newInstance(newFetcher(pages), AnalyzerEngine.newInstance(null), 2)) {
+            report = siteCrawler.crawl(new URL(SEED), 2, 3, batchResult -> {
+            });
+        }
+
+        // the seed and 2 links use the budget of 3 pages
+        assertEquals(3, report.getPages());
+        assertEquals(8, report.getSkippedLinks());
+        assertEquals(0, report.getDroppedLinks());
+    }
+
+    @Test
+    public void testCrawlFrontierLimit() throws Exception {
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            links.append("<a href=\"/page").append(i).append("\">").append(i).append("</a>");
+        }
+        Map<String, String> pages = new HashMap<>();
+        pages.put(SEED, page(links.toString()));
+
+        SiteReport report;
+        try (SiteCrawler siteCrawler = SiteCrawler.newInstance(newFetcher(pages), AnalyzerEngine.newInstance(null), 2, 2)) {
+            report = siteCrawler.crawl(new URL(SEED), 2, 100, batchResult -> {
+            });
+        }
+
+        // the frontier holds 2 urls after the seed is taken
+        assertEquals(3, report.getPages());
+        assertEquals(8, report.getDroppedLinks());
+        assertEquals(0, report.getSkippedLinks());
+    }
+
+    @Test
+    public void testGetInternalLinks() throws Exception {
+        URL url = new URL("http://www.example.com/dir/page.html");
+        Document document = Jsoup.parse("<a href=\"next.html\">next</a><a href=\"http://cdn.example.com/x\">cdn</a>"
+            + "<a href=\"http://other.org/\">other</a><a href=\"/login\" rel=\"nofollow\">login</a>"
+            + "<a href=\"/report.pdf\">pdf</a><a href=\"mailto:info@example.com\">mail</a>"
+            + "<map><area href=\"/area\"></map>", url.toString());
+
+        List<URL> links = SiteCrawler.getInternalLinks(document, url);
+
+        assertEquals(Arrays.asList(new URL("http://www.example.com/dir/next.html"), new URL("http://cdn.example.com/x"),
+            new URL("http://www.example.com/area")), links);
+    }
+
+    private static String page(String body) {
+        return "<!DOCTYPE html><html><head><title>Page</title></head><body>" + body + "</body></html>";
+    }
+
+    private static Fetcher newFetcher(Map<String, String> pages) {
+        return url -> {
+            String html = pages.get(url.toString());
+            if (html == null) {
+                throw new UrlReader.UrlNotFoundException();
+            }
+
+            return Jsoup.parse(html, url.toString());
+        };
+    }
+}
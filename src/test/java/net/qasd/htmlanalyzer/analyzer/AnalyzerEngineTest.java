@@ -0,0 +1,429 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.DocumentType;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnalyzerEngineTest {
+
+    private static final String HOST = "www.abc.com";
+
+    private static final String[] DOCUMENTS = {
+        "<!DOCTYPE html><html><head><title> Test \n  title </title></head><body>" +
+            "<H1>h1</H1><h2>h2</h2><h2>h2</h2><h6>h6</h6>" +
+            "<a href=\"/index.html\">link</a><a href=\"http://www.abc.com/a\">link</a>" +
+            "<a href=\"https://www.xyz.com/a\">link</a><img src=\"//www.xyz.com/a.png\">" +
+            "<script src=\"/js/index.js\"></script>" +
+            "<form method=\"post\" action=\"/save\"><input type=\"text\" name=\"user\"></form>" +
+            "<form><input type=\"text\" name=\"user\"><input type=\"PASSWORD\" name=\"pass\"></form>" +
+            "</body></html>",
+        "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">" +
+            "<html><body><form method=\"post\" action=\"/signin\"><input type=\"text\" id=\"email\"></form></body></html>",
+        "<html><body><h3>no title</h3><form method=\"post\" action=\"/signin\">" +
+            "<input type=\"text\" name=\"fname\"><input type=\"text\" name=\"user\"></form>" +
+            "<form><input type=\"password\"><input type=\"password\"></form>" +
+            "<svg><title>svg title</title></svg></body></html>",
+        "<html><head><title>first</title><title>second</title></head><body></body></html>"
+    };
+
+    @After
+    public void tearDown() {
+        AnalyzerEngine.setParallelExecution(null, 0);
+    }
+
+    @Test
+    public void testSameResultsAsMultiPass() throws IOException {
+        for (String html : DOCUMENTS) {
+            Document document = Jsoup.parse(html);
+            HtmlAnalyzerResult result = analyze(AnalyzerEngine.getDefault(), document);
+
+            String documentType = fetchDocumentType(document);
+            assertEquals(html, documentType == null ? null : DocumentTypeFetcher.newInstance().fetchDocumentType(documentType), result.getDocumentType());
+            assertEquals(html, document.title(), result.getTitle());
+            assertEquals(html, TagAnalyzers.sumUpHeadingLevels(document).toString(), result.getHeadingLevelCounter().toString());
+            assertEquals(html, TagAnalyzers.sumUpHypermediaLinks(document, HOST).toString(), result.getHyperMediaLinkSums().toString());
+            assertEquals(html, LoginDetector.newInstance().hasLoginForm(document), result.getHasLoginForm());
+        }
+    }
+
+    @Test
+    public void testFormCandidates() throws IOException {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(new BuiltinAnalyzers.FormAnalyzer());
+        List<LoginDetector.FormCandidate> formCandidates = new ArrayList<>();
+        registry.register(new CapturingAnalyzer(formCandidates));
+
+        analyze(AnalyzerEngine.newInstance(registry, Collections.singletonList("capture")), Jsoup.parse(DOCUMENTS[2]));
+
+        assertEquals(2, formCandidates.size());
+
+        LoginDetector.FormCandidate candidate = formCandidates.get(0);
+        assertEquals("post", candidate.getMethod());
+        assertEquals("/signin", candidate.getAction());
+        assertEquals(2, candidate.getTextFieldCount());
+        assertEquals("fname", candidate.getTextFieldName());
+        assertEquals(0, candidate.getPasswordFieldCount());
+
+        assertEquals(2, formCandidates.get(1).getPasswordFieldCount());
+    }
+
+    @Test
+    public void testEmptyDocument() throws IOException {
+        HtmlAnalyzerResult result = analyze(AnalyzerEngine.getDefault(), Jsoup.parse(""));
+
+        assertNull(result.getDocumentType());
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, result.getRenderingMode());
+        assertEquals("", result.getTitle());
+        assertTrue(result.getHeadingLevelCounter().isEmpty());
+        assertEquals(0, result.getHyperMediaLinkSums().getInternal().getValue());
+        assertEquals(0, result.getHyperMediaLinkSums().getExternal().getValue());
+        assertFalse(result.getHasLoginForm());
+    }
+
+    @Test
+    public void testSelectedAnalyzers() throws IOException {
+        AnalyzerEngine engine = AnalyzerEngine.newInstance("links, TITLE");
+        HtmlAnalyzerResult result = analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("links", "title")), engine.getNames());
+        assertFalse(engine.isHeadOnly());
+        assertEquals("Test title", result.getTitle());
+        assertEquals("{internal=3, external=2}", result.getHyperMediaLinkSums().toString());
+        assertNull(result.getHeadingLevelCounter());
+        assertTrue(result.isAnalyzed("links"));
+        assertFalse(result.isAnalyzed("headings"));
+    }
+
+    @Test
+    public void testDependenciesAreSelected() throws IOException {
+        AnalyzerEngine engine = AnalyzerEngine.newInstance("login");
+        HtmlAnalyzerResult result = analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("forms", "login")), engine.getNames());
+        assertTrue(result.getHasLoginForm());
+    }
+
+    @Test
+    public void testHeadOnlyStopsAfterHead() throws IOException {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(new BuiltinAnalyzers.TitleAnalyzer());
+        List<LoginDetector.FormCandidate> visited = new ArrayList<>();
+        CapturingAnalyzer headOnlyAnalyzer = new CapturingAnalyzer(visited) {
+            @Override
+            public boolean isHeadOnly() {
+                return true;
+            }
+        };
+        registry.register(headOnlyAnalyzer);
+
+        AnalyzerEngine engine = AnalyzerEngine.newInstance(registry, Arrays.asList("title", "capture"));
+        HtmlAnalyzerResult result = analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+
+        assertTrue(engine.isHeadOnly());
+        assertEquals("Test title", result.getTitle());
+        // the body elements are not visited
+        assertEquals(0, headOnlyAnalyzer.bodyNodes);
+    }
+
+    @Test(expected = AnalyzerRegistry.UnknownAnalyzerException.class)
+    public void testUnknownAnalyzer() {
+        AnalyzerEngine.newInstance("title,colors");
+    }
+
+    @Test
+    public void testAllAnalyzersSelectTheDefaultEngine() {
+        assertSame(AnalyzerEngine.getDefault(), AnalyzerEngine.newInstance(" "));
+        assertEquals(AnalyzerRegistry.getDefault().getNames(), AnalyzerEngine.getDefault().getNames());
+    }
+
+    @Test
+    public void testParallelSameResultsAsSequential() throws IOException {
+        List<Document> documents = new ArrayList<>();
+        for (String html : DOCUMENTS) {
+            documents.add(Jsoup.parse(html));
+        }
+        documents.add(largeDocument(200));
+        List<String> expected = new ArrayList<>();
+        for (Document document : documents) {
+            expected.add(summary(analyze(AnalyzerEngine.getDefault(), document)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AnalyzerEngine.setParallelExecution(executor, 0);
+            for (int i = 0; i < documents.size(); i++) {
+                assertEquals(expected.get(i), summary(analyze(AnalyzerEngine.getDefault(), documents.get(i))));
+            }
+            // the login analyzer reads the forms of its dependency traversed in the same task
+            assertTrue(analyze(AnalyzerEngine.newInstance("login"), documents.get(0)).getHasLoginForm());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelTraversalsAboveThreshold() throws IOException {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(new BuiltinAnalyzers.HeadingAnalyzer());
+        registry.register(new ThreadRecordingAnalyzer(threads));
+        AnalyzerEngine engine = AnalyzerEngine.newInstance(registry, Arrays.asList("headings", "threads"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "parallel-analyzer"));
+        try {
+            // the small document is traversed by the calling thread
+            AnalyzerEngine.setParallelExecution(executor, 1000);
+            analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+            assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+
+            threads.clear();
+            HtmlAnalyzerResult result = analyze(engine, largeDocument(200));
+            assertEquals(Collections.singleton("parallel-analyzer"), threads);
+            assertEquals(200, result.getHeadingCount(2));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelConcurrentAnalyzingOfSharedDocument() throws Exception {
+        Document document = largeDocument(500);
+        String html = document.outerHtml();
+        String expected = summary(analyze(AnalyzerEngine.getDefault(), document));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            AnalyzerEngine.setParallelExecution(executor, 0);
+            List<Future<String>> summaries = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                summaries.add(callers.submit(() -> summary(analyze(AnalyzerEngine.getDefault(), document))));
+            }
+            for (Future<String> summary : summaries) {
+                assertEquals(expected, summary.get());
+            }
+        } finally {
+            callers.shutdown();
+            executor.shutdown();
+        }
+        // the shared document is not modified by the traversals
+        assertEquals(html, document.outerHtml());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParallelVisitorFailure() throws IOException {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(new BuiltinAnalyzers.HeadingAnalyzer());
+        registry.register(new ThreadRecordingAnalyzer(null));
+        AnalyzerEngine engine = AnalyzerEngine.newInstance(registry, Arrays.asList("headings", "threads"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AnalyzerEngine.setParallelExecution(executor, 0);
+            analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelFirstGroupFailureAwaitsTasks() throws IOException {
+        AtomicBoolean traversed = new AtomicBoolean();
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(new ThreadRecordingAnalyzer(null));
+        registry.register(new SlowAnalyzer(traversed));
+        AnalyzerEngine engine = AnalyzerEngine.newInstance(registry, Arrays.asList("threads", "slow"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            AnalyzerEngine.setParallelExecution(executor, 0);
+            analyze(engine, Jsoup.parse(DOCUMENTS[0]));
+            fail("the visitor failure is not thrown");
+        } catch (IllegalStateException e) {
+            // the visitor of the first group fails on the calling thread while the task is still traversing
+            assertTrue(traversed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Document largeDocument(int sections) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Large</title></head><body>");
+        html.append("<form method=post action=/login><input type=text name=user><input type=password></form>");
+        for (int i = 0; i < sections; i++) {
+            html.append("<div><h2>section ").append(i).append("</h2><p><a href=/page").append(i).append(">page</a>")
+                .append("<img src=http://img.xyz.com/").append(i).append(".png></p></div>");
+        }
+
+        return Jsoup.parse(html.append("</body></html>").toString());
+    }
+
+    private static String summary(HtmlAnalyzerResult result) {
+        return result.getDocumentType() + " " + result.getRenderingMode() + " " + result.getTitle() + " "
+            + result.getHeadingLevelCounter() + " " + result.getHyperMediaLinkSums() + " " + result.getExternalHostCount()
+            + " " + result.getHasLoginForm() + " " + result.getAnalyzers();
+    }
+
+    private static HtmlAnalyzerResult analyze(AnalyzerEngine engine, Document document) throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        engine.analyze(document, new URL("http://" + HOST + "/"), result);
+
+        return result;
+    }
+
+    /**
+     * Captures the form candidates shared by the form analyzer and counts the visited body nodes
+     */
+    private static class CapturingAnalyzer implements Analyzer {
+        private final List<LoginDetector.FormCandidate> formCandidates;
+        private int bodyNodes = 0;
+
+        CapturingAnalyzer(List<LoginDetector.FormCandidate> formCandidates) {
+            this.formCandidates = formCandidates;
+        }
+
+        @Override
+        public String getName() {
+            return "capture";
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return isHeadOnly() ? Collections.emptyList() : Collections.singletonList(BuiltinAnalyzers.FORMS);
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                @Override
+                public void head(Node node, int depth) {
+                    if (node instanceof Element && "body".equals(((Element) node).tagName())) {
+                        bodyNodes++;
+                    }
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void complete(HtmlAnalyzerResult result) {
+                    List<LoginDetector.FormCandidate> candidates = context.get(BuiltinAnalyzers.FORMS, List.class);
+                    if (candidates != null) {
+                        formCandidates.addAll(candidates);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Records the threads visiting the nodes, or fails at the first node if there is no thread set
+     */
+    private static class ThreadRecordingAnalyzer implements Analyzer {
+        private final Set<String> threads;
+
+        ThreadRecordingAnalyzer(Set<String> threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public String getName() {
+            return "threads";
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                @Override
+                public void head(Node node, int depth) {
+                    if (threads == null) {
+                        throw new IllegalStateException("visitor failure");
+                    }
+                    threads.add(Thread.currentThread().getName());
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                }
+            };
+        }
+    }
+
+    /**
+     * Visits the nodes slowly and records the end of its traversal
+     */
+    private static class SlowAnalyzer implements Analyzer {
+        private final AtomicBoolean traversed;
+
+        SlowAnalyzer(AtomicBoolean traversed) {
+            this.traversed = traversed;
+        }
+
+        @Override
+        public String getName() {
+            return "slow";
+        }
+
+        @Override
+        public Visitor newVisitor(AnalyzerContext context) {
+            return new Visitor() {
+                @Override
+                public void head(Node node, int depth) {
+                    if (depth == 0) {
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+
+                @Override
+                public void tail(Node node, int depth) {
+                    if (depth == 0) {
+                        traversed.set(true);
+                    }
+                }
+
+                @Override
+                public void complete(HtmlAnalyzerResult result) {
+                }
+            };
+        }
+    }
+
+    private static String fetchDocumentType(Document document) {
+        for (Node node : document.childNodes()) {
+            if (node instanceof DocumentType) {
+                return node.toString();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnalyzerRegistryTest {
+
+    @Test
+    public void testResolveInDependencyOrder() {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(newAnalyzer("c", "b"));
+        registry.register(newAnalyzer("b", "a"));
+        registry.register(newAnalyzer("a"));
+        registry.register(newAnalyzer("d", "a"));
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), names(registry.resolve(Arrays.asList("c", "d", "b"))));
+    }
+
+    @Test
+    public void testDefaultRegistry() {
+        assertEquals(Arrays.asList("doctype", "title", "headings", "links", "forms", "login"),
+            new ArrayList<>(AnalyzerRegistry.getDefault().getNames()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterTwice() {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(newAnalyzer("a"));
+        registry.register(newAnalyzer("a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCyclicDependencies() {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(newAnalyzer("a", "b"));
+        registry.register(newAnalyzer("b", "a"));
+
+        registry.resolve(Collections.singletonList("a"));
+    }
+
+    @Test(expected = AnalyzerRegistry.UnknownAnalyzerException.class)
+    public void testUnknownDependency() {
+        AnalyzerRegistry registry = AnalyzerRegistry.newInstance();
+        registry.register(newAnalyzer("a", "b"));
+
+        registry.resolve(Collections.singletonList("a"));
+    }
+
+    private static List<String> names(List<Analyzer> analyzers) {
+        List<String> names = new ArrayList<>();
+        for (Analyzer analyzer : analyzers) {
+            names.add(analyzer.getName());
+        }
+
+        return names;
+    }
+
+    private static Analyzer newAnalyzer(String name, String... dependencies) {
+        return new Analyzer() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Collection<String> getDependencies() {
+                return Arrays.asList(dependencies);
+            }
+
+            @Override
+            public Visitor newVisitor(AnalyzerContext context) {
+                return (HtmlAnalyzerResult result) -> {
+                };
+            }
+        };
+    }
+}
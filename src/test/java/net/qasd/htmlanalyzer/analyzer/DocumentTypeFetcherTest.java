@@ -4,6 +4,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class DocumentTypeFetcherTest {
 
@@ -29,24 +31,108 @@ public class DocumentTypeFetcherTest {
     }
 
     @Test
-    public void testMatchVersion() {
-        assertEquals("Basic 1.0",
-            typeFetcher.matchVersion(
-                "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML Basic 1.0//EN\">",
-                DocumentTypeFetcher.DocumentType.XHTML.getPattern()
-            )
-        );
-        assertEquals("4.01",
-            typeFetcher.matchVersion(
-                "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN url\">",
-                DocumentTypeFetcher.DocumentType.HTML.getPattern()
-            )
-        );
+    public void testFetchKnownDocumentTypes() {
+        assertEquals("HTML 4.01 Transitional", typeFetcher.fetchDocumentType("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" " +
+            "\"http://www.w3.org/TR/html4/loose.dtd\">"));
+        assertEquals("HTML 4.01 Frameset", typeFetcher.fetchDocumentType("html", "-//W3C//DTD HTML 4.01 Frameset//EN", ""));
+        assertEquals("HTML 3.2 Final", typeFetcher.fetchDocumentType("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 3.2 Final//EN\">"));
+        assertEquals("HTML 2.0", typeFetcher.fetchDocumentType("<!DOCTYPE html PUBLIC '-//IETF//DTD HTML 2.0//EN'>"));
+        assertEquals("XHTML 1.1", typeFetcher.fetchDocumentType("html", "-//W3C//DTD XHTML 1.1//EN", "http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd"));
+        assertEquals("XHTML 1.0 Frameset", typeFetcher.fetchDocumentType("html", "-//w3c//dtd xhtml 1.0 frameset//en", ""));
+        assertEquals("XHTML Basic 1.1", typeFetcher.fetchDocumentType("html", "-//W3C//DTD XHTML Basic 1.1//EN", ""));
+        assertEquals("XHTML-Print 1.0", typeFetcher.fetchDocumentType("html", "-//W3C//DTD XHTML-Print 1.0//EN", ""));
+        assertEquals("XHTML Mobile 1.2", typeFetcher.fetchDocumentType("html", "-//WAPFORUM//DTD XHTML Mobile 1.2//EN", ""));
+        assertEquals("Netscape HTML", typeFetcher.fetchDocumentType("html", "-//Netscape Comm. Corp.//DTD HTML//EN", ""));
+
+        // html5 with the legacy compatible system identifier
+        assertEquals("HTML5", typeFetcher.fetchDocumentType("<!DOCTYPE html SYSTEM \"about:legacy-compat\">"));
+        assertEquals("HTML5", typeFetcher.fetchDocumentType("html", "", "about:legacy-compat"));
+
+        // not known public identifiers matching the generic patterns
+        assertEquals("HTML 5.0 Test", typeFetcher.fetchDocumentType("html", "-//ACME//DTD HTML 5.0 Test//EN", ""));
+        assertEquals("XHTML 2.0", typeFetcher.fetchDocumentType("html", "-//W3C//DTD XHTML 2.0//EN", ""));
+
+        assertEquals("UNKNOWN", typeFetcher.fetchDocumentType("svg", "-//W3C//DTD SVG 1.1//EN", ""));
+        assertEquals("UNKNOWN", typeFetcher.fetchDocumentType("html", "", "http://www.example.com/test.dtd"));
+        assertEquals("UNKNOWN", typeFetcher.fetchDocumentType("<!DOCTYPE html SYSTEM>"));
+        assertEquals("UNKNOWN", typeFetcher.fetchDocumentType("<html>"));
+    }
+
+    @Test
+    public void testFetchVersionOfUnknownPublicIds() {
+        String[][] expected = {
+            {"-//W3C//DTD HTML 4.01//EN", "HTML 4.01"},
+            {"-//W3C//DTD HTML 4.0 Transitional//EN", "HTML 4.0 Transitional"},
+            {"-//IETF//DTD HTML 2.0 Level 1//EN", "HTML 2.0 Level 1"},
+            {"-//W3C//DTD XHTML 1.0 Strict//EN", "XHTML 1.0 Strict"},
+            {"-//W3C//DTD XHTML 1.1 plus MathML 2.0 plus SVG 1.1//EN", "XHTML 1.1 plus MathML 2.0 plus SVG 1.1"},
+            {"-//WAPFORUM//DTD XHTML Mobile 1.0//EN", "XHTML Mobile 1.0"},
+            {"-//W3C//DTD HTML 4.01+RDFa 1.1//EN", "HTML 4.01+RDFa 1.1"},
+            {"-//W3O//DTD W3 HTML 3.0//EN", "HTML 3.0"},
+            {"-//ACME//DTD HTML 5.0 Test//EN", "HTML 5.0 Test"},
+            // the version follows the last marker and needs a text after "//"
+            {"-//A//DTD HTML x//B HTML y//EN", "HTML y"},
+            {"-//A//DTD HTML x//", "UNKNOWN"}
+        };
+
+        for (String[] publicIdAndType : expected) {
+            String declaration = "<!DOCTYPE html PUBLIC \"" + publicIdAndType[0] + "\">";
+            assertEquals(publicIdAndType[0], publicIdAndType[1], typeFetcher.fetchDocumentType(declaration));
+        }
+    }
+
+    @Test
+    public void testFetchRenderingMode() {
+        assertEquals(DocumentTypeFetcher.RenderingMode.NO_QUIRKS, typeFetcher.fetchRenderingMode("<!DOCTYPE html>"));
+        assertEquals(DocumentTypeFetcher.RenderingMode.NO_QUIRKS, typeFetcher.fetchRenderingMode("html", "", "about:legacy-compat"));
+        assertEquals(DocumentTypeFetcher.RenderingMode.NO_QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD HTML 4.01//EN", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.NO_QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD XHTML 1.0 Strict//EN", ""));
+
+        assertEquals(DocumentTypeFetcher.RenderingMode.LIMITED_QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD XHTML 1.0 Transitional//EN", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.LIMITED_QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD HTML 4.01 Transitional//EN",
+            "http://www.w3.org/TR/html4/loose.dtd"));
+
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD HTML 4.01 Transitional//EN", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("html", "-//W3C//DTD HTML 3.2 Final//EN", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("html", "-//w3c//dtd html 4.0 transitional//en", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("html", "HTML", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("html", "",
+            "http://www.ibm.com/data/dtd/v11/ibmxhtml1-transitional.dtd"));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("svg", "", ""));
+        assertEquals(DocumentTypeFetcher.RenderingMode.QUIRKS, typeFetcher.fetchRenderingMode("<!DOCTYPE HTML PUBLIC>"));
+    }
+
+    @Test
+    public void testParseDeclaration() {
+        DocumentTypeFetcher.Declaration declaration = DocumentTypeFetcher.Declaration.parse(
+            "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML Basic 1.0//EN\">");
+        assertEquals("html", declaration.getName());
+        assertEquals("-//W3C//DTD XHTML Basic 1.0//EN", declaration.getPublicId());
+        assertEquals("", declaration.getSystemId());
+        assertFalse(declaration.isMalformed());
+
+        declaration = DocumentTypeFetcher.Declaration.parse("<!DOCTYPE HTML PUBLIC 'public' \"system\">");
+        assertEquals("HTML", declaration.getName());
+        assertEquals("public", declaration.getPublicId());
+        assertEquals("system", declaration.getSystemId());
+
+        declaration = DocumentTypeFetcher.Declaration.parse("<!DOCTYPE html SYSTEM \"about:legacy-compat\">");
+        assertEquals("", declaration.getPublicId());
+        assertEquals("about:legacy-compat", declaration.getSystemId());
+
+        assertTrue(DocumentTypeFetcher.Declaration.parse("<!DOCTYPE HTML PUBLIC>").isMalformed());
+        assertTrue(DocumentTypeFetcher.Declaration.parse("<!DOCTYPE html SYSTEM>").isMalformed());
+        assertTrue(DocumentTypeFetcher.Declaration.parse("<html>").isMalformed());
     }
 
     @Test
-    public void testNormalizeDeclaration() {
-        assertEquals("test test", typeFetcher.normalizeDeclaration("test \ntest"));
-        assertEquals("test test test", typeFetcher.normalizeDeclaration("test   \ntest\n \n test "));
+    public void testParseDeclarationWhitespace() {
+        // the new lines and the repeated spaces separate the parts like a single space
+        DocumentTypeFetcher.Declaration declaration = DocumentTypeFetcher.Declaration.parse(
+            " <!DOCTYPE\n  html \n PUBLIC\t\"-//W3C//DTD HTML 4.01//EN\"\n   \"http://www.w3.org/TR/html4/strict.dtd\"\n> ");
+        assertEquals("html", declaration.getName());
+        assertEquals("-//W3C//DTD HTML 4.01//EN", declaration.getPublicId());
+        assertEquals("http://www.w3.org/TR/html4/strict.dtd", declaration.getSystemId());
+        assertFalse(declaration.isMalformed());
     }
-}
\ No newline at end of file
+}
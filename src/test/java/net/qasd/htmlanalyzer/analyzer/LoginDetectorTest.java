@@ -1,5 +1,6 @@
 package net.qasd.htmlanalyzer.analyzer;
 
+import net.qasd.htmlanalyzer.util.DictionaryStore;
 import net.qasd.htmlanalyzer.util.DictionaryUtil;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -14,6 +15,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.IOException;
 import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
@@ -187,14 +189,37 @@ public class LoginDetectorTest {
 
         mockStatic(DictionaryUtil.class);
 
+        // the shared dictionaries might be already loaded so a new store is used
+        LoginDetector detector = LoginDetector.newInstance(new DictionaryStore());
+
         when(DictionaryUtil.getDictionaryFromResourceFile(DictionaryUtil.FILE_NAME_LOGIN_ACTION)).thenThrow(IOException.class);
         thrown.expect(IOException.class);
-        loginDetector.isTwoStepLogin(document.select("form").first());
+        detector.isTwoStepLogin(document.select("form").first());
 
         when(DictionaryUtil.getDictionaryFromResourceFile(DictionaryUtil.FILE_NAME_LOGIN_ACTION)).thenReturn(Arrays.asList("signin"));
         when(DictionaryUtil.getDictionaryFromResourceFile(DictionaryUtil.FILE_NAME_USERNAME)).thenThrow(IOException.class);
         thrown.expect(IOException.class);
-        loginDetector.isTwoStepLogin(document.select("form").first());
+        detector.isTwoStepLogin(document.select("form").first());
+    }
+
+    @Test
+    public void testFormCandidateAddInputs() {
+        LoginDetector.FormCandidate candidate = new LoginDetector.FormCandidate("post", "/signin");
+        LoginDetector.FormCandidate inputs = new LoginDetector.FormCandidate("", "");
+        inputs.addInput("text", "user", "");
+        inputs.addInput("password", "pass", "");
+        candidate.addInputs(inputs);
+        assertEquals(1, candidate.getPasswordFieldCount());
+        assertEquals(1, candidate.getTextFieldCount());
+        assertEquals("user", candidate.getTextFieldName());
+
+        // the name of the first text field is kept
+        inputs = new LoginDetector.FormCandidate("", "");
+        inputs.addInput("text", "", "email");
+        candidate.addInputs(inputs);
+        assertEquals(1, candidate.getPasswordFieldCount());
+        assertEquals(2, candidate.getTextFieldCount());
+        assertEquals("user", candidate.getTextFieldName());
     }
 
     @Test
@@ -210,10 +235,4 @@ public class LoginDetectorTest {
             "</form>";
         assertTrue(loginDetector.hasLoginForm(Jsoup.parse(html)));
     }
-
-    @Test
-    public void testExistsInDictionary() {
-        assertTrue(loginDetector.existsInDictionary("test1", Arrays.asList("test", "abc")));
-        assertFalse(loginDetector.existsInDictionary("test1", Arrays.asList("abc", "xyz")));
-    }
 }
@@ -0,0 +1,206 @@
+package net.qasd.htmlanalyzer.analyzer;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingAnalyzerTest {
+
+    private static final String HOST = "www.abc.com";
+
+    // the documents of the benchmarks copied to the test resources, the large page is left out
+    private static final String[] CORPUS = {"small.html", "medium.html", "pathological.html"};
+
+    private static final String[] DOCUMENTS = {
+        "",
+        "<!DOCTYPE html><html><head><title> Test \n  title </title></head><body>" +
+            "<H1>h1</H1><h2>h2</h2><h2>h2</h2><h6>h6</h6>" +
+            "<a href=\"/index.html\">link</a><a href=\"http://www.abc.com/a\">link</a>" +
+            "<a href=\"https://www.xyz.com/a\">link</a><img src=\"//www.xyz.com/a.png\">" +
+            "<script src=\"/js/index.js\"></script>" +
+            "<form method=\"post\" action=\"/save\"><input type=\"text\" name=\"user\"></form>" +
+            "<form><input type=\"text\" name=\"user\"><input type=\"PASSWORD\" name=\"pass\"></form>" +
+            "</body></html>",
+        "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">" +
+            "<html><body><form method=\"post\" action=\"/signin\"><input type=\"text\" id=\"email\"></form></body></html>",
+        "<!doctype html public \"-//W3C//DTD HTML 4.01 Transitional//EN\"><title>quirks</title>",
+        // implied elements, misnested formatting elements and fostered table content
+        "<title>a &amp; b</title><p><b><i>x</b>y</i><h1><h2>z</h1><table><a href=/t><tr><td><h3>cell</td>" +
+            "<input type=password></table><a href=http://sub.abc.com/>",
+        // raw text, comments and character data are not markup
+        "<script>document.write('<a href=/s></a><h1>');</script><style><a href=/c></style><!-- <h1> -->" +
+            "<textarea><input type=password></textarea><noscript><a href=/n></noscript><![CDATA[<h2>]]>" +
+            "<xmp><h3></xmp><iframe><a href=/i></iframe>",
+        // foreign content and titles outside of the head
+        "<svg><title>svg</title><a href=/svg><image href=http://img.net/i></svg><math><mi><h1>m</h1></math>",
+        // links of the root and of the body after the attributes of the later start tags are merged
+        "<html src=http://x.org/root><body href=/body><p><body href=http://y.com/late><html href=/root>",
+        // a frameset replaces the body started by the whitespace and the links
+        "<html><head></head> <a href=/lost><h1>lost</h1><frameset><frame src=/frame></frameset>",
+        "<form><input type=text name=user><form><input type=password></form><input type=password>",
+        "<select><option><a href=/o><input type=password></select><template><td><a href=/t></template>",
+        "<plaintext><a href=/p></plaintext><h1>",
+        // the blocks moved out of a form closed under the misnested formatting elements take their inputs along
+        "<form method=post action=/login><font></form><div></font><input type=text name=user>",
+        "<form method=post action=/login><a href=http://e.org/></form><div><input type=text name=user></a>",
+        "<form><b><div><input type=password></form></b>",
+        // an isindex is expanded to a form with an input, the action is set on the form element pointer
+        "<a href=/x><isindex><a href=/y>",
+        "<p><template><isindex action=/login type=text name=user></template><template><isindex type=password>",
+        "<title>\u0000</title><p>\u0000<a href=\"/&#x41;&amp;b\">&lt;a&gt;</a></p>\r\n<pre>\n</pre>"
+    };
+
+    @Test
+    public void testSameResultsAsEngine() throws IOException {
+        for (String html : DOCUMENTS) {
+            HtmlAnalyzerResult expected = new HtmlAnalyzerResult();
+            AnalyzerEngine.getDefault().analyze(Jsoup.parse(html), new URL("http://" + HOST + "/"), expected);
+            HtmlAnalyzerResult result = analyze(StreamingAnalyzer.getDefault(), html);
+
+            assertEquals(html, expected.getDocumentType(), result.getDocumentType());
+            assertEquals(html, expected.getRenderingMode(), result.getRenderingMode());
+            assertEquals(html, expected.getTitle(), result.getTitle());
+            assertEquals(html, expected.getHeadingLevelCounter().toString(), result.getHeadingLevelCounter().toString());
+            assertEquals(html, expected.getHyperMediaLinkSums().toString(), result.getHyperMediaLinkSums().toString());
+            assertEquals(html, expected.getSameSiteLinkCount(), result.getSameSiteLinkCount());
+            assertEquals(html, expected.getExternalHostCount(), result.getExternalHostCount());
+            assertEquals(html, expected.getHasLoginForm(), result.getHasLoginForm());
+        }
+    }
+
+    @Test
+    public void testSameResultsAsEngineOnCorpus() throws IOException, URISyntaxException {
+        for (String name : CORPUS) {
+            URL resource = getClass().getResource("/corpus/" + name);
+            assertNotNull(name, resource);
+            Path file = Paths.get(resource.toURI());
+            URL url = new URL("http://" + HOST + "/" + name);
+            HtmlAnalyzerResult expected = HtmlAnalyzer.execute(file, url, AnalyzerEngine.getDefault());
+            HtmlAnalyzerResult result = HtmlAnalyzer.execute(file, url, StreamingAnalyzer.getDefault());
+
+            assertTrue(name, expected.isSucceed());
+            assertTrue(name, result.isSucceed());
+            assertEquals(name, expected.getDocumentType(), result.getDocumentType());
+            assertEquals(name, expected.getRenderingMode(), result.getRenderingMode());
+            assertEquals(name, expected.getTitle(), result.getTitle());
+            assertEquals(name, expected.getHeadingLevelCounter().toString(), result.getHeadingLevelCounter().toString());
+            assertEquals(name, expected.getHyperMediaLinkSums().toString(), result.getHyperMediaLinkSums().toString());
+            assertEquals(name, expected.getSameSiteLinkCount(), result.getSameSiteLinkCount());
+            assertEquals(name, expected.getExternalHostCount(), result.getExternalHostCount());
+            assertEquals(name, expected.getHasLoginForm(), result.getHasLoginForm());
+        }
+    }
+
+    @Test
+    public void testSelectedAnalyzers() throws IOException {
+        StreamingAnalyzer analyzer = StreamingAnalyzer.newInstance(Arrays.asList("links", "title"));
+        HtmlAnalyzerResult result = analyze(analyzer, DOCUMENTS[1]);
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("links", "title")), analyzer.getNames());
+        assertFalse(analyzer.isHeadOnly());
+        assertEquals("Test title", result.getTitle());
+        assertEquals("{internal=3, external=2}", result.getHyperMediaLinkSums().toString());
+        assertNull(result.getHeadingLevelCounter());
+        assertTrue(result.isAnalyzed("links"));
+        assertFalse(result.isAnalyzed("headings"));
+    }
+
+    @Test
+    public void testHeadOnlyStopsAfterHead() throws IOException {
+        StreamingAnalyzer analyzer = StreamingAnalyzer.newInstance(Arrays.asList("doctype", "title"));
+        CountingReader reader = new CountingReader(1000000);
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        analyzer.analyze(reader, new URL("http://" + HOST + "/"), result);
+
+        assertTrue(analyzer.isHeadOnly());
+        assertEquals("Large", result.getTitle());
+        assertEquals("HTML5", result.getDocumentType());
+        // the body is not read
+        assertTrue(reader.read < 100000);
+    }
+
+    @Test
+    public void testLargeDocument() throws IOException {
+        CountingReader reader = new CountingReader(20000);
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        StreamingAnalyzer.getDefault().analyze(reader, new URL("http://" + HOST + "/"), result);
+
+        assertEquals("Large", result.getTitle());
+        assertEquals(20000, result.getHeadingCount(2));
+        assertEquals(20000, result.getHyperMediaLinkSums().getInternal().getValue());
+        assertEquals(20000, result.getHyperMediaLinkSums().getExternal().getValue());
+        assertTrue(result.getHasLoginForm());
+    }
+
+    @Test(expected = AnalyzerRegistry.UnknownAnalyzerException.class)
+    public void testUnknownAnalyzer() {
+        StreamingAnalyzer.newInstance(Collections.singletonList("colors"));
+    }
+
+    private static HtmlAnalyzerResult analyze(StreamingAnalyzer analyzer, String html) throws IOException {
+        HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+        analyzer.analyze(new StringReader(html), new URL("http://" + HOST + "/"), result);
+
+        return result;
+    }
+
+    /**
+     * Reads a document of repeated sections without holding it, and counts the read characters
+     */
+    private static class CountingReader extends Reader {
+        private static final String HEAD = "<!DOCTYPE html><html><head><title>Large</title></head><body>" +
+            "<form method=post action=/login><input type=text name=user><input type=password></form>";
+        private static final String SECTION = "<div><h2>section</h2><p><a href=/page>page</a>" +
+            "<img src=http://img.xyz.com/a.png></p></div>\n";
+
+        private final int sections;
+        private String current = HEAD;
+        private int position = 0;
+        private int section = 0;
+        private long read = 0;
+
+        CountingReader(int sections) {
+            this.sections = sections;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) {
+            if (position == current.length()) {
+                if (section == sections) {
+                    return -1;
+                }
+                section++;
+                current = SECTION;
+                position = 0;
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, chars, offset);
+            position += count;
+            read += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
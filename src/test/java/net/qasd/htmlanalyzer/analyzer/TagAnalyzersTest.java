@@ -79,4 +79,23 @@ public class TagAnalyzersTest {
         assertEquals(14, result.getInternal().getValue());
         assertEquals(11, result.getExternal().getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAnalyzeHypermediaLinksOfTheSameSite() {
+        Document siteDocument = Jsoup.parse("<html><head><link href=\"https://static.abc.com/main.css\"></head><body>" +
+            "<a href=\"https://abc.com/\">link</a>" +
+            "<a href=\"https://" + INTERNAL_DOMAIN + "/\">link</a>" +
+            "<a href=\"https://" + INTERNAL_DOMAIN + ".xyz.com/\">link</a>" +
+            "<img src=\"//" + EXTERNAL_DOMAIN + "/a.png\"><img src=\"//" + EXTERNAL_DOMAIN.toUpperCase() + "/b.png\">" +
+            "</body></html>");
+
+        TagAnalyzers.HyperMediaLinkSums result = TagAnalyzers.sumUpHypermediaLinks(siteDocument, INTERNAL_DOMAIN);
+
+        assertEquals(3, result.getInternal().getValue());
+        assertEquals(2, result.getSameSite());
+        assertEquals(3, result.getExternal().getValue());
+        assertEquals(2, result.getExternalHosts().size());
+        assertEquals(1, result.getExternalHosts().get(INTERNAL_DOMAIN + ".xyz.com").getValue());
+        assertEquals(2, result.getExternalHosts().get(EXTERNAL_DOMAIN).getValue());
+    }
+}
@@ -0,0 +1,165 @@
+package net.qasd.htmlanalyzer.cli;
+
+import net.qasd.htmlanalyzer.util.WarcReaderTest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OfflineAppTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path pages;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws IOException {
+        pages = folder.newFolder("pages").toPath();
+        Files.createDirectories(pages.resolve("blog"));
+        write(pages.resolve("index.html"), "<!DOCTYPE html><title>Home</title><a href=\"https://cdn.example.com/a.js\">a</a><a href=\"https://other.com/\">b</a>");
+        write(pages.resolve("blog/post.htm"), "<title>Post, \"one\"</title><h2>a</h2><h2>b</h2>");
+        write(pages.resolve("notes.txt"), "not html");
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int run(String... args) {
+        return run(new ByteArrayInputStream(new byte[0]), args);
+    }
+
+    private int run(ByteArrayInputStream in, String... args) {
+        return OfflineApp.run(args, in, new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    private String[] outputLines() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+
+    @Test
+    public void testDirectoryAsCsv() {
+        int exitCode = run("--format", "csv", "--ordered", "--base-url", "https://www.example.com", "--root", pages.toString(), pages.toString());
+
+        assertEquals(OfflineApp.EXIT_OK, exitCode);
+        String[] lines = outputLines();
+        assertEquals(3, lines.length);
+        assertEquals(ResultCsvWriter.HEADER, lines[0]);
+
+        String index = lines[1].startsWith("https://www.example.com/index.html") ? lines[1] : lines[2];
+        String post = lines[1].startsWith("https://www.example.com/blog/post.htm") ? lines[1] : lines[2];
+        assertTrue(index, index.startsWith("https://www.example.com/index.html,true,,HTML5,NO_QUIRKS,Home,0,0,0,0,0,0,1,1,1,1,false,"));
+        assertTrue(post, post.startsWith("https://www.example.com/blog/post.htm,true,,,QUIRKS,\"Post, \"\"one\"\"\",0,2,0,0,0,0,0,0,0,0,false,"));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("Completed 2 pages (0 failed)"));
+    }
+
+    @Test
+    public void testFileListAsNdjson() throws IOException {
+        Path list = folder.getRoot().toPath().resolve("files.txt");
+        write(list, pages.resolve("index.html") + "\n\n" + pages.resolve("missing.html") + "\n");
+
+        int exitCode = run("--analyzers", "title", "--ordered", "@" + list);
+
+        assertEquals(OfflineApp.EXIT_OK, exitCode);
+        String[] lines = outputLines();
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].matches("\\{\"url\":\"file:.*index.html\",\"status\":true,\"title\":\"Home\",\"elapsedMillis\":\\d+}"));
+        assertTrue(lines[1], lines[1].contains("\"errorCode\":\"URL_NOT_FOUND\""));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("Completed 2 pages (1 failed)"));
+    }
+
+    @Test
+    public void testGlobAndStandardInput() {
+        String glob = pages.toString().replace('\\', '/') + "/**/*.htm";
+        ByteArrayInputStream in = new ByteArrayInputStream((pages.resolve("index.html") + "\n").getBytes(StandardCharsets.UTF_8));
+
+        int exitCode = run(in, "--format", "csv", "--ordered", glob, "-");
+
+        assertEquals(OfflineApp.EXIT_OK, exitCode);
+        String[] lines = outputLines();
+        assertEquals(3, lines.length);
+        assertTrue(lines[1], lines[1].contains("post.htm"));
+        assertTrue(lines[2], lines[2].contains("index.html"));
+    }
+
+    @Test
+    public void testUsageErrors() {
+        assertEquals(OfflineApp.EXIT_USAGE, run());
+        assertEquals(OfflineApp.EXIT_USAGE, run("--format", "xml", pages.toString()));
+        assertEquals(OfflineApp.EXIT_USAGE, run("--threads", "0", pages.toString()));
+        assertEquals(OfflineApp.EXIT_USAGE, run("--analyzers", "colors", pages.toString()));
+        assertEquals(OfflineApp.EXIT_USAGE, run("--engine", "sax", pages.toString()));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("Usage:"));
+    }
+
+    @Test
+    public void testCsvValue() throws IOException {
+        StringWriter writer = new StringWriter();
+        for (String value : Arrays.asList("plain", "a,b", "line\nbreak", "\"quoted\"")) {
+            ResultCsvWriter.writeValue(writer, value);
+            writer.write('|');
+        }
+
+        assertEquals("plain|\"a,b\"|\"line\nbreak\"|\"\"\"quoted\"\"\"|", writer.toString());
+    }
+
+    @Test
+    public void testArchiveBetweenFiles() throws IOException {
+        Files.write(pages.resolve("crawl.warc.gz"), WarcReaderTest.gzipMembers(
+            WarcReaderTest.response("https://archived.example.com/", "HTTP/1.1 200 OK\r\nContent-Type: text/html",
+                "<title>Archived</title>".getBytes(StandardCharsets.UTF_8))));
+
+        int exitCode = run("--format", "csv", "--ordered", pages.resolve("index.html").toString(),
+            pages.resolve("crawl.warc.gz").toString(), pages.resolve("blog").toString());
+
+        assertEquals(OfflineApp.EXIT_OK, exitCode);
+        String[] lines = outputLines();
+        assertEquals(4, lines.length);
+        assertTrue(lines[1], lines[1].contains("index.html"));
+        assertTrue(lines[2], lines[2].startsWith("https://archived.example.com/,true,,,QUIRKS,Archived,"));
+        assertTrue(lines[3], lines[3].contains("post.htm"));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("Read 1 records of the archive"));
+    }
+
+    @Test
+    public void testStreamingEngine() throws IOException {
+        Files.write(pages.resolve("crawl.warc.gz"), WarcReaderTest.gzipMembers(
+            WarcReaderTest.response("https://archived.example.com/", "HTTP/1.1 200 OK\r\nContent-Type: text/html",
+                "<title>Archived</title><form><input type=password></form>".getBytes(StandardCharsets.UTF_8))));
+        String[] args = {"--format", "csv", "--ordered", pages.resolve("index.html").toString(), pages.resolve("missing.html").toString(),
+            pages.resolve("crawl.warc.gz").toString(), pages.resolve("blog").toString()};
+
+        assertEquals(OfflineApp.EXIT_OK, run(args));
+        String[] domLines = outputLines();
+        out.reset();
+        String[] streamingArgs = Arrays.copyOf(args, args.length + 2);
+        streamingArgs[args.length] = "--engine";
+        streamingArgs[args.length + 1] = "streaming";
+        assertEquals(OfflineApp.EXIT_OK, run(streamingArgs));
+        String[] streamingLines = outputLines();
+
+        // the same values except the elapsed time
+        assertEquals(5, streamingLines.length);
+        for (int i = 0; i < domLines.length; i++) {
+            assertEquals(domLines[i].substring(0, domLines[i].lastIndexOf(',')), streamingLines[i].substring(0, streamingLines[i].lastIndexOf(',')));
+        }
+        assertTrue(streamingLines[3], streamingLines[3].startsWith("https://archived.example.com/,true,,,QUIRKS,Archived,"));
+    }
+}
@@ -0,0 +1,43 @@
+package net.qasd.htmlanalyzer.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram(new long[]{10, 100});
+
+        histogram.record(5);
+        histogram.record(10);
+        histogram.record(50);
+        histogram.record(1000);
+
+        assertArrayEquals(new long[]{2, 1, 1}, histogram.getCounts());
+        assertEquals(1065, histogram.getSum());
+        assertEquals(4, histogram.getCount());
+    }
+
+    @Test
+    public void testRecordConcurrently() throws InterruptedException {
+        Histogram histogram = new Histogram();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j * 1000L);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+    }
+}
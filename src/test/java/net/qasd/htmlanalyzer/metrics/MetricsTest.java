@@ -0,0 +1,45 @@
+package net.qasd.htmlanalyzer.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void testStageIsCreatedOnce() {
+        Metrics metrics = new Metrics();
+
+        assertSame(metrics.stage(Metrics.PARSE), metrics.stage(Metrics.PARSE));
+        assertSame(metrics.failure("URL_NOT_FOUND"), metrics.failure("URL_NOT_FOUND"));
+    }
+
+    @Test
+    public void testWritePrometheus() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.stage(Metrics.PARSE).record(2000000L);
+        metrics.stage(Metrics.PARSE).record(20000000000L);
+        metrics.failure("URL_NOT_FOUND").increment();
+        metrics.fetchBytes(Metrics.TRANSFERRED).add(100);
+        metrics.redirectHops(Metrics.SAVED).add(3);
+
+        StringWriter writer = new StringWriter();
+        metrics.writePrometheus(writer);
+        String text = writer.toString();
+
+        assertTrue(text.contains("# TYPE htmlanalyzer_stage_duration_seconds histogram\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.001\"} 0\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.0025\"} 1\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_bucket{stage=\"parse\",le=\"10.0\"} 1\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_sum{stage=\"parse\"} 20.002\n"));
+        assertTrue(text.contains("htmlanalyzer_stage_duration_seconds_count{stage=\"parse\"} 2\n"));
+        assertTrue(text.contains("htmlanalyzer_failures_total{code=\"URL_NOT_FOUND\"} 1\n"));
+        assertTrue(text.contains("htmlanalyzer_fetch_bytes_total{type=\"transferred\"} 100\n"));
+        assertTrue(text.contains("htmlanalyzer_redirect_hops_total{type=\"saved\"} 3\n"));
+    }
+}
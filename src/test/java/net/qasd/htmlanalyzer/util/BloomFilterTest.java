@@ -0,0 +1,55 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testAdd() {
+        BloomFilter bloomFilter = BloomFilter.newInstance(100, 0.01);
+
+        assertFalse(bloomFilter.mightContain("http://www.example.com/"));
+        assertTrue(bloomFilter.add("http://www.example.com/"));
+        assertTrue(bloomFilter.mightContain("http://www.example.com/"));
+        assertFalse(bloomFilter.add("http://www.example.com/"));
+        assertEquals(1, bloomFilter.getCount());
+    }
+
+    @Test
+    public void testFalsePositiveProbability() {
+        BloomFilter bloomFilter = BloomFilter.newInstance(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.add("http://www.example.com/page/" + i);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(bloomFilter.mightContain("http://www.example.com/page/" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain("http://www.example.com/other/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testSize() {
+        BloomFilter bloomFilter = BloomFilter.newInstance(1000, 0.001);
+
+        // about 14.4 bits and 10 hashes per value
+        assertTrue(bloomFilter.getBitCount() >= 14000 && bloomFilter.getBitCount() <= 15000 + 64);
+        assertEquals(10, bloomFilter.getHashCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotValidProbability() {
+        BloomFilter.newInstance(100, 1.0);
+    }
+}
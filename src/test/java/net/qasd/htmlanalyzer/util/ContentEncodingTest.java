@@ -0,0 +1,98 @@
+package net.qasd.htmlanalyzer.util;
+
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContentEncodingTest {
+
+    private static final String HTML = "<html><head><title>Test</title></head><body>" + new String(new char[200]).replace("\0", "<p>text</p>") + "</body></html>";
+
+    @Test
+    public void testDecodeGzip() throws IOException {
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(gzip(HTML)), "gzip", 512)));
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(gzip(HTML)), "X-GZIP", 512)));
+    }
+
+    @Test
+    public void testDecodeDeflate() throws IOException {
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(deflate(HTML, false)), "deflate", 512)));
+        // the raw deflate data without the zlib header
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(deflate(HTML, true)), "deflate", 512)));
+    }
+
+    @Test
+    public void testDecodeMultipleEncodings() throws IOException {
+        byte[] encoded = gzip(new String(deflate(HTML, false), StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(encoded), "deflate, gzip", 512)));
+    }
+
+    @Test
+    public void testDecodeIdentity() throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(HTML.getBytes(StandardCharsets.UTF_8));
+
+        assertSame(inputStream, ContentEncoding.decode(inputStream, null, 512));
+        assertSame(inputStream, ContentEncoding.decode(inputStream, "identity", 512));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeNotSupported() throws IOException {
+        ContentEncoding.decode(new ByteArrayInputStream(new byte[0]), "br", 512);
+    }
+
+    @Test
+    public void testDecodeCountsBytes() throws IOException {
+        byte[] compressed = gzip(HTML);
+        long transferred = Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum();
+        long decoded = Metrics.getDefault().fetchBytes(Metrics.DECODED).sum();
+
+        assertEquals(HTML, read(ContentEncoding.decode(new ByteArrayInputStream(compressed), "gzip")));
+
+        // the counters are shared with the other tests running at the same time
+        assertTrue(Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum() - transferred >= compressed.length);
+        assertTrue(Metrics.getDefault().fetchBytes(Metrics.DECODED).sum() - decoded >= HTML.length());
+    }
+
+    static byte[] gzip(String text) throws IOException {
+        return gzip(text, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(String text, Charset charset) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(text.getBytes(charset));
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] deflate(String text, boolean raw) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflaterOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        try (InputStream decoded = inputStream) {
+            return IOUtils.toString(decoded, StandardCharsets.UTF_8);
+        }
+    }
+}
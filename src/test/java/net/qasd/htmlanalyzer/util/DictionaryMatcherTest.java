@@ -0,0 +1,56 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DictionaryMatcherTest {
+
+    @Test
+    public void testMatches() {
+        DictionaryMatcher matcher = DictionaryMatcher.compile(Arrays.asList("login", "auth", "signin", "session"));
+
+        assertTrue(matcher.matches("/login"));
+        assertTrue(matcher.matches("/api/v1/authenticate"));
+        assertTrue(matcher.matches("SignIn.php"));
+        assertTrue(matcher.matches("/sign-in"));
+        assertTrue(matcher.matches("/sign_in/2"));
+        assertTrue(matcher.matches("xsessio session"));
+        assertTrue(DictionaryMatcher.compile(Arrays.asList("test", "abc")).matches("test1"));
+        assertFalse(DictionaryMatcher.compile(Arrays.asList("abc", "xyz")).matches("test1"));
+        assertFalse(matcher.matches("/save"));
+        assertFalse(matcher.matches("/sign in"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void testOverlappingItems() {
+        DictionaryMatcher matcher = DictionaryMatcher.compile(Arrays.asList("username", "sername", "name"));
+
+        assertTrue(matcher.matches("user_name"));
+        assertFalse(matcher.matches("usernam"));
+
+        matcher = DictionaryMatcher.compile(Arrays.asList("abcd", "bc"));
+        assertTrue(matcher.matches("abce"));
+    }
+
+    @Test
+    public void testItems() {
+        DictionaryMatcher matcher = DictionaryMatcher.compile(Arrays.asList("User", "e-mail", "phone number"));
+
+        assertTrue(matcher.matches("USER"));
+        assertTrue(matcher.matches("phone number"));
+        // the normalized text never contains "-"
+        assertFalse(matcher.matches("e-mail"));
+        assertEquals(3, matcher.getItems().size());
+
+        // an empty item is contained by any text
+        assertTrue(DictionaryMatcher.compile(Collections.singletonList("")).matches("test"));
+        assertFalse(DictionaryMatcher.compile(Collections.<String>emptyList()).matches("test"));
+    }
+}
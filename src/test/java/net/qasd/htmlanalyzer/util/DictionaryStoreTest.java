@@ -0,0 +1,69 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DictionaryStoreTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        System.clearProperty(DictionaryStore.DICTIONARY_DIR_PROPERTY);
+    }
+
+    @Test
+    public void testGetDictionaryFromResources() throws IOException {
+        DictionaryStore store = new DictionaryStore();
+
+        DictionaryMatcher matcher = store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION);
+        assertTrue(matcher.matches("/signin"));
+        assertFalse(matcher.matches("/save"));
+
+        // loaded once
+        assertSame(matcher, store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION));
+    }
+
+    @Test
+    public void testGetDictionaryFromNonExistingResourceFile() throws IOException {
+        thrown.expect(FileNotFoundException.class);
+
+        new DictionaryStore().getDictionary("tmp.txt");
+    }
+
+    @Test
+    public void testReloadModifiedFile() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "loginaction.txt");
+        FileUtils.write(file, "login\n", "UTF-8");
+        System.setProperty(DictionaryStore.DICTIONARY_DIR_PROPERTY, folder.getRoot().getPath());
+
+        DictionaryStore store = new DictionaryStore();
+        assertTrue(store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION).matches("/login"));
+        assertFalse(store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION).matches("/save"));
+
+        FileUtils.write(file, "save\n", "UTF-8");
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+
+        // wait for the reload check interval
+        Thread.sleep(1100);
+
+        assertTrue(store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION).matches("/save"));
+        assertFalse(store.getDictionary(DictionaryUtil.FILE_NAME_LOGIN_ACTION).matches("/login"));
+    }
+}
@@ -0,0 +1,123 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DnsCacheTest {
+
+    private static List<InetAddress> address(String host) throws UnknownHostException {
+        return Collections.singletonList(InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1}));
+    }
+
+    @Test
+    public void testLookup() throws UnknownHostException {
+        AtomicInteger resolutions = new AtomicInteger();
+        try (DnsCache dnsCache = DnsCache.newInstance(host -> {
+            resolutions.incrementAndGet();
+            return address(host);
+        }, new DnsCache.Settings())) {
+            assertEquals(address("www.example.com"), dnsCache.lookup("www.example.com"));
+            assertEquals(address("www.example.com"), dnsCache.lookup("WWW.Example.com"));
+
+            assertEquals(1, resolutions.get());
+            assertEquals(1, dnsCache.getLookupCount());
+            assertEquals(1, dnsCache.getHitCount());
+            assertEquals(1, dnsCache.size());
+        }
+    }
+
+    @Test
+    public void testLookupUnknownHost() {
+        AtomicInteger resolutions = new AtomicInteger();
+        try (DnsCache dnsCache = DnsCache.newInstance(host -> {
+            resolutions.incrementAndGet();
+            throw new UnknownHostException(host);
+        }, new DnsCache.Settings())) {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    dnsCache.lookup("unknown.example.com");
+                    fail("The host is not known");
+                } catch (UnknownHostException unknownHostException) {
+                    // expected
+                }
+            }
+
+            // the failure is cached
+            assertEquals(1, resolutions.get());
+        }
+    }
+
+    @Test
+    public void testLookupExpired() throws UnknownHostException {
+        AtomicInteger resolutions = new AtomicInteger();
+        try (DnsCache dnsCache = DnsCache.newInstance(host -> {
+            resolutions.incrementAndGet();
+            return address(host);
+        }, new DnsCache.Settings().setPositiveTimeToLiveMillis(0))) {
+            dnsCache.lookup("www.example.com");
+            dnsCache.lookup("www.example.com");
+
+            assertEquals(2, resolutions.get());
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        ConcurrentHashMap<String, AtomicInteger> resolutions = new ConcurrentHashMap<>();
+        CountDownLatch started = new CountDownLatch(3);
+        try (DnsCache dnsCache = DnsCache.newInstance(host -> {
+            resolutions.computeIfAbsent(host, name -> new AtomicInteger()).incrementAndGet();
+            started.countDown();
+            try {
+                // the hosts are resolved in parallel
+                started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return address(host);
+        }, new DnsCache.Settings().setPrefetchConcurrency(3))) {
+            dnsCache.prefetch(Arrays.asList("a.example.com", "b.example.com", "A.example.com", "c.example.com"));
+
+            // the lookup waits for the running resolution
+            assertEquals(address("a.example.com"), dnsCache.lookup("a.example.com"));
+            assertEquals(0, started.getCount());
+
+            dnsCache.prefetch(Arrays.asList("a.example.com", "b.example.com", "c.example.com")).get(5, TimeUnit.SECONDS);
+            assertEquals(3, resolutions.size());
+            for (AtomicInteger count : resolutions.values()) {
+                assertEquals(1, count.get());
+            }
+        }
+    }
+
+    @Test
+    public void testWritePrometheus() throws IOException {
+        try (DnsCache dnsCache = DnsCache.newInstance(DnsCacheTest::address, new DnsCache.Settings())) {
+            dnsCache.lookup("www.example.com");
+            dnsCache.lookup("www.example.com");
+
+            StringWriter writer = new StringWriter();
+            dnsCache.writePrometheus(writer);
+            String text = writer.toString();
+
+            assertTrue(text.contains("htmlanalyzer_dns_cache_hits_total 1\n"));
+            assertTrue(text.contains("htmlanalyzer_dns_lookups_total 1\n"));
+            assertTrue(text.contains("htmlanalyzer_dns_cache_size 1\n"));
+        }
+    }
+}
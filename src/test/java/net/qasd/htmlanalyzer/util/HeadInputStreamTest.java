@@ -0,0 +1,68 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeadInputStreamTest {
+
+    private static String readHead(String html) throws IOException {
+        try (HeadInputStream inputStream = new HeadInputStream(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)))) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testHeadEndTag() throws IOException {
+        assertEquals("<html><head><title>T</title></head>", readHead("<html><head><title>T</title></head><body><p>text</p></body></html>"));
+        assertEquals("<HTML><HEAD></HEAD ", readHead("<HTML><HEAD></HEAD ><BODY></BODY></HTML>"));
+    }
+
+    @Test
+    public void testBodyStartTag() throws IOException {
+        assertEquals("<title>T</title><body>", readHead("<title>T</title><body><p>text</p></body>"));
+        assertEquals("<title>T</title><body ", readHead("<title>T</title><body class=\"main\"><p>text</p></body>"));
+    }
+
+    @Test
+    public void testSimilarTags() throws IOException {
+        String html = "<title>T</title><header></header><bodyguard></bodyguard><</head>";
+
+        assertEquals(html, readHead(html + "<p>text</p>"));
+    }
+
+    @Test
+    public void testReadByteByByte() throws IOException {
+        byte[] html = "<head><title>T</title></head><body>text</body>".getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream source = new ByteArrayInputStream(html);
+
+        StringBuilder head = new StringBuilder();
+        try (HeadInputStream inputStream = new HeadInputStream(source)) {
+            int value;
+            while ((value = inputStream.read()) >= 0) {
+                head.append((char) value);
+            }
+            assertTrue(inputStream.isHeadEnded());
+        }
+
+        assertEquals("<head><title>T</title></head>", head.toString());
+        assertEquals("<body>text</body>".length(), source.available());
+    }
+
+    @Test
+    public void testNoHeadEnd() throws IOException {
+        String html = "<title>T</title>";
+        try (InputStream inputStream = new HeadInputStream(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals(html, IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+            assertFalse(((HeadInputStream) inputStream).isHeadEnded());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+
+    @Test
+    public void testWriteObject() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonWriter json = JsonWriter.newInstance(writer);
+
+        json.beginObject()
+            .name("a").value("b")
+            .name("c").value(1)
+            .name("d").value(true)
+            .name("e").nullValue()
+            .name("f").beginArray().value(1).value(2).beginObject().endObject().endArray()
+            .name("g").beginObject().name("h").value((String) null).endObject()
+            .endObject();
+
+        assertEquals("{\"a\":\"b\",\"c\":1,\"d\":true,\"e\":null,\"f\":[1,2,{}],\"g\":{\"h\":null}}", writer.toString());
+    }
+
+    @Test
+    public void testWriteEscaped() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonWriter.newInstance(writer).value("q\"b\\n\nt\tc\u0001l ");
+
+        assertEquals("\"q\\\"b\\\\n\\nt\\tc\\u0001l\\u2028\"", writer.toString());
+    }
+
+    @Test
+    public void testWriteNewLine() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonWriter json = JsonWriter.newInstance(writer);
+
+        json.beginObject().name("a").value(1).endObject().newLine();
+        json.beginObject().name("b").value(2).endObject().newLine();
+
+        assertEquals("{\"a\":1}\n{\"b\":2}\n", writer.toString());
+    }
+}
@@ -0,0 +1,71 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.apache.commons.io.IOUtils;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParseSmallFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("small.html");
+        Files.write(file, "<html><head><meta charset=\"iso-8859-9\"><title>Ağ</title></head></html>".getBytes(Charset.forName("ISO-8859-9")));
+
+        Document document = MappedFileReader.parse(file, "https://www.example.com/");
+
+        assertEquals("Ağ", document.title());
+        assertEquals("https://www.example.com/", document.location());
+    }
+
+    @Test
+    public void testParseMappedFile() throws IOException {
+        StringBuilder html = new StringBuilder("<html><head><title>Mapped</title></head><body>");
+        while (html.length() < MappedFileReader.MAP_THRESHOLD * 2) {
+            html.append("<p>mapped paragraph</p>");
+        }
+        html.append("<p id=\"last\">last</p></body></html>");
+        Path file = folder.getRoot().toPath().resolve("large.html");
+        Files.write(file, html.toString().getBytes(StandardCharsets.UTF_8));
+
+        Document document = MappedFileReader.parse(file, "https://www.example.com/");
+
+        assertEquals("Mapped", document.title());
+        assertEquals("last", document.getElementById("last").text());
+    }
+
+    @Test
+    public void testOpenDetectsCharset() throws IOException {
+        Path meta = folder.getRoot().toPath().resolve("meta.html");
+        Files.write(meta, "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-9\"><title>Ağ</title>".getBytes(Charset.forName("ISO-8859-9")));
+        Path bom = folder.getRoot().toPath().resolve("bom.html");
+        Files.write(bom, "\uFEFF<meta charset=\"iso-8859-9\"><title>Ağ</title>".getBytes(StandardCharsets.UTF_16LE));
+
+        try (Reader reader = MappedFileReader.open(meta)) {
+            assertEquals("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-9\"><title>Ağ</title>", IOUtils.toString(reader));
+        }
+        // the byte order mark wins over the meta charset and it is not read
+        try (Reader reader = MappedFileReader.open(bom)) {
+            assertEquals("<meta charset=\"iso-8859-9\"><title>Ağ</title>", IOUtils.toString(reader));
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testParseMissingFile() throws IOException {
+        MappedFileReader.parse(folder.getRoot().toPath().resolve("missing.html"), "https://www.example.com/");
+    }
+}
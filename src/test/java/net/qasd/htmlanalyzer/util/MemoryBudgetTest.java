@@ -0,0 +1,44 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void testAcquireWaitsForRelease() throws InterruptedException {
+        MemoryBudget memoryBudget = MemoryBudget.newInstance(100);
+        long granted = memoryBudget.acquire(80);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                memoryBudget.acquire(50);
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        memoryBudget.release(granted);
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(50, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void testAcquireLargerThanBudget() throws InterruptedException {
+        MemoryBudget memoryBudget = MemoryBudget.newInstance(100);
+
+        assertEquals(100, memoryBudget.acquire(1000));
+        memoryBudget.release(100);
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+}
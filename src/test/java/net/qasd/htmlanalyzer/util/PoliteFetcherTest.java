@@ -0,0 +1,288 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PoliteFetcherTest {
+
+    @Test
+    public void testMaxFetchesPerHost() throws Exception {
+        ConcurrentHashMap<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Fetcher fetcher = url -> {
+            AtomicInteger hostRunning = running.computeIfAbsent(url.getHost(), host -> new AtomicInteger());
+            maxRunning.accumulateAndGet(hostRunning.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            hostRunning.decrementAndGet();
+            return Jsoup.parse("<html></html>", url.toString());
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings().setMaxFetchesPerHost(2))) {
+            List<CompletableFuture<Document>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(politeFetcher.fetchAsync(new URL("http://www.example.com/" + i)));
+            }
+            assertTrue(politeFetcher.getQueueDepth("www.example.com") > 0);
+
+            for (CompletableFuture<Document> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            assertEquals(2, maxRunning.get());
+            assertEquals(0, politeFetcher.getQueueDepth("www.example.com"));
+            assertEquals(0, politeFetcher.getActiveFetches());
+        }
+    }
+
+    @Test
+    public void testMinDelay() throws Exception {
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+        // a blocking fetcher records its start on the scheduler thread, after the hand-off
+        Fetcher fetcher = url -> {
+            starts.add(System.nanoTime());
+            return Jsoup.parse("<html></html>", url.toString());
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings().setMinDelayMillis(50))) {
+            List<CompletableFuture<Document>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(politeFetcher.fetchAsync(new URL("http://www.example.com/" + i)));
+            }
+            for (CompletableFuture<Document> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(3, starts.size());
+        List<Long> sorted = new ArrayList<>(starts);
+        Collections.sort(sorted);
+        for (int i = 1; i < sorted.size(); i++) {
+            assertTrue(sorted.get(i) - sorted.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(45));
+        }
+    }
+
+    @Test
+    public void testMinDelayAsynchronous() throws Exception {
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                starts.add(System.nanoTime());
+                return Jsoup.parse("<html></html>", url.toString());
+            }
+
+            @Override
+            public boolean isAsynchronous() {
+                return true;
+            }
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings().setMinDelayMillis(50))) {
+            List<CompletableFuture<Document>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(politeFetcher.fetchAsync(new URL("http://www.example.com/" + i)));
+            }
+            for (CompletableFuture<Document> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(3, starts.size());
+        for (int i = 1; i < starts.size(); i++) {
+            assertTrue(starts.get(i) - starts.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(45));
+        }
+    }
+
+    @Test
+    public void testCancelQueuedFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        Fetcher fetcher = url -> {
+            fetched.add(url.getPath());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Jsoup.parse("<html></html>", url.toString());
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings().setMaxFetchesPerHost(1))) {
+            CompletableFuture<Document> first = politeFetcher.fetchAsync(new URL("http://www.example.com/1"));
+            CompletableFuture<Document> second = politeFetcher.fetchAsync(new URL("http://www.example.com/2"));
+            CompletableFuture<Document> third = politeFetcher.fetchAsync(new URL("http://www.example.com/3"));
+            assertEquals(2, politeFetcher.getQueueDepth("www.example.com"));
+
+            second.cancel(true);
+            assertEquals(1, politeFetcher.getQueueDepth("www.example.com"));
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            third.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Arrays.asList("/1", "/3"), fetched);
+    }
+
+    @Test
+    public void testCancelRunningFetch() throws Exception {
+        CompletableFuture<Document> delegateFuture = new CompletableFuture<>();
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                throw new AssertionError("The asynchronous fetch should be used");
+            }
+
+            @Override
+            public CompletableFuture<Document> fetchAsync(URL url) {
+                return delegateFuture;
+            }
+
+            @Override
+            public boolean isAsynchronous() {
+                return true;
+            }
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher)) {
+            CompletableFuture<Document> future = politeFetcher.fetchAsync(new URL("http://www.example.com/1"));
+            assertEquals(1, politeFetcher.getActiveFetches());
+
+            future.cancel(true);
+
+            assertTrue(delegateFuture.isCancelled());
+            assertEquals(0, politeFetcher.getActiveFetches());
+        }
+    }
+
+    @Test
+    public void testCancelRunningBlockingFetch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Fetcher fetcher = url -> {
+            started.countDown();
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return Jsoup.parse("<html></html>", url.toString());
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher)) {
+            CompletableFuture<Document> future = politeFetcher.fetchAsync(new URL("http://www.example.com/1"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            future.cancel(true);
+
+            // the scheduler thread is interrupted instead of waiting for the fetch
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Fetcher fetcher = url -> {
+            order.add(url.getHost());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Jsoup.parse("<html></html>", url.toString());
+        };
+
+        // one fetch at a time, the hosts take turns
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher, new PoliteFetcher.Settings().setMaxFetches(1))) {
+            List<CompletableFuture<Document>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(politeFetcher.fetchAsync(new URL("http://a.example.com/" + i)));
+            }
+            for (int i = 0; i < 2; i++) {
+                futures.add(politeFetcher.fetchAsync(new URL("http://b.example.com/" + i)));
+            }
+            release.countDown();
+            for (CompletableFuture<Document> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(Arrays.asList("a.example.com", "a.example.com", "b.example.com", "a.example.com", "b.example.com"), order);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Fetcher fetcher = url -> {
+            throw new UrlReader.UrlNotFoundException();
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher)) {
+            politeFetcher.fetch(new URL("http://www.example.com/missing"));
+            fail("The fetch should fail");
+        } catch (UrlReader.UrlNotFoundException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWritePrometheus() throws Exception {
+        Fetcher fetcher = url -> Jsoup.parse("<html></html>", url.toString());
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher)) {
+            politeFetcher.fetch(new URL("http://www.example.com/"));
+
+            StringWriter writer = new StringWriter();
+            politeFetcher.writePrometheus(writer);
+            String metrics = writer.toString();
+
+            assertTrue(metrics.contains("htmlanalyzer_host_queue_depth{host=\"www.example.com\"} 0\n"));
+            assertTrue(metrics.contains("htmlanalyzer_host_wait_seconds_count{host=\"www.example.com\"} 1\n"));
+            assertFalse(metrics.contains("other.org"));
+        }
+    }
+
+    @Test
+    public void testFetchHead() throws Exception {
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                return Jsoup.parse("<html><head><title>Page</title></head><body>body</body></html>", url.toString());
+            }
+
+            @Override
+            public Document fetchHead(URL url) {
+                return Jsoup.parse("<html><head><title>Head</title></head></html>", url.toString());
+            }
+        };
+
+        try (PoliteFetcher politeFetcher = PoliteFetcher.newInstance(fetcher)) {
+            assertEquals("Head", politeFetcher.fetchHead(new URL("http://www.example.com/")).title());
+            assertEquals("Page", politeFetcher.fetch(new URL("http://www.example.com/")).title());
+        }
+    }
+}
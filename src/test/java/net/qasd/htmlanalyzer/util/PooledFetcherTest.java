@@ -0,0 +1,294 @@
+package net.qasd.htmlanalyzer.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.qasd.htmlanalyzer.metrics.Metrics;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PooledFetcherTest {
+
+    private static final String SAMPLE_HTML = "<html><head><title>Tést</title></head><body><a href=\"/a\">a</a></body></html>";
+
+    private final Map<String, Integer> opened = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private PooledFetcher fetcher;
+    private String baseUrl;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page", exchange -> respond(exchange, 200, "text/html; charset=ISO-8859-1", SAMPLE_HTML, "ISO-8859-1"));
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/page");
+            respond(exchange, 302, "text/html", "", "UTF-8");
+        });
+        server.createContext("/loop", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/loop");
+            respond(exchange, 301, "text/html", "", "UTF-8");
+        });
+        server.createContext("/temporary", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/page");
+            respond(exchange, 307, "text/html", "", "UTF-8");
+        });
+        server.createContext("/permanent", exchange -> {
+            opened.merge(exchange.getRequestURI().getPath(), 1, Integer::sum);
+            exchange.getResponseHeaders().add("Location", "/page");
+            respond(exchange, 308, "text/html", "", "UTF-8");
+        });
+        server.createContext("/ping", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/pong");
+            respond(exchange, 302, "text/html", "", "UTF-8");
+        });
+        server.createContext("/pong", exchange -> {
+            opened.merge(exchange.getRequestURI().getPath(), 1, Integer::sum);
+            exchange.getResponseHeaders().add("Location", "/ping");
+            respond(exchange, 307, "text/html", "", "UTF-8");
+        });
+        // the hop n redirects to the hop n + 1, the last hop is the page
+        server.createContext("/hop/", exchange -> {
+            int hop = Integer.parseInt(exchange.getRequestURI().getPath().substring("/hop/".length()));
+            if (hop == 11) {
+                respond(exchange, 200, "text/html", SAMPLE_HTML, "UTF-8");
+                return;
+            }
+            exchange.getResponseHeaders().add("Location", "/hop/" + (hop + 1));
+            respond(exchange, 302, "text/html", "", "UTF-8");
+        });
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+                respond(exchange, 200, "text/html; charset=UTF-8", SAMPLE_HTML, "UTF-8");
+                return;
+            }
+            byte[] bytes = ContentEncodingTest.gzip(SAMPLE_HTML);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        });
+        server.createContext("/large", exchange -> {
+            StringBuilder html = new StringBuilder("<html><head><title>Large</title></head><body>");
+            for (int i = 0; i < 100000; i++) {
+                html.append("<p>paragraph ").append(i).append("</p>");
+            }
+            try {
+                respond(exchange, 200, "text/html; charset=UTF-8", html.append("</body></html>").toString(), "UTF-8");
+            } catch (IOException closedException) {
+                // the head fetch closes the connection
+            }
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, "text/html", "", "UTF-8"));
+        server.createContext("/error", exchange -> respond(exchange, 500, "text/html", "", "UTF-8"));
+        server.createContext("/text", exchange -> respond(exchange, 200, "text/plain", "plain", "UTF-8"));
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "text/html", SAMPLE_HTML, "UTF-8");
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = PooledFetcher.newInstance(new PooledFetcher.Settings().setTotalTimeoutMillis(1000));
+    }
+
+    @After
+    public void tearDown() {
+        fetcher.close();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body, String charset) throws IOException {
+        byte[] bytes = body.getBytes(Charset.forName(charset));
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        Document document = fetcher.fetch(new URL(baseUrl + "/page"));
+
+        assertEquals("Tést", document.title());
+        assertEquals(baseUrl + "/a", document.select("a").first().absUrl("href"));
+    }
+
+    @Test
+    public void testFetchGzip() throws Exception {
+        long transferred = Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum();
+
+        Document document = fetcher.fetch(new URL(baseUrl + "/gzip"));
+
+        assertEquals("Tést", document.title());
+        assertTrue(Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum() > transferred);
+    }
+
+    @Test
+    public void testFetchHead() throws Exception {
+        long transferred = Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum();
+
+        Document document = fetcher.fetchHead(new URL(baseUrl + "/large"));
+
+        assertEquals("Large", document.title());
+        assertEquals(0, document.body().childNodeSize());
+        // the page has about 2 MB
+        assertTrue(Metrics.getDefault().fetchBytes(Metrics.TRANSFERRED).sum() - transferred < 256 * 1024);
+    }
+
+    @Test
+    public void testFetchRedirect() throws Exception {
+        Document document = fetcher.fetch(new URL(baseUrl + "/redirect"));
+
+        assertEquals("Tést", document.title());
+        assertEquals(baseUrl + "/page", document.location());
+    }
+
+    @Test
+    public void testFetchRedirectLoop() throws Exception {
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+        fetcher.fetch(new URL(baseUrl + "/loop"));
+    }
+
+    @Test
+    public void testFetchTemporaryRedirect() throws Exception {
+        Document document = fetcher.fetch(new URL(baseUrl + "/temporary"));
+
+        assertEquals("Tést", document.title());
+        assertEquals(baseUrl + "/page", document.location());
+    }
+
+    @Test
+    public void testFetchPermanentRedirectMemoized() throws Exception {
+        long saved = Metrics.getDefault().redirectHops(Metrics.SAVED).sum();
+
+        assertEquals(baseUrl + "/page", fetcher.fetch(new URL(baseUrl + "/permanent")).location());
+        assertEquals(baseUrl + "/page", fetcher.fetch(new URL(baseUrl + "/permanent")).location());
+
+        // the second fetch takes the redirect from the cache
+        assertEquals(Integer.valueOf(1), opened.get("/permanent"));
+        assertTrue(Metrics.getDefault().redirectHops(Metrics.SAVED).sum() - saved >= 1);
+    }
+
+    @Test
+    public void testFetchRedirectLoopOfUrls() throws Exception {
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+
+        try {
+            fetcher.fetch(new URL(baseUrl + "/ping"));
+        } finally {
+            // the loop is detected before the hop limit
+            assertEquals(Integer.valueOf(1), opened.get("/pong"));
+        }
+    }
+
+    @Test
+    public void testFetchMaxFollowRedirect() throws Exception {
+        // 10 redirects are followed
+        assertEquals(baseUrl + "/hop/11", fetcher.fetch(new URL(baseUrl + "/hop/1")).location());
+
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+        fetcher.fetch(new URL(baseUrl + "/hop/0"));
+    }
+
+    @Test
+    public void testFetchNotFound() throws Exception {
+        thrown.expect(UrlReader.UrlNotFoundException.class);
+        fetcher.fetch(new URL(baseUrl + "/missing"));
+    }
+
+    @Test
+    public void testFetchNotReadable() throws Exception {
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+        fetcher.fetch(new URL(baseUrl + "/error"));
+    }
+
+    @Test
+    public void testFetchNotHtml() throws Exception {
+        thrown.expect(UrlReader.NotHtmlDocumentException.class);
+        fetcher.fetch(new URL(baseUrl + "/text"));
+    }
+
+    @Test
+    public void testFetchTotalTimeout() throws Exception {
+        thrown.expect(IOException.class);
+        fetcher.fetch(new URL(baseUrl + "/slow"));
+    }
+
+    @Test
+    public void testFetchAsyncCancel() throws Exception {
+        try (PooledFetcher slowFetcher = PooledFetcher.newInstance(new PooledFetcher.Settings().setTotalTimeoutMillis(10000))) {
+            CompletableFuture<Document> future = slowFetcher.fetchAsync(new URL(baseUrl + "/slow"));
+            awaitRunningCount(slowFetcher, 1);
+
+            future.cancel(true);
+
+            // the request is cancelled before the server answers
+            awaitRunningCount(slowFetcher, 0);
+            assertTrue(future.isCancelled());
+        }
+    }
+
+    private static void awaitRunningCount(PooledFetcher pooledFetcher, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (pooledFetcher.getRunningCount() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The running requests are not " + count);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testFetchAsync() throws Exception {
+        List<CompletableFuture<Document>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(fetcher.fetchAsync(new URL(baseUrl + (i % 2 == 0 ? "/page" : "/redirect"))));
+        }
+
+        for (CompletableFuture<Document> future : futures) {
+            assertEquals("Tést", future.get().title());
+        }
+    }
+
+    @Test
+    public void testFetchAsyncFailure() throws Exception {
+        CompletableFuture<Document> future = fetcher.fetchAsync(new URL(baseUrl + "/missing"));
+
+        try {
+            future.get();
+        } catch (ExecutionException executionException) {
+            assertTrue(executionException.getCause() instanceof UrlReader.UrlNotFoundException);
+            return;
+        }
+        throw new AssertionError("The future is not completed exceptionally");
+    }
+}
@@ -0,0 +1,55 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PublicSuffixListTest {
+
+    @Test
+    public void testGetRegistrableDomain() {
+        PublicSuffixList publicSuffixList = PublicSuffixList.getDefault();
+
+        assertEquals("example.com", publicSuffixList.getRegistrableDomain("www.example.com"));
+        assertEquals("example.com", publicSuffixList.getRegistrableDomain("CDN.Example.COM"));
+        assertEquals("example.com", publicSuffixList.getRegistrableDomain("example.com"));
+        assertEquals("example.co.uk", publicSuffixList.getRegistrableDomain("a.b.example.co.uk"));
+        assertEquals("user.github.io", publicSuffixList.getRegistrableDomain("www.user.github.io"));
+        assertNull(publicSuffixList.getRegistrableDomain("com"));
+        assertNull(publicSuffixList.getRegistrableDomain("co.uk"));
+        assertNull(publicSuffixList.getRegistrableDomain("github.io"));
+    }
+
+    @Test
+    public void testUnknownSuffix() {
+        // the default rule: the last label is the public suffix
+        assertEquals("example.unknown", PublicSuffixList.getDefault().getRegistrableDomain("www.example.unknown"));
+        assertNull(PublicSuffixList.getDefault().getRegistrableDomain("localhost"));
+    }
+
+    @Test
+    public void testWildcardAndExceptionRules() {
+        PublicSuffixList publicSuffixList = PublicSuffixList.newInstance(Arrays.asList("// comment", "", "ck", "*.ck", "!www.ck"));
+
+        assertEquals("a.b.ck", publicSuffixList.getRegistrableDomain("x.a.b.ck"));
+        assertNull(publicSuffixList.getRegistrableDomain("b.ck"));
+        assertEquals("www.ck", publicSuffixList.getRegistrableDomain("www.ck"));
+        assertEquals("www.ck", publicSuffixList.getRegistrableDomain("x.www.ck"));
+    }
+
+    @Test
+    public void testIpAddress() {
+        assertNull(PublicSuffixList.getDefault().getRegistrableDomain("127.0.0.1"));
+        assertNull(PublicSuffixList.getDefault().getRegistrableDomain("[::1]"));
+    }
+
+    @Test
+    public void testRegistrableDomainStartInRange() {
+        String link = "https://static.example.co.uk/a.png";
+
+        assertEquals(15, PublicSuffixList.getDefault().registrableDomainStart(link, 8, 28));
+    }
+}
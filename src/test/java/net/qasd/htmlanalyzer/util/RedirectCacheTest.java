@@ -0,0 +1,51 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RedirectCacheTest {
+
+    @Test
+    public void testGet() throws MalformedURLException {
+        RedirectCache redirectCache = RedirectCache.newInstance();
+        redirectCache.put(new URL("http://example.com"), new URL("https://www.example.com/"));
+
+        assertEquals(new URL("https://www.example.com/"), redirectCache.get(new URL("HTTP://Example.com:80/#top")));
+        assertNull(redirectCache.get(new URL("http://example.com/other")));
+    }
+
+    @Test
+    public void testSelfRedirect() throws MalformedURLException {
+        RedirectCache redirectCache = RedirectCache.newInstance();
+        redirectCache.put(new URL("http://example.com/"), new URL("http://example.com/#main"));
+
+        assertEquals(0, redirectCache.size());
+    }
+
+    @Test
+    public void testEviction() throws MalformedURLException {
+        RedirectCache redirectCache = RedirectCache.newInstance(2, RedirectCache.DEFAULT_TIME_TO_LIVE_MILLIS);
+        redirectCache.put(new URL("http://example.com/1"), new URL("http://example.com/one"));
+        redirectCache.put(new URL("http://example.com/2"), new URL("http://example.com/two"));
+        redirectCache.get(new URL("http://example.com/1"));
+        redirectCache.put(new URL("http://example.com/3"), new URL("http://example.com/three"));
+
+        assertEquals(2, redirectCache.size());
+        assertEquals(new URL("http://example.com/one"), redirectCache.get(new URL("http://example.com/1")));
+        assertNull(redirectCache.get(new URL("http://example.com/2")));
+    }
+
+    @Test
+    public void testExpiration() throws MalformedURLException {
+        RedirectCache redirectCache = RedirectCache.newInstance(10, 0);
+        redirectCache.put(new URL("http://example.com/1"), new URL("http://example.com/one"));
+
+        assertNull(redirectCache.get(new URL("http://example.com/1")));
+        assertEquals(0, redirectCache.size());
+    }
+}
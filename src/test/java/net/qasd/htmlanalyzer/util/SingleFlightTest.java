@@ -0,0 +1,171 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testExecuteCoalesces() throws Exception {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    executions.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (singleFlight.getCoalescedCount() < 3) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, executions.get());
+        assertEquals(1, singleFlight.getExecutionCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+
+        // nothing is cached
+        assertEquals("again", singleFlight.execute("key", () -> "again"));
+    }
+
+    @Test
+    public void testExecuteFailure() throws Exception {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> work);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("other"));
+        work.completeExceptionally(new IllegalStateException("failed"));
+
+        for (CompletableFuture<String> future : new CompletableFuture[]{first, second}) {
+            try {
+                future.get();
+                fail("The failure should be propagated");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testExecuteThrows() {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+
+        try {
+            singleFlight.execute("key", () -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("The failure should be thrown");
+        } catch (IllegalStateException expected) {
+            assertEquals(0, singleFlight.getInFlightCount());
+        }
+    }
+
+    @Test
+    public void testCancelOneCaller() throws Exception {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> work);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> work);
+        first.cancel(true);
+
+        assertFalse(work.isCancelled());
+        work.complete("value");
+        assertEquals("value", second.get());
+    }
+
+    @Test
+    public void testCancelAllCallers() {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> work);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> work);
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(work.isCancelled());
+        assertEquals(0, singleFlight.getInFlightCount());
+
+        // a new caller starts a new execution
+        CompletableFuture<String> third = singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("value"));
+        assertEquals("value", third.join());
+    }
+
+    @Test
+    public void testCancelBeforeStart() {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        SingleFlight<String, String>.Flight flight = singleFlight.new Flight("key");
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        // the only caller is cancelled while the work is being started
+        flight.join().cancel(true);
+        flight.start(work);
+
+        assertTrue(work.isCancelled());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testWorkCancelled() throws Exception {
+        SingleFlight<String, String> singleFlight = SingleFlight.newInstance();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> work);
+        work.cancel(true);
+
+        try {
+            first.get();
+            fail("The cancellation should be propagated");
+        } catch (CancellationException expected) {
+            // expected
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package net.qasd.htmlanalyzer.util;
 
+import net.qasd.htmlanalyzer.metrics.Metrics;
 import org.apache.commons.io.IOUtils;
+import org.jsoup.nodes.Document;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class UrlReaderTest {
@@ -49,6 +56,73 @@ public class UrlReaderTest {
         assertEquals(SAMPLE_RESPONSE, actual);
     }
 
+    @Test
+    public void testGetContentCharset() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream("t\u00e9st".getBytes("ISO-8859-1")));
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("text/html; charset=ISO-8859-1");
+
+        String actual = UrlReader.newInstance().getContent(new URL(null, "http://www.google.com", urlStreamHandler));
+        assertEquals("t\u00e9st", actual);
+    }
+
+    @Test
+    public void testGetDocument() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        String html = "<html><head><title>t\u00e9st</title></head><body><a href=\"/index.html\">link</a></body></html>";
+        when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream(html.getBytes("ISO-8859-1")));
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("text/html; charset=\"ISO-8859-1\"");
+
+        Document document = UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com/test/", urlStreamHandler));
+        assertEquals("t\u00e9st", document.title());
+        assertEquals("http://www.google.com/test/", document.location());
+        assertEquals("http://www.google.com/index.html", document.select("a").first().absUrl("href"));
+    }
+
+    @Test
+    public void testGetDocumentGzip() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        String html = "<html><head><title>t\u00e9st</title></head><body></body></html>";
+        when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream(ContentEncodingTest.gzip(html)));
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("text/html; charset=UTF-8");
+        when(mockHttpConnection.getHeaderField("Content-Encoding")).thenReturn("gzip");
+
+        Document document = UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com", urlStreamHandler));
+        assertEquals("t\u00e9st", document.title());
+        verify(mockHttpConnection).setRequestProperty("Accept-Encoding", "gzip, deflate");
+    }
+
+    @Test
+    public void testGetDocumentMetaCharset() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        String html = "<html><head><meta charset=\"ISO-8859-1\"><title>t\u00e9st</title></head></html>";
+        when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream(html.getBytes("ISO-8859-1")));
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("text/html");
+
+        Document document = UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com", urlStreamHandler));
+        assertEquals("t\u00e9st", document.title());
+    }
+
+    @Test
+    public void testGetDocumentNotHtml() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("application/json");
+
+        thrown.expect(UrlReader.NotHtmlDocumentException.class);
+
+        UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com", urlStreamHandler));
+    }
+
+    @Test
+    public void testGetCharsetFromContentType() {
+        assertEquals("UTF-8", UrlReader.getCharsetFromContentType("text/html; charset=UTF-8"));
+        assertEquals("ISO-8859-1", UrlReader.getCharsetFromContentType("text/html;Charset=\"ISO-8859-1\"; foo=bar"));
+        assertNull(UrlReader.getCharsetFromContentType("text/html"));
+        assertNull(UrlReader.getCharsetFromContentType("text/html; charset="));
+        assertNull(UrlReader.getCharsetFromContentType("text/html; charset=not-existing"));
+        assertNull(UrlReader.getCharsetFromContentType("text/html; charset=?!"));
+    }
+
     @Test
     public void testGetContentNotFound() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
         when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_FOUND);
@@ -129,4 +203,188 @@ public class UrlReaderTest {
 
         urlReader.getContent(new URL(null, "http://www.google.com", urlStreamHandler));
     }
+
+    @Test
+    public void testGetContentMaxFollowRedirectOfDistinctUrls() throws Exception {
+        Map<String, Integer> opened = new HashMap<>();
+        Object[] urlsConnections = new Object[24];
+        for (int hop = 0; hop <= 11; hop++) {
+            urlsConnections[2 * hop] = "http://www.google.com/" + hop;
+            urlsConnections[2 * hop + 1] = hop < 11 ? redirect(HttpURLConnection.HTTP_MOVED_TEMP, "/" + (hop + 1)) : html();
+        }
+        URLStreamHandler handler = routes(opened, urlsConnections);
+
+        UrlReader urlReader = UrlReader.newInstance();
+        urlReader.setUrlStreamHandler(handler);
+
+        // 10 redirects are followed
+        assertEquals(SAMPLE_RESPONSE, urlReader.getContent(new URL(null, "http://www.google.com/1", handler)));
+        opened.clear();
+
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+
+        try {
+            urlReader.getContent(new URL(null, "http://www.google.com/0", handler));
+        } finally {
+            // the 11th redirect is not followed
+            assertEquals(Integer.valueOf(1), opened.get("http://www.google.com/10"));
+            assertNull(opened.get("http://www.google.com/11"));
+        }
+    }
+
+    @Test
+    public void testGetDocumentNotModified() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+        when(mockHttpConnection.getHeaderField("ETag")).thenReturn("\"v1\"");
+
+        UrlReader.ConditionalDocument actual = UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com", urlStreamHandler),
+            new UrlReader.Validators("\"v1\"", null));
+
+        assertTrue(actual.isNotModified());
+        assertNull(actual.getDocument());
+        assertEquals("\"v1\"", actual.getValidators().getEntityTag());
+        verify(mockHttpConnection).setRequestProperty("If-None-Match", "\"v1\"");
+    }
+
+    @Test
+    public void testGetDocumentNotModifiedUnconditional() throws IOException, UrlReader.UrlNotFoundException, UrlReader.NotHtmlDocumentException, UrlReader.UrlNotReadableException {
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+
+        UrlReader.newInstance().getDocument(new URL(null, "http://www.google.com", urlStreamHandler), null);
+    }
+
+    @Test
+    public void testGetContentRedirectMemoized() throws Exception {
+        Map<String, Integer> opened = new HashMap<>();
+        URLStreamHandler handler = routes(opened,
+            "http://www.google.com/", redirect(HttpURLConnection.HTTP_MOVED_PERM, "http://www.google.com/moved"),
+            "http://www.google.com/moved", redirect(UrlReader.HTTP_PERMANENT_REDIRECT, "/final"),
+            "http://www.google.com/final", html());
+
+        RedirectCache redirectCache = RedirectCache.newInstance();
+        UrlReader urlReader = UrlReader.newInstance(redirectCache);
+        urlReader.setUrlStreamHandler(handler);
+        long saved = Metrics.getDefault().redirectHops(Metrics.SAVED).sum();
+
+        assertEquals(SAMPLE_RESPONSE, urlReader.getContent(new URL(null, "http://www.google.com/", handler)));
+        assertEquals(2, redirectCache.size());
+        assertEquals(SAMPLE_RESPONSE, urlReader.getContent(new URL(null, "http://www.google.com/", handler)));
+
+        assertEquals(Integer.valueOf(1), opened.get("http://www.google.com/"));
+        assertEquals(Integer.valueOf(1), opened.get("http://www.google.com/moved"));
+        assertEquals(Integer.valueOf(2), opened.get("http://www.google.com/final"));
+        assertTrue(Metrics.getDefault().redirectHops(Metrics.SAVED).sum() - saved >= 2);
+    }
+
+    @Test
+    public void testGetContentTemporaryRedirectNotMemoized() throws Exception {
+        Map<String, Integer> opened = new HashMap<>();
+        URLStreamHandler handler = routes(opened,
+            "http://www.google.com/", redirect(UrlReader.HTTP_TEMPORARY_REDIRECT, "http://www.google.com/final"),
+            "http://www.google.com/final", html());
+
+        UrlReader urlReader = UrlReader.newInstance();
+        urlReader.setUrlStreamHandler(handler);
+        urlReader.getContent(new URL(null, "http://www.google.com/", handler));
+        urlReader.getContent(new URL(null, "http://www.google.com/", handler));
+
+        assertEquals(Integer.valueOf(2), opened.get("http://www.google.com/"));
+        assertEquals(Integer.valueOf(2), opened.get("http://www.google.com/final"));
+    }
+
+    @Test
+    public void testGetContentRedirectLoop() throws Exception {
+        Map<String, Integer> opened = new HashMap<>();
+        URLStreamHandler handler = routes(opened,
+            "http://www.google.com/a", redirect(HttpURLConnection.HTTP_MOVED_TEMP, "http://www.google.com/b"),
+            "http://www.google.com/b", redirect(HttpURLConnection.HTTP_MOVED_TEMP, "http://www.google.com/a"));
+
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+
+        UrlReader urlReader = UrlReader.newInstance();
+        urlReader.setUrlStreamHandler(handler);
+
+        try {
+            urlReader.getContent(new URL(null, "http://www.google.com/a", handler));
+        } finally {
+            assertEquals(Integer.valueOf(1), opened.get("http://www.google.com/a"));
+            assertEquals(Integer.valueOf(1), opened.get("http://www.google.com/b"));
+        }
+    }
+
+    @Test
+    public void testGetContentRedirectWithoutLocation() throws Exception {
+        URLStreamHandler handler = routes(new HashMap<>(),
+            "http://www.google.com/", redirect(HttpURLConnection.HTTP_MOVED_PERM, null));
+
+        thrown.expect(UrlReader.UrlNotReadableException.class);
+
+        UrlReader.newInstance().getContent(new URL(null, "http://www.google.com/", handler));
+    }
+
+    @Test
+    public void testGetHead() throws Exception {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Head</title></head><body>");
+        for (int i = 0; i < 10000; i++) {
+            html.append("<p>paragraph ").append(i).append("</p>");
+        }
+        ByteArrayInputStream body = new ByteArrayInputStream(html.append("</body></html>").toString().getBytes(Charset.forName("UTF-8")));
+
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getHeaderField("Content-Type")).thenReturn("text/html; charset=UTF-8");
+        when(mockHttpConnection.getInputStream()).thenReturn(body);
+
+        Document document = UrlReader.newInstance().getHead(new URL(null, "http://www.google.com", urlStreamHandler));
+
+        assertEquals("Head", document.title());
+        assertEquals(0, document.body().childNodeSize());
+        assertTrue(body.available() > 100000);
+        verify(mockHttpConnection).disconnect();
+    }
+
+    /**
+     * Creates an url stream handler returning the connection of the url and counting the opened connections
+     *
+     * @param opened          The number of the opened connections by url
+     * @param urlsConnections The urls and their connections
+     * @return The url stream handler
+     */
+    private static URLStreamHandler routes(Map<String, Integer> opened, Object... urlsConnections) {
+        Map<String, HttpURLConnection> connections = new HashMap<>();
+        for (int i = 0; i < urlsConnections.length; i += 2) {
+            connections.put((String) urlsConnections[i], (HttpURLConnection) urlsConnections[i + 1]);
+        }
+
+        return new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) throws IOException {
+                opened.merge(url.toString(), 1, Integer::sum);
+                HttpURLConnection connection = connections.get(url.toString());
+                if (connection == null) {
+                    throw new IOException("Unexpected url " + url);
+                }
+
+                return connection;
+            }
+        };
+    }
+
+    private static HttpURLConnection redirect(int responseCode, String location) throws IOException {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(responseCode);
+        when(connection.getHeaderField("Location")).thenReturn(location);
+
+        return connection;
+    }
+
+    private static HttpURLConnection html() throws IOException {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(connection.getHeaderField("Content-Type")).thenReturn("text/html");
+        when(connection.getInputStream()).then(invocation -> IOUtils.toInputStream(SAMPLE_RESPONSE, Charset.forName("UTF-8")));
+
+        return connection;
+    }
 }
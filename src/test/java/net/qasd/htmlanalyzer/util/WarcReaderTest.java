@@ -0,0 +1,172 @@
+package net.qasd.htmlanalyzer.util;
+
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WarcReaderTest {
+
+    /**
+     * Creates a WARC record
+     *
+     * @param type        The WARC-Type
+     * @param targetUri   The WARC-Target-URI
+     * @param contentType The record content type
+     * @param block       The record block
+     * @return The record bytes
+     */
+    public static byte[] record(String type, String targetUri, String contentType, byte[] block) {
+        String header = "WARC/1.0\r\n"
+            + "WARC-Type: " + type + "\r\n"
+            + "WARC-Target-URI: " + targetUri + "\r\n"
+            + "WARC-Record-ID: <urn:uuid:" + Math.abs(targetUri.hashCode()) + ">\r\n"
+            + "Content-Type: " + contentType + "\r\n"
+            + "Content-Length: " + block.length + "\r\n\r\n";
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(header.getBytes(StandardCharsets.ISO_8859_1), 0, header.length());
+        record.write(block, 0, block.length);
+        record.write('\r');
+        record.write('\n');
+        record.write('\r');
+        record.write('\n');
+
+        return record.toByteArray();
+    }
+
+    /**
+     * Creates a response record of an http response
+     *
+     * @param targetUri The WARC-Target-URI
+     * @param headers   The http status line and headers without the empty line
+     * @param body      The http body
+     * @return The record bytes
+     */
+    public static byte[] response(String targetUri, String headers, byte[] body) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        byte[] head = (headers + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        block.write(head, 0, head.length);
+        block.write(body, 0, body.length);
+
+        return record("response", targetUri, "application/http; msgtype=response", block.toByteArray());
+    }
+
+    /**
+     * Compresses every record as a separate gzip member
+     *
+     * @param records The records
+     * @return The ".warc.gz" bytes
+     * @throws IOException If compressing fails
+     */
+    public static byte[] gzipMembers(byte[]... records) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        for (byte[] record : records) {
+            GZIPOutputStream member = new GZIPOutputStream(archive);
+            member.write(record);
+            member.finish();
+        }
+
+        return archive.toByteArray();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(bytes);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    @Test
+    public void testHtmlResponses() throws Exception {
+        byte[] archive = gzipMembers(
+            record("warcinfo", "", "application/warc-fields", utf8("software: test\r\n")),
+            record("request", "https://www.example.com/", "application/http; msgtype=request", utf8("GET / HTTP/1.1\r\n\r\n")),
+            response("https://www.example.com/", "HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=UTF-8",
+                utf8("<title>Ana sayfa ğ</title>")),
+            response("https://www.example.com/logo.png", "HTTP/1.1 200 OK\r\nContent-Type: image/png", new byte[]{1, 2, 3}),
+            response("https://www.example.com/old", "HTTP/1.1 301 Moved Permanently\r\nContent-Type: text/html\r\nLocation: /new", utf8("moved")),
+            response("<https://www.example.com/chunked>", "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nTransfer-Encoding: chunked",
+                utf8("7\r\n<title>\r\n8;ext=1\r\nChunked<\r\n7\r\n/title>\r\n0\r\n\r\n")),
+            response("https://www.example.com/gzip", "HTTP/1.1 200 OK\r\nContent-Type: application/xhtml+xml\r\nContent-Encoding: gzip",
+                gzip(utf8("<title>Compressed</title>"))));
+
+        try (WarcReader reader = WarcReader.newInstance(new ByteArrayInputStream(archive))) {
+            assertTrue(reader.hasNext());
+            WarcReader.WarcRecord first = reader.next();
+            assertEquals("https://www.example.com/", first.getTargetUri());
+            assertEquals(200, first.getStatusCode());
+            Document document = first.parse();
+            assertEquals("Ana sayfa ğ", document.title());
+            assertEquals("https://www.example.com/", document.location());
+
+            WarcReader.WarcRecord chunked = reader.next();
+            assertEquals("https://www.example.com/chunked", chunked.getTargetUri());
+            assertEquals("Chunked", chunked.parse().title());
+
+            assertEquals("Compressed", reader.next().parse().title());
+            assertFalse(reader.hasNext());
+
+            assertEquals(7, reader.getRecords());
+            assertEquals(4, reader.getSkippedRecords());
+        }
+    }
+
+    @Test
+    public void testUncompressedArchiveAndNotFound() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.write(response("https://www.example.com/missing", "HTTP/1.1 404 Not Found\r\nContent-Type: text/html", utf8("<title>Not found</title>")));
+        archive.write(response("https://www.example.com/error", "HTTP/1.1 500 Internal Server Error\r\nContent-Type: text/html", utf8("error")));
+
+        try (WarcReader reader = WarcReader.newInstance(new ByteArrayInputStream(archive.toByteArray()))) {
+            try {
+                reader.next().parse();
+                fail("The not found response must not be parsed");
+            } catch (UrlReader.UrlNotFoundException expected) {
+                // expected
+            }
+            try {
+                reader.next().parse();
+                fail("The failed response must not be parsed");
+            } catch (UrlReader.UrlNotReadableException expected) {
+                // expected
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testTruncatedArchive() throws IOException {
+        byte[] record = response("https://www.example.com/", "HTTP/1.1 200 OK\r\nContent-Type: text/html", utf8("<title>Truncated</title>"));
+        byte[] truncated = new byte[record.length - 10];
+        System.arraycopy(record, 0, truncated, 0, truncated.length);
+
+        try (WarcReader reader = WarcReader.newInstance(new ByteArrayInputStream(truncated))) {
+            reader.hasNext();
+        }
+    }
+
+    @Test
+    public void testIsWarcFile() {
+        assertTrue(WarcReader.isWarcFile(Paths.get("crawl/CC-MAIN-00001.warc.gz")));
+        assertTrue(WarcReader.isWarcFile(Paths.get("crawl.WARC")));
+        assertFalse(WarcReader.isWarcFile(Paths.get("index.html")));
+    }
+}
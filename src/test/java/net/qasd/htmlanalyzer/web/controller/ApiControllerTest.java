@@ -0,0 +1,135 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.util.UrlReader;
+import org.apache.commons.io.IOUtils;
+import org.jsoup.Jsoup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApiControllerTest {
+
+    private ByteArrayOutputStream output;
+    private Request request;
+    private Response response;
+
+    @Before
+    public void setUp() throws IOException {
+        output = new ByteArrayOutputStream();
+        HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+        when(servletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+        });
+
+        request = mock(Request.class);
+        response = mock(Response.class);
+        when(response.raw()).thenReturn(servletResponse);
+
+        IndexController.setFetcher(url -> Jsoup.parse("<!DOCTYPE html><html><head><title>Api \"test\"</title></head>" +
+            "<body><h2>a</h2><h1>b</h1><a href=\"/x\">x</a><a href=\"http://other.com\">y</a></body></html>", url.toString()));
+    }
+
+    @After
+    public void tearDown() {
+        IndexController.setFetcher(UrlReader.newInstance());
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzer() throws IOException {
+        when(request.queryParams("url")).thenReturn("http://www.example.com");
+
+        assertEquals("", ApiController.executeHtmlAnalyzer(request, response));
+        verify(response).status(200);
+        verify(response).type(ApiController.JSON_CONTENT_TYPE);
+
+        String actual = output.toString("UTF-8").replaceAll("\"elapsedMillis\":\\d+", "\"elapsedMillis\":0");
+        assertEquals("{\"url\":\"http://www.example.com\",\"status\":true,\"documentType\":\"HTML5\",\"renderingMode\":\"NO_QUIRKS\"," +
+            "\"title\":\"Api \\\"test\\\"\",\"headingLevelCounter\":{\"h1\":1,\"h2\":1}," +
+            "\"hyperMediaLinkSums\":{\"internal\":1,\"external\":1,\"sameSite\":0,\"externalHosts\":{\"other.com\":1}},\"hasLoginForm\":false,\"elapsedMillis\":0}", actual);
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerGzip() throws IOException {
+        when(request.queryParams("url")).thenReturn("http://www.example.com");
+        when(request.headers("Accept-Encoding")).thenReturn("deflate, gzip");
+
+        ApiController.executeHtmlAnalyzer(request, response);
+        verify(response).header("Content-Encoding", "gzip");
+
+        String actual = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())), StandardCharsets.UTF_8);
+        assertTrue(actual.startsWith("{\"url\":\"http://www.example.com\",\"status\":true,"));
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerEmptyUrl() throws IOException {
+        ApiController.executeHtmlAnalyzer(request, response);
+
+        verify(response).status(400);
+        assertEquals("{\"status\":false,\"errorCode\":\"URL_PARAMETER_NOT_FOUND\",\"message\":\"" +
+            IndexController.Messages.URL_PARAMETER_NOT_FOUND + "\"}", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerNotValidUrl() throws IOException {
+        when(request.queryParams("url")).thenReturn("notvalidurl");
+
+        ApiController.executeHtmlAnalyzer(request, response);
+
+        verify(response).status(400);
+        assertEquals("{\"status\":false,\"errorCode\":\"URL_NOT_VALID\",\"message\":\"" +
+            IndexController.Messages.URL_NOT_VALID + "\"}", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerSelectedAnalyzers() throws IOException {
+        when(request.queryParams("url")).thenReturn("http://www.example.com");
+        when(request.queryParams("analyzers")).thenReturn("links,title");
+
+        ApiController.executeHtmlAnalyzer(request, response);
+
+        String actual = output.toString("UTF-8").replaceAll("\"elapsedMillis\":\\d+", "\"elapsedMillis\":0");
+        assertEquals("{\"url\":\"http://www.example.com\",\"status\":true,\"title\":\"Api \\\"test\\\"\"," +
+            "\"hyperMediaLinkSums\":{\"internal\":1,\"external\":1,\"sameSite\":0,\"externalHosts\":{\"other.com\":1}},\"elapsedMillis\":0}", actual);
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerUnknownAnalyzer() throws IOException {
+        when(request.queryParams("url")).thenReturn("http://www.example.com");
+        when(request.queryParams("analyzers")).thenReturn("links,colors");
+
+        ApiController.executeHtmlAnalyzer(request, response);
+
+        verify(response).status(400);
+        assertEquals("{\"status\":false,\"errorCode\":\"ANALYZER_NOT_FOUND\",\"message\":\"" +
+            IndexController.Messages.ANALYZER_NOT_FOUND + "\"}", output.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,90 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.BatchAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import org.junit.After;
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchControllerTest {
+
+    @After
+    public void tearDown() {
+        BatchController.setBatchAnalyzer(BatchAnalyzer.newInstance(16, false, IndexController::analyze));
+    }
+
+    @Test
+    public void testExecuteBatchEmpty() throws IOException, InterruptedException {
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        when(request.body()).thenReturn(" \n\n");
+
+        assertEquals(BatchController.Messages.URLS_NOT_FOUND, BatchController.executeBatch(request, response));
+        verify(response).status(400);
+    }
+
+    @Test
+    public void testExecuteBatch() throws IOException, InterruptedException {
+        BatchController.setBatchAnalyzer(BatchAnalyzer.newInstance(2, false, url -> {
+            HtmlAnalyzerResult result = new HtmlAnalyzerResult();
+            result.setTitle(url.getHost());
+            result.succeed();
+            return result;
+        }));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+        when(servletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+        });
+
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        when(response.raw()).thenReturn(servletResponse);
+        when(request.body()).thenReturn("http://a.com\r\nnotvalidurl\n\nhttp://b.com\n");
+
+        assertEquals("", BatchController.executeBatch(request, response));
+        verify(response).type(BatchController.NDJSON_CONTENT_TYPE);
+
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals(3, lines.length);
+        String all = Arrays.toString(lines);
+        assertTrue(all.contains("{\"url\":\"notvalidurl\",\"status\":false,\"errorCode\":\"URL_NOT_VALID\""));
+        assertTrue(all.contains("\"url\":\"http://a.com\",\"status\":true,\"documentType\":null,\"renderingMode\":null,\"title\":\"a.com\""));
+        for (String line : lines) {
+            assertTrue(line.contains("\"elapsedMillis\":"));
+        }
+    }
+
+    @Test
+    public void testParseUrls() {
+        assertEquals(Arrays.asList("a", "b"), BatchController.parseUrls(" a \r\n\nb\n"));
+        assertTrue(BatchController.parseUrls(null).isEmpty());
+    }
+}
@@ -1,15 +1,35 @@
 package net.qasd.htmlanalyzer.web.controller;
 
 import net.qasd.htmlanalyzer.HtmlAnalyzer;
+import net.qasd.htmlanalyzer.HtmlAnalyzerCache;
+import net.qasd.htmlanalyzer.HtmlAnalyzerResult;
+import net.qasd.htmlanalyzer.util.Fetcher;
+import net.qasd.htmlanalyzer.util.UrlReader;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.junit.Test;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class IndexControllerTest {
@@ -76,4 +96,88 @@ public class IndexControllerTest {
         assertTrue(model.containsKey("errorMessage"));
         assertEquals(HtmlAnalyzer.Messages.URL_NOT_FOUND, model.get("errorMessage"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testExecuteHtmlAnalyzerAsyncNotValidUrl() throws IOException {
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+
+        when(request.queryParams("url")).thenReturn("notvalidurl");
+
+        String actual = IndexController.executeHtmlAnalyzerAsync(request, response);
+
+        assertTrue(actual.contains(IndexController.Messages.URL_NOT_VALID));
+    }
+
+    @Test
+    public void testAnalyzeAsyncWithCache() throws Exception {
+        CompletableFuture<UrlReader.ConditionalDocument> fetched = new CompletableFuture<>();
+        AtomicInteger fetches = new AtomicInteger();
+        Fetcher fetcher = new Fetcher() {
+            @Override
+            public Document fetch(URL url) {
+                throw new AssertionError("The asynchronous fetch should be used");
+            }
+
+            @Override
+            public CompletableFuture<UrlReader.ConditionalDocument> fetchIfModifiedAsync(URL url, UrlReader.Validators validators) {
+                fetches.incrementAndGet();
+                return fetched;
+            }
+
+            @Override
+            public boolean isAsynchronous() {
+                return true;
+            }
+        };
+
+        IndexController.setCache(HtmlAnalyzerCache.newInstance(60 * 1000, 10, fetcher));
+        try {
+            CompletableFuture<HtmlAnalyzerResult> first = IndexController.analyzeAsync(new URL("http://www.example.com/cached"));
+            CompletableFuture<HtmlAnalyzerResult> second = IndexController.analyzeAsync(new URL("http://www.example.com/cached"));
+
+            // the fetch is started by the calling thread and is not completed yet
+            assertEquals(1, fetches.get());
+            assertFalse(first.isDone());
+
+            Document document = Jsoup.parse("<html><head><title>Cached title</title></head></html>", "http://www.example.com/cached");
+            fetched.complete(new UrlReader.ConditionalDocument(document, new UrlReader.Validators(null, null)));
+
+            assertEquals("Cached title", first.get(5, TimeUnit.SECONDS).getTitle());
+            assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+            assertEquals("Cached title", IndexController.analyzeAsync(new URL("http://www.example.com/cached")).get(5, TimeUnit.SECONDS).getTitle());
+            assertEquals(1, fetches.get());
+        } finally {
+            IndexController.setCache(null);
+        }
+    }
+
+    @Test
+    public void testExecuteHtmlAnalyzerAsync() throws IOException {
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        HttpServletRequest servletRequest = mock(HttpServletRequest.class);
+        HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        StringWriter output = new StringWriter();
+
+        when(request.queryParams("url")).thenReturn("http://www.example.com");
+        when(request.raw()).thenReturn(servletRequest);
+        when(response.raw()).thenReturn(servletResponse);
+        when(servletRequest.startAsync()).thenReturn(asyncContext);
+        when(asyncContext.getResponse()).thenReturn(servletResponse);
+        when(servletResponse.getWriter()).thenReturn(new PrintWriter(output));
+
+        IndexController.setFetcher(url -> Jsoup.parse("<html><head><title>Async title</title></head></html>", url.toString()));
+        try {
+            assertEquals("", IndexController.executeHtmlAnalyzerAsync(request, response));
+
+            // the response is committed before the route returns and completed by the analyzer thread
+            verify(servletResponse).flushBuffer();
+            verify(asyncContext, timeout(5000)).complete();
+            assertTrue(output.toString().contains("Async title"));
+        } finally {
+            IndexController.setFetcher(UrlReader.newInstance());
+        }
+    }
+}
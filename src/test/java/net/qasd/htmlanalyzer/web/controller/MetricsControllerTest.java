@@ -0,0 +1,44 @@
+package net.qasd.htmlanalyzer.web.controller;
+
+import net.qasd.htmlanalyzer.HtmlAnalyzerCache;
+import org.junit.After;
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class MetricsControllerTest {
+
+    @After
+    public void tearDown() {
+        IndexController.setCache(null);
+    }
+
+    @Test
+    public void testServeMetrics() throws IOException {
+        Response response = mock(Response.class);
+
+        String metrics = MetricsController.serveMetrics(mock(Request.class), response);
+
+        verify(response).type(MetricsController.PROMETHEUS_CONTENT_TYPE);
+        assertTrue(metrics.contains("# TYPE htmlanalyzer_stage_duration_seconds histogram\n"));
+        assertTrue(metrics.contains("# TYPE htmlanalyzer_failures_total counter\n"));
+        assertFalse(metrics.contains("htmlanalyzer_cache_hits_total"));
+    }
+
+    @Test
+    public void testServeMetricsWithCache() throws IOException {
+        IndexController.setCache(HtmlAnalyzerCache.newInstance(1000, 10));
+
+        String metrics = MetricsController.serveMetrics(mock(Request.class), mock(Response.class));
+
+        assertTrue(metrics.contains("htmlanalyzer_cache_hits_total 0\n"));
+        assertTrue(metrics.contains("htmlanalyzer_cache_size 0\n"));
+    }
+}